@@ -0,0 +1,148 @@
+package com.udacity.catpoint.benchmark;
+
+import com.udacity.catpoint.security.data.AlarmStatus;
+import com.udacity.catpoint.security.data.SecurityRepository;
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.prefs.BackingStoreException;
+import java.util.prefs.Preferences;
+import java.util.stream.Stream;
+
+/**
+ * Startup load and per-change cost of the repository implementations as the number of sensors
+ * grows. Every trial works on its own scratch preference node and directory, so the state of the
+ * installed application is never touched. The heap retained by a loaded repository is printed
+ * once per trial as a "# Footprint" line.
+ *
+ * The preference based repositories rewrite every sensor on each change, split over as many
+ * preference values as needed, which makes them far too slow for large installations. The
+ * parameter grid is therefore split over two subclasses: {@link RepositoryBenchmark} compares
+ * every storage at sizes they all handle, and {@link RepositoryScaleBenchmark} takes the
+ * storages that only write what changed to large installations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public abstract class AbstractRepositoryBenchmark {
+
+    //load opens its own copy of the state, a second instance must not share storage with repository
+    private Preferences loadNode;
+    private Path loadDirectory;
+    private Preferences node;
+    private Path directory;
+    private SecurityRepository repository;
+    private Sensor[] sensors;
+    private int nextSensor;
+    private boolean pending;
+
+    abstract Storage storage();
+
+    abstract int sensorCount();
+
+    @Setup
+    public void setUp() throws Exception {
+        Storage storage = storage();
+        loadNode = scratchNode();
+        loadDirectory = Files.createTempDirectory("catpoint-benchmark");
+        populate(loadNode, loadDirectory);
+        node = scratchNode();
+        directory = Files.createTempDirectory("catpoint-benchmark");
+        populate(node, directory);
+
+        long retained = Footprint.retainedBytes(() -> storage.open(loadNode, loadDirectory), Storage::close);
+        System.out.printf("# Footprint: %s with %d sensors retains %,d bytes%n", storage, sensorCount(), retained);
+
+        repository = storage.open(node, directory);
+        sensors = repository.getSensors().toArray(new Sensor[0]);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        Storage.close(repository);
+        delete(loadNode, loadDirectory);
+        delete(node, directory);
+    }
+
+    /**
+     * Opens the repository on the stored state and closes it again.
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public int load() throws Exception {
+        SecurityRepository loaded = storage().open(loadNode, loadDirectory);
+        int size = loaded.getSensors().size();
+        Storage.close(loaded);
+        return size;
+    }
+
+    /**
+     * Toggles one sensor and stores it, round robin over all sensors.
+     */
+    @Benchmark
+    public Sensor updateSensor() {
+        Sensor sensor = sensors[nextSensor];
+        nextSensor = (nextSensor + 1) % sensors.length;
+        sensor.setActive(!sensor.getActive());
+        repository.updateSensor(sensor);
+        return sensor;
+    }
+
+    @Benchmark
+    public boolean setAlarmStatus() {
+        pending = !pending;
+        repository.setAlarmStatus(pending ? AlarmStatus.PENDING_ALARM : AlarmStatus.NO_ALARM);
+        return pending;
+    }
+
+    private static Preferences scratchNode() {
+        return Preferences.userRoot().node("catpoint-benchmark-" + UUID.randomUUID());
+    }
+
+    private void populate(Preferences node, Path directory) throws Exception {
+        SecurityRepository initial = storage().open(node, directory);
+        for (int i = 0; i < sensorCount(); i++) {
+            initial.addSensor(new Sensor("sensor " + i, SensorType.values()[i % SensorType.values().length]));
+        }
+        Storage.close(initial);
+    }
+
+    private static void delete(Preferences node, Path directory) throws IOException {
+        try {
+            node.removeNode();
+        } catch (BackingStoreException e) {
+            //a scratch node left behind is harmless
+        }
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(AbstractRepositoryBenchmark::deleteQuietly);
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            //temporary files, the OS cleans them up eventually
+        }
+    }
+}
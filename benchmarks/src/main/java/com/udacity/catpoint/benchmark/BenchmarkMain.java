@@ -0,0 +1,22 @@
+package com.udacity.catpoint.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of benchmarks.jar. Takes the usual JMH command line, but always attaches the GC
+ * profiler, so every result comes with its allocation rate per operation.
+ *
+ * Example: java -jar benchmarks/target/benchmarks.jar SensorStateBenchmark -p sensorCount=4,100000
+ */
+public class BenchmarkMain {
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
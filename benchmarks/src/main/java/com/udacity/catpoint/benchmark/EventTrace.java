@@ -0,0 +1,147 @@
+package com.udacity.catpoint.benchmark;
+
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorType;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * A recorded stream of events for the SecurityService: sensor activations, camera frames and
+ * arming changes, each at a time offset from the start of the trace. Traces are written by
+ * {@link LoadGenerator} and replayed by {@link LoadHarness}.
+ *
+ * On disk a trace is plain text, so it can be inspected, edited or produced by other tools:
+ * <pre>
+ * # catpoint event trace 1
+ * sensor 7d5d0a4e-... DOOR front door
+ * 0 ARM_HOME
+ * 1250 ACTIVATE 0
+ * 40000 CAT_FRAME
+ * </pre>
+ * Sensors are numbered in the order they are listed, times are in microseconds and never go
+ * backwards. Frames carry the verdict the image service is to give, which keeps a replay
+ * deterministic.
+ */
+final class EventTrace {
+
+    static final String HEADER = "# catpoint event trace 1";
+
+    enum Kind {
+        ACTIVATE, DEACTIVATE, CAT_FRAME, EMPTY_FRAME, ARM_HOME, ARM_AWAY, DISARM;
+
+        boolean hasSensor() {
+            return this == ACTIVATE || this == DEACTIVATE;
+        }
+    }
+
+    static final class Event {
+        final long micros;
+        final Kind kind;
+        //index into the sensors of the trace, -1 for events without a sensor
+        final int sensor;
+
+        Event(long micros, Kind kind, int sensor) {
+            this.micros = micros;
+            this.kind = kind;
+            this.sensor = sensor;
+        }
+    }
+
+    private final List<Sensor> sensors;
+    private final List<Event> events;
+
+    /**
+     * @throws IllegalArgumentException if the events are out of order or name unknown sensors
+     */
+    EventTrace(List<Sensor> sensors, List<Event> events) {
+        long last = 0;
+        for (Event event : events) {
+            if (event.micros < last) {
+                throw new IllegalArgumentException("Events must be in time order");
+            }
+            if (event.kind.hasSensor() ? event.sensor < 0 || event.sensor >= sensors.size() : event.sensor != -1) {
+                throw new IllegalArgumentException("Invalid sensor " + event.sensor + " for " + event.kind);
+            }
+            last = event.micros;
+        }
+        this.sensors = Collections.unmodifiableList(new ArrayList<>(sensors));
+        this.events = Collections.unmodifiableList(new ArrayList<>(events));
+    }
+
+    List<Sensor> getSensors() {
+        return sensors;
+    }
+
+    List<Event> getEvents() {
+        return events;
+    }
+
+    /**
+     * @return time of the last event, in microseconds
+     */
+    long getDurationMicros() {
+        return events.isEmpty() ? 0 : events.get(events.size() - 1).micros;
+    }
+
+    void write(Path file) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            out.write(HEADER);
+            out.newLine();
+            for (Sensor sensor : sensors) {
+                out.write("sensor " + sensor.getSensorId() + " " + sensor.getSensorType() + " " + sensor.getName());
+                out.newLine();
+            }
+            for (Event event : events) {
+                out.write(event.micros + " " + event.kind);
+                if (event.kind.hasSensor()) {
+                    out.write(" " + event.sensor);
+                }
+                out.newLine();
+            }
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException naming the line if the file is not a valid trace
+     */
+    static EventTrace read(Path file) throws IOException {
+        List<Sensor> sensors = new ArrayList<>();
+        List<Event> events = new ArrayList<>();
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            if (!HEADER.equals(in.readLine())) {
+                throw new IllegalArgumentException(file + " is not an event trace");
+            }
+            int lineNumber = 1;
+            String line;
+            while ((line = in.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank() || line.startsWith("#")) {
+                    continue;
+                }
+                try {
+                    String[] parts = line.split(" ", 4);
+                    if (parts[0].equals("sensor")) {
+                        Sensor sensor = new Sensor(parts.length > 3 ? parts[3] : "", SensorType.valueOf(parts[2]));
+                        sensor.setSensorId(UUID.fromString(parts[1]));
+                        sensors.add(sensor);
+                    } else {
+                        Kind kind = Kind.valueOf(parts[1]);
+                        events.add(new Event(Long.parseLong(parts[0]), kind, kind.hasSensor() ? Integer.parseInt(parts[2]) : -1));
+                    }
+                } catch (RuntimeException e) {
+                    throw new IllegalArgumentException("Invalid trace line " + lineNumber + ": " + line, e);
+                }
+            }
+        }
+        return new EventTrace(sensors, events);
+    }
+}
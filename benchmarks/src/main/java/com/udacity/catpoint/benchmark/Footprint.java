@@ -0,0 +1,32 @@
+package com.udacity.catpoint.benchmark;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Rough measurement of the heap an object graph keeps alive, from the used heap before and
+ * after creating it. Good enough to compare implementations, not to count bytes.
+ */
+class Footprint {
+
+    interface Release<T> {
+        void release(T value) throws Exception;
+    }
+
+    static <T> long retainedBytes(Callable<T> factory, Release<T> release) throws Exception {
+        long before = usedHeapAfterGc();
+        T value = factory.call();
+        long after = usedHeapAfterGc();
+        //keeps the value reachable until after the second measurement
+        release.release(value);
+        return after - before;
+    }
+
+    private static long usedHeapAfterGc() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,138 @@
+package com.udacity.catpoint.benchmark;
+
+import com.udacity.catpoint.image.service.AwsImageService;
+import com.udacity.catpoint.image.service.BatchImageService;
+import com.udacity.catpoint.image.service.BurstDecision;
+import com.udacity.catpoint.image.service.CatModel;
+import com.udacity.catpoint.image.service.FakeImage;
+import com.udacity.catpoint.image.service.LocalImageService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency and throughput of classifying camera frames on the local CPU versus sending them to
+ * Rekognition. The network runs the same operations whatever its weights, so by default the local
+ * classifier is measured with random weights of a typical shape; -p model=<file> measures a trained
+ * model instead, whose shape may differ.
+ *
+ * Only the local classifier runs by default. Comparing with the remote one needs AWS credentials
+ * in config.properties on the classpath and -p classifier=local,aws. Throughput across cores is
+ * measured by adding threads with -t, or per burst of frames with the burst benchmark, which fans
+ * the frames of one burst out over all cores.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ImageClassifierBenchmark {
+
+    private static final int BURST_SIZE = 8;
+
+    @Param({"local"})
+    public String classifier;
+
+    @Param({"640x480", "1280x720"})
+    public String frameSize;
+
+    //file of a trained CatModel, empty for random weights
+    @Param({""})
+    public String model;
+
+    private FakeImage imageService;
+    private ExecutorService executor;
+    private BatchImageService batchImageService;
+    private BufferedImage frame;
+    private List<BufferedImage> burst;
+
+    @Setup
+    public void setUp() throws IOException {
+        Random random = new Random(42);
+        if (classifier.equals("aws")) {
+            imageService = new AwsImageService();
+        } else if (model.isEmpty()) {
+            imageService = new LocalImageService(randomModel(random));
+        } else {
+            try (InputStream in = Files.newInputStream(Path.of(model))) {
+                imageService = new LocalImageService(CatModel.read(in));
+            }
+        }
+
+        String[] dimensions = frameSize.split("x");
+        BufferedImage[] frames = new BufferedImage[BURST_SIZE];
+        for (int i = 0; i < frames.length; i++) {
+            frames[i] = noise(Integer.parseInt(dimensions[0]), Integer.parseInt(dimensions[1]), random);
+        }
+        frame = frames[0];
+        burst = Arrays.asList(frames);
+
+        executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        batchImageService = new BatchImageService(imageService, executor, BurstDecision.ANY_CAT);
+        //fails here rather than in every measured call if the classifier is not usable
+        imageService.imageContainsCat(frame, 50);
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private static CatModel randomModel(Random random) {
+        int inputSize = 32;
+        int filterCount = 8;
+        int poolSize = (inputSize - 2) / 2;
+        return new CatModel(inputSize, gaussian(random, filterCount * 9), gaussian(random, filterCount),
+                gaussian(random, filterCount * poolSize * poolSize), 0);
+    }
+
+    private static float[] gaussian(Random random, int count) {
+        float[] values = new float[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = (float) random.nextGaussian() * 0.1f;
+        }
+        return values;
+    }
+
+    private static BufferedImage noise(int width, int height, Random random) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, random.nextInt(0x1000000));
+            }
+        }
+        return image;
+    }
+
+    @Benchmark
+    public boolean frame() {
+        return imageService.imageContainsCat(frame, 50);
+    }
+
+    @Benchmark
+    public boolean burst() {
+        return batchImageService.imageContainsCat(burst, 50);
+    }
+}
@@ -0,0 +1,76 @@
+package com.udacity.catpoint.benchmark;
+
+import com.udacity.catpoint.security.data.AlarmStatus;
+import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.data.SecurityRepository;
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorStore;
+
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Repository without any persistence, so the benchmarks of the service measure the service and
+ * not the storage behind it.
+ */
+class InMemorySecurityRepository implements SecurityRepository {
+
+    private final SensorStore sensors = new SensorStore();
+    private AlarmStatus alarmStatus = AlarmStatus.NO_ALARM;
+    private ArmingStatus armingStatus = ArmingStatus.DISARMED;
+
+    @Override
+    public synchronized void addSensor(Sensor sensor) {
+        sensors.add(sensor);
+    }
+
+    @Override
+    public synchronized void removeSensor(Sensor sensor) {
+        sensors.remove(sensor);
+    }
+
+    @Override
+    public synchronized void updateSensor(Sensor sensor) {
+        sensors.add(sensor);
+    }
+
+    @Override
+    public synchronized void setAlarmStatus(AlarmStatus alarmStatus) {
+        this.alarmStatus = alarmStatus;
+    }
+
+    @Override
+    public synchronized void setArmingStatus(ArmingStatus armingStatus) {
+        this.armingStatus = armingStatus;
+    }
+
+    @Override
+    public Set<Sensor> getSensors() {
+        return sensors;
+    }
+
+    @Override
+    public synchronized Sensor getSensor(UUID sensorId) {
+        return sensors.get(sensorId);
+    }
+
+    @Override
+    public synchronized boolean hasActiveSensors() {
+        return sensors.hasActiveSensors();
+    }
+
+    @Override
+    public synchronized Set<Sensor> getActiveSensors() {
+        return Set.copyOf(sensors.getActiveSensors());
+    }
+
+    @Override
+    public synchronized AlarmStatus getAlarmStatus() {
+        return alarmStatus;
+    }
+
+    @Override
+    public synchronized ArmingStatus getArmingStatus() {
+        return armingStatus;
+    }
+}
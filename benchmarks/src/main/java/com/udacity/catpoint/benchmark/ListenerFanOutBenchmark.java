@@ -0,0 +1,107 @@
+package com.udacity.catpoint.benchmark;
+
+import com.udacity.catpoint.image.service.AsyncImageService;
+import com.udacity.catpoint.image.service.BatchImageService;
+import com.udacity.catpoint.image.service.FakeImage;
+import com.udacity.catpoint.security.application.StatusListener;
+import com.udacity.catpoint.security.data.AlarmStatus;
+import com.udacity.catpoint.security.service.SecurityService;
+import com.udacity.catpoint.security.service.StatusEventBus;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cost of notifying StatusListeners as their number grows, seen from the thread changing the
+ * state. Delivery itself happens on the event bus thread, coalesced per frame; the number of
+ * callbacks that actually arrived is checked at the end of every iteration to make sure the
+ * listeners are not silently starved.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ListenerFanOutBenchmark {
+
+    @Param({"1", "10", "100", "1000"})
+    public int listenerCount;
+
+    private final LongAdder delivered = new LongAdder();
+    private StatusEventBus statusEvents;
+    private SecurityService securityService;
+    private boolean pending;
+
+    @Setup
+    public void setUp() {
+        statusEvents = new StatusEventBus();
+        FakeImage imageService = (image, threshold) -> false;
+        securityService = new SecurityService(new InMemorySecurityRepository(), imageService,
+                new AsyncImageService(imageService), new BatchImageService(imageService), Runnable::run, statusEvents);
+        for (int i = 0; i < listenerCount; i++) {
+            securityService.addStatusListener(new CountingListener(delivered));
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void checkDelivery() throws InterruptedException {
+        //give the last frame time to arrive before looking
+        TimeUnit.MILLISECONDS.sleep(2 * StatusEventBus.DEFAULT_FRAME_INTERVAL_MILLIS);
+        if (delivered.sumThenReset() < listenerCount) {
+            throw new IllegalStateException("Listeners were not notified");
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        statusEvents.close();
+    }
+
+    @Benchmark
+    public void setAlarmStatus() {
+        pending = !pending;
+        securityService.setAlarmStatus(pending ? AlarmStatus.PENDING_ALARM : AlarmStatus.NO_ALARM);
+    }
+
+    @Benchmark
+    public void sensorStatusChanged() {
+        statusEvents.sensorStatusChanged();
+    }
+
+    private static class CountingListener implements StatusListener {
+        private final LongAdder delivered;
+
+        private CountingListener(LongAdder delivered) {
+            this.delivered = delivered;
+        }
+
+        @Override
+        public void notify(AlarmStatus status) {
+            delivered.increment();
+        }
+
+        @Override
+        public void catDetected(boolean catDetected) {
+            delivered.increment();
+        }
+
+        @Override
+        public void sensorStatusChanged() {
+            delivered.increment();
+        }
+    }
+}
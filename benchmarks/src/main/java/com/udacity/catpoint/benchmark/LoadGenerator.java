@@ -0,0 +1,143 @@
+package com.udacity.catpoint.benchmark;
+
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+
+/**
+ * Synthesizes event traces that look like a busy installation: sensors toggling at a given
+ * average rate, in bursts if asked for, a camera sending frames at a steady rate of which some
+ * show a cat, and the system being disarmed and armed again at regular intervals, as people come
+ * and go, so the alarm keeps cycling instead of sitting in ALARM.
+ *
+ * Everything is drawn from a seeded random generator, so the same profile always gives the same
+ * trace, down to the sensor ids.
+ */
+final class LoadGenerator {
+
+    /** Time between the events of one burst, in microseconds. */
+    static final long BURST_SPACING_MICROS = 100;
+
+    /**
+     * What to generate. Rates are per second and averaged over the whole trace.
+     */
+    static final class Profile {
+        final int sensorCount;
+        final double sensorEventsPerSecond;
+        final double framesPerSecond;
+        //average number of sensor events per burst, 1 for evenly spread (Poisson) arrivals
+        final double burstiness;
+        final double catProbability;
+        final long durationMillis;
+        final long rearmIntervalMillis;
+        final long seed;
+
+        Profile(int sensorCount, double sensorEventsPerSecond, double framesPerSecond, double burstiness,
+                double catProbability, long durationMillis, long rearmIntervalMillis, long seed) {
+            if (sensorCount < 1 || sensorEventsPerSecond < 0 || framesPerSecond < 0 || burstiness < 1
+                    || catProbability < 0 || catProbability > 1 || durationMillis < 0 || rearmIntervalMillis < 1) {
+                throw new IllegalArgumentException("Invalid load profile");
+            }
+            this.sensorCount = sensorCount;
+            this.sensorEventsPerSecond = sensorEventsPerSecond;
+            this.framesPerSecond = framesPerSecond;
+            this.burstiness = burstiness;
+            this.catProbability = catProbability;
+            this.durationMillis = durationMillis;
+            this.rearmIntervalMillis = rearmIntervalMillis;
+            this.seed = seed;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d sensors, %.0f sensor events/s in bursts of %.1f, %.1f frames/s with %.0f%% cats, "
+                            + "rearmed every %d ms, %d ms, seed %d", sensorCount, sensorEventsPerSecond, burstiness,
+                    framesPerSecond, catProbability * 100, rearmIntervalMillis, durationMillis, seed);
+        }
+    }
+
+    private LoadGenerator() {
+    }
+
+    static EventTrace generate(Profile profile) {
+        SplittableRandom random = new SplittableRandom(profile.seed);
+        long durationMicros = profile.durationMillis * 1000;
+        long rearmMicros = profile.rearmIntervalMillis * 1000;
+
+        List<Sensor> sensors = new ArrayList<>(profile.sensorCount);
+        for (int i = 0; i < profile.sensorCount; i++) {
+            Sensor sensor = new Sensor("sensor " + i, SensorType.values()[i % SensorType.values().length]);
+            sensor.setSensorId(new UUID(random.nextLong(), random.nextLong()));
+            sensors.add(sensor);
+        }
+
+        List<EventTrace.Event> events = new ArrayList<>();
+        //alternating home and away, with a disarm in between, as people leave and come back
+        for (long t = 0, n = 0; t <= durationMicros; t += rearmMicros, n++) {
+            if (t > 0) {
+                events.add(new EventTrace.Event(t, EventTrace.Kind.DISARM, -1));
+            }
+            events.add(new EventTrace.Event(t, n % 2 == 0 ? EventTrace.Kind.ARM_HOME : EventTrace.Kind.ARM_AWAY, -1));
+        }
+
+        if (profile.framesPerSecond > 0) {
+            long frameMicros = Math.max(1, (long) (1_000_000 / profile.framesPerSecond));
+            for (long t = frameMicros; t <= durationMicros; t += frameMicros) {
+                boolean cat = random.nextDouble() < profile.catProbability;
+                events.add(new EventTrace.Event(t, cat ? EventTrace.Kind.CAT_FRAME : EventTrace.Kind.EMPTY_FRAME, -1));
+            }
+        }
+
+        if (profile.sensorEventsPerSecond > 0) {
+            //bursts arrive burstiness times less often than single events would, keeping the average
+            // rate; the time a burst itself takes is part of the gap
+            double meanGapMicros = Math.max(0, profile.burstiness * 1_000_000 / profile.sensorEventsPerSecond
+                    - (profile.burstiness - 1) * BURST_SPACING_MICROS);
+            boolean[] active = new boolean[profile.sensorCount];
+            long nextRearm = rearmMicros;
+            long t = Math.round(exponential(random, meanGapMicros));
+            while (t <= durationMicros) {
+                long burst = geometric(random, profile.burstiness);
+                for (long i = 0; i < burst && t <= durationMicros; i++) {
+                    if (i > 0) {
+                        t += BURST_SPACING_MICROS;
+                    }
+                    if (t >= nextRearm) {
+                        //arming resets every sensor
+                        Arrays.fill(active, false);
+                        nextRearm += (t - nextRearm) / rearmMicros * rearmMicros + rearmMicros;
+                    }
+                    int sensor = random.nextInt(profile.sensorCount);
+                    active[sensor] = !active[sensor];
+                    events.add(new EventTrace.Event(t, active[sensor] ? EventTrace.Kind.ACTIVATE : EventTrace.Kind.DEACTIVATE, sensor));
+                }
+                t += Math.round(exponential(random, meanGapMicros));
+            }
+        }
+
+        //stable, so arming events stay ahead of anything at the same instant
+        events.sort(Comparator.comparingLong(event -> event.micros));
+        return new EventTrace(sensors, events);
+    }
+
+    private static double exponential(SplittableRandom random, double mean) {
+        return -mean * Math.log(1 - random.nextDouble());
+    }
+
+    /**
+     * @return a number of events of at least 1 with the given mean
+     */
+    private static long geometric(SplittableRandom random, double mean) {
+        if (mean <= 1) {
+            return 1;
+        }
+        double p = 1 / mean;
+        return 1 + (long) (Math.log(1 - random.nextDouble()) / Math.log(1 - p));
+    }
+}
@@ -0,0 +1,351 @@
+package com.udacity.catpoint.benchmark;
+
+import com.udacity.catpoint.image.service.AsyncImageService;
+import com.udacity.catpoint.image.service.BatchImageService;
+import com.udacity.catpoint.image.service.FakeImage;
+import com.udacity.catpoint.security.application.StatusListener;
+import com.udacity.catpoint.security.data.AlarmStatus;
+import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorType;
+import com.udacity.catpoint.security.metrics.LatencyHistogram;
+import com.udacity.catpoint.security.service.SecurityService;
+import com.udacity.catpoint.security.service.SensorDebouncer;
+import com.udacity.catpoint.security.service.StatusEventBus;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives a SecurityService with an event trace, headless, and reports how it kept up. Unlike the
+ * JMH benchmarks, which time one operation in a loop, this replays a realistic mix of sensor
+ * events, camera frames and arming changes at the rate they were recorded at.
+ *
+ * Usage: LoadHarness [--sensors 100] [--sensor-rate 2000] [--frame-rate 10] [--burstiness 1]
+ *                    [--cat-probability 0.1] [--duration 10] [--rearm-interval 2000] [--seed 1]
+ *                    [--record trace.txt] [--replay trace.txt] [--speed 1] [--debounce 0]
+ * Without --replay a trace is generated from the options (durations in seconds and milliseconds
+ * respectively), and saved if --record is given. --speed 2 replays twice as fast as recorded,
+ * --speed 0 as fast as possible. --debounce 50 puts a {@link SensorDebouncer} with a 50 ms window
+ * for every sensor type in front of the service, to compare the sensor writes with and without.
+ *
+ * The service runs on an in-memory repository and an image service that answers with the verdict
+ * stored in the trace, so a replay does the same thing every time; the final state it prints can
+ * be compared between runs. Events are applied on one thread in trace order.
+ *
+ * Latencies are measured from the time an event was due according to the trace, not from when it
+ * was applied, so time spent waiting behind earlier events is counted rather than hidden. Decision
+ * latency ends when the service stores the new alarm status, notification latency when a status
+ * listener receives it. The status bus folds changes within one frame, so a transition that was
+ * overtaken before delivery is counted as folded instead. Transitions the debouncer applies at the
+ * end of a window are measured from the event being applied at that moment.
+ */
+public final class LoadHarness {
+
+    /**
+     * Outcome of one replay.
+     */
+    static final class Report {
+        long events;
+        long sensorEvents;
+        long sensorWrites;
+        long elapsedNanos;
+        long maxLagNanos;
+        long transitions;
+        long folded;
+        final LatencyHistogram decisionLatency = new LatencyHistogram();
+        final LatencyHistogram notificationLatency = new LatencyHistogram();
+        AlarmStatus finalAlarmStatus;
+        ArmingStatus finalArmingStatus;
+        int finalActiveSensors;
+
+        double getThroughput() {
+            return elapsedNanos == 0 ? 0 : events * 1e9 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("events:               %,d in %.3f s, %,.0f events/s%n"
+                            + "behind schedule:      at most %.3f ms%n"
+                            + "sensor writes:        %,d for %,d sensor events%n"
+                            + "alarm transitions:    %,d (%,d folded before delivery)%n"
+                            + "decision latency:     %s%n"
+                            + "notification latency: %s%n"
+                            + "final state:          %s, %s, %d active sensors",
+                    events, elapsedNanos / 1e9, getThroughput(), maxLagNanos / 1e6, sensorWrites, sensorEvents,
+                    transitions, folded,
+                    format(decisionLatency), format(notificationLatency),
+                    finalAlarmStatus, finalArmingStatus, finalActiveSensors);
+        }
+
+        private static String format(LatencyHistogram histogram) {
+            LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+            return String.format("p50 %.3f ms, p99 %.3f ms, p99.9 %.3f ms, max %.3f ms",
+                    snapshot.getValueAtPercentile(50) / 1e6, snapshot.getValueAtPercentile(99) / 1e6,
+                    snapshot.getValueAtPercentile(99.9) / 1e6, snapshot.getMax() / 1e6);
+        }
+    }
+
+    private LoadHarness() {
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int sensors = 100;
+        double sensorRate = 2000;
+        double frameRate = 10;
+        double burstiness = 1;
+        double catProbability = 0.1;
+        long durationMillis = 10_000;
+        long rearmMillis = 2000;
+        long seed = 1;
+        Path record = null;
+        Path replay = null;
+        double speed = 1;
+        long debounceMillis = 0;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--sensors" -> sensors = Integer.parseInt(argument(args, ++i));
+                case "--sensor-rate" -> sensorRate = Double.parseDouble(argument(args, ++i));
+                case "--frame-rate" -> frameRate = Double.parseDouble(argument(args, ++i));
+                case "--burstiness" -> burstiness = Double.parseDouble(argument(args, ++i));
+                case "--cat-probability" -> catProbability = Double.parseDouble(argument(args, ++i));
+                case "--duration" -> durationMillis = (long) (Double.parseDouble(argument(args, ++i)) * 1000);
+                case "--rearm-interval" -> rearmMillis = Long.parseLong(argument(args, ++i));
+                case "--seed" -> seed = Long.parseLong(argument(args, ++i));
+                case "--record" -> record = Paths.get(argument(args, ++i));
+                case "--replay" -> replay = Paths.get(argument(args, ++i));
+                case "--speed" -> speed = Double.parseDouble(argument(args, ++i));
+                case "--debounce" -> debounceMillis = Long.parseLong(argument(args, ++i));
+                default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+
+        EventTrace trace;
+        if (replay != null) {
+            trace = EventTrace.read(replay);
+            System.out.println("Replaying " + replay);
+        } else {
+            LoadGenerator.Profile profile = new LoadGenerator.Profile(sensors, sensorRate, frameRate, burstiness,
+                    catProbability, durationMillis, rearmMillis, seed);
+            trace = LoadGenerator.generate(profile);
+            System.out.println("Generated " + profile);
+        }
+        if (record != null) {
+            trace.write(record);
+            System.out.println("Recorded to " + record);
+        }
+        System.out.printf("%,d events for %d sensors over %.3f s, at %s speed%n", trace.getEvents().size(),
+                trace.getSensors().size(), trace.getDurationMicros() / 1e6, speed == 0 ? "full" : speed + "x");
+        if (debounceMillis > 0) {
+            System.out.println("Debouncing sensors for " + debounceMillis + " ms");
+        }
+        System.out.println(replay(trace, speed, debounceMillis));
+    }
+
+    /**
+     * Applies all events of the trace to a fresh SecurityService.
+     * @param speed How much faster than recorded to replay, 0 for as fast as possible
+     * @param debounceMillis Debounce window for every sensor type, 0 to apply sensor events directly
+     */
+    static Report replay(EventTrace trace, double speed, long debounceMillis) throws InterruptedException {
+        if (speed < 0) {
+            throw new IllegalArgumentException("Speed must not be negative");
+        }
+        Report report = new Report();
+        //when the event being applied was due, read by the repository on the same thread
+        AtomicLong due = new AtomicLong();
+        ConcurrentLinkedQueue<Transition> undelivered = new ConcurrentLinkedQueue<>();
+        InMemorySecurityRepository repository = new InMemorySecurityRepository() {
+            @Override
+            public synchronized void updateSensor(Sensor sensor) {
+                super.updateSensor(sensor);
+                report.sensorWrites++;
+            }
+
+            @Override
+            public synchronized void setAlarmStatus(AlarmStatus alarmStatus) {
+                AlarmStatus previous = getAlarmStatus();
+                super.setAlarmStatus(alarmStatus);
+                if (alarmStatus != previous) {
+                    report.transitions++;
+                    report.decisionLatency.record(System.nanoTime() - due.get());
+                    undelivered.add(new Transition(alarmStatus, due.get()));
+                }
+            }
+        };
+
+        FakeImage images = new ScriptedImageService();
+        StatusEventBus statusEvents = new StatusEventBus();
+        AsyncImageService asyncImages = new AsyncImageService(images);
+        BatchImageService batchImages = new BatchImageService(images);
+        SecurityService securityService = new SecurityService(repository, images, asyncImages, batchImages,
+                Runnable::run, statusEvents);
+        statusEvents.subscribe(new TransitionListener(undelivered, report), Runnable::run);
+        SensorDebouncer debouncer = null;
+        if (debounceMillis > 0) {
+            Map<SensorType, Long> windows = new EnumMap<>(SensorType.class);
+            for (SensorType type : SensorType.values()) {
+                windows.put(type, debounceMillis);
+            }
+            debouncer = new SensorDebouncer(securityService, windows);
+        }
+
+        Sensor[] sensors = new Sensor[trace.getSensors().size()];
+        for (int i = 0; i < sensors.length; i++) {
+            //copies, the trace's sensors stay untouched for the next replay
+            Sensor original = trace.getSensors().get(i);
+            sensors[i] = new Sensor(original.getName(), original.getSensorType());
+            sensors[i].setSensorId(original.getSensorId());
+            securityService.addSensor(sensors[i]);
+        }
+
+        List<EventTrace.Event> events = trace.getEvents();
+        long start = System.nanoTime();
+        for (EventTrace.Event event : events) {
+            long dueNanos;
+            if (speed == 0) {
+                dueNanos = System.nanoTime();
+            } else {
+                dueNanos = start + (long) (event.micros * 1000 / speed);
+                long wait;
+                while ((wait = dueNanos - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                report.maxLagNanos = Math.max(report.maxLagNanos, System.nanoTime() - dueNanos);
+            }
+            due.set(dueNanos);
+            apply(securityService, debouncer, sensors, event);
+            if (event.kind.hasSensor()) {
+                report.sensorEvents++;
+            }
+        }
+        if (debouncer != null) {
+            //the net change of windows still open
+            debouncer.close();
+        }
+        report.elapsedNanos = System.nanoTime() - start;
+        report.events = events.size();
+
+        //let the last frame of status events through, whatever is still waiting after that was folded
+        Thread.sleep(4 * StatusEventBus.DEFAULT_FRAME_INTERVAL_MILLIS);
+        statusEvents.close();
+        asyncImages.close();
+        batchImages.close();
+        synchronized (report) {
+            report.folded += undelivered.size();
+            undelivered.clear();
+        }
+        report.finalAlarmStatus = securityService.getAlarmStatus();
+        report.finalArmingStatus = securityService.getArmingStatus();
+        report.finalActiveSensors = securityService.getActiveSensorCount();
+        return report;
+    }
+
+    private static void apply(SecurityService securityService, SensorDebouncer debouncer, Sensor[] sensors,
+                              EventTrace.Event event) {
+        switch (event.kind) {
+            case ACTIVATE, DEACTIVATE -> {
+                Sensor sensor = sensors[event.sensor];
+                if (debouncer != null) {
+                    debouncer.changeSensorActivationStatus(sensor, event.kind == EventTrace.Kind.ACTIVATE);
+                    return;
+                }
+                securityService.changeSensorActivationStatus(sensor.getSensorId().getMostSignificantBits(),
+                        sensor.getSensorId().getLeastSignificantBits(), event.kind == EventTrace.Kind.ACTIVATE);
+            }
+            case CAT_FRAME -> securityService.processImage(ScriptedImageService.CAT);
+            case EMPTY_FRAME -> securityService.processImage(ScriptedImageService.EMPTY);
+            case ARM_HOME -> securityService.setArmingStatus(ArmingStatus.ARMED_HOME);
+            case ARM_AWAY -> securityService.setArmingStatus(ArmingStatus.ARMED_AWAY);
+            case DISARM -> securityService.setArmingStatus(ArmingStatus.DISARMED);
+        }
+    }
+
+    private static String argument(String[] args, int i) {
+        if (i >= args.length) {
+            throw new IllegalArgumentException("Missing value for " + args[i - 1]);
+        }
+        return args[i];
+    }
+
+    private static final class Transition {
+        private final AlarmStatus status;
+        private final long dueNanos;
+
+        private Transition(AlarmStatus status, long dueNanos) {
+            this.status = status;
+            this.dueNanos = dueNanos;
+        }
+    }
+
+    /**
+     * Matches the alarm statuses delivered by the bus with the transitions that caused them.
+     */
+    private static final class TransitionListener implements StatusListener {
+        private final ConcurrentLinkedQueue<Transition> undelivered;
+        private final Report report;
+        private AlarmStatus lastDelivered = AlarmStatus.NO_ALARM;
+
+        private TransitionListener(ConcurrentLinkedQueue<Transition> undelivered, Report report) {
+            this.undelivered = undelivered;
+            this.report = report;
+        }
+
+        @Override
+        public void notify(AlarmStatus status) {
+            long now = System.nanoTime();
+            if (status == lastDelivered) {
+                //stored again without changing, or changed and back within one frame
+                return;
+            }
+            lastDelivered = status;
+            synchronized (report) {
+                //transitions before the delivered one were folded into it
+                Transition transition;
+                while ((transition = undelivered.poll()) != null) {
+                    if (transition.status == status) {
+                        report.notificationLatency.record(now - transition.dueNanos);
+                        return;
+                    }
+                    report.folded++;
+                }
+            }
+        }
+
+        @Override
+        public void catDetected(boolean catDetected) {
+        }
+
+        @Override
+        public void sensorStatusChanged() {
+        }
+    }
+
+    /**
+     * Image service that answers with the verdict painted into the frame, so replays never
+     * depend on a real classifier.
+     */
+    static final class ScriptedImageService implements FakeImage {
+        static final BufferedImage CAT = frame(true);
+        static final BufferedImage EMPTY = frame(false);
+
+        private static BufferedImage frame(boolean cat) {
+            BufferedImage image = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+            image.setRGB(0, 0, cat ? 0xFFFFFF : 0);
+            return image;
+        }
+
+        @Override
+        public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
+            return (image.getRGB(0, 0) & 0xFFFFFF) != 0;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.udacity.catpoint.benchmark;
+
+import org.openjdk.jmh.annotations.Param;
+
+/**
+ * Every storage, at sensor counts small enough for the ones that rewrite every sensor on each change.
+ */
+public class RepositoryBenchmark extends AbstractRepositoryBenchmark {
+
+    @Param({"PREFERENCES", "PREFERENCES_BINARY", "PREFERENCES_WRITE_BEHIND", "EVENT_LOG"})
+    public Storage storage;
+
+    @Param({"4", "64"})
+    public int sensorCount;
+
+    @Override
+    Storage storage() {
+        return storage;
+    }
+
+    @Override
+    int sensorCount() {
+        return sensorCount;
+    }
+}
@@ -0,0 +1,25 @@
+package com.udacity.catpoint.benchmark;
+
+import org.openjdk.jmh.annotations.Param;
+
+/**
+ * The storages that only write what changed, with many sensors.
+ */
+public class RepositoryScaleBenchmark extends AbstractRepositoryBenchmark {
+
+    @Param({"EVENT_LOG"})
+    public Storage storage;
+
+    @Param({"1000", "10000"})
+    public int sensorCount;
+
+    @Override
+    Storage storage() {
+        return storage;
+    }
+
+    @Override
+    int sensorCount() {
+        return sensorCount;
+    }
+}
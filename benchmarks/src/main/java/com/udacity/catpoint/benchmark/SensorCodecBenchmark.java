@@ -0,0 +1,83 @@
+package com.udacity.catpoint.benchmark;
+
+import com.google.common.reflect.TypeToken;
+import com.google.gson.Gson;
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorCodec;
+import com.udacity.catpoint.security.data.SensorType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding and decoding all sensors with Gson, as the preference repository always did, against
+ * SensorCodec. The encoded size of both is printed once per trial as a "# Size" line.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SensorCodecBenchmark {
+
+    private static final Type SENSOR_SET = new TypeToken<Set<Sensor>>() {
+    }.getType();
+
+    @Param({"1", "100", "1000"})
+    public int sensorCount;
+
+    private final Gson gson = new Gson();
+    private List<Sensor> sensors;
+    private String json;
+    private byte[] binary;
+
+    @Setup
+    public void setUp() {
+        sensors = new ArrayList<>(sensorCount);
+        for (int i = 0; i < sensorCount; i++) {
+            Sensor sensor = new Sensor("sensor " + i, SensorType.values()[i % SensorType.values().length]);
+            sensor.setActive(i % 3 == 0);
+            sensors.add(sensor);
+        }
+        json = gson.toJson(sensors);
+        binary = SensorCodec.encodeSensors(sensors);
+        System.out.printf("# Size: %d sensors take %,d bytes as JSON and %,d bytes as binary%n",
+                sensorCount, json.getBytes(StandardCharsets.UTF_8).length, binary.length);
+    }
+
+    @Benchmark
+    public String gsonEncode() {
+        return gson.toJson(sensors);
+    }
+
+    @Benchmark
+    public Set<Sensor> gsonDecode() {
+        return gson.fromJson(json, SENSOR_SET);
+    }
+
+    @Benchmark
+    public byte[] binaryEncode() {
+        return SensorCodec.encodeSensors(sensors);
+    }
+
+    @Benchmark
+    public List<Sensor> binaryDecode() {
+        return SensorCodec.decodeSensors(binary);
+    }
+}
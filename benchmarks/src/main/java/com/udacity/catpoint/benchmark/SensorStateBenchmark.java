@@ -0,0 +1,137 @@
+package com.udacity.catpoint.benchmark;
+
+import com.udacity.catpoint.image.service.FakeImage;
+import com.udacity.catpoint.security.data.AlarmStatus;
+import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorType;
+import com.udacity.catpoint.security.service.SecurityService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hot paths of the SecurityService state machine as the number of sensors grows. None of them
+ * should get slower with more sensors; if one does, something started scanning all sensors again.
+ *
+ * Throughput and sampled latency (with percentiles) are reported for each benchmark.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SensorStateBenchmark {
+
+    @Param({"4", "100", "1000", "10000", "100000", "1000000"})
+    public int sensorCount;
+
+    private SecurityService securityService;
+    private Sensor[] sensors;
+    private long[] mostSignificant;
+    private long[] leastSignificant;
+    private boolean[] active;
+    private int nextSensor;
+    private boolean armed;
+    private BufferedImage catImage;
+    private BufferedImage emptyImage;
+    private boolean nextImageHasCat;
+
+    @Setup
+    public void setUp() {
+        //deterministic stand-in for the classifier: any image with a bright top left pixel is a cat
+        FakeImage imageService = (image, threshold) -> (image.getRGB(0, 0) & 0xFFFFFF) != 0;
+        securityService = new SecurityService(new InMemorySecurityRepository(), imageService);
+
+        sensors = new Sensor[sensorCount];
+        mostSignificant = new long[sensorCount];
+        leastSignificant = new long[sensorCount];
+        active = new boolean[sensorCount];
+        for (int i = 0; i < sensorCount; i++) {
+            sensors[i] = new Sensor("sensor " + i, SensorType.values()[i % SensorType.values().length]);
+            securityService.addSensor(sensors[i]);
+            mostSignificant[i] = sensors[i].getSensorId().getMostSignificantBits();
+            leastSignificant[i] = sensors[i].getSensorId().getLeastSignificantBits();
+        }
+        securityService.setArmingStatus(ArmingStatus.ARMED_HOME);
+
+        catImage = new BufferedImage(64, 48, BufferedImage.TYPE_INT_RGB);
+        catImage.setRGB(0, 0, 0xFFFFFF);
+        emptyImage = new BufferedImage(64, 48, BufferedImage.TYPE_INT_RGB);
+    }
+
+    @TearDown
+    public void tearDown() {
+        securityService.close();
+    }
+
+    /**
+     * Toggles the sensors round robin. The alarm is reset after every pass, otherwise the system
+     * would sit in ALARM where activations no longer change anything.
+     */
+    @Benchmark
+    public AlarmStatus changeSensorActivationStatus() {
+        Sensor sensor = sensors[nextSensor];
+        if (++nextSensor == sensors.length) {
+            nextSensor = 0;
+            securityService.setAlarmStatus(AlarmStatus.NO_ALARM);
+        }
+        securityService.changeSensorActivationStatus(sensor, !sensor.getActive());
+        return securityService.getAlarmStatus();
+    }
+
+    /**
+     * Same round robin toggling through the id based entry point used by the event server, which
+     * should not allocate at all; compare gc.alloc.rate.norm with the benchmark above.
+     */
+    @Benchmark
+    public AlarmStatus changeSensorActivationStatusById() {
+        int i = nextSensor;
+        if (++nextSensor == sensors.length) {
+            nextSensor = 0;
+            securityService.setAlarmStatus(AlarmStatus.NO_ALARM);
+        }
+        active[i] = !active[i];
+        securityService.changeSensorActivationStatus(mostSignificant[i], leastSignificant[i], active[i]);
+        return securityService.getAlarmStatus();
+    }
+
+    /**
+     * Alternates between armed and disarmed. Before arming, one sensor is activated, which arming
+     * then resets. Arming only visits the active sensors, so the cost must not depend on sensorCount.
+     */
+    @Benchmark
+    public AlarmStatus setArmingStatus() {
+        armed = !armed;
+        if (armed) {
+            Sensor sensor = sensors[nextSensor];
+            nextSensor = (nextSensor + 1) % sensors.length;
+            securityService.changeSensorActivationStatus(sensor, true);
+        }
+        securityService.setArmingStatus(armed ? ArmingStatus.ARMED_AWAY : ArmingStatus.DISARMED);
+        return securityService.getAlarmStatus();
+    }
+
+    /**
+     * Alternates between a cat and an empty frame, so every scan changes the outcome.
+     */
+    @Benchmark
+    public AlarmStatus processImage() {
+        nextImageHasCat = !nextImageHasCat;
+        securityService.processImage(nextImageHasCat ? catImage : emptyImage);
+        return securityService.getAlarmStatus();
+    }
+}
@@ -0,0 +1,112 @@
+package com.udacity.catpoint.benchmark;
+
+import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorType;
+import com.udacity.catpoint.security.service.SecurityService;
+import com.udacity.catpoint.security.service.ShardedSecurityService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Sensor event throughput of many sites spread over worker threads, as the number of workers
+ * grows. Every invocation sends a batch of events round robin over all sites, each toggling one
+ * sensor of an armed site, and waits until all of them were applied, so the score is events
+ * processed per second rather than events queued.
+ *
+ * A single benchmark thread only produces events so fast; add producers with -t to keep more
+ * workers busy, for example -t 4 -p workerCount=1,2,4,8.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ShardedSiteBenchmark {
+
+    private static final int BATCH = 4096;
+    private static final int SENSORS_PER_SITE = 8;
+
+    @Param({"1", "2", "4", "8"})
+    public int workerCount;
+
+    @Param({"1000", "10000"})
+    public int siteCount;
+
+    private ShardedSecurityService sharded;
+    private String[] siteIds;
+    private long[][] mostSignificant;
+    private long[][] leastSignificant;
+
+    @Setup
+    public void setUp() {
+        sharded = new ShardedSecurityService(workerCount, siteId -> new InMemorySecurityRepository(),
+                (image, threshold) -> false);
+        siteIds = new String[siteCount];
+        mostSignificant = new long[siteCount][SENSORS_PER_SITE];
+        leastSignificant = new long[siteCount][SENSORS_PER_SITE];
+        for (int i = 0; i < siteCount; i++) {
+            siteIds[i] = "site-" + i;
+            SecurityService site = sharded.addSite(siteIds[i]);
+            for (int j = 0; j < SENSORS_PER_SITE; j++) {
+                Sensor sensor = new Sensor("sensor " + j, SensorType.values()[j % SensorType.values().length]);
+                site.addSensor(sensor);
+                mostSignificant[i][j] = sensor.getSensorId().getMostSignificantBits();
+                leastSignificant[i][j] = sensor.getSensorId().getLeastSignificantBits();
+            }
+            site.setArmingStatus(ArmingStatus.ARMED_HOME);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        sharded.close();
+    }
+
+    /**
+     * Events of one benchmark thread and how many of them were applied so far.
+     */
+    @State(Scope.Thread)
+    public static class Producer {
+        private final LongAdder applied = new LongAdder();
+        private long sent;
+        private int next;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void sensorEvents(Producer producer) {
+        LongAdder applied = producer.applied;
+        for (int i = 0; i < BATCH; i++) {
+            int n = producer.next++;
+            int site = Math.floorMod(n, siteCount);
+            int sensor = Math.floorMod(n / siteCount, SENSORS_PER_SITE);
+            boolean active = (n / siteCount / SENSORS_PER_SITE & 1) == 0;
+            long msb = mostSignificant[site][sensor];
+            long lsb = leastSignificant[site][sensor];
+            sharded.execute(siteIds[site], service -> {
+                service.changeSensorActivationStatus(msb, lsb, active);
+                applied.increment();
+            });
+        }
+        producer.sent += BATCH;
+        while (applied.sum() < producer.sent) {
+            Thread.onSpinWait();
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.udacity.catpoint.benchmark;
+
+import com.udacity.catpoint.security.data.EventLogSecurityRepositoryImpl;
+import com.udacity.catpoint.security.data.PretendDatabaseSecurityRepositoryImpl;
+import com.udacity.catpoint.security.data.SecurityRepository;
+import com.udacity.catpoint.security.data.SensorFormat;
+import com.udacity.catpoint.security.data.WriteBehindPolicy;
+
+import java.nio.file.Path;
+import java.util.prefs.Preferences;
+
+/**
+ * The SecurityRepository implementations compared by the repository benchmarks. A new implementation
+ * only needs a constant here to be measured against the others.
+ */
+enum Storage {
+    PREFERENCES {
+        @Override
+        SecurityRepository open(Preferences node, Path directory) {
+            return new PretendDatabaseSecurityRepositoryImpl(node, WriteBehindPolicy.WRITE_THROUGH);
+        }
+    },
+    PREFERENCES_BINARY {
+        @Override
+        SecurityRepository open(Preferences node, Path directory) {
+            return new PretendDatabaseSecurityRepositoryImpl(node, WriteBehindPolicy.WRITE_THROUGH, SensorFormat.BINARY);
+        }
+    },
+    PREFERENCES_WRITE_BEHIND {
+        @Override
+        SecurityRepository open(Preferences node, Path directory) {
+            return new PretendDatabaseSecurityRepositoryImpl(node, WriteBehindPolicy.writeBehind(500, 64, false));
+        }
+    },
+    EVENT_LOG {
+        @Override
+        SecurityRepository open(Preferences node, Path directory) {
+            return new EventLogSecurityRepositoryImpl(directory);
+        }
+    };
+
+    /**
+     * Opens the repository on the given scratch storage. Each implementation uses whichever of
+     * the two it needs.
+     */
+    abstract SecurityRepository open(Preferences node, Path directory);
+
+    static void close(SecurityRepository repository) throws Exception {
+        if (repository instanceof AutoCloseable) {
+            ((AutoCloseable) repository).close();
+        }
+    }
+}
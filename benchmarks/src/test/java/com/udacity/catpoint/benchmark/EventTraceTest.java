@@ -0,0 +1,70 @@
+package com.udacity.catpoint.benchmark;
+
+import com.udacity.catpoint.security.data.Sensor;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EventTraceTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void writeAndRead_giveTheSameTrace() throws IOException {
+        EventTrace trace = LoadGenerator.generate(new LoadGenerator.Profile(12, 300, 5, 2, 0.5, 2_000, 500, 3));
+        Path file = directory.resolve("trace.txt");
+        trace.write(file);
+        EventTrace read = EventTrace.read(file);
+
+        assertEquals(trace.getSensors().size(), read.getSensors().size());
+        for (int i = 0; i < trace.getSensors().size(); i++) {
+            Sensor expected = trace.getSensors().get(i);
+            Sensor actual = read.getSensors().get(i);
+            assertEquals(expected.getSensorId(), actual.getSensorId());
+            assertEquals(expected.getSensorType(), actual.getSensorType());
+            assertEquals(expected.getName(), actual.getName());
+        }
+        assertEquals(trace.getEvents().size(), read.getEvents().size());
+        for (int i = 0; i < trace.getEvents().size(); i++) {
+            EventTrace.Event expected = trace.getEvents().get(i);
+            EventTrace.Event actual = read.getEvents().get(i);
+            assertEquals(expected.micros, actual.micros);
+            assertEquals(expected.kind, actual.kind);
+            assertEquals(expected.sensor, actual.sensor);
+        }
+        assertEquals(trace.getDurationMicros(), read.getDurationMicros());
+    }
+
+    @Test
+    public void handWrittenTrace_isRead_andBrokenLinesAreNamed() throws IOException {
+        Path file = directory.resolve("trace.txt");
+        Files.write(file, List.of(EventTrace.HEADER,
+                "sensor 00000000-0000-0001-0000-000000000002 DOOR front door",
+                "# comments and blank lines are skipped",
+                "",
+                "0 ARM_AWAY",
+                "1250 ACTIVATE 0",
+                "40000 CAT_FRAME"), StandardCharsets.UTF_8);
+
+        EventTrace trace = EventTrace.read(file);
+        assertEquals("front door", trace.getSensors().get(0).getName());
+        assertEquals(3, trace.getEvents().size());
+        assertEquals(0, trace.getEvents().get(1).sensor);
+        assertEquals(40_000, trace.getDurationMicros());
+
+        Files.write(file, List.of(EventTrace.HEADER, "0 ARM_AWAY", "10 ACTIVATE"), StandardCharsets.UTF_8);
+        IllegalArgumentException broken = assertThrows(IllegalArgumentException.class, () -> EventTrace.read(file));
+        assertTrue(broken.getMessage().contains("line 3"), broken.getMessage());
+
+        Files.write(file, List.of(EventTrace.HEADER, "10 ARM_AWAY", "0 DISARM"), StandardCharsets.UTF_8);
+        assertThrows(IllegalArgumentException.class, () -> EventTrace.read(file));
+    }
+}
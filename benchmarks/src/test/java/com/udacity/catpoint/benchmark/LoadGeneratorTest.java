@@ -0,0 +1,70 @@
+package com.udacity.catpoint.benchmark;
+
+import com.udacity.catpoint.security.data.Sensor;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LoadGeneratorTest {
+
+    private static LoadGenerator.Profile profile(long seed) {
+        return new LoadGenerator.Profile(20, 500, 10, 4, 0.2, 4_000, 1_000, seed);
+    }
+
+    /**
+     * @return everything in the trace, one line per sensor and event
+     */
+    private static List<String> lines(EventTrace trace) {
+        List<String> lines = new ArrayList<>();
+        for (Sensor sensor : trace.getSensors()) {
+            lines.add(sensor.getSensorId() + " " + sensor.getSensorType() + " " + sensor.getName());
+        }
+        for (EventTrace.Event event : trace.getEvents()) {
+            lines.add(event.micros + " " + event.kind + " " + event.sensor);
+        }
+        return lines;
+    }
+
+    @Test
+    public void sameProfile_givesTheSameTrace() {
+        assertEquals(lines(LoadGenerator.generate(profile(7))), lines(LoadGenerator.generate(profile(7))));
+        assertNotEquals(lines(LoadGenerator.generate(profile(7))), lines(LoadGenerator.generate(profile(8))));
+    }
+
+    @Test
+    public void trace_followsTheProfile() {
+        EventTrace trace = LoadGenerator.generate(profile(7));
+
+        assertEquals(20, trace.getSensors().size());
+        long sensorEvents = trace.getEvents().stream().filter(event -> event.kind.hasSensor()).count();
+        long frames = trace.getEvents().stream()
+                .filter(event -> event.kind == EventTrace.Kind.CAT_FRAME || event.kind == EventTrace.Kind.EMPTY_FRAME)
+                .count();
+        long arming = trace.getEvents().stream().filter(event -> event.kind == EventTrace.Kind.ARM_HOME
+                || event.kind == EventTrace.Kind.ARM_AWAY).count();
+        //500 events/s over 4 s, give or take the randomness of a few hundred bursts
+        assertTrue(sensorEvents > 1_200 && sensorEvents < 2_800, "sensor events " + sensorEvents);
+        assertEquals(40, frames);
+        assertEquals(5, arming);
+        assertEquals(EventTrace.Kind.ARM_HOME, trace.getEvents().get(0).kind);
+        assertTrue(trace.getDurationMicros() <= 4_000_000);
+    }
+
+    @Test
+    public void sensorEvents_alternatePerSensor_andStartOverAfterArming() {
+        EventTrace trace = LoadGenerator.generate(profile(7));
+
+        boolean[] active = new boolean[trace.getSensors().size()];
+        for (EventTrace.Event event : trace.getEvents()) {
+            if (event.kind == EventTrace.Kind.ARM_HOME || event.kind == EventTrace.Kind.ARM_AWAY) {
+                active = new boolean[active.length];
+            } else if (event.kind.hasSensor()) {
+                assertEquals(event.kind == EventTrace.Kind.DEACTIVATE, active[event.sensor], "event at " + event.micros);
+                active[event.sensor] = !active[event.sensor];
+            }
+        }
+    }
+}
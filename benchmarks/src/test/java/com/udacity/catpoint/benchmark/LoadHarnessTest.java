@@ -0,0 +1,36 @@
+package com.udacity.catpoint.benchmark;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LoadHarnessTest {
+
+    private static final EventTrace TRACE = LoadGenerator.generate(
+            new LoadGenerator.Profile(50, 2_000, 20, 3, 0.2, 3_000, 700, 11));
+
+    @Test
+    public void replays_endInTheSameState() throws InterruptedException {
+        LoadHarness.Report first = LoadHarness.replay(TRACE, 0, 0);
+        LoadHarness.Report second = LoadHarness.replay(TRACE, 0, 0);
+
+        assertEquals(TRACE.getEvents().size(), first.events);
+        assertEquals(first.events, second.events);
+        assertEquals(first.sensorEvents, second.sensorEvents);
+        assertEquals(first.sensorWrites, second.sensorWrites);
+        assertEquals(first.transitions, second.transitions);
+        assertEquals(first.finalAlarmStatus, second.finalAlarmStatus);
+        assertEquals(first.finalArmingStatus, second.finalArmingStatus);
+        assertEquals(first.finalActiveSensors, second.finalActiveSensors);
+        assertTrue(first.transitions > 0);
+    }
+
+    @Test
+    public void withoutDebouncing_everySensorEventIsWritten() throws InterruptedException {
+        LoadHarness.Report report = LoadHarness.replay(TRACE, 0, 0);
+
+        assertTrue(report.sensorEvents > 0);
+        assertTrue(report.sensorWrites >= report.sensorEvents);
+        assertEquals(report.transitions, report.decisionLatency.snapshot().getCount());
+    }
+}
@@ -0,0 +1,68 @@
+package com.udacity.catpoint.image.service;
+
+/**
+ * Limit on concurrent requests that adapts to how the service behind it copes, additive increase
+ * and multiplicative decrease: every request that succeeds while the limit is in use raises the
+ * limit by about one per limit's worth of requests, and every failure or timeout, taken as a sign
+ * of overload, cuts it by a tenth. The limit stays between minLimit and maxLimit.
+ */
+public class AdaptiveConcurrencyLimit {
+
+    private static final double BACKOFF = 0.9;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private double limit;
+    private int inFlight;
+
+    public AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit) {
+        if (minLimit < 1 || initialLimit < minLimit || maxLimit < initialLimit) {
+            throw new IllegalArgumentException("Invalid concurrency limits");
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.limit = initialLimit;
+    }
+
+    /**
+     * @return true if the request may start; it must then be ended with {@link #release}
+     */
+    public synchronized boolean tryAcquire() {
+        if (inFlight >= (int) limit) {
+            return false;
+        }
+        inFlight++;
+        return true;
+    }
+
+    /**
+     * Ends a request started with {@link #tryAcquire}.
+     * @param dropped true if it failed or timed out, false if it succeeded or was abandoned
+     */
+    public synchronized void release(boolean dropped) {
+        //only a limit that was actually reached says something about the service
+        boolean limitInUse = inFlight * 2 >= limit;
+        inFlight--;
+        if (dropped) {
+            limit = Math.max(minLimit, limit * BACKOFF);
+        } else if (limitInUse) {
+            limit = Math.min(maxLimit, limit + 1 / limit);
+        }
+    }
+
+    /**
+     * Returns a permit without adjusting the limit, for a permit that was never used for a call or
+     * whose call is already accounted for by another one.
+     */
+    public synchronized void giveBack() {
+        inFlight--;
+    }
+
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+}
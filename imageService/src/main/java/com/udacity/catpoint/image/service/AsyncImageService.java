@@ -0,0 +1,184 @@
+package com.udacity.catpoint.image.service;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Non-blocking front for any {@link FakeImage}. Each request returns a CompletableFuture right away
+ * and is classified on a background thread, so slow services like AwsImageService never hold up
+ * the caller.
+ *
+ * Up to maxInFlight requests are classified at the same time; further requests wait in a queue and
+ * are started as soon as a slot frees up. If the queue is full the oldest waiting request is
+ * cancelled, since a newer camera frame makes it obsolete anyway. Every request that has not
+ * finished within the timeout fails with a TimeoutException and its classification is interrupted.
+ * Cancelling a returned future also interrupts the classification behind it.
+ */
+public class AsyncImageService implements AutoCloseable {
+
+    public static final int DEFAULT_MAX_IN_FLIGHT = 4;
+    public static final int DEFAULT_MAX_QUEUED = 16;
+    public static final long DEFAULT_TIMEOUT_MILLIS = 10_000;
+
+    private final FakeImage delegate;
+    private final int maxInFlight;
+    private final int maxQueued;
+    private final long timeoutMillis;
+    private final ExecutorService executor;
+
+    private final Deque<Request> queued = new ArrayDeque<>();
+    private int inFlight;
+
+    public AsyncImageService(FakeImage delegate) {
+        this(delegate, DEFAULT_MAX_IN_FLIGHT, DEFAULT_MAX_QUEUED, DEFAULT_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * @param delegate The blocking image service doing the actual work
+     * @param maxInFlight Maximum number of images classified at the same time
+     * @param maxQueued Maximum number of images waiting for a free slot
+     * @param timeoutMillis Time after which a request fails, counted from submission
+     */
+    public AsyncImageService(FakeImage delegate, int maxInFlight, int maxQueued, long timeoutMillis) {
+        if (maxInFlight <= 0 || maxQueued < 0 || timeoutMillis <= 0) {
+            throw new IllegalArgumentException("Invalid async image service limits");
+        }
+        this.delegate = delegate;
+        this.maxInFlight = maxInFlight;
+        this.maxQueued = maxQueued;
+        this.timeoutMillis = timeoutMillis;
+
+        //threads are only started once there is work for them
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(maxInFlight, maxInFlight, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+            Thread t = new Thread(r, "image-analysis-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        ((ThreadPoolExecutor) executor).allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Queues the image for classification.
+     * @param image Image to scan
+     * @param confidenceThreshhold Minimum threshhold to consider for cat
+     * @return future completing with true if the image contains a cat
+     */
+    public CompletableFuture<Boolean> imageContainsCat(BufferedImage image, float confidenceThreshhold) {
+        Request request = new Request(image, confidenceThreshhold);
+        request.result.orTimeout(timeoutMillis, TimeUnit.MILLISECONDS);
+        request.result.whenComplete((cat, e) -> finished(request, e));
+
+        Request dropped = null;
+        synchronized (this) {
+            if (executor.isShutdown()) {
+                request.result.completeExceptionally(new CancellationException("Image service closed"));
+                return request.result;
+            }
+            if (!request.result.isDone()) {
+                queued.addLast(request);
+                dispatch();
+                if (queued.size() > maxQueued) {
+                    dropped = queued.pollFirst();
+                }
+            }
+        }
+        if (dropped != null) {
+            dropped.result.completeExceptionally(new CancellationException("Superseded by a newer image"));
+        }
+        return request.result;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    public synchronized int getQueued() {
+        return queued.size();
+    }
+
+    /**
+     * Cancels all waiting requests and interrupts the ones in flight.
+     */
+    @Override
+    public void close() {
+        Request[] waiting;
+        synchronized (this) {
+            executor.shutdownNow();
+            waiting = queued.toArray(new Request[0]);
+            queued.clear();
+        }
+        for (Request request : waiting) {
+            request.result.completeExceptionally(new CancellationException("Image service closed"));
+        }
+    }
+
+    /**
+     * Starts queued requests while there are free slots.
+     */
+    private void dispatch() {
+        synchronized (this) {
+            while (inFlight < maxInFlight && !queued.isEmpty() && !executor.isShutdown()) {
+                Request request = queued.pollFirst();
+                if (request.result.isDone()) {
+                    continue; //cancelled or timed out while waiting
+                }
+                inFlight++;
+                request.started = true;
+                request.task = executor.submit(() -> classify(request));
+            }
+        }
+    }
+
+    private void classify(Request request) {
+        try {
+            request.result.complete(delegate.imageContainsCat(request.image, request.confidenceThreshhold));
+        } catch (RuntimeException e) {
+            request.result.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Runs exactly once per request, however it ended, and frees its slot or queue position.
+     */
+    private void finished(Request request, Throwable failure) {
+        Future<?> task;
+        synchronized (this) {
+            if (!request.started) {
+                queued.remove(request);
+                return;
+            }
+            inFlight--;
+            task = request.task;
+        }
+        if (failure instanceof TimeoutException || failure instanceof CancellationException) {
+            //timed out or cancelled by the caller, stop the classification if it is still running
+            task.cancel(true);
+        }
+        dispatch();
+    }
+
+    private static class Request {
+        private final BufferedImage image;
+        private final float confidenceThreshhold;
+        private final CompletableFuture<Boolean> result = new CompletableFuture<>();
+        private boolean started;
+        private Future<?> task;
+
+        private Request(BufferedImage image, float confidenceThreshhold) {
+            this.image = image;
+            this.confidenceThreshhold = confidenceThreshhold;
+        }
+    }
+}
@@ -6,17 +6,19 @@ import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
 import software.amazon.awssdk.auth.credentials.AwsCredentials;
 import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
 import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.core.client.config.ClientOverrideConfiguration;
+import software.amazon.awssdk.core.retry.RetryPolicy;
 import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.services.rekognition.RekognitionClient;
 import software.amazon.awssdk.services.rekognition.model.DetectLabelsRequest;
 import software.amazon.awssdk.services.rekognition.model.DetectLabelsResponse;
 import software.amazon.awssdk.services.rekognition.model.Image;
 
-import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.URI;
+import java.time.Duration;
 import java.util.Properties;
 import java.util.stream.Collectors;
 
@@ -32,9 +34,18 @@ import java.util.stream.Collectors;
  *      aws.id=[your access key id]
  *      aws.secret=[your Secret access key]
  *      aws.region=[an aws region of choice. For example: us-east-2]
+ *      aws.endpoint=[optional, for example http://localhost:4566 to use a local stub server instead of AWS]
+ *
+ * Calls give up after API_CALL_TIMEOUT with at most MAX_RETRIES retries. Without a configuration
+ * every call fails with an IllegalStateException. Wrap this service in a ResilientImageService to
+ * rate limit it and to fall back to a local classifier when it fails.
  */
 public class AwsImageService implements FakeImage{
 
+    public static final Duration API_CALL_TIMEOUT = Duration.ofSeconds(10);
+    public static final Duration API_CALL_ATTEMPT_TIMEOUT = Duration.ofSeconds(4);
+    public static final int MAX_RETRIES = 1;
+
     private Logger log = LoggerFactory.getLogger(AwsImageService.class);
 
     //aws recommendation is to maintain only a single instance of client objects
@@ -43,6 +54,10 @@ public class AwsImageService implements FakeImage{
     public AwsImageService() {
         Properties props = new Properties();
         try (InputStream is = getClass().getClassLoader().getResourceAsStream("config.properties")) {
+            if (is == null) {
+                log.error("Unable to initialize AWS Rekognition, no properties file found");
+                return;
+            }
             props.load(is);
         } catch (IOException ioe ) {
             log.error("Unable to initialize AWS Rekognition, no properties file found", ioe);
@@ -53,11 +68,26 @@ public class AwsImageService implements FakeImage{
         String awsSecret = props.getProperty("aws.secret");
         String awsRegion = props.getProperty("aws.region");
 
+        String awsEndpoint = props.getProperty("aws.endpoint");
+        if (awsId == null || awsSecret == null || awsRegion == null) {
+            log.error("Unable to initialize AWS Rekognition, aws.id, aws.secret and aws.region are required");
+            return;
+        }
+
         AwsCredentials awsCredentials = AwsBasicCredentials.create(awsId, awsSecret);
-        rekognitionClient = RekognitionClient.builder()
+        ClientOverrideConfiguration limits = ClientOverrideConfiguration.builder()
+                .apiCallTimeout(API_CALL_TIMEOUT)
+                .apiCallAttemptTimeout(API_CALL_ATTEMPT_TIMEOUT)
+                .retryPolicy(RetryPolicy.builder().numRetries(MAX_RETRIES).build())
+                .build();
+        var builder = RekognitionClient.builder()
                 .credentialsProvider(StaticCredentialsProvider.create(awsCredentials))
                 .region(Region.of(awsRegion))
-                .build();
+                .overrideConfiguration(limits);
+        if (awsEndpoint != null) {
+            builder.endpointOverride(URI.create(awsEndpoint));
+        }
+        rekognitionClient = builder.build();
     }
 
     /**
@@ -68,10 +98,13 @@ public class AwsImageService implements FakeImage{
      */
     @Override
     public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
+        if (rekognitionClient == null) {
+            throw new IllegalStateException("AWS Rekognition is not configured, see config.properties");
+        }
         Image awsImage = null;
-        try (ByteArrayOutputStream os = new ByteArrayOutputStream()) {
-            ImageIO.write(image, "jpg", os);
-            awsImage = Image.builder().bytes(SdkBytes.fromByteArray(os.toByteArray())).build();
+        try {
+            //the encoder hands over a fresh array, so the SDK can use it without copying it again
+            awsImage = Image.builder().bytes(SdkBytes.fromByteArrayUnsafe(JpegFrameEncoder.encode(image))).build();
         } catch (IOException ioe) {
             log.error("Error building image byte array", ioe);
             return false;
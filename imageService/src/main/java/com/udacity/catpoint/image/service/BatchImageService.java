@@ -0,0 +1,157 @@
+package com.udacity.catpoint.image.service;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Classifies a burst of camera frames in parallel and reduces the per-frame verdicts to one
+ * decision for the whole burst, see {@link BurstDecision}.
+ *
+ * A frame whose classification fails counts as not containing a cat. Only if every frame fails is
+ * the failure passed on to the caller.
+ */
+public class BatchImageService implements AutoCloseable {
+
+    public static final int DEFAULT_PARALLELISM = 8;
+
+    private final FakeImage delegate;
+    private final ExecutorService executor;
+    private final BurstDecision defaultDecision;
+    private final boolean ownsExecutor;
+
+    public BatchImageService(FakeImage delegate) {
+        this(delegate, newDefaultExecutor(), BurstDecision.FIRST_HIT, true);
+    }
+
+    /**
+     * @param delegate The image service classifying single frames
+     * @param executor Executor the frames of a burst are fanned out to, left running by close()
+     * @param defaultDecision Decision used when none is passed to imageContainsCat
+     */
+    public BatchImageService(FakeImage delegate, ExecutorService executor, BurstDecision defaultDecision) {
+        this(delegate, executor, defaultDecision, false);
+    }
+
+    private BatchImageService(FakeImage delegate, ExecutorService executor, BurstDecision defaultDecision,
+                              boolean ownsExecutor) {
+        this.delegate = delegate;
+        this.executor = executor;
+        this.defaultDecision = defaultDecision;
+        this.ownsExecutor = ownsExecutor;
+    }
+
+    /**
+     * Returns true if the burst contains a cat according to the default decision.
+     * @param images Frames of the burst
+     * @param confidenceThreshhold Minimum threshhold to consider for cat
+     */
+    public boolean imageContainsCat(List<BufferedImage> images, float confidenceThreshhold) {
+        return imageContainsCat(images, confidenceThreshhold, defaultDecision);
+    }
+
+    /**
+     * Returns true if the burst contains a cat according to the given decision. Blocks until the
+     * decision is known; frames still being classified at that point are cancelled.
+     * @param images Frames of the burst
+     * @param confidenceThreshhold Minimum threshhold to consider for cat
+     * @param decision How the per-frame verdicts are combined
+     */
+    public boolean imageContainsCat(List<BufferedImage> images, float confidenceThreshhold, BurstDecision decision) {
+        if (images.isEmpty()) {
+            return false;
+        }
+        CompletionService<Boolean> completionService = new ExecutorCompletionService<>(executor);
+        List<Future<Boolean>> frames = new ArrayList<>(images.size());
+        for (BufferedImage image : images) {
+            frames.add(completionService.submit(() -> delegate.imageContainsCat(image, confidenceThreshhold)));
+        }
+
+        int total = images.size();
+        int cats = 0;
+        int noCats = 0;
+        int failures = 0;
+        ExecutionException firstFailure = null;
+        try {
+            for (int done = 0; done < total; done++) {
+                try {
+                    if (completionService.take().get()) {
+                        cats++;
+                    } else {
+                        noCats++;
+                    }
+                } catch (ExecutionException e) {
+                    noCats++;
+                    failures++;
+                    if (firstFailure == null) {
+                        firstFailure = e;
+                    }
+                }
+
+                Boolean settled = settled(decision, cats, noCats, total);
+                if (settled != null) {
+                    if (failures < cats + noCats) {
+                        return settled;
+                    }
+                    //failures alone never settle a burst, a later frame may still get an answer
+                    if (failures == total) {
+                        throw new IllegalStateException("Unable to classify any frame of the burst", firstFailure.getCause());
+                    }
+                }
+            }
+            //every decision settles once all frames are in
+            throw new AssertionError("Burst decision not settled");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            for (Future<Boolean> frame : frames) {
+                frame.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Interrupts bursts being classified and stops the executor, unless it was passed in, in which
+     * case it is left to its owner.
+     */
+    @Override
+    public void close() {
+        if (ownsExecutor) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * @return the decision for the burst if the verdicts so far already determine it, otherwise null
+     */
+    private static Boolean settled(BurstDecision decision, int cats, int noCats, int total) {
+        boolean allIn = cats + noCats == total;
+        return switch (decision) {
+            case FIRST_HIT -> cats > 0 ? Boolean.TRUE : allIn ? Boolean.FALSE : null;
+            case MAJORITY -> cats * 2 > total ? Boolean.TRUE : noCats * 2 >= total ? Boolean.FALSE : null;
+            case ANY_CAT -> allIn ? Boolean.valueOf(cats > 0) : null;
+        };
+    }
+
+    private static ExecutorService newDefaultExecutor() {
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(DEFAULT_PARALLELISM, DEFAULT_PARALLELISM,
+                60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread t = new Thread(r, "burst-analysis-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+}
@@ -0,0 +1,13 @@
+package com.udacity.catpoint.image.service;
+
+/**
+ * How the per-frame verdicts of a camera burst are reduced to a single answer.
+ */
+public enum BurstDecision {
+    /** A cat in any frame counts, but every frame is classified. */
+    ANY_CAT,
+    /** More than half of the frames must contain a cat. Stops once the outcome can no longer change. */
+    MAJORITY,
+    /** The first frame found to contain a cat settles it, and the remaining frames are cancelled. */
+    FIRST_HIT
+}
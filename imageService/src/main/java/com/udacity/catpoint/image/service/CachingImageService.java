@@ -0,0 +1,212 @@
+package com.udacity.catpoint.image.service;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.Raster;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Image service decorator that remembers verdicts by image content. The key is a 64 bit hash of
+ * the pixel data plus the confidence threshold, so scanning the same scene again is answered
+ * without calling the wrapped service at all.
+ *
+ * Entries expire after a fixed time to live, and the least recently used entry is evicted once
+ * the cache is full. Two threads missing on the same image at the same time may both call the
+ * wrapped service; the later answer simply replaces the earlier one.
+ */
+public class CachingImageService implements FakeImage {
+
+    public static final int DEFAULT_MAX_ENTRIES = 256;
+    public static final long DEFAULT_TTL_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    private static final long PRIME = 0x9E3779B97F4A7C15L;
+
+    private final FakeImage delegate;
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final LongSupplier clock;
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public CachingImageService(FakeImage delegate) {
+        this(delegate, DEFAULT_MAX_ENTRIES, DEFAULT_TTL_MILLIS);
+    }
+
+    public CachingImageService(FakeImage delegate, int maxEntries, long ttlMillis) {
+        this(delegate, maxEntries, ttlMillis, System::nanoTime);
+    }
+
+    CachingImageService(FakeImage delegate, int maxEntries, long ttlMillis, LongSupplier clock) {
+        if (maxEntries <= 0 || ttlMillis <= 0) {
+            throw new IllegalArgumentException("Cache size and time to live must be positive");
+        }
+        this.delegate = delegate;
+        this.maxEntries = maxEntries;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.clock = clock;
+    }
+
+    @Override
+    public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
+        if (image == null) {
+            return delegate.imageContainsCat(null, confidenceThreshhold);
+        }
+        Key key = new Key(contentHash(image), confidenceThreshhold);
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null && clock.getAsLong() - entry.createdAt < ttlNanos) {
+                hits++;
+                return entry.cat;
+            }
+            if (entry != null) {
+                entries.remove(key);
+                evictions++;
+            }
+            misses++;
+        }
+
+        boolean cat = delegate.imageContainsCat(image, confidenceThreshhold);
+        synchronized (this) {
+            entries.put(key, new Entry(cat, clock.getAsLong()));
+            evictExpiredAndOverflow();
+        }
+        return cat;
+    }
+
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    public synchronized long getEvictionCount() {
+        return evictions;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Drops the least recently used entries while over capacity, and any expired ones found at the
+     * old end of the access order on the way.
+     */
+    private void evictExpiredAndOverflow() {
+        long now = clock.getAsLong();
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (eldest.hasNext()) {
+            Entry entry = eldest.next();
+            if (entries.size() <= maxEntries && now - entry.createdAt < ttlNanos) {
+                break;
+            }
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     * Hashes the pixels of the image. Works directly on the backing array for the common
+     * int and byte rasters that hold colours directly, and falls back to reading RGB rows for everything else.
+     */
+    static long contentHash(BufferedImage image) {
+        long h = PRIME * (image.getWidth() * 31L + image.getHeight()) + image.getType();
+        Raster raster = image.getRaster();
+        DataBuffer buffer = raster.getDataBuffer();
+        boolean wholeBuffer = raster.getParent() == null && buffer.getNumBanks() == 1
+                && raster.getSampleModelTranslateX() == 0 && raster.getSampleModelTranslateY() == 0;
+        //only types whose samples are the colours themselves; palette indices or custom colour models
+        // go through getRGB, otherwise two images with the same indices but different palettes would match
+        int type = image.getType();
+
+        if (wholeBuffer && buffer instanceof DataBufferInt && (type == BufferedImage.TYPE_INT_RGB
+                || type == BufferedImage.TYPE_INT_ARGB || type == BufferedImage.TYPE_INT_ARGB_PRE || type == BufferedImage.TYPE_INT_BGR)) {
+            int[] data = ((DataBufferInt) buffer).getData();
+            for (int i = 0; i < data.length; i++) {
+                h = mix(h, data[i]);
+            }
+            return finish(h);
+        }
+        if (wholeBuffer && buffer instanceof DataBufferByte && (type == BufferedImage.TYPE_BYTE_GRAY
+                || type == BufferedImage.TYPE_3BYTE_BGR || type == BufferedImage.TYPE_4BYTE_ABGR || type == BufferedImage.TYPE_4BYTE_ABGR_PRE)) {
+            byte[] data = ((DataBufferByte) buffer).getData();
+            int i = 0;
+            //four bytes per round keeps the loop about as fast as the int case
+            for (; i + 3 < data.length; i += 4) {
+                h = mix(h, (data[i] & 0xFF) | (data[i + 1] & 0xFF) << 8 | (data[i + 2] & 0xFF) << 16 | data[i + 3] << 24);
+            }
+            for (; i < data.length; i++) {
+                h = mix(h, data[i]);
+            }
+            return finish(h);
+        }
+
+        int width = image.getWidth();
+        int[] row = new int[width];
+        for (int y = 0; y < image.getHeight(); y++) {
+            image.getRGB(0, y, width, 1, row, 0, width);
+            for (int x = 0; x < width; x++) {
+                h = mix(h, row[x]);
+            }
+        }
+        return finish(h);
+    }
+
+    private static long mix(long h, int value) {
+        return Long.rotateLeft(h ^ (value * PRIME), 27) * PRIME + 0x52DCE729L;
+    }
+
+    private static long finish(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static final class Key {
+        private final long contentHash;
+        private final float confidenceThreshhold;
+
+        private Key(long contentHash, float confidenceThreshhold) {
+            this.contentHash = contentHash;
+            this.confidenceThreshhold = confidenceThreshhold;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return contentHash == key.contentHash
+                    && Float.compare(confidenceThreshhold, key.confidenceThreshhold) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Long.hashCode(contentHash) + Float.hashCode(confidenceThreshhold);
+        }
+    }
+
+    private static final class Entry {
+        private final boolean cat;
+        private final long createdAt;
+
+        private Entry(boolean cat, long createdAt) {
+            this.cat = cat;
+            this.createdAt = createdAt;
+        }
+    }
+}
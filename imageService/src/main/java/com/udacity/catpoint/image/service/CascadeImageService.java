@@ -0,0 +1,191 @@
+package com.udacity.catpoint.image.service;
+
+import java.awt.image.BufferedImage;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Image service that runs frames through a chain of cheap stages and only escalates the frames
+ * every stage lets through to an expensive final classifier, such as AwsImageService behind a
+ * ResilientImageService. Most frames show an empty, unchanged scene, so the final classifier
+ * typically sees only a small fraction of them.
+ *
+ * Every stage is a FakeImage called with its own fixed threshold; the final classifier gets the
+ * threshold of the caller. A stage rejecting a frame answers it in one of two ways:
+ * - a {@link Stage#candidates candidate} stage, for example a LocalImageService, rejects frames
+ *   that do not contain a cat, so the answer is false,
+ * - a {@link Stage#changes change} stage, for example a MotionDetector, rejects frames that look
+ *   like the last one it let through, so the answer is the one that frame got. Without this, a cat
+ *   sitting still would stop being seen. A change stage only has an answer to give once a frame
+ *   it let through has been answered; until then, for example after a later stage failed, it
+ *   lets every frame through.
+ *
+ * Change stages remember the last frame they let through and its answer, so a cascade follows a
+ * single feed: frames of two cameras would count as changes against each other and get each
+ * other's answers. Give every camera its own cascade, with its own stages and MotionDetector; a
+ * stage can only be part of one cascade.
+ *
+ * Every stage counts the frames it looked at and let through; together with the number of
+ * escalated frames that shows where frames are dropped and how much load reaches the end.
+ */
+public class CascadeImageService implements FakeImage {
+
+    private final List<Stage> stages;
+    private final FakeImage finalStage;
+    private final LongAdder frames = new LongAdder();
+    private final LongAdder escalated = new LongAdder();
+
+    /**
+     * @param stages Cheap stages in the order they run, not part of any other cascade
+     * @param finalStage The expensive classifier deciding the frames all stages let through
+     */
+    public CascadeImageService(List<Stage> stages, FakeImage finalStage) {
+        for (Stage stage : stages) {
+            if (!stage.inCascade.compareAndSet(false, true)) {
+                throw new IllegalArgumentException("Stage " + stage.name + " is already part of a cascade");
+            }
+        }
+        this.stages = List.copyOf(stages);
+        this.finalStage = finalStage;
+    }
+
+    @Override
+    public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
+        frames.increment();
+        if (image == null) {
+            escalated.increment();
+            return finalStage.imageContainsCat(null, confidenceThreshhold);
+        }
+        int passed = 0;
+        Boolean cat = null;
+        try {
+            for (; passed < stages.size(); passed++) {
+                Stage stage = stages.get(passed);
+                stage.evaluated.increment();
+                if (!stage.filter.imageContainsCat(image, stage.threshold)) {
+                    cat = stage.unchangedOnReject ? stage.lastAnswer() : Boolean.FALSE;
+                    if (cat != null) {
+                        break;
+                    }
+                }
+                stage.passed.increment();
+            }
+            if (cat == null) {
+                escalated.increment();
+                cat = finalStage.imageContainsCat(image, confidenceThreshhold);
+            }
+        } catch (RuntimeException e) {
+            //the stages that let the frame through already took it as their reference, but have no answer for it
+            for (int i = 0; i < passed; i++) {
+                stages.get(i).forget();
+            }
+            throw e;
+        }
+        //the stages that let the frame through remember its answer for the frames like it
+        for (int i = 0; i < passed; i++) {
+            stages.get(i).answer(cat);
+        }
+        return cat;
+    }
+
+    public List<Stage> getStages() {
+        return stages;
+    }
+
+    public long getFrameCount() {
+        return frames.sum();
+    }
+
+    /**
+     * @return number of frames that went through every stage to the final classifier
+     */
+    public long getEscalatedCount() {
+        return escalated.sum();
+    }
+
+    /**
+     * @return share of frames that reached the final classifier, between 0 and 1
+     */
+    public double getEscalationRate() {
+        long total = frames.sum();
+        return total == 0 ? 0 : (double) escalated.sum() / total;
+    }
+
+    /**
+     * One cheap step of the cascade.
+     */
+    public static final class Stage {
+        private final String name;
+        private final FakeImage filter;
+        private final float threshold;
+        private final boolean unchangedOnReject;
+        private final LongAdder evaluated = new LongAdder();
+        private final LongAdder passed = new LongAdder();
+        private final AtomicBoolean inCascade = new AtomicBoolean();
+        //guarded by this, so an answer is never seen without its flag or the other way round
+        private boolean lastAnswer;
+        private boolean answered;
+
+        private Stage(String name, FakeImage filter, float threshold, boolean unchangedOnReject) {
+            this.name = name;
+            this.filter = filter;
+            this.threshold = threshold;
+            this.unchangedOnReject = unchangedOnReject;
+        }
+
+        /**
+         * Stage letting through frames that may contain a cat; the rest contain none.
+         */
+        public static Stage candidates(String name, FakeImage filter, float threshold) {
+            return new Stage(name, filter, threshold, false);
+        }
+
+        /**
+         * Stage letting through frames that changed; the rest get the answer of the last frame let through.
+         */
+        public static Stage changes(String name, FakeImage filter, float threshold) {
+            return new Stage(name, filter, threshold, true);
+        }
+
+        /**
+         * @return the answer of the last frame let through, null if it has none
+         */
+        private synchronized Boolean lastAnswer() {
+            return answered ? lastAnswer : null;
+        }
+
+        private synchronized void answer(boolean cat) {
+            lastAnswer = cat;
+            answered = true;
+        }
+
+        private synchronized void forget() {
+            answered = false;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public float getThreshold() {
+            return threshold;
+        }
+
+        public long getEvaluatedCount() {
+            return evaluated.sum();
+        }
+
+        public long getPassedCount() {
+            return passed.sum();
+        }
+
+        /**
+         * @return share of the frames this stage looked at that it let through, between 0 and 1
+         */
+        public double getPassRate() {
+            long total = evaluated.sum();
+            return total == 0 ? 0 : (double) passed.sum() / total;
+        }
+    }
+}
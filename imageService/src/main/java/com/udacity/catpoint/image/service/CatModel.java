@@ -0,0 +1,171 @@
+package com.udacity.catpoint.image.service;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Weights of the small convolutional network run by {@link LocalImageService}.
+ *
+ * The network takes a square grayscale frame of inputSize pixels on a side, normalized to zero
+ * mean and unit variance, and runs it through:
+ * - filterCount 3x3 convolutions without padding, each followed by a ReLU,
+ * - 2x2 average pooling, giving filterCount maps of poolSize pixels on a side,
+ * - one fully connected output, read as the logit of the frame containing a cat.
+ * That is small enough to evaluate in well under a millisecond on one core.
+ *
+ * The binary format, all big endian: int MAGIC, int VERSION, int inputSize, int filterCount,
+ * the 9 weights of each filter row by row, the filter biases, the dense weights ordered by
+ * filter, row and column, and the dense bias, all as floats.
+ */
+public final class CatModel {
+
+    public static final int MAGIC = 0x4341544D;
+    public static final int VERSION = 1;
+    public static final int KERNEL_SIZE = 3;
+
+    private final int inputSize;
+    private final int filterCount;
+    private final int poolSize;
+    private final float[] filters;
+    private final float[] filterBiases;
+    private final float[] weights;
+    private final float bias;
+
+    /**
+     * @param inputSize Side of the square input in pixels, even and at least 4
+     * @param filters The 3x3 filters one after another, 9 weights each, row by row
+     * @param filterBiases One bias per filter
+     * @param weights Dense weights, poolSize * poolSize per filter with poolSize = (inputSize - 2) / 2
+     * @param bias Dense bias
+     */
+    public CatModel(int inputSize, float[] filters, float[] filterBiases, float[] weights, float bias) {
+        if (inputSize < 4 || inputSize % 2 != 0 || filterBiases.length == 0
+                || filters.length != filterBiases.length * KERNEL_SIZE * KERNEL_SIZE) {
+            throw new IllegalArgumentException("Invalid model shape");
+        }
+        this.inputSize = inputSize;
+        this.filterCount = filterBiases.length;
+        this.poolSize = (inputSize - KERNEL_SIZE + 1) / 2;
+        if (weights.length != filterCount * poolSize * poolSize) {
+            throw new IllegalArgumentException("Expected " + filterCount * poolSize * poolSize + " dense weights");
+        }
+        this.filters = filters.clone();
+        this.filterBiases = filterBiases.clone();
+        this.weights = weights.clone();
+        this.bias = bias;
+    }
+
+    public static CatModel read(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != MAGIC) {
+            throw new IOException("Not a cat model");
+        }
+        int version = data.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported cat model version " + version);
+        }
+        int inputSize = data.readInt();
+        int filterCount = data.readInt();
+        if (inputSize < 4 || inputSize > 1024 || filterCount < 1 || filterCount > 1024) {
+            throw new IOException("Invalid cat model shape " + inputSize + "x" + filterCount);
+        }
+        int poolSize = (inputSize - KERNEL_SIZE + 1) / 2;
+        float[] filters = readFloats(data, filterCount * KERNEL_SIZE * KERNEL_SIZE);
+        float[] filterBiases = readFloats(data, filterCount);
+        float[] weights = readFloats(data, filterCount * poolSize * poolSize);
+        float bias = data.readFloat();
+        try {
+            return new CatModel(inputSize, filters, filterBiases, weights, bias);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid cat model", e);
+        }
+    }
+
+    public void write(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        data.writeInt(inputSize);
+        data.writeInt(filterCount);
+        writeFloats(data, filters);
+        writeFloats(data, filterBiases);
+        writeFloats(data, weights);
+        data.writeFloat(bias);
+        data.flush();
+    }
+
+    private static float[] readFloats(DataInputStream data, int count) throws IOException {
+        float[] values = new float[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = data.readFloat();
+        }
+        return values;
+    }
+
+    private static void writeFloats(DataOutputStream data, float[] values) throws IOException {
+        for (float value : values) {
+            data.writeFloat(value);
+        }
+    }
+
+    public int getInputSize() {
+        return inputSize;
+    }
+
+    public int getFilterCount() {
+        return filterCount;
+    }
+
+    /**
+     * Runs the network. Allocates nothing, so it can be called from any number of threads at once
+     * as long as each brings its own pooled array.
+     * @param input Normalized frame, inputSize * inputSize values row by row
+     * @param pooled Scratch space of at least poolSize * poolSize values
+     * @return confidence that the frame contains a cat, between 0 and 100
+     */
+    float confidence(float[] input, float[] pooled) {
+        int n = inputSize;
+        double logit = bias;
+        for (int f = 0; f < filterCount; f++) {
+            int k = f * KERNEL_SIZE * KERNEL_SIZE;
+            float w0 = filters[k], w1 = filters[k + 1], w2 = filters[k + 2];
+            float w3 = filters[k + 3], w4 = filters[k + 4], w5 = filters[k + 5];
+            float w6 = filters[k + 6], w7 = filters[k + 7], w8 = filters[k + 8];
+            float b = filterBiases[f];
+
+            Arrays.fill(pooled, 0, poolSize * poolSize, 0f);
+            for (int y = 0; y < poolSize * 2; y++) {
+                int top = y * n;
+                int middle = top + n;
+                int bottom = middle + n;
+                //every output pixel adds a quarter to its pooling cell, the quarter is applied once below
+                int pooledRow = (y >> 1) * poolSize;
+                for (int x = 0; x < poolSize * 2; x++) {
+                    float sum = b
+                            + w0 * input[top + x] + w1 * input[top + x + 1] + w2 * input[top + x + 2]
+                            + w3 * input[middle + x] + w4 * input[middle + x + 1] + w5 * input[middle + x + 2]
+                            + w6 * input[bottom + x] + w7 * input[bottom + x + 1] + w8 * input[bottom + x + 2];
+                    if (sum > 0) {
+                        pooled[pooledRow + (x >> 1)] += sum;
+                    }
+                }
+            }
+
+            int dense = f * poolSize * poolSize;
+            float filterSum = 0;
+            for (int i = 0; i < poolSize * poolSize; i++) {
+                filterSum += pooled[i] * weights[dense + i];
+            }
+            logit += filterSum * 0.25f;
+        }
+        return (float) (100 / (1 + Math.exp(-logit)));
+    }
+
+    int getPoolSize() {
+        return poolSize;
+    }
+}
@@ -0,0 +1,109 @@
+package com.udacity.catpoint.image.service;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Stops calls to a failing service for a while. After failureThreshold failures in a row the
+ * breaker opens and refuses every call; once openMillis have passed it lets a single trial call
+ * through (half open), which closes it again if it succeeds and reopens it if it fails.
+ *
+ * Every allowed call gets the breaker's generation, which changes with each change of state, and
+ * hands it back with its result. Results of calls let through in an earlier state are ignored, so
+ * a slow call started before the breaker opened cannot close it again when it finally succeeds.
+ */
+public class CircuitBreaker {
+
+    /**
+     * Returned by {@link #allowRequest} for a call that may not go ahead.
+     */
+    public static final long REFUSED = -1;
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final int failureThreshold;
+    private final long openNanos;
+    private final LongSupplier clock;
+
+    private State state = State.CLOSED;
+    private long generation;
+    private int consecutiveFailures;
+    private long openedAt;
+    private boolean trialInFlight;
+
+    public CircuitBreaker(int failureThreshold, long openMillis) {
+        this(failureThreshold, openMillis, System::nanoTime);
+    }
+
+    CircuitBreaker(int failureThreshold, long openMillis, LongSupplier clock) {
+        if (failureThreshold < 1 || openMillis < 0) {
+            throw new IllegalArgumentException("Invalid circuit breaker settings");
+        }
+        this.failureThreshold = failureThreshold;
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(openMillis);
+        this.clock = clock;
+    }
+
+    /**
+     * @return the generation the call belongs to if it may go ahead, {@link #REFUSED} otherwise; an
+     * allowed call must be ended with onSuccess, onFailure or onSkipped, passing that generation
+     */
+    public synchronized long allowRequest() {
+        if (state == State.OPEN && clock.getAsLong() - openedAt >= openNanos) {
+            moveTo(State.HALF_OPEN);
+        }
+        if (state == State.CLOSED) {
+            return generation;
+        }
+        if (state == State.HALF_OPEN && !trialInFlight) {
+            trialInFlight = true;
+            return generation;
+        }
+        return REFUSED;
+    }
+
+    public synchronized void onSuccess(long callGeneration) {
+        if (callGeneration != generation) {
+            return;
+        }
+        consecutiveFailures = 0;
+        if (state == State.HALF_OPEN) {
+            moveTo(State.CLOSED);
+        }
+    }
+
+    public synchronized void onFailure(long callGeneration) {
+        if (callGeneration != generation) {
+            return;
+        }
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            moveTo(State.OPEN);
+            openedAt = clock.getAsLong();
+        }
+    }
+
+    /**
+     * Ends an allowed call that was not made after all, without counting it either way.
+     */
+    public synchronized void onSkipped(long callGeneration) {
+        if (callGeneration == generation) {
+            trialInFlight = false;
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    private void moveTo(State next) {
+        state = next;
+        generation++;
+        trialInFlight = false;
+        if (next == State.CLOSED) {
+            consecutiveFailures = 0;
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package com.udacity.catpoint.image.service;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Image service decorator that skips frames which look the same as the last one it classified.
+ *
+ * Each frame is reduced to a 64 bit difference hash (dHash): the image is divided into a 9x8 grid,
+ * the brightness of each cell is estimated from a few sampled pixels, and every bit records whether
+ * a cell is clearly brighter than its right neighbour. Sensor noise barely moves these bits, while a cat
+ * walking in flips many of them. If the Hamming distance to the last classified frame is within
+ * maxDistance, that frame's verdict is reused instead of calling the wrapped service.
+ *
+ * Hashing reads the raster's backing array directly for the usual int and byte image types and
+ * allocates nothing per frame. A reused verdict is only trusted for maxReuseMillis, after which
+ * the next frame is classified again even if the scene did not change.
+ */
+public class DeduplicatingImageService implements FakeImage {
+
+    public static final int DEFAULT_MAX_DISTANCE = 4;
+    public static final long DEFAULT_MAX_REUSE_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+    private static final int GRID_WIDTH = 9;
+    private static final int GRID_HEIGHT = 8;
+    private static final int SAMPLES_PER_CELL_AXIS = 4;
+    //a cell must be this much brighter on average, otherwise noise flips the bits of flat areas
+    private static final int BRIGHTNESS_MARGIN = 4 * SAMPLES_PER_CELL_AXIS * SAMPLES_PER_CELL_AXIS;
+
+    private final FakeImage delegate;
+    private final int maxDistance;
+    private final long maxReuseNanos;
+    private final LongSupplier clock;
+
+    private volatile Verdict lastVerdict;
+    private long classified;
+    private long skipped;
+
+    public DeduplicatingImageService(FakeImage delegate) {
+        this(delegate, DEFAULT_MAX_DISTANCE, DEFAULT_MAX_REUSE_MILLIS);
+    }
+
+    /**
+     * @param delegate The image service classifying frames that differ enough
+     * @param maxDistance Number of differing hash bits up to which a frame counts as unchanged
+     * @param maxReuseMillis How long a verdict may be reused before a frame is classified again
+     */
+    public DeduplicatingImageService(FakeImage delegate, int maxDistance, long maxReuseMillis) {
+        this(delegate, maxDistance, maxReuseMillis, System::nanoTime);
+    }
+
+    DeduplicatingImageService(FakeImage delegate, int maxDistance, long maxReuseMillis, LongSupplier clock) {
+        if (maxDistance < 0 || maxDistance >= Long.SIZE || maxReuseMillis <= 0) {
+            throw new IllegalArgumentException("Invalid deduplication limits");
+        }
+        this.delegate = delegate;
+        this.maxDistance = maxDistance;
+        this.maxReuseNanos = TimeUnit.MILLISECONDS.toNanos(maxReuseMillis);
+        this.clock = clock;
+    }
+
+    @Override
+    public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
+        if (image == null) {
+            return delegate.imageContainsCat(null, confidenceThreshhold);
+        }
+        long hash = differenceHash(image);
+        Verdict last = lastVerdict;
+        if (last != null
+                && Float.compare(last.confidenceThreshhold, confidenceThreshhold) == 0
+                && clock.getAsLong() - last.classifiedAt < maxReuseNanos
+                && Long.bitCount(last.hash ^ hash) <= maxDistance) {
+            synchronized (this) {
+                skipped++;
+            }
+            return last.cat;
+        }
+
+        boolean cat = delegate.imageContainsCat(image, confidenceThreshhold);
+        lastVerdict = new Verdict(hash, confidenceThreshhold, cat, clock.getAsLong());
+        synchronized (this) {
+            classified++;
+        }
+        return cat;
+    }
+
+    public synchronized long getClassifiedCount() {
+        return classified;
+    }
+
+    public synchronized long getSkippedCount() {
+        return skipped;
+    }
+
+    /**
+     * Forgets the last verdict, so the next frame is always classified.
+     */
+    public void reset() {
+        lastVerdict = null;
+    }
+
+    /**
+     * Computes the 64 bit difference hash of the image.
+     */
+    static long differenceHash(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        Raster raster = image.getRaster();
+        DataBuffer buffer = raster.getDataBuffer();
+        boolean wholeBuffer = raster.getParent() == null && buffer.getNumBanks() == 1
+                && raster.getSampleModelTranslateX() == 0 && raster.getSampleModelTranslateY() == 0;
+
+        //pick the cheapest way to read a pixel once, instead of per sample
+        int[] ints = null;
+        byte[] bytes = null;
+        int scanlineStride = 0;
+        int pixelStride = 0;
+        int red = 0, green = 0, blue = 0;
+        int type = image.getType();
+        if (wholeBuffer && buffer instanceof DataBufferInt && raster.getSampleModel() instanceof SinglePixelPackedSampleModel
+                && (type == BufferedImage.TYPE_INT_RGB || type == BufferedImage.TYPE_INT_ARGB || type == BufferedImage.TYPE_INT_ARGB_PRE)) {
+            ints = ((DataBufferInt) buffer).getData();
+            scanlineStride = ((SinglePixelPackedSampleModel) raster.getSampleModel()).getScanlineStride();
+        } else if (wholeBuffer && buffer instanceof DataBufferByte && raster.getSampleModel() instanceof ComponentSampleModel
+                && (type == BufferedImage.TYPE_BYTE_GRAY || type == BufferedImage.TYPE_3BYTE_BGR || type == BufferedImage.TYPE_4BYTE_ABGR)) {
+            //only types whose samples are the colours themselves; palette indices or custom colour
+            // models go through getRGB
+            ComponentSampleModel model = (ComponentSampleModel) raster.getSampleModel();
+            bytes = ((DataBufferByte) buffer).getData();
+            scanlineStride = model.getScanlineStride();
+            pixelStride = model.getPixelStride();
+            int[] bandOffsets = model.getBandOffsets();
+            red = bandOffsets[0];
+            green = raster.getNumBands() == 1 ? red : bandOffsets[1];
+            blue = raster.getNumBands() == 1 ? red : bandOffsets[2];
+        }
+
+        long hash = 0;
+        for (int gy = 0; gy < GRID_HEIGHT; gy++) {
+            int previous = 0;
+            for (int gx = 0; gx < GRID_WIDTH; gx++) {
+                int brightness = 0;
+                for (int sy = 0; sy < SAMPLES_PER_CELL_AXIS; sy++) {
+                    int y = sampleCoordinate(gy, sy, GRID_HEIGHT, height);
+                    for (int sx = 0; sx < SAMPLES_PER_CELL_AXIS; sx++) {
+                        int x = sampleCoordinate(gx, sx, GRID_WIDTH, width);
+                        int rgb;
+                        if (ints != null) {
+                            rgb = ints[y * scanlineStride + x];
+                        } else if (bytes != null) {
+                            int offset = y * scanlineStride + x * pixelStride;
+                            rgb = (bytes[offset + red] & 0xFF) << 16 | (bytes[offset + green] & 0xFF) << 8 | (bytes[offset + blue] & 0xFF);
+                        } else {
+                            rgb = image.getRGB(x, y);
+                        }
+                        brightness += luma(rgb);
+                    }
+                }
+                if (gx > 0) {
+                    hash = hash << 1 | (previous - brightness > BRIGHTNESS_MARGIN ? 1 : 0);
+                }
+                previous = brightness;
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * Spreads the samples evenly over a cell, sampling at the centre of each sub-cell.
+     */
+    private static int sampleCoordinate(int cell, int sample, int cells, int size) {
+        int subCells = cells * SAMPLES_PER_CELL_AXIS;
+        int position = (int) (((long) (cell * SAMPLES_PER_CELL_AXIS + sample) * 2 + 1) * size / (2L * subCells));
+        return Math.min(position, size - 1);
+    }
+
+    private static int luma(int rgb) {
+        return (((rgb >> 16) & 0xFF) * 77 + ((rgb >> 8) & 0xFF) * 150 + (rgb & 0xFF) * 29) >> 8;
+    }
+
+    private static final class Verdict {
+        private final long hash;
+        private final float confidenceThreshhold;
+        private final boolean cat;
+        private final long classifiedAt;
+
+        private Verdict(long hash, float confidenceThreshhold, boolean cat, long classifiedAt) {
+            this.hash = hash;
+            this.confidenceThreshhold = confidenceThreshhold;
+            this.cat = cat;
+            this.classifiedAt = classifiedAt;
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.udacity.catpoint.image.service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStreamImpl;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Encodes camera frames as JPEG for the remote classifier while copying as little as possible.
+ *
+ * Each thread keeps its own ImageWriter, a growable output buffer the writer encodes straight
+ * into, and a scratch image for downscaling. Frames larger than the classifier can make use of
+ * are scaled down to MAX_DIMENSION on the longer side before encoding, which also converts images
+ * with alpha into something the JPEG writer accepts. The only copy left is trimming the pooled
+ * buffer to the exact encoded length, which the SDK needs since it takes whole arrays.
+ */
+class JpegFrameEncoder {
+
+    /** Longest side sent to the classifier; label detection gains nothing from larger frames. */
+    static final int MAX_DIMENSION = 1280;
+    private static final float QUALITY = 0.85f;
+    //buffers that grew past this are not kept around for the next frame
+    private static final int MAX_RETAINED_BYTES = 8 << 20;
+
+    private static final ThreadLocal<JpegFrameEncoder> ENCODERS = ThreadLocal.withInitial(JpegFrameEncoder::new);
+
+    private final ImageWriter writer;
+    private final ImageWriteParam param;
+    private PooledImageOutputStream output = new PooledImageOutputStream();
+    private BufferedImage scratch;
+
+    private JpegFrameEncoder() {
+        writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        param = writer.getDefaultWriteParam();
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setCompressionQuality(QUALITY);
+    }
+
+    /**
+     * @return the JPEG bytes of the image, downscaled if necessary. The array is owned by the caller.
+     */
+    static byte[] encode(BufferedImage image) throws IOException {
+        return ENCODERS.get().encodeFrame(image);
+    }
+
+    private byte[] encodeFrame(BufferedImage image) throws IOException {
+        BufferedImage source = prepare(image);
+        output.rewind();
+        try {
+            writer.setOutput(output);
+            writer.write(null, new IIOImage(source, null, null), param);
+            output.flush();
+        } finally {
+            writer.setOutput(null);
+        }
+        byte[] encoded = output.toByteArray();
+        if (output.capacity() > MAX_RETAINED_BYTES) {
+            output = new PooledImageOutputStream();
+        }
+        return encoded;
+    }
+
+    /**
+     * Returns the image itself if the JPEG writer can take it as is, otherwise an opaque copy that
+     * fits within MAX_DIMENSION, drawn into this thread's scratch image.
+     */
+    private BufferedImage prepare(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        boolean opaque = image.getType() == BufferedImage.TYPE_3BYTE_BGR || image.getType() == BufferedImage.TYPE_INT_RGB;
+        if (opaque && width <= MAX_DIMENSION && height <= MAX_DIMENSION) {
+            return image;
+        }
+
+        double scale = Math.min(1.0, (double) MAX_DIMENSION / Math.max(width, height));
+        int targetWidth = Math.max(1, (int) Math.round(width * scale));
+        int targetHeight = Math.max(1, (int) Math.round(height * scale));
+        if (scratch == null || scratch.getWidth() != targetWidth || scratch.getHeight() != targetHeight) {
+            scratch = new BufferedImage(targetWidth, targetHeight, BufferedImage.TYPE_3BYTE_BGR);
+        }
+        Graphics2D g = scratch.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.drawImage(image, 0, 0, targetWidth, targetHeight, null);
+        } finally {
+            g.dispose();
+        }
+        return scratch;
+    }
+
+    /**
+     * Seekable in-memory ImageOutputStream over a reusable array. Unlike MemoryCacheImageOutputStream
+     * it has no cache of its own to copy through, the writer's bytes land directly in the array.
+     */
+    private static class PooledImageOutputStream extends ImageOutputStreamImpl {
+        private byte[] buffer = new byte[64 * 1024];
+        private int length;
+
+        private void rewind() {
+            //the writer flushes everything it wrote, so seek(0) would be refused
+            length = 0;
+            streamPos = 0;
+            flushedPos = 0;
+            bitOffset = 0;
+        }
+
+        private int capacity() {
+            return buffer.length;
+        }
+
+        private byte[] toByteArray() {
+            return Arrays.copyOf(buffer, length);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            flushBits();
+            ensureCapacity(streamPos + 1);
+            buffer[(int) streamPos++] = (byte) b;
+            length = Math.max(length, (int) streamPos);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            flushBits();
+            ensureCapacity(streamPos + len);
+            System.arraycopy(b, off, buffer, (int) streamPos, len);
+            streamPos += len;
+            length = Math.max(length, (int) streamPos);
+        }
+
+        @Override
+        public int read() throws IOException {
+            checkClosed();
+            bitOffset = 0;
+            return streamPos < length ? buffer[(int) streamPos++] & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            checkClosed();
+            bitOffset = 0;
+            if (streamPos >= length) {
+                return -1;
+            }
+            int n = (int) Math.min(len, length - streamPos);
+            System.arraycopy(buffer, (int) streamPos, b, off, n);
+            streamPos += n;
+            return n;
+        }
+
+        @Override
+        public long length() {
+            return length;
+        }
+
+        private void ensureCapacity(long required) throws IOException {
+            if (required > Integer.MAX_VALUE - 8) {
+                throw new IOException("Encoded image too large");
+            }
+            if (required > buffer.length) {
+                buffer = Arrays.copyOf(buffer, (int) Math.min(Integer.MAX_VALUE - 8, Math.max(required, buffer.length * 2L)));
+            }
+        }
+    }
+}
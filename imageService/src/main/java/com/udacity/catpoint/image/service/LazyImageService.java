@@ -0,0 +1,48 @@
+package com.udacity.catpoint.image.service;
+
+import java.awt.image.BufferedImage;
+import java.util.function.Supplier;
+
+/**
+ * Image service that only creates the real one when the first image is classified. Clients such
+ * as AwsImageService and LocalImageService read configuration, build HTTP clients or load a model
+ * when constructed, which has no business delaying application startup.
+ *
+ * The factory runs at most once, on the thread of the first call; concurrent first calls wait for
+ * it. If it throws, the next call tries again.
+ */
+public class LazyImageService implements FakeImage {
+
+    private final Supplier<? extends FakeImage> factory;
+    private volatile FakeImage delegate;
+
+    public LazyImageService(Supplier<? extends FakeImage> factory) {
+        this.factory = factory;
+    }
+
+    @Override
+    public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
+        return delegate().imageContainsCat(image, confidenceThreshhold);
+    }
+
+    /**
+     * @return true once the real image service was created
+     */
+    public boolean isCreated() {
+        return delegate != null;
+    }
+
+    private FakeImage delegate() {
+        FakeImage current = delegate;
+        if (current == null) {
+            synchronized (this) {
+                current = delegate;
+                if (current == null) {
+                    current = factory.get();
+                    delegate = current;
+                }
+            }
+        }
+        return current;
+    }
+}
@@ -0,0 +1,197 @@
+package com.udacity.catpoint.image.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.Raster;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Properties;
+
+/**
+ * Image service that classifies frames on the local CPU with a small convolutional network, see
+ * {@link CatModel}, instead of sending them off-box. A frame is downscaled to the model's input
+ * size by averaging a few samples per input pixel, so a 1280x720 frame only reads a fraction of
+ * its rows, and is classified in well under a millisecond.
+ *
+ * The service holds no mutable state apart from per-thread scratch buffers, so any number of
+ * threads can classify at once; put it behind a BatchImageService or AsyncImageService to spread
+ * frames over the cores.
+ *
+ * No trained model ships with the application, so the service cannot be created without one: pass
+ * a model in, or use {@link #fromConfiguration}, which loads it from the file named by local.model
+ * in config.properties, or else from a cat-model.bin resource on the classpath.
+ */
+public class LocalImageService implements FakeImage {
+
+    public static final String MODEL_RESOURCE = "cat-model.bin";
+    //samples averaged per input pixel along each axis
+    private static final int SAMPLES = 4;
+
+    private static final Logger log = LoggerFactory.getLogger(LocalImageService.class);
+
+    private final CatModel model;
+    private final ThreadLocal<Scratch> scratch;
+
+    public LocalImageService(CatModel model) {
+        if (model == null) {
+            throw new IllegalArgumentException("A local classifier needs a model");
+        }
+        this.model = model;
+        this.scratch = ThreadLocal.withInitial(() -> new Scratch(model));
+    }
+
+    /**
+     * @return a service with the model named by local.model in config.properties, or else the
+     * cat-model.bin resource
+     * @throws IllegalStateException if neither is there
+     * @throws UncheckedIOException if the model cannot be read
+     */
+    public static LocalImageService fromConfiguration() {
+        Properties props = new Properties();
+        try (InputStream is = LocalImageService.class.getClassLoader().getResourceAsStream("config.properties")) {
+            if (is != null) {
+                props.load(is);
+            }
+        } catch (IOException ioe) {
+            log.error("Unable to read config.properties", ioe);
+        }
+
+        String modelPath = props.getProperty("local.model");
+        try (InputStream is = modelPath != null
+                ? Files.newInputStream(Path.of(modelPath))
+                : LocalImageService.class.getClassLoader().getResourceAsStream(MODEL_RESOURCE)) {
+            if (is == null) {
+                throw new IllegalStateException("No local classifier model, local.model is not configured and no "
+                        + MODEL_RESOURCE + " is on the classpath");
+            }
+            return new LocalImageService(CatModel.read(is));
+        } catch (IOException ioe) {
+            throw new UncheckedIOException("Unable to load local classifier model", ioe);
+        }
+    }
+
+    /**
+     * Returns true if the provided image contains a cat.
+     * @param image Image to scan
+     * @param confidenceThreshhold Minimum threshhold to consider for cat. For example, 90.0f would require 90% confidence minimum
+     */
+    @Override
+    public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
+        return confidence(image) >= confidenceThreshhold;
+    }
+
+    /**
+     * @return confidence between 0 and 100 that the image contains a cat
+     */
+    public float confidence(BufferedImage image) {
+        Scratch s = scratch.get();
+        downscale(image, s);
+        normalize(s.input);
+        return model.confidence(s.input, s.pooled);
+    }
+
+    /**
+     * Fills s.input with the average luminance of a grid of samples from each cell of the image.
+     */
+    private void downscale(BufferedImage image, Scratch s) {
+        int size = model.getInputSize();
+        int width = image.getWidth();
+        int height = image.getHeight();
+        //the common RGB and BGR layouts are read straight from their pixel array, anything else a row at a time
+        int[] ints = wholeBuffer(image) && image.getRaster().getDataBuffer() instanceof DataBufferInt
+                && (image.getType() == BufferedImage.TYPE_INT_RGB || image.getType() == BufferedImage.TYPE_INT_ARGB)
+                ? ((DataBufferInt) image.getRaster().getDataBuffer()).getData() : null;
+        byte[] bytes = wholeBuffer(image) && image.getType() == BufferedImage.TYPE_3BYTE_BGR
+                ? ((DataBufferByte) image.getRaster().getDataBuffer()).getData() : null;
+        if (ints == null && bytes == null && s.row.length < width) {
+            s.row = new int[width];
+        }
+        float[] input = s.input;
+
+        for (int cellY = 0; cellY < size; cellY++) {
+            int y0 = cellY * height / size;
+            int rows = Math.max(1, (cellY + 1) * height / size - y0);
+            int rowStep = Math.max(1, rows / SAMPLES);
+            int out = cellY * size;
+            Arrays.fill(input, out, out + size, 0f);
+            int sampledRows = 0;
+            for (int y = y0; y < y0 + rows && sampledRows < SAMPLES; y += rowStep, sampledRows++) {
+                int[] row = ints;
+                int base = y * width;
+                if (ints == null && bytes == null) {
+                    row = s.row;
+                    base = 0;
+                    image.getRGB(0, y, width, 1, row, 0, width);
+                }
+                for (int cellX = 0; cellX < size; cellX++) {
+                    int x0 = cellX * width / size;
+                    int columns = Math.max(1, (cellX + 1) * width / size - x0);
+                    int columnStep = Math.max(1, columns / SAMPLES);
+                    int sum = 0;
+                    int samples = 0;
+                    for (int x = x0; x < x0 + columns && samples < SAMPLES; x += columnStep, samples++) {
+                        if (bytes != null) {
+                            int i = (base + x) * 3;
+                            sum += (29 * (bytes[i] & 0xFF) + 150 * (bytes[i + 1] & 0xFF) + 77 * (bytes[i + 2] & 0xFF)) >> 8;
+                        } else {
+                            int rgb = row[base + x];
+                            sum += (77 * (rgb >> 16 & 0xFF) + 150 * (rgb >> 8 & 0xFF) + 29 * (rgb & 0xFF)) >> 8;
+                        }
+                    }
+                    input[out + cellX] += (float) sum / samples;
+                }
+            }
+            for (int i = out; i < out + size; i++) {
+                input[i] /= sampledRows;
+            }
+        }
+    }
+
+    /**
+     * @return true if the image is the whole of a single bank buffer, so its pixels can be indexed directly
+     */
+    private static boolean wholeBuffer(BufferedImage image) {
+        Raster raster = image.getRaster();
+        return raster.getParent() == null && raster.getDataBuffer().getNumBanks() == 1
+                && raster.getSampleModelTranslateX() == 0 && raster.getSampleModelTranslateY() == 0;
+    }
+
+    /**
+     * Scales the input to zero mean and unit variance, so brightness and contrast of the scene do
+     * not change the verdict.
+     */
+    private static void normalize(float[] input) {
+        double sum = 0;
+        double squares = 0;
+        for (float v : input) {
+            sum += v;
+            squares += v * v;
+        }
+        double mean = sum / input.length;
+        double deviation = Math.sqrt(Math.max(0, squares / input.length - mean * mean));
+        //a flat frame has nothing to see
+        float scale = deviation < 1e-3 ? 0 : (float) (1 / deviation);
+        for (int i = 0; i < input.length; i++) {
+            input[i] = (float) ((input[i] - mean) * scale);
+        }
+    }
+
+    private static final class Scratch {
+        private final float[] input;
+        private final float[] pooled;
+        private int[] row = new int[0];
+
+        private Scratch(CatModel model) {
+            input = new float[model.getInputSize() * model.getInputSize()];
+            pooled = new float[model.getPoolSize() * model.getPoolSize()];
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.udacity.catpoint.image.service;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Cheap first stage for a {@link CascadeImageService}: decides whether a frame changed enough to
+ * be worth classifying, without looking for cats at all.
+ *
+ * Frames are compared by their difference hash, see {@link DeduplicatingImageService}. The
+ * threshold passed to imageContainsCat is the share of the 64 hash bits, in percent, that must
+ * differ from the last frame let through. Comparing with the last frame let through rather than
+ * the previous one means slow changes add up until they pass. A frame is also let through once
+ * maxStillMillis have passed, so a still scene is looked at again from time to time.
+ *
+ * There is one reference frame, so a detector serves a single camera feed.
+ */
+public class MotionDetector implements FakeImage {
+
+    public static final long DEFAULT_MAX_STILL_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+    private final long maxStillNanos;
+    private final LongSupplier clock;
+
+    private boolean seenFrame;
+    private long referenceHash;
+    private long referenceAt;
+    private long frames;
+    private long moving;
+
+    public MotionDetector() {
+        this(DEFAULT_MAX_STILL_MILLIS);
+    }
+
+    public MotionDetector(long maxStillMillis) {
+        this(maxStillMillis, System::nanoTime);
+    }
+
+    MotionDetector(long maxStillMillis, LongSupplier clock) {
+        if (maxStillMillis <= 0) {
+            throw new IllegalArgumentException("Invalid still time");
+        }
+        this.maxStillNanos = TimeUnit.MILLISECONDS.toNanos(maxStillMillis);
+        this.clock = clock;
+    }
+
+    /**
+     * @param image Frame to look at
+     * @param confidenceThreshhold Share of the scene in percent that must have changed, for example 6.25f for 4 of 64 hash bits
+     * @return true if the frame changed enough since the last frame let through
+     */
+    @Override
+    public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
+        long hash = DeduplicatingImageService.differenceHash(image);
+        long now = clock.getAsLong();
+        synchronized (this) {
+            frames++;
+            boolean changed = !seenFrame
+                    || Long.bitCount(hash ^ referenceHash) * 100f / Long.SIZE >= confidenceThreshhold
+                    || now - referenceAt >= maxStillNanos;
+            if (changed) {
+                seenFrame = true;
+                referenceHash = hash;
+                referenceAt = now;
+                moving++;
+            }
+            return changed;
+        }
+    }
+
+    /**
+     * Forgets the last frame, so the next one is always let through.
+     */
+    public synchronized void reset() {
+        seenFrame = false;
+    }
+
+    public synchronized long getFrameCount() {
+        return frames;
+    }
+
+    public synchronized long getMovingCount() {
+        return moving;
+    }
+}
@@ -0,0 +1,244 @@
+package com.udacity.catpoint.image.service;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Protects the system from a remote classifier such as AwsImageService, and the classifier from
+ * the system. Every image is answered, by the remote classifier when it is healthy and by a local
+ * fallback classifier (for example FakeImageService, or a CachingImageService in front of one)
+ * when it is not.
+ *
+ * A call to the remote classifier has to get past, in this order:
+ * - a {@link CircuitBreaker}, which stops calls for a while after repeated failures,
+ * - a {@link TokenBucket}, which keeps the request rate under what the service allows,
+ * - an {@link AdaptiveConcurrencyLimit}, which sheds calls when the service slows down.
+ * If the call has not answered after hedgeDelayMillis, a second identical call is started (if the
+ * token bucket and the concurrency limit allow it) and whichever answers first wins; this cuts off the slow tail of remote
+ * latencies. Calls that have not answered after timeoutMillis count as failed. Anything refused,
+ * failed or timed out is answered by the fallback.
+ */
+public class ResilientImageService implements FakeImage, AutoCloseable {
+
+    public static final double DEFAULT_REQUESTS_PER_SECOND = 5;
+    public static final int DEFAULT_BURST = 10;
+    public static final int DEFAULT_FAILURE_THRESHOLD = 5;
+    public static final long DEFAULT_OPEN_MILLIS = 30_000;
+    public static final long DEFAULT_HEDGE_DELAY_MILLIS = 1_000;
+    public static final long DEFAULT_TIMEOUT_MILLIS = 5_000;
+
+    private final FakeImage primary;
+    private final FakeImage fallback;
+    private final TokenBucket rateLimiter;
+    private final AdaptiveConcurrencyLimit concurrencyLimit;
+    private final CircuitBreaker circuitBreaker;
+    private final long hedgeDelayNanos;
+    private final long timeoutNanos;
+    private final ExecutorService executor;
+
+    private final LongAdder remoteAnswers = new LongAdder();
+    private final LongAdder hedges = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder fallbackAnswers = new LongAdder();
+
+    public ResilientImageService(FakeImage primary, FakeImage fallback) {
+        this(primary, fallback, new TokenBucket(DEFAULT_REQUESTS_PER_SECOND, DEFAULT_BURST),
+                new AdaptiveConcurrencyLimit(4, 1, 16),
+                new CircuitBreaker(DEFAULT_FAILURE_THRESHOLD, DEFAULT_OPEN_MILLIS),
+                DEFAULT_HEDGE_DELAY_MILLIS, DEFAULT_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * @param primary The remote classifier
+     * @param fallback Local classifier answering whenever the remote one cannot
+     * @param hedgeDelayMillis Time after which a second call is started, 0 or above timeoutMillis for none
+     * @param timeoutMillis Time after which the remote classifier has failed to answer
+     */
+    public ResilientImageService(FakeImage primary, FakeImage fallback, TokenBucket rateLimiter,
+                                 AdaptiveConcurrencyLimit concurrencyLimit, CircuitBreaker circuitBreaker,
+                                 long hedgeDelayMillis, long timeoutMillis) {
+        if (hedgeDelayMillis < 0 || timeoutMillis <= 0) {
+            throw new IllegalArgumentException("Invalid classifier timeouts");
+        }
+        this.primary = primary;
+        this.fallback = fallback;
+        this.rateLimiter = rateLimiter;
+        this.concurrencyLimit = concurrencyLimit;
+        this.circuitBreaker = circuitBreaker;
+        this.hedgeDelayNanos = hedgeDelayMillis == 0 ? Long.MAX_VALUE : TimeUnit.MILLISECONDS.toNanos(hedgeDelayMillis);
+        this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+
+        //the concurrency limit bounds the number of threads, apart from abandoned calls
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "remote-classifier-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @Override
+    public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
+        long generation = circuitBreaker.allowRequest();
+        if (generation == CircuitBreaker.REFUSED) {
+            rejected.increment();
+            return answerLocally(image, confidenceThreshhold);
+        }
+        //the permit is taken first, it can be given back where a rate token could not
+        boolean permitted = concurrencyLimit.tryAcquire();
+        if (permitted && !rateLimiter.tryAcquire()) {
+            concurrencyLimit.giveBack();
+            permitted = false;
+        }
+        if (!permitted) {
+            circuitBreaker.onSkipped(generation);
+            rejected.increment();
+            return answerLocally(image, confidenceThreshhold);
+        }
+
+        boolean dropped = false;
+        try {
+            boolean cat = callWithHedge(image, confidenceThreshhold);
+            circuitBreaker.onSuccess(generation);
+            remoteAnswers.increment();
+            return cat;
+        } catch (ExecutionException | TimeoutException e) {
+            dropped = true;
+            circuitBreaker.onFailure(generation);
+            failures.increment();
+        } catch (InterruptedException e) {
+            //the caller gave up, which says nothing about the remote classifier
+            circuitBreaker.onSkipped(generation);
+            Thread.currentThread().interrupt();
+        } catch (RejectedExecutionException e) {
+            //closed
+            circuitBreaker.onSkipped(generation);
+        } finally {
+            concurrencyLimit.release(dropped);
+        }
+        return answerLocally(image, confidenceThreshhold);
+    }
+
+    private boolean callWithHedge(BufferedImage image, float confidenceThreshhold)
+            throws ExecutionException, TimeoutException, InterruptedException {
+        CompletionService<Boolean> calls = new ExecutorCompletionService<>(executor);
+        List<Future<Boolean>> started = new ArrayList<>(2);
+        long start = System.nanoTime();
+        boolean hedgePermit = false;
+        try {
+            started.add(calls.submit(() -> primary.imageContainsCat(image, confidenceThreshhold)));
+            boolean hedged = hedgeDelayNanos >= timeoutNanos;
+            int outstanding = 1;
+            ExecutionException lastFailure = null;
+            while (outstanding > 0) {
+                long elapsed = System.nanoTime() - start;
+                long wait = (hedged ? timeoutNanos : hedgeDelayNanos) - elapsed;
+                Future<Boolean> answered = calls.poll(Math.max(0, wait), TimeUnit.NANOSECONDS);
+                if (answered == null) {
+                    if (hedged) {
+                        throw new TimeoutException("Remote classifier did not answer in time");
+                    }
+                    hedged = true;
+                    //a hedge is one more call in flight, so it needs a permit of its own
+                    hedgePermit = concurrencyLimit.tryAcquire();
+                    if (hedgePermit && !rateLimiter.tryAcquire()) {
+                        concurrencyLimit.giveBack();
+                        hedgePermit = false;
+                    }
+                    if (hedgePermit) {
+                        hedges.increment();
+                        started.add(calls.submit(() -> primary.imageContainsCat(image, confidenceThreshhold)));
+                        outstanding++;
+                    }
+                    continue;
+                }
+                outstanding--;
+                try {
+                    return answered.get();
+                } catch (ExecutionException e) {
+                    lastFailure = e;
+                }
+            }
+            throw lastFailure;
+        } finally {
+            //the losing or timed out call is no longer needed
+            for (Future<Boolean> call : started) {
+                call.cancel(true);
+            }
+            //the request counts once, with the caller's permit
+            if (hedgePermit) {
+                concurrencyLimit.giveBack();
+            }
+        }
+    }
+
+    private boolean answerLocally(BufferedImage image, float confidenceThreshhold) {
+        fallbackAnswers.increment();
+        return fallback.imageContainsCat(image, confidenceThreshhold);
+    }
+
+    /**
+     * @return number of images answered by the remote classifier
+     */
+    public long getRemoteAnswerCount() {
+        return remoteAnswers.sum();
+    }
+
+    /**
+     * @return number of second calls started because the first one was slow
+     */
+    public long getHedgeCount() {
+        return hedges.sum();
+    }
+
+    /**
+     * @return number of remote calls that failed or timed out
+     */
+    public long getFailureCount() {
+        return failures.sum();
+    }
+
+    /**
+     * @return number of images not sent to the remote classifier because of the circuit breaker,
+     * rate limit or concurrency limit
+     */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * @return number of images answered by the fallback classifier
+     */
+    public long getFallbackAnswerCount() {
+        return fallbackAnswers.sum();
+    }
+
+    public CircuitBreaker.State getCircuitState() {
+        return circuitBreaker.getState();
+    }
+
+    public int getConcurrencyLimit() {
+        return concurrencyLimit.getLimit();
+    }
+
+    /**
+     * Interrupts remote calls still running. Images are still answered afterwards, by the fallback.
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,52 @@
+package com.udacity.catpoint.image.service;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Rate limiter that allows a steady number of requests per second, plus short bursts of up to
+ * burst requests after a quiet period. Tokens are refilled lazily when a request asks for one.
+ */
+public class TokenBucket {
+
+    private final double capacity;
+    private final double tokensPerNano;
+    private final LongSupplier clock;
+
+    private double tokens;
+    private long lastRefill;
+
+    /**
+     * @param tokensPerSecond Sustained rate of requests
+     * @param burst Requests allowed at once after a quiet period, at least 1
+     */
+    public TokenBucket(double tokensPerSecond, int burst) {
+        this(tokensPerSecond, burst, System::nanoTime);
+    }
+
+    TokenBucket(double tokensPerSecond, int burst, LongSupplier clock) {
+        if (tokensPerSecond <= 0 || burst < 1) {
+            throw new IllegalArgumentException("Invalid token bucket rate");
+        }
+        this.capacity = burst;
+        this.tokensPerNano = tokensPerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.clock = clock;
+        this.tokens = burst;
+        this.lastRefill = clock.getAsLong();
+    }
+
+    /**
+     * Takes a token if there is one. Never blocks.
+     * @return true if the request may go ahead
+     */
+    public synchronized boolean tryAcquire() {
+        long now = clock.getAsLong();
+        tokens = Math.min(capacity, tokens + (now - lastRefill) * tokensPerNano);
+        lastRefill = now;
+        if (tokens < 1) {
+            return false;
+        }
+        tokens--;
+        return true;
+    }
+}
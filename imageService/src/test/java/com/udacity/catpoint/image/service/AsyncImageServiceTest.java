@@ -0,0 +1,75 @@
+package com.udacity.catpoint.image.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AsyncImageServiceTest {
+
+    private final BufferedImage image = new BufferedImage(10, 10, BufferedImage.TYPE_INT_RGB);
+
+    @Test
+    public void imageContainsCat_completesWithDelegateVerdict() throws Exception {
+        try (AsyncImageService service = new AsyncImageService((img, threshold) -> true)) {
+            assertTrue(service.imageContainsCat(image, 50.0f).get(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void imageContainsCat_fullWindowQueuesAndDropsOldestWaiting() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        FakeImage blocking = (img, threshold) -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return false;
+        };
+        try (AsyncImageService service = new AsyncImageService(blocking, 1, 1, 5_000)) {
+            CompletableFuture<Boolean> running = service.imageContainsCat(image, 50.0f);
+            CompletableFuture<Boolean> superseded = service.imageContainsCat(image, 50.0f);
+            CompletableFuture<Boolean> newest = service.imageContainsCat(image, 50.0f);
+
+            assertEquals(1, service.getInFlight());
+            assertEquals(1, service.getQueued());
+            assertThrows(CancellationException.class, superseded::get);
+
+            release.countDown();
+            assertFalse(running.get(5, TimeUnit.SECONDS));
+            assertFalse(newest.get(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void imageContainsCat_slowDelegateTimesOutAndFreesSlot() throws Exception {
+        FakeImage hanging = (img, threshold) -> {
+            try {
+                Thread.sleep(60_000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return true;
+        };
+        try (AsyncImageService service = new AsyncImageService(hanging, 1, 0, 100)) {
+            ExecutionException failure = assertThrows(ExecutionException.class,
+                    () -> service.imageContainsCat(image, 50.0f).get(5, TimeUnit.SECONDS));
+            assertTrue(failure.getCause() instanceof TimeoutException);
+
+            //the slot is released by a completion callback that may still be running
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (service.getInFlight() > 0 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(0, service.getInFlight());
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.udacity.catpoint.image.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BatchImageServiceTest {
+
+    //local stand-in for the remote classifier: wide frames are cats
+    private final AtomicInteger calls = new AtomicInteger();
+    private final FakeImage stub = (image, threshold) -> {
+        calls.incrementAndGet();
+        return image.getWidth() > 10;
+    };
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    private final BufferedImage cat = new BufferedImage(20, 10, BufferedImage.TYPE_INT_RGB);
+    private final BufferedImage noCat = new BufferedImage(10, 10, BufferedImage.TYPE_INT_RGB);
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void anyCat_classifiesEveryFrame() {
+        BatchImageService service = new BatchImageService(stub, executor, BurstDecision.ANY_CAT);
+
+        assertTrue(service.imageContainsCat(List.of(noCat, noCat, cat, noCat), 50.0f));
+        assertEquals(4, calls.get());
+        assertFalse(service.imageContainsCat(List.of(noCat, noCat), 50.0f));
+    }
+
+    @Test
+    public void majority_needsMoreThanHalfOfTheFrames() {
+        BatchImageService service = new BatchImageService(stub, executor, BurstDecision.MAJORITY);
+
+        assertTrue(service.imageContainsCat(List.of(cat, noCat, cat), 50.0f));
+        assertFalse(service.imageContainsCat(List.of(cat, noCat, cat, noCat), 50.0f));
+    }
+
+    @Test
+    public void firstHit_answersOnFirstCatWithoutWaitingForSlowFrames() {
+        FakeImage slowUnlessCat = (image, threshold) -> {
+            if (image == cat) {
+                return true;
+            }
+            try {
+                Thread.sleep(60_000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return false;
+        };
+        BatchImageService service = new BatchImageService(slowUnlessCat, executor, BurstDecision.FIRST_HIT);
+
+        assertTimeoutPreemptively(Duration.ofSeconds(5),
+                () -> assertTrue(service.imageContainsCat(List.of(noCat, noCat, cat), 50.0f)));
+    }
+
+    @Test
+    public void everyFrameFailing_isReported() {
+        FakeImage broken = (image, threshold) -> {
+            throw new IllegalStateException("classifier down");
+        };
+        BatchImageService service = new BatchImageService(broken, executor, BurstDecision.ANY_CAT);
+
+        assertThrows(IllegalStateException.class, () -> service.imageContainsCat(List.of(noCat, cat), 50.0f));
+    }
+
+    @Test
+    public void everyFrameFailing_isReportedEvenWhenFailuresWouldSettleTheMajority() {
+        FakeImage broken = (image, threshold) -> {
+            throw new IllegalStateException("classifier down");
+        };
+        BatchImageService service = new BatchImageService(broken, executor, BurstDecision.MAJORITY);
+
+        assertThrows(IllegalStateException.class, () -> service.imageContainsCat(List.of(noCat, cat, noCat, cat), 50.0f));
+    }
+
+    @Test
+    public void majority_failedFramesCountAsNoCat_onceAnyFrameWasClassified() {
+        FakeImage brokenUnlessCat = (image, threshold) -> {
+            if (image != cat) {
+                throw new IllegalStateException("classifier down");
+            }
+            return true;
+        };
+        BatchImageService service = new BatchImageService(brokenUnlessCat, executor, BurstDecision.MAJORITY);
+
+        assertFalse(service.imageContainsCat(List.of(noCat, noCat, cat), 50.0f));
+        assertTrue(service.imageContainsCat(List.of(cat, noCat, cat), 50.0f));
+    }
+}
@@ -0,0 +1,103 @@
+package com.udacity.catpoint.image.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.IndexColorModel;
+import java.awt.image.WritableRaster;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CachingImageServiceTest {
+
+    private final AtomicInteger calls = new AtomicInteger();
+    private final FakeImage counting = (image, threshold) -> {
+        calls.incrementAndGet();
+        return true;
+    };
+    private final AtomicLong now = new AtomicLong();
+
+    private static BufferedImage frame(int rgb) {
+        BufferedImage image = new BufferedImage(32, 24, BufferedImage.TYPE_INT_RGB);
+        for (int x = 0; x < image.getWidth(); x++) {
+            image.setRGB(x, x % image.getHeight(), rgb);
+        }
+        return image;
+    }
+
+    @Test
+    public void samePixelsAndThreshold_areServedFromCache() {
+        CachingImageService cache = new CachingImageService(counting, 10, 1_000, now::get);
+
+        assertTrue(cache.imageContainsCat(frame(0xFF0000), 50.0f));
+        assertTrue(cache.imageContainsCat(frame(0xFF0000), 50.0f));
+        cache.imageContainsCat(frame(0xFF0000), 90.0f);
+        cache.imageContainsCat(frame(0x00FF00), 50.0f);
+
+        assertEquals(3, calls.get());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(3, cache.getMissCount());
+    }
+
+    @Test
+    public void expiredEntries_areClassifiedAgain() {
+        CachingImageService cache = new CachingImageService(counting, 10, 1_000, now::get);
+
+        cache.imageContainsCat(frame(1), 50.0f);
+        now.addAndGet(TimeUnit.SECONDS.toNanos(2));
+        cache.imageContainsCat(frame(1), 50.0f);
+
+        assertEquals(2, calls.get());
+        assertEquals(1, cache.getEvictionCount());
+    }
+
+    @Test
+    public void fullCache_evictsLeastRecentlyUsed() {
+        CachingImageService cache = new CachingImageService(counting, 2, 1_000, now::get);
+
+        cache.imageContainsCat(frame(1), 50.0f);
+        cache.imageContainsCat(frame(2), 50.0f);
+        cache.imageContainsCat(frame(1), 50.0f); // frame 2 is now the eldest
+        cache.imageContainsCat(frame(3), 50.0f);
+
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictionCount());
+        cache.imageContainsCat(frame(1), 50.0f);
+        assertEquals(3, calls.get());
+    }
+
+    @Test
+    public void contentHash_ignoresSubImageNeighbours() {
+        BufferedImage parent = frame(7);
+        BufferedImage left = parent.getSubimage(0, 0, 8, 8);
+        BufferedImage right = parent.getSubimage(8, 0, 8, 8);
+        assertNotEquals(CachingImageService.contentHash(left), CachingImageService.contentHash(right));
+    }
+
+    @Test
+    public void contentHash_tellsApartPalettesBehindTheSameIndices() {
+        byte[] gray = new byte[256];
+        byte[] inverted = new byte[256];
+        for (int i = 0; i < gray.length; i++) {
+            gray[i] = (byte) i;
+            inverted[i] = (byte) (255 - i);
+        }
+        BufferedImage light = indexed(new IndexColorModel(8, 256, gray, gray, gray));
+        BufferedImage dark = indexed(new IndexColorModel(8, 256, inverted, inverted, inverted));
+        assertNotEquals(CachingImageService.contentHash(light), CachingImageService.contentHash(dark));
+    }
+
+    private static BufferedImage indexed(IndexColorModel palette) {
+        BufferedImage image = new BufferedImage(16, 16, BufferedImage.TYPE_BYTE_INDEXED, palette);
+        WritableRaster raster = image.getRaster();
+        for (int y = 0; y < 16; y++) {
+            for (int x = 0; x < 16; x++) {
+                raster.setSample(x, y, 0, x * 16 + y);
+            }
+        }
+        return image;
+    }
+}
@@ -0,0 +1,156 @@
+package com.udacity.catpoint.image.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CascadeImageServiceTest {
+
+    private final List<Float> remoteThresholds = new ArrayList<>();
+    private boolean remoteAnswer = true;
+    private final FakeImage remote = (image, threshold) -> {
+        remoteThresholds.add(threshold);
+        return remoteAnswer;
+    };
+
+    /**
+     * Empty room with a bright block of the given width in the middle, standing in for a cat.
+     */
+    private static BufferedImage scene(int blockWidth) {
+        return scene(blockWidth, 120);
+    }
+
+    private static BufferedImage scene(int blockWidth, int blockHeight) {
+        BufferedImage image = new BufferedImage(180, 160, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setColor(Color.DARK_GRAY);
+        g.fillRect(0, 0, 180, 160);
+        g.setColor(Color.WHITE);
+        g.fillRect(20, 20, blockWidth, blockHeight);
+        g.dispose();
+        return image;
+    }
+
+    @Test
+    public void candidateStage_keepsRejectedFramesFromTheFinalStage() {
+        List<Float> stageThresholds = new ArrayList<>();
+        FakeImage everyOther = new FakeImage() {
+            private int calls;
+
+            @Override
+            public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
+                stageThresholds.add(confidenceThreshhold);
+                return calls++ % 2 == 0;
+            }
+        };
+        CascadeImageService cascade = new CascadeImageService(
+                List.of(CascadeImageService.Stage.candidates("local", everyOther, 20)), remote);
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals(i % 2 == 0, cascade.imageContainsCat(scene(0), 50));
+        }
+
+        assertEquals(5, remoteThresholds.size());
+        assertTrue(stageThresholds.stream().allMatch(t -> t == 20));
+        assertTrue(remoteThresholds.stream().allMatch(t -> t == 50));
+        CascadeImageService.Stage stage = cascade.getStages().get(0);
+        assertEquals(10, stage.getEvaluatedCount());
+        assertEquals(5, stage.getPassedCount());
+        assertEquals(0.5, stage.getPassRate());
+        assertEquals(0.5, cascade.getEscalationRate());
+    }
+
+    @Test
+    public void changeStage_answersStillFramesWithTheLastVerdict() {
+        CascadeImageService cascade = new CascadeImageService(
+                List.of(CascadeImageService.Stage.changes("motion", new MotionDetector(), 6.25f)), remote);
+
+        assertTrue(cascade.imageContainsCat(scene(60), 50));
+        //the cat sits still, no need to ask again and no reason to forget it
+        for (int i = 0; i < 20; i++) {
+            assertTrue(cascade.imageContainsCat(scene(60), 50));
+        }
+        assertEquals(1, cascade.getEscalatedCount());
+
+        remoteAnswer = false;
+        assertFalse(cascade.imageContainsCat(scene(0), 50));
+        assertFalse(cascade.imageContainsCat(scene(0), 50));
+        assertEquals(2, cascade.getEscalatedCount());
+        assertEquals(23, cascade.getFrameCount());
+    }
+
+    @Test
+    public void laterCandidateRejection_isRememberedByEarlierChangeStage() {
+        FakeImage noCats = (image, threshold) -> false;
+        CascadeImageService cascade = new CascadeImageService(List.of(
+                CascadeImageService.Stage.changes("motion", new MotionDetector(), 6.25f),
+                CascadeImageService.Stage.candidates("local", noCats, 20)), remote);
+
+        assertFalse(cascade.imageContainsCat(scene(60), 50));
+        assertFalse(cascade.imageContainsCat(scene(60), 50));
+
+        assertEquals(0, cascade.getEscalatedCount());
+        assertEquals(1, cascade.getStages().get(1).getEvaluatedCount());
+    }
+
+    @Test
+    public void failedFinalStage_leavesNoStaleVerdictBehind() {
+        AtomicBoolean remoteDown = new AtomicBoolean(true);
+        FakeImage flaky = (image, threshold) -> {
+            if (remoteDown.get()) {
+                throw new IllegalStateException("remote classifier down");
+            }
+            return remote.imageContainsCat(image, threshold);
+        };
+        CascadeImageService cascade = new CascadeImageService(
+                List.of(CascadeImageService.Stage.changes("motion", new MotionDetector(), 6.25f)), flaky);
+
+        assertThrows(IllegalStateException.class, () -> cascade.imageContainsCat(scene(60), 50));
+
+        //the motion detector has seen the cat, but nobody has said it is one yet
+        remoteDown.set(false);
+        assertTrue(cascade.imageContainsCat(scene(60), 50));
+        assertTrue(cascade.imageContainsCat(scene(60), 50));
+        assertEquals(2, cascade.getEscalatedCount());
+        assertEquals(1, remoteThresholds.size());
+    }
+
+    @Test
+    public void stage_belongsToOneCascadeOnly() {
+        CascadeImageService.Stage motion = CascadeImageService.Stage.changes("motion", new MotionDetector(), 6.25f);
+        new CascadeImageService(List.of(motion), remote);
+        assertThrows(IllegalArgumentException.class, () -> new CascadeImageService(List.of(motion), remote));
+    }
+
+    @Test
+    public void motionDetector_addsUpSlowChanges_andLooksAgainAfterMaxStillTime() {
+        AtomicLong now = new AtomicLong();
+        MotionDetector detector = new MotionDetector(1_000, now::get);
+
+        assertTrue(detector.imageContainsCat(scene(0), 6.25f));
+        assertFalse(detector.imageContainsCat(scene(0), 6.25f));
+
+        //a block growing by one hash row per frame changes one bit between neighbours, but adds up
+        int height = 0;
+        boolean passed = false;
+        while (!passed && height < 120) {
+            height += 20;
+            passed = detector.imageContainsCat(scene(60, height), 6.25f);
+        }
+        assertTrue(passed);
+        assertTrue(height > 20);
+
+        assertFalse(detector.imageContainsCat(scene(60, height), 6.25f));
+        now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        assertTrue(detector.imageContainsCat(scene(60, height), 6.25f));
+    }
+}
@@ -0,0 +1,111 @@
+package com.udacity.catpoint.image.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.IndexColorModel;
+import java.awt.image.WritableRaster;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DeduplicatingImageServiceTest {
+
+    private final AtomicLong now = new AtomicLong();
+
+    /**
+     * A "room" with a bright window on the left, plus a little per-pixel sensor noise.
+     */
+    private static BufferedImage room(int type, long noiseSeed, boolean catOnTheRight) {
+        BufferedImage image = new BufferedImage(160, 120, type);
+        Graphics2D g = image.createGraphics();
+        g.setColor(new Color(60, 60, 60));
+        g.fillRect(0, 0, 160, 120);
+        g.setColor(new Color(220, 220, 200));
+        g.fillRect(10, 10, 50, 60);
+        if (catOnTheRight) {
+            g.setColor(new Color(240, 160, 40));
+            g.fillOval(90, 50, 60, 60);
+        }
+        g.dispose();
+
+        Random noise = new Random(noiseSeed);
+        for (int i = 0; i < 500; i++) {
+            int x = noise.nextInt(160);
+            int y = noise.nextInt(120);
+            int rgb = image.getRGB(x, y);
+            image.setRGB(x, y, rgb ^ noise.nextInt(8) * 0x010101);
+        }
+        return image;
+    }
+
+    @Test
+    public void noisyRepeatsOfTheSameScene_reuseTheVerdict() {
+        FakeImage classifier = (image, threshold) -> false;
+        DeduplicatingImageService service = new DeduplicatingImageService(classifier, 4, 30_000, now::get);
+
+        for (int frame = 0; frame < 20; frame++) {
+            assertFalse(service.imageContainsCat(room(BufferedImage.TYPE_INT_RGB, frame, false), 50.0f));
+        }
+        assertEquals(1, service.getClassifiedCount());
+        assertEquals(19, service.getSkippedCount());
+    }
+
+    @Test
+    public void changedScene_isClassifiedAgain() {
+        FakeImage classifier = (image, threshold) -> image.getRGB(120, 80) != room(BufferedImage.TYPE_INT_RGB, 0, false).getRGB(120, 80);
+        DeduplicatingImageService service = new DeduplicatingImageService(classifier, 4, 30_000, now::get);
+
+        assertFalse(service.imageContainsCat(room(BufferedImage.TYPE_INT_RGB, 1, false), 50.0f));
+        assertTrue(service.imageContainsCat(room(BufferedImage.TYPE_INT_RGB, 2, true), 50.0f));
+        assertEquals(2, service.getClassifiedCount());
+    }
+
+    @Test
+    public void staleVerdict_isNotReusedForever() {
+        DeduplicatingImageService service = new DeduplicatingImageService((image, threshold) -> false, 4, 1_000, now::get);
+
+        service.imageContainsCat(room(BufferedImage.TYPE_INT_RGB, 1, false), 50.0f);
+        now.addAndGet(TimeUnit.SECONDS.toNanos(2));
+        service.imageContainsCat(room(BufferedImage.TYPE_INT_RGB, 1, false), 50.0f);
+
+        assertEquals(2, service.getClassifiedCount());
+    }
+
+    @Test
+    public void differenceHash_isTheSameForIntAndByteRasters() {
+        BufferedImage ints = room(BufferedImage.TYPE_INT_RGB, 3, true);
+        BufferedImage bytes = new BufferedImage(ints.getWidth(), ints.getHeight(), BufferedImage.TYPE_3BYTE_BGR);
+        bytes.getGraphics().drawImage(ints, 0, 0, null);
+
+        assertEquals(DeduplicatingImageService.differenceHash(ints), DeduplicatingImageService.differenceHash(bytes));
+    }
+
+    @Test
+    public void differenceHash_ofIndexedImage_followsThePaletteColours() {
+        //palette running from white to black, so the indices grow where the image gets darker
+        byte[] gray = new byte[256];
+        for (int i = 0; i < gray.length; i++) {
+            gray[i] = (byte) (255 - i);
+        }
+        IndexColorModel palette = new IndexColorModel(8, 256, gray, gray, gray);
+        BufferedImage indexed = new BufferedImage(160, 120, BufferedImage.TYPE_BYTE_INDEXED, palette);
+        WritableRaster raster = indexed.getRaster();
+        for (int y = 0; y < 120; y++) {
+            for (int x = 0; x < 160; x++) {
+                raster.setSample(x, y, 0, x * 255 / 159);
+            }
+        }
+        BufferedImage ints = new BufferedImage(160, 120, BufferedImage.TYPE_INT_RGB);
+        ints.getGraphics().drawImage(indexed, 0, 0, null);
+
+        long hash = DeduplicatingImageService.differenceHash(indexed);
+        assertEquals(DeduplicatingImageService.differenceHash(ints), hash);
+        //darker to the right in every row
+        assertEquals(-1L, hash);
+    }
+}
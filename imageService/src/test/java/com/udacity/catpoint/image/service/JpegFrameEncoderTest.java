@@ -0,0 +1,62 @@
+package com.udacity.catpoint.image.service;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JpegFrameEncoderTest {
+
+    private static BufferedImage decode(byte[] jpeg) throws IOException {
+        return ImageIO.read(new ByteArrayInputStream(jpeg));
+    }
+
+    @Test
+    public void smallOpaqueFrame_keepsItsSize() throws IOException {
+        BufferedImage frame = new BufferedImage(320, 240, BufferedImage.TYPE_INT_RGB);
+
+        BufferedImage decoded = decode(JpegFrameEncoder.encode(frame));
+
+        assertEquals(320, decoded.getWidth());
+        assertEquals(240, decoded.getHeight());
+    }
+
+    @Test
+    public void largeFrame_isDownscaledToMaxDimension() throws IOException {
+        BufferedImage frame = new BufferedImage(3840, 2160, BufferedImage.TYPE_3BYTE_BGR);
+
+        BufferedImage decoded = decode(JpegFrameEncoder.encode(frame));
+
+        assertEquals(JpegFrameEncoder.MAX_DIMENSION, decoded.getWidth());
+        assertEquals(720, decoded.getHeight());
+    }
+
+    @Test
+    public void frameWithAlpha_isEncodedOpaque() throws IOException {
+        BufferedImage frame = new BufferedImage(64, 48, BufferedImage.TYPE_INT_ARGB);
+        frame.setRGB(10, 10, 0x80FF0000);
+
+        BufferedImage decoded = decode(JpegFrameEncoder.encode(frame));
+
+        assertEquals(64, decoded.getWidth());
+        assertEquals(48, decoded.getHeight());
+    }
+
+    @Test
+    public void consecutiveFrames_returnIndependentArrays() throws IOException {
+        BufferedImage large = new BufferedImage(640, 480, BufferedImage.TYPE_INT_RGB);
+        BufferedImage small = new BufferedImage(16, 16, BufferedImage.TYPE_INT_RGB);
+
+        byte[] first = JpegFrameEncoder.encode(large);
+        byte[] copy = first.clone();
+        byte[] second = JpegFrameEncoder.encode(small);
+
+        assertArrayEquals(copy, first);
+        assertTrue(second.length < first.length);
+        assertEquals(16, decode(second).getWidth());
+    }
+}
@@ -0,0 +1,45 @@
+package com.udacity.catpoint.image.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LazyImageServiceTest {
+
+    private final BufferedImage image = new BufferedImage(4, 4, BufferedImage.TYPE_INT_RGB);
+
+    @Test
+    public void imageServiceIsCreatedOnFirstUse_once() {
+        AtomicInteger created = new AtomicInteger();
+        LazyImageService lazy = new LazyImageService(() -> {
+            created.incrementAndGet();
+            return (image, threshold) -> threshold < 50;
+        });
+        assertFalse(lazy.isCreated());
+        assertEquals(0, created.get());
+
+        assertTrue(lazy.imageContainsCat(image, 20));
+        assertFalse(lazy.imageContainsCat(image, 80));
+        assertTrue(lazy.isCreated());
+        assertEquals(1, created.get());
+    }
+
+    @Test
+    public void failedCreation_isTriedAgain() {
+        AtomicInteger attempts = new AtomicInteger();
+        LazyImageService lazy = new LazyImageService(() -> {
+            if (attempts.incrementAndGet() == 1) {
+                throw new IllegalStateException("not configured yet");
+            }
+            return (image, threshold) -> true;
+        });
+
+        assertThrows(IllegalStateException.class, () -> lazy.imageContainsCat(image, 50));
+        assertFalse(lazy.isCreated());
+        assertTrue(lazy.imageContainsCat(image, 50));
+        assertEquals(2, attempts.get());
+    }
+}
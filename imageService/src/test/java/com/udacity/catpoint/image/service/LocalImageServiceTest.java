@@ -0,0 +1,138 @@
+package com.udacity.catpoint.image.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LocalImageServiceTest {
+
+    private static final int INPUT_SIZE = 16;
+
+    /**
+     * Model that answers "cat" for vertical stripes and "no cat" for anything flat: a single
+     * vertical edge filter, and dense weights that add up its response everywhere.
+     */
+    private static CatModel stripeModel() {
+        float[] edge = {-1, 0, 1, -1, 0, 1, -1, 0, 1};
+        int poolSize = (INPUT_SIZE - 2) / 2;
+        float[] weights = new float[poolSize * poolSize];
+        Arrays.fill(weights, 1);
+        return new CatModel(INPUT_SIZE, edge, new float[]{0}, weights, -5);
+    }
+
+    private static BufferedImage stripes(int width, int height, int type) {
+        BufferedImage image = new BufferedImage(width, height, type);
+        Graphics2D g = image.createGraphics();
+        g.setColor(Color.DARK_GRAY);
+        g.fillRect(0, 0, width, height);
+        g.setColor(Color.WHITE);
+        //two input pixels wide, the edge filter spans three
+        int stripe = 2 * width / INPUT_SIZE;
+        for (int x = 0; x < width; x += 2 * stripe) {
+            g.fillRect(x, 0, stripe, height);
+        }
+        g.dispose();
+        return image;
+    }
+
+    private static BufferedImage flat(int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setColor(Color.ORANGE);
+        g.fillRect(0, 0, width, height);
+        g.dispose();
+        return image;
+    }
+
+    @Test
+    public void classifiesWithTheModel() {
+        LocalImageService service = new LocalImageService(stripeModel());
+
+        assertTrue(service.imageContainsCat(stripes(640, 480, BufferedImage.TYPE_INT_RGB), 90));
+        assertFalse(service.imageContainsCat(flat(640, 480), 50));
+        assertTrue(service.confidence(flat(640, 480)) < 1);
+    }
+
+    @Test
+    public void sameScene_getsTheSameConfidence_atAnySizeAndPixelFormat() {
+        LocalImageService service = new LocalImageService(stripeModel());
+
+        float reference = service.confidence(stripes(64, 48, BufferedImage.TYPE_INT_RGB));
+        assertEquals(reference, service.confidence(stripes(1280, 720, BufferedImage.TYPE_INT_RGB)), 1);
+        assertEquals(reference, service.confidence(stripes(1280, 720, BufferedImage.TYPE_3BYTE_BGR)), 1);
+        assertEquals(reference, service.confidence(stripes(640, 480, BufferedImage.TYPE_INT_ARGB)), 1);
+    }
+
+    @Test
+    public void concurrentCalls_getTheSameAnswers() throws Exception {
+        LocalImageService service = new LocalImageService(stripeModel());
+        BufferedImage small = stripes(320, 240, BufferedImage.TYPE_INT_RGB);
+        BufferedImage large = stripes(1280, 720, BufferedImage.TYPE_3BYTE_BGR);
+        float smallConfidence = service.confidence(small);
+        float largeConfidence = service.confidence(large);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(() -> {
+                    for (int j = 0; j < 200; j++) {
+                        if (service.confidence(small) != smallConfidence || service.confidence(large) != largeConfidence) {
+                            return false;
+                        }
+                    }
+                    return true;
+                }));
+            }
+            for (Future<Boolean> result : results) {
+                assertTrue(result.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void model_survivesWriteAndRead() throws IOException {
+        CatModel model = stripeModel();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        model.write(out);
+        CatModel read = CatModel.read(new ByteArrayInputStream(out.toByteArray()));
+
+        BufferedImage image = stripes(640, 480, BufferedImage.TYPE_INT_RGB);
+        assertEquals(INPUT_SIZE, read.getInputSize());
+        assertEquals(new LocalImageService(model).confidence(image), new LocalImageService(read).confidence(image));
+    }
+
+    @Test
+    public void brokenModel_isRejected() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        stripeModel().write(out);
+        byte[] bytes = out.toByteArray();
+
+        assertThrows(IOException.class, () -> CatModel.read(new ByteArrayInputStream(Arrays.copyOf(bytes, bytes.length - 4))));
+        bytes[0] = 'X';
+        assertThrows(IOException.class, () -> CatModel.read(new ByteArrayInputStream(bytes)));
+        assertThrows(IllegalArgumentException.class, () -> new CatModel(INPUT_SIZE, new float[9], new float[1], new float[3], 0));
+    }
+
+    @Test
+    public void withoutModel_cannotBeCreated() {
+        assertThrows(IllegalArgumentException.class, () -> new LocalImageService(null));
+        //neither config.properties nor cat-model.bin is on the test classpath
+        assertThrows(IllegalStateException.class, LocalImageService::fromConfiguration);
+    }
+}
@@ -0,0 +1,323 @@
+package com.udacity.catpoint.image.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ResilientImageServiceTest {
+
+    private static final BufferedImage IMAGE = new BufferedImage(4, 4, BufferedImage.TYPE_INT_RGB);
+    //answers "no cat", so it is easy to tell from the stub server, which answers "cat"
+    private static final FakeImage FALLBACK = (image, threshold) -> false;
+
+    private StubServer server;
+    private ResilientImageService service;
+
+    /**
+     * Local stand-in for a remote classifier. Every connection is one request; the server answers
+     * "cat" after the delay scripted for that request, or hangs up without an answer for a
+     * negative delay. Unscripted requests are answered right away.
+     */
+    private static class StubServer implements AutoCloseable {
+        private final ServerSocket socket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        private final BlockingQueue<Long> delays = new LinkedBlockingQueue<>();
+        private final AtomicInteger requests = new AtomicInteger();
+
+        private StubServer() throws IOException {
+            Thread acceptor = new Thread(this::acceptLoop, "stub-classifier-server");
+            acceptor.setDaemon(true);
+            acceptor.start();
+        }
+
+        private void acceptLoop() {
+            try {
+                while (true) {
+                    Socket connection = socket.accept();
+                    Long delay = delays.poll();
+                    requests.incrementAndGet();
+                    Thread handler = new Thread(() -> answer(connection, delay == null ? 0 : delay));
+                    handler.setDaemon(true);
+                    handler.start();
+                }
+            } catch (IOException e) {
+                //closed
+            }
+        }
+
+        private void answer(Socket connection, long delay) {
+            try (connection) {
+                new BufferedReader(new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8)).readLine();
+                if (delay >= 0) {
+                    Thread.sleep(delay);
+                    new PrintWriter(connection.getOutputStream(), true, StandardCharsets.UTF_8).println("cat");
+                }
+            } catch (IOException | InterruptedException e) {
+                //client went away
+            }
+        }
+
+        /**
+         * Classifier calling this server, failing if there is no answer.
+         */
+        private FakeImage client() {
+            return (image, threshold) -> {
+                try (Socket connection = new Socket(InetAddress.getLoopbackAddress(), socket.getLocalPort())) {
+                    new PrintWriter(connection.getOutputStream(), true, StandardCharsets.UTF_8).println("classify " + threshold);
+                    String answer = new BufferedReader(new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8)).readLine();
+                    if (answer == null) {
+                        throw new IllegalStateException("No answer");
+                    }
+                    return answer.equals("cat");
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            };
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+
+    @BeforeEach
+    void init() throws IOException {
+        server = new StubServer();
+    }
+
+    @AfterEach
+    void close() throws IOException {
+        if (service != null) {
+            service.close();
+        }
+        server.close();
+    }
+
+    private ResilientImageService service(TokenBucket rateLimiter, CircuitBreaker circuitBreaker,
+                                          long hedgeDelayMillis, long timeoutMillis) {
+        service = new ResilientImageService(server.client(), FALLBACK, rateLimiter,
+                new AdaptiveConcurrencyLimit(4, 1, 16), circuitBreaker, hedgeDelayMillis, timeoutMillis);
+        return service;
+    }
+
+    @Test
+    public void slowAnswer_isHedged() {
+        server.delays.add(5_000L);
+        service(new TokenBucket(100, 10), new CircuitBreaker(3, 60_000), 100, 3_000);
+
+        long start = System.nanoTime();
+        assertTrue(service.imageContainsCat(IMAGE, 50));
+
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2));
+        assertEquals(1, service.getHedgeCount());
+        assertEquals(2, server.requests.get());
+        assertEquals(1, service.getRemoteAnswerCount());
+    }
+
+    @Test
+    public void repeatedFailures_openTheCircuit_andTheFallbackAnswers() {
+        for (int i = 0; i < 3; i++) {
+            server.delays.add(-1L);
+        }
+        service(new TokenBucket(100, 10), new CircuitBreaker(3, 60_000), 0, 1_000);
+
+        for (int i = 0; i < 5; i++) {
+            assertFalse(service.imageContainsCat(IMAGE, 50));
+        }
+
+        //the last two never reached the server
+        assertEquals(3, server.requests.get());
+        assertEquals(3, service.getFailureCount());
+        assertEquals(2, service.getRejectedCount());
+        assertEquals(5, service.getFallbackAnswerCount());
+        assertEquals(CircuitBreaker.State.OPEN, service.getCircuitState());
+    }
+
+    @Test
+    public void noAnswerInTime_countsAsFailure() {
+        server.delays.add(5_000L);
+        service(new TokenBucket(100, 10), new CircuitBreaker(3, 60_000), 0, 200);
+
+        assertFalse(service.imageContainsCat(IMAGE, 50));
+
+        assertEquals(1, service.getFailureCount());
+        assertEquals(0, service.getHedgeCount());
+    }
+
+    @Test
+    public void rateLimit_sendsTheRestToTheFallback() {
+        service(new TokenBucket(1.0 / 60, 2), new CircuitBreaker(3, 60_000), 0, 1_000);
+
+        assertTrue(service.imageContainsCat(IMAGE, 50));
+        assertTrue(service.imageContainsCat(IMAGE, 50));
+        assertFalse(service.imageContainsCat(IMAGE, 50));
+
+        assertEquals(2, server.requests.get());
+        assertEquals(1, service.getRejectedCount());
+    }
+
+    @Test
+    public void circuitBreaker_letsOneTrialThroughAfterTheOpenTime() {
+        AtomicLong now = new AtomicLong();
+        CircuitBreaker breaker = new CircuitBreaker(2, 1_000, now::get);
+        breaker.onFailure(breaker.allowRequest());
+        breaker.onFailure(breaker.allowRequest());
+        assertEquals(CircuitBreaker.REFUSED, breaker.allowRequest());
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        long trial = breaker.allowRequest();
+        assertNotEquals(CircuitBreaker.REFUSED, trial);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertEquals(CircuitBreaker.REFUSED, breaker.allowRequest());
+
+        breaker.onFailure(trial);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        breaker.onSuccess(breaker.allowRequest());
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void circuitBreaker_ignoresCallsStartedBeforeItOpened() {
+        AtomicLong now = new AtomicLong();
+        CircuitBreaker breaker = new CircuitBreaker(2, 1_000, now::get);
+        long slow = breaker.allowRequest();
+        long slowFailing = breaker.allowRequest();
+        breaker.onFailure(breaker.allowRequest());
+        breaker.onFailure(breaker.allowRequest());
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        breaker.onSuccess(slow);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        //nor does a stale failure reopen, or a stale skip free, the trial of the half open breaker
+        now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        long trial = breaker.allowRequest();
+        breaker.onFailure(slowFailing);
+        breaker.onSkipped(slow);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertEquals(CircuitBreaker.REFUSED, breaker.allowRequest());
+
+        breaker.onSuccess(trial);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void hedge_needsAConcurrencyPermit() {
+        server.delays.add(500L);
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(1, 1, 1);
+        service = new ResilientImageService(server.client(), FALLBACK, new TokenBucket(100, 10),
+                limit, new CircuitBreaker(3, 60_000), 100, 3_000);
+
+        assertTrue(service.imageContainsCat(IMAGE, 50));
+
+        assertEquals(0, service.getHedgeCount());
+        assertEquals(1, server.requests.get());
+        assertEquals(0, limit.getInFlight());
+    }
+
+    @Test
+    public void hedge_returnsItsPermit() {
+        server.delays.add(5_000L);
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(4, 1, 16);
+        service = new ResilientImageService(server.client(), FALLBACK, new TokenBucket(100, 10),
+                limit, new CircuitBreaker(3, 60_000), 100, 3_000);
+
+        assertTrue(service.imageContainsCat(IMAGE, 50));
+
+        assertEquals(1, service.getHedgeCount());
+        assertEquals(0, limit.getInFlight());
+    }
+
+    @Test
+    public void timedOutHedge_backsOffOnce() {
+        server.delays.add(5_000L);
+        server.delays.add(5_000L);
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(10, 1, 16);
+        service = new ResilientImageService(server.client(), FALLBACK, new TokenBucket(100, 10),
+                limit, new CircuitBreaker(3, 60_000), 100, 300);
+
+        assertFalse(service.imageContainsCat(IMAGE, 50));
+
+        assertEquals(1, service.getHedgeCount());
+        assertEquals(1, service.getFailureCount());
+        assertEquals(9, limit.getLimit());
+        assertEquals(0, limit.getInFlight());
+    }
+
+    @Test
+    public void concurrencyLimit_refusing_leavesTheRateTokenUnused() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(1, 1, 1);
+        service = new ResilientImageService(server.client(), FALLBACK, new TokenBucket(1.0 / 60, 1),
+                limit, new CircuitBreaker(3, 60_000), 1_000, 1_000);
+
+        assertTrue(limit.tryAcquire());
+        assertFalse(service.imageContainsCat(IMAGE, 50));
+        limit.giveBack();
+
+        assertTrue(service.imageContainsCat(IMAGE, 50));
+        assertEquals(1, server.requests.get());
+    }
+
+    @Test
+    public void tokenBucket_refillsAtItsRate() {
+        AtomicLong now = new AtomicLong();
+        TokenBucket bucket = new TokenBucket(10, 2, now::get);
+        assertTrue(bucket.tryAcquire());
+        assertTrue(bucket.tryAcquire());
+        assertFalse(bucket.tryAcquire());
+
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+        assertTrue(bucket.tryAcquire());
+        assertFalse(bucket.tryAcquire());
+
+        //never more than the burst, however long it was quiet
+        now.addAndGet(TimeUnit.HOURS.toNanos(1));
+        assertTrue(bucket.tryAcquire());
+        assertTrue(bucket.tryAcquire());
+        assertFalse(bucket.tryAcquire());
+    }
+
+    @Test
+    public void concurrencyLimit_backsOffOnFailures_andGrowsWhenBusy() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(4, 1, 8);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(limit.tryAcquire());
+        }
+        assertFalse(limit.tryAcquire());
+
+        limit.release(true);
+        assertEquals(3, limit.getLimit());
+        for (int i = 0; i < 3; i++) {
+            limit.release(false);
+        }
+
+        for (int round = 0; round < 20; round++) {
+            while (limit.tryAcquire()) {
+                //fill up to the limit
+            }
+            for (int i = limit.getInFlight(); i > 0; i--) {
+                limit.release(false);
+            }
+        }
+        assertEquals(8, limit.getLimit());
+    }
+}
@@ -1,10 +1,30 @@
 package com.udacity.catpoint.security.application;
 
+import javax.swing.*;
+
 /**
  * This is the main class that launches the application.
+ *
+ * Usage: CatpointApp [--fast-start]
+ * With --fast-start the window is built on the event dispatch thread and shown as soon as the
+ * alarm and arming status are known; sensors appear as they are loaded in the background and the
+ * image service is only created for the first scan. This matters for installations with many sensors.
  */
 public class CatpointApp {
     public static void main(String[] args) {
+        boolean fastStart = false;
+        for (String arg : args) {
+            if (arg.equals("--fast-start")) {
+                fastStart = true;
+            } else {
+                throw new IllegalArgumentException("Unknown option " + arg);
+            }
+        }
+
+        if (fastStart) {
+            SwingUtilities.invokeLater(() -> new CatpointGui(true).setVisible(true));
+            return;
+        }
         CatpointGui gui = new CatpointGui();
         gui.setVisible(true);
     }
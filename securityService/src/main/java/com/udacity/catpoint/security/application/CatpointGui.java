@@ -1,13 +1,20 @@
 package com.udacity.catpoint.security.application;
 
+import com.udacity.catpoint.image.service.AsyncImageService;
+import com.udacity.catpoint.image.service.CachingImageService;
+import com.udacity.catpoint.image.service.DeduplicatingImageService;
 import com.udacity.catpoint.image.service.FakeImage;
+import com.udacity.catpoint.image.service.LazyImageService;
 import com.udacity.catpoint.security.data.PretendDatabaseSecurityRepositoryImpl;
 import com.udacity.catpoint.security.data.SecurityRepository;
+import com.udacity.catpoint.security.data.SensorFormat;
+import com.udacity.catpoint.security.data.WriteBehindPolicy;
 import com.udacity.catpoint.image.service.FakeImageService;
 import com.udacity.catpoint.security.service.SecurityService;
 import net.miginfocom.swing.MigLayout;
 
 import javax.swing.*;
+import java.util.prefs.Preferences;
 
 /**
  * This is the primary JFrame for the application that contains all the top-level JPanels.
@@ -16,15 +23,34 @@ import javax.swing.*;
  * all our dependencies and providing them to other classes as necessary.
  */
 public class CatpointGui extends JFrame {
-    private SecurityRepository securityRepository = new PretendDatabaseSecurityRepositoryImpl();
-    private FakeImage imageService = new FakeImageService();
-    private SecurityService securityService = new SecurityService(securityRepository, imageService);
-    private DisplayPanel displayPanel = new DisplayPanel(securityService);
-    private ControlPanel controlPanel = new ControlPanel(securityService);
-    private SensorPanel sensorPanel = new SensorPanel(securityService);
-    private ImagePanel imagePanel = new ImagePanel(securityService);
+    private SecurityService securityService;
+    private DisplayPanel displayPanel;
+    private ControlPanel controlPanel;
+    private SensorPanel sensorPanel;
+    private ImagePanel imagePanel;
 
     public CatpointGui() {
+        this(createSecurityService(false));
+    }
+
+    /**
+     * @param fastStart If true the window can be shown before the sensors are loaded, which then
+     *                  appear as they come in, and the image service is only created for the first scan
+     */
+    public CatpointGui(boolean fastStart) {
+        this(createSecurityService(fastStart));
+    }
+
+    /**
+     * Shows an already running SecurityService, for example the one behind CatpointServer.
+     */
+    public CatpointGui(SecurityService securityService) {
+        this.securityService = securityService;
+        displayPanel = new DisplayPanel(securityService);
+        controlPanel = new ControlPanel(securityService);
+        sensorPanel = new SensorPanel(securityService);
+        imagePanel = new ImagePanel(securityService);
+
         setLocation(100, 100);
         setSize(600, 850);
         setTitle("Very Secure App");
@@ -40,4 +66,15 @@ public class CatpointGui extends JFrame {
         getContentPane().add(mainPanel);
 
     }
+
+    private static SecurityService createSecurityService(boolean fastStart) {
+        SecurityRepository securityRepository = new PretendDatabaseSecurityRepositoryImpl(
+                Preferences.userNodeForPackage(PretendDatabaseSecurityRepositoryImpl.class),
+                WriteBehindPolicy.writeBehind(500, 64, false), SensorFormat.JSON, fastStart);
+        FakeImage imageService = fastStart
+                ? new LazyImageService(() -> new CachingImageService(new DeduplicatingImageService(new FakeImageService())))
+                : new CachingImageService(new DeduplicatingImageService(new FakeImageService()));
+        return new SecurityService(securityRepository, imageService,
+                new AsyncImageService(imageService), SwingUtilities::invokeLater);
+    }
 }
@@ -0,0 +1,90 @@
+package com.udacity.catpoint.security.application;
+
+import com.udacity.catpoint.image.service.CachingImageService;
+import com.udacity.catpoint.image.service.DeduplicatingImageService;
+import com.udacity.catpoint.image.service.FakeImage;
+import com.udacity.catpoint.image.service.FakeImageService;
+import com.udacity.catpoint.security.data.EventLogSecurityRepositoryImpl;
+import com.udacity.catpoint.security.metrics.InstrumentedSecurityService;
+import com.udacity.catpoint.security.metrics.MetricsEndpoint;
+import com.udacity.catpoint.security.metrics.MetricsRegistry;
+import com.udacity.catpoint.security.service.SecurityService;
+import com.udacity.catpoint.security.service.SensorEventServer;
+
+import javax.swing.*;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Headless way to launch the application: the security system is driven by sensor events
+ * arriving on a local socket (see SensorEventServer for the protocol) instead of the Swing UI.
+ * State is kept in an event log in the data directory.
+ *
+ * Usage: CatpointServer [--port 7474] [--data catpoint-data] [--metrics-port 9474] [--gui]
+ * With --gui the usual window is shown as well, attached to the same security system.
+ *
+ * Metrics are always available over JMX. With --metrics-port they are also served as text on
+ * http://localhost:&lt;port&gt;/metrics.
+ */
+public class CatpointServer {
+
+    public static final int DEFAULT_PORT = 7474;
+    public static final String DEFAULT_DATA_DIRECTORY = "catpoint-data";
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int port = DEFAULT_PORT;
+        Path dataDirectory = Paths.get(DEFAULT_DATA_DIRECTORY);
+        int metricsPort = -1;
+        boolean gui = false;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--port" -> port = Integer.parseInt(argument(args, ++i));
+                case "--data" -> dataDirectory = Paths.get(argument(args, ++i));
+                case "--metrics-port" -> metricsPort = Integer.parseInt(argument(args, ++i));
+                case "--gui" -> gui = true;
+                default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        if (!gui) {
+            System.setProperty("java.awt.headless", "true");
+        }
+
+        EventLogSecurityRepositoryImpl securityRepository = new EventLogSecurityRepositoryImpl(dataDirectory);
+        FakeImage imageService = new CachingImageService(new DeduplicatingImageService(new FakeImageService()));
+        MetricsRegistry metrics = new MetricsRegistry();
+        metrics.registerMBean();
+        SecurityService securityService = new InstrumentedSecurityService(securityRepository, imageService, metrics);
+        SensorEventServer server = new SensorEventServer(securityService,
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        MetricsEndpoint metricsEndpoint = metricsPort < 0 ? null
+                : new MetricsEndpoint(metrics, new InetSocketAddress(InetAddress.getLoopbackAddress(), metricsPort));
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            //returns once the applier has passed on every event read, nothing writes to the repository after that
+            server.close();
+            securityService.close();
+            if (metricsEndpoint != null) {
+                metricsEndpoint.close();
+            }
+            securityRepository.close();
+        }, "catpoint-server-shutdown"));
+        System.out.println("Listening for sensor events on port " + server.getLocalPort());
+        if (metricsEndpoint != null) {
+            System.out.println("Serving metrics on port " + metricsEndpoint.getLocalPort());
+        }
+
+        if (gui) {
+            SwingUtilities.invokeLater(() -> new CatpointGui(securityService).setVisible(true));
+        }
+        server.awaitTermination();
+    }
+
+    private static String argument(String[] args, int i) {
+        if (i >= args.length) {
+            throw new IllegalArgumentException("Missing value for " + args[i - 1]);
+        }
+        return args[i];
+    }
+}
@@ -11,6 +11,7 @@ import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.util.concurrent.CancellationException;
 
 /** Panel containing the 'camera' output. Allows users to 'refresh' the camera
  * by uploading their own picture, and 'scan' the picture, sending it for image analysis
@@ -59,10 +60,16 @@ public class ImagePanel extends JPanel implements StatusListener {
             repaint();
         });
 
-        //button that sends the image to the image service
+        //button that sends the image to the image service without blocking the UI while it is scanned
         JButton scanPictureButton = new JButton("Scan Picture");
         scanPictureButton.addActionListener(e -> {
-            securityService.processImage(currentCameraImage);
+            cameraHeader.setText("Camera Feed - Scanning...");
+            securityService.processImageAsync(currentCameraImage).exceptionally(ex -> {
+                if (!(ex.getCause() instanceof CancellationException)) {
+                    SwingUtilities.invokeLater(() -> cameraHeader.setText("Camera Feed - Scan Failed"));
+                }
+                return null;
+            });
         });
 
         add(cameraHeader, "span 3, wrap");
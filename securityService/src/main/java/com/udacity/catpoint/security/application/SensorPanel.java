@@ -8,10 +8,22 @@ import com.udacity.catpoint.image.service.StyleService;
 import net.miginfocom.swing.MigLayout;
 
 import javax.swing.*;
+import javax.swing.table.TableCellRenderer;
+import java.awt.Component;
+import java.awt.Dimension;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
 
 /**
  * Panel that allows users to add sensors to their system. Sensors may be
  * manually set to "active" and "inactive" to test the system.
+ *
+ * The sensors are listed in a table that is kept up to date from the per sensor events of the
+ * SecurityService, so a change only repaints the row of that sensor, and only the rows in view are
+ * ever rendered.
+ *
+ * Sensors are shown as the repository loads them, below them a placeholder row says that more
+ * are coming. Adding sensors is only possible once all of them are loaded.
  */
 public class SensorPanel extends JPanel implements StatusListener{
 
@@ -24,7 +36,8 @@ public class SensorPanel extends JPanel implements StatusListener{
     private JComboBox newSensorTypeDropdown = new JComboBox(SensorType.values());
     private JButton addNewSensorButton = new JButton("Add New Sensor");
 
-    private JPanel sensorListPanel;
+    private SensorTableModel sensorTableModel = new SensorTableModel();
+    private JTable sensorTable = new JTable(sensorTableModel);
     private JPanel newSensorPanel;
 
     public SensorPanel(SecurityService securityService) {
@@ -41,14 +54,25 @@ public class SensorPanel extends JPanel implements StatusListener{
                         SensorType.valueOf(newSensorTypeDropdown.getSelectedItem().toString()))));
 
         newSensorPanel = buildAddSensorPanel();
-        sensorListPanel = new JPanel();
-        sensorListPanel.setLayout(new MigLayout());
-
-        updateSensorList(sensorListPanel);
+        configureSensorTable();
+        streamSensors();
 
         add(panelLabel, "wrap");
         add(newSensorPanel, "span");
-        add(sensorListPanel, "span");
+        add(new JScrollPane(sensorTable), "span");
+    }
+
+    /**
+     * Fills the table as the sensors are loaded, without waiting for the repository.
+     */
+    private void streamSensors() {
+        sensorTableModel.setLoading(true);
+        addNewSensorButton.setEnabled(false);
+        securityService.streamSensors(batch -> SwingUtilities.invokeLater(() -> sensorTableModel.sensorsLoaded(batch)))
+                .whenComplete((loaded, e) -> SwingUtilities.invokeLater(() -> {
+                    sensorTableModel.setLoading(false);
+                    addNewSensorButton.setEnabled(e == null);
+                }));
     }
 
     /**
@@ -66,60 +90,72 @@ public class SensorPanel extends JPanel implements StatusListener{
     }
 
     /**
-     * Requests the current list of sensors and updates the provided panel to display them. Sensors
-     * will display in the order that they are created.
-     * @param p The Panel to populate with the current list of sensors
+     * Sets up the sensor table: one row per sensor, in sorted order, with a button to toggle and a
+     * button to remove the sensor.
      */
-    private void updateSensorList(JPanel p) {
-        p.removeAll();
-        securityService.getSensors().stream().sorted().forEach(s -> {
-            JLabel sensorLabel = new JLabel(String.format("%s(%s): %s", s.getName(),  s.getSensorType().toString(),(s.getActive() ? "Active" : "Inactive")));
-            JButton sensorToggleButton = new JButton((s.getActive() ? "Deactivate" : "Activate"));
-            JButton sensorRemoveButton = new JButton("Remove Sensor");
-
-            sensorToggleButton.addActionListener(e -> setSensorActivity(s, !s.getActive()) );
-            sensorRemoveButton.addActionListener(e -> removeSensor(s));
-
-            //hard code some sizes, tsk tsk
-            p.add(sensorLabel, "width 300:300:300");
-            p.add(sensorToggleButton, "width 100:100:100");
-            p.add(sensorRemoveButton, "wrap");
+    private void configureSensorTable() {
+        sensorTable.setTableHeader(null);
+        sensorTable.setShowGrid(false);
+        sensorTable.setRowSelectionAllowed(false);
+        sensorTable.setRowHeight(new JButton("Activate").getPreferredSize().height);
+        sensorTable.setPreferredScrollableViewportSize(new Dimension(520, 8 * sensorTable.getRowHeight()));
+
+        //hard code some sizes, tsk tsk
+        sensorTable.getColumnModel().getColumn(SensorTableModel.SENSOR_COLUMN).setPreferredWidth(300);
+        sensorTable.getColumnModel().getColumn(SensorTableModel.TOGGLE_COLUMN).setPreferredWidth(100);
+        sensorTable.getColumnModel().getColumn(SensorTableModel.REMOVE_COLUMN).setPreferredWidth(120);
+        ButtonRenderer buttonRenderer = new ButtonRenderer();
+        sensorTable.getColumnModel().getColumn(SensorTableModel.TOGGLE_COLUMN).setCellRenderer(buttonRenderer);
+        sensorTable.getColumnModel().getColumn(SensorTableModel.REMOVE_COLUMN).setCellRenderer(buttonRenderer);
+
+        sensorTable.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int row = sensorTable.rowAtPoint(e.getPoint());
+                int column = sensorTable.columnAtPoint(e.getPoint());
+                if (row < 0) {
+                    return;
+                }
+                Sensor s = sensorTableModel.getSensor(row);
+                if (s == null) {
+                    return; //the placeholder row
+                }
+                if (column == SensorTableModel.TOGGLE_COLUMN) {
+                    setSensorActivity(s, !s.getActive());
+                } else if (column == SensorTableModel.REMOVE_COLUMN) {
+                    removeSensor(s);
+                }
+            }
         });
-
-        repaint();
-        revalidate();
     }
 
     /**
-     * Asks the securityService to change a sensor activation status and then rebuilds the current sensor list
+     * Asks the securityService to change a sensor activation status. The row is updated once the service reports the change.
      * @param sensor The sensor to update
      * @param isActive The sensor's activation status
      */
     private void setSensorActivity(Sensor sensor, Boolean isActive) {
         securityService.changeSensorActivationStatus(sensor, isActive);
-        updateSensorList(sensorListPanel);
     }
 
     /**
-     * Adds a sensor to the securityService and then rebuilds the sensor list
+     * Adds a sensor to the securityService. The row is added once the service reports the new sensor.
      * @param sensor The sensor to add
      */
     private void addSensor(Sensor sensor) {
         if(securityService.getSensors().size() < 4) {
             securityService.addSensor(sensor);
-            updateSensorList(sensorListPanel);
         } else {
             JOptionPane.showMessageDialog(null, "To add more than 4 sensors, please subscribe to our Premium Membership!");
         }
     }
 
     /**
-     * Remove a sensor from the securityService and then rebuild the sensor list
+     * Remove a sensor from the securityService. The row is removed once the service reports it.
      * @param sensor The sensor to remove
      */
     private void removeSensor(Sensor sensor) {
         securityService.removeSensor(sensor);
-        updateSensorList(sensorListPanel);
     }
 
     @Override
@@ -135,6 +171,41 @@ public class SensorPanel extends JPanel implements StatusListener{
     @Override
     public void sensorStatusChanged() {
         // implemented this method from the interface to meet 10th requirement
-        updateSensorList(sensorListPanel);
+        // the sensors reset by arming arrive as sensorChanged, nothing to rebuild here
+    }
+
+    @Override
+    public void sensorAdded(Sensor sensor) {
+        sensorTableModel.sensorAdded(sensor);
+    }
+
+    @Override
+    public void sensorRemoved(Sensor sensor) {
+        sensorTableModel.sensorRemoved(sensor);
+    }
+
+    @Override
+    public void sensorChanged(Sensor sensor) {
+        sensorTableModel.sensorChanged(sensor);
+    }
+
+    /**
+     * Paints button cells with one shared button, instead of one button component per row. Empty
+     * cells, such as those of the placeholder row, are left blank.
+     */
+    private static class ButtonRenderer implements TableCellRenderer {
+        private final JButton button = new JButton();
+        private final JLabel blank = new JLabel();
+
+        @Override
+        public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected,
+                                                       boolean hasFocus, int row, int column) {
+            String text = String.valueOf(value);
+            if (text.isEmpty()) {
+                return blank;
+            }
+            button.setText(text);
+            return button;
+        }
     }
 }
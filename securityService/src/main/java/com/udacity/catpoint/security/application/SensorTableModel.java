@@ -0,0 +1,156 @@
+package com.udacity.catpoint.security.application;
+
+import com.udacity.catpoint.security.data.Sensor;
+
+import javax.swing.table.AbstractTableModel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Table model with one row per sensor, in the natural sort order of the sensors. Adding, removing
+ * or changing a sensor fires an event for just that row, so a JTable repaints only the affected
+ * row, and then only if it is in view. Cells are computed from the Sensor when they are rendered.
+ *
+ * While sensors are still being loaded a placeholder row is shown below them, see
+ * {@link #setLoading}. It has no sensor and its button columns are empty.
+ *
+ * Like any Swing model it must only be used on the event dispatch thread.
+ */
+public class SensorTableModel extends AbstractTableModel {
+
+    public static final int SENSOR_COLUMN = 0;
+    public static final int TOGGLE_COLUMN = 1;
+    public static final int REMOVE_COLUMN = 2;
+
+    private final List<Sensor> sensors = new ArrayList<>();
+    private boolean loading;
+
+    /**
+     * Replaces all rows with the given sensors.
+     */
+    public void setSensors(Collection<Sensor> newSensors) {
+        sensors.clear();
+        sensors.addAll(newSensors);
+        Collections.sort(sensors);
+        fireTableDataChanged();
+    }
+
+    /**
+     * Adds a batch of loaded sensors. Sensors already in the table, for example because they were
+     * reported as added in the meantime, are kept once.
+     */
+    public void sensorsLoaded(Collection<Sensor> loaded) {
+        if (loaded.isEmpty()) {
+            return;
+        }
+        sensors.addAll(loaded);
+        Collections.sort(sensors);
+        //the same sensor sorts next to itself, unless it was renamed since
+        int kept = 1;
+        for (int i = 1; i < sensors.size(); i++) {
+            if (!sensors.get(i).equals(sensors.get(kept - 1))) {
+                sensors.set(kept++, sensors.get(i));
+            }
+        }
+        sensors.subList(kept, sensors.size()).clear();
+        fireTableDataChanged();
+    }
+
+    /**
+     * Shows or hides the placeholder row for sensors that are still being loaded.
+     */
+    public void setLoading(boolean loading) {
+        if (this.loading == loading) {
+            return;
+        }
+        this.loading = loading;
+        int row = sensors.size();
+        if (loading) {
+            fireTableRowsInserted(row, row);
+        } else {
+            fireTableRowsDeleted(row, row);
+        }
+    }
+
+    public boolean isLoading() {
+        return loading;
+    }
+
+    public void sensorAdded(Sensor sensor) {
+        int row = Collections.binarySearch(sensors, sensor);
+        if (row >= 0) {
+            sensors.set(row, sensor);
+            fireTableRowsUpdated(row, row);
+            return;
+        }
+        row = -row - 1;
+        sensors.add(row, sensor);
+        fireTableRowsInserted(row, row);
+    }
+
+    public void sensorRemoved(Sensor sensor) {
+        int row = rowOf(sensor);
+        if (row >= 0) {
+            sensors.remove(row);
+            fireTableRowsDeleted(row, row);
+        }
+    }
+
+    public void sensorChanged(Sensor sensor) {
+        int row = rowOf(sensor);
+        if (row >= 0) {
+            fireTableRowsUpdated(row, row);
+        }
+    }
+
+    /**
+     * @return the sensor shown in the row, or null for the placeholder row
+     */
+    public Sensor getSensor(int row) {
+        return row < sensors.size() ? sensors.get(row) : null;
+    }
+
+    @Override
+    public int getRowCount() {
+        return loading ? sensors.size() + 1 : sensors.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return 3;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return column == SENSOR_COLUMN ? "Sensor" : "";
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        if (row == sensors.size()) {
+            return column == SENSOR_COLUMN ? "Loading sensors..." : "";
+        }
+        Sensor s = sensors.get(row);
+        switch (column) {
+            case SENSOR_COLUMN:
+                return String.format("%s(%s): %s", s.getName(), s.getSensorType().toString(), (s.getActive() ? "Active" : "Inactive"));
+            case TOGGLE_COLUMN:
+                return s.getActive() ? "Deactivate" : "Activate";
+            default:
+                return "Remove Sensor";
+        }
+    }
+
+    /**
+     * Finds the row by sort order, falling back to a scan in case the sensor was renamed since.
+     */
+    private int rowOf(Sensor sensor) {
+        int row = Collections.binarySearch(sensors, sensor);
+        if (row >= 0 && sensors.get(row).equals(sensor)) {
+            return row;
+        }
+        return sensors.indexOf(sensor);
+    }
+}
@@ -1,6 +1,7 @@
 package com.udacity.catpoint.security.application;
 
 import com.udacity.catpoint.security.data.AlarmStatus;
+import com.udacity.catpoint.security.data.Sensor;
 
 /**
  * Identifies a component that should be notified whenever the system status changes
@@ -9,4 +10,22 @@ public interface StatusListener {
     void notify(AlarmStatus status);
     void catDetected(boolean catDetected);
     void sensorStatusChanged();
+
+    /**
+     * A sensor was added to the system.
+     */
+    default void sensorAdded(Sensor sensor) {
+    }
+
+    /**
+     * A sensor was removed from the system.
+     */
+    default void sensorRemoved(Sensor sensor) {
+    }
+
+    /**
+     * The activation status of a sensor changed, or it was updated in some other way.
+     */
+    default void sensorChanged(Sensor sensor) {
+    }
 }
@@ -0,0 +1,483 @@
+package com.udacity.catpoint.security.data;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Repository that keeps all state in memory and persists every change as a small binary record
+ * appended to a memory-mapped log file, so a write costs the same no matter how many sensors exist.
+ *
+ * On startup the latest snapshot is loaded and the log files written after it are replayed.
+ * A background thread periodically writes a fresh snapshot and deletes the log files it covers,
+ * which keeps both the log and the startup time bounded. Many repositories, one per site, can share
+ * a single compactor thread.
+ */
+public class EventLogSecurityRepositoryImpl implements SecurityRepository, AutoCloseable {
+
+    //record types, 0 marks the zero-filled end of a log file
+    private static final byte END_OF_LOG = 0;
+    private static final byte SENSOR_ADDED = 1;
+    private static final byte SENSOR_REMOVED = 2;
+    private static final byte SENSOR_UPDATED = 3;
+    private static final byte ALARM_STATUS_CHANGED = 4;
+    private static final byte ARMING_STATUS_CHANGED = 5;
+
+    //every record is [type:1][payload length:2][payload][crc32 of type, length and payload:4]
+    private static final int RECORD_HEADER_BYTES = 3;
+    private static final int RECORD_TRAILER_BYTES = 4;
+
+    private static final int SNAPSHOT_MAGIC = 0x43505353;
+    private static final byte SNAPSHOT_VERSION = 1;
+    private static final String SNAPSHOT_FILE = "snapshot.bin";
+    private static final String LOG_PREFIX = "events-";
+    private static final String LOG_SUFFIX = ".log";
+
+    public static final long DEFAULT_SNAPSHOT_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(5);
+    public static final long DEFAULT_COMPACTION_THRESHOLD_BYTES = 16L << 20;
+    private static final long MAPPING_CHUNK_BYTES = 1L << 20;
+
+    private final Path directory;
+    private final long compactionThresholdBytes;
+
+    private final SensorStore sensors = new SensorStore();
+    private volatile AlarmStatus alarmStatus = AlarmStatus.NO_ALARM;
+    private volatile ArmingStatus armingStatus = ArmingStatus.DISARMED;
+
+    //writer state, guarded by this
+    private long logGeneration;
+    private FileChannel logChannel;
+    private MappedByteBuffer logBuffer;
+    private long logBufferOffset;
+    private boolean compactionQueued;
+    private final ByteBuffer recordBuffer = ByteBuffer.allocate(RECORD_HEADER_BYTES + SensorCodec.MAX_SENSOR_BYTES + RECORD_TRAILER_BYTES);
+    private final CRC32 crc = new CRC32();
+
+    private final ScheduledExecutorService compactor;
+    private final boolean ownsCompactor;
+    private final ScheduledFuture<?> snapshots;
+    private volatile boolean closed;
+    private final Object snapshotLock = new Object();
+
+    public EventLogSecurityRepositoryImpl(Path directory) {
+        this(directory, DEFAULT_SNAPSHOT_INTERVAL_MILLIS, DEFAULT_COMPACTION_THRESHOLD_BYTES);
+    }
+
+    /**
+     * @param directory Directory holding the snapshot and the log files, created if missing
+     * @param snapshotIntervalMillis How often a snapshot is written in the background
+     * @param compactionThresholdBytes Log size after which a snapshot is written early
+     */
+    public EventLogSecurityRepositoryImpl(Path directory, long snapshotIntervalMillis, long compactionThresholdBytes) {
+        this(directory, snapshotIntervalMillis, compactionThresholdBytes, Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "security-event-log-compactor");
+            t.setDaemon(true);
+            return t;
+        }), true);
+    }
+
+    /**
+     * @param compactor Writes the snapshots in the background; may be shared by any number of
+     *                  repositories and is left running by close
+     */
+    public EventLogSecurityRepositoryImpl(Path directory, long snapshotIntervalMillis, long compactionThresholdBytes,
+                                          ScheduledExecutorService compactor) {
+        this(directory, snapshotIntervalMillis, compactionThresholdBytes, compactor, false);
+    }
+
+    private EventLogSecurityRepositoryImpl(Path directory, long snapshotIntervalMillis, long compactionThresholdBytes,
+                                           ScheduledExecutorService compactor, boolean ownsCompactor) {
+        this.directory = directory;
+        this.compactionThresholdBytes = compactionThresholdBytes;
+        try {
+            Files.createDirectories(directory);
+            long firstGeneration = loadSnapshot();
+            long lastGeneration = firstGeneration - 1;
+            for (long generation : listLogGenerations()) {
+                if (generation < firstGeneration) {
+                    //already covered by the snapshot, left behind by an interrupted compaction
+                    Files.deleteIfExists(logFile(generation));
+                } else {
+                    replayLog(generation);
+                    lastGeneration = generation;
+                }
+            }
+            openLog(lastGeneration + 1);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to open event log in " + directory, e);
+        }
+
+        this.compactor = compactor;
+        this.ownsCompactor = ownsCompactor;
+        this.snapshots = compactor.scheduleWithFixedDelay(this::compactQuietly, snapshotIntervalMillis, snapshotIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public synchronized void addSensor(Sensor sensor) {
+        //logged first, a sensor the log refuses (name too long) must not be kept in memory either
+        appendSensor(SENSOR_ADDED, sensor);
+        sensors.add(sensor);
+    }
+
+    @Override
+    public synchronized void removeSensor(Sensor sensor) {
+        sensors.removeById(sensor.getSensorId());
+        recordBuffer.clear();
+        SensorCodec.writeId(recordBuffer, sensor.getSensorId());
+        append(SENSOR_REMOVED);
+    }
+
+    @Override
+    public synchronized void updateSensor(Sensor sensor) {
+        //logged first, a sensor the log refuses (name too long) must not be kept in memory either
+        appendSensor(SENSOR_UPDATED, sensor);
+        sensors.add(sensor);
+    }
+
+    @Override
+    public synchronized void setAlarmStatus(AlarmStatus alarmStatus) {
+        this.alarmStatus = alarmStatus;
+        recordBuffer.clear();
+        SensorCodec.writeAlarmStatus(recordBuffer, alarmStatus);
+        append(ALARM_STATUS_CHANGED);
+    }
+
+    @Override
+    public synchronized void setArmingStatus(ArmingStatus armingStatus) {
+        this.armingStatus = armingStatus;
+        recordBuffer.clear();
+        SensorCodec.writeArmingStatus(recordBuffer, armingStatus);
+        append(ARMING_STATUS_CHANGED);
+    }
+
+    @Override
+    public synchronized Set<Sensor> getSensors() {
+        //the sorted view is rebuilt rather than changed, so it is a snapshot the caller can iterate freely
+        return sensors.sorted();
+    }
+
+    @Override
+    public synchronized Sensor getSensor(UUID sensorId) {
+        return sensors.get(sensorId);
+    }
+
+    @Override
+    public synchronized boolean hasActiveSensors() {
+        return sensors.hasActiveSensors();
+    }
+
+    @Override
+    public synchronized Set<Sensor> getActiveSensors() {
+        //copied, the caller may iterate it while other threads update sensors
+        return Set.copyOf(sensors.getActiveSensors());
+    }
+
+    @Override
+    public AlarmStatus getAlarmStatus() {
+        return alarmStatus;
+    }
+
+    @Override
+    public ArmingStatus getArmingStatus() {
+        return armingStatus;
+    }
+
+    /**
+     * Writes a snapshot of the current state and deletes all log files it covers. Runs on the
+     * background compactor, but may also be called directly.
+     */
+    public void compact() {
+        synchronized (snapshotLock) {
+            List<Sensor> sensorCopies = new ArrayList<>();
+            AlarmStatus alarmSnapshot;
+            ArmingStatus armingSnapshot;
+            long firstUncoveredGeneration;
+            synchronized (this) {
+                compactionQueued = false;
+                for (Sensor sensor : sensors) {
+                    sensorCopies.add(copyOf(sensor));
+                }
+                alarmSnapshot = alarmStatus;
+                armingSnapshot = armingStatus;
+                //everything from here on goes to a new log that the snapshot does not cover
+                firstUncoveredGeneration = logGeneration + 1;
+                try {
+                    closeLog();
+                    openLog(firstUncoveredGeneration);
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Unable to roll event log", e);
+                }
+            }
+
+            try {
+                writeSnapshot(firstUncoveredGeneration, alarmSnapshot, armingSnapshot, sensorCopies);
+                for (long generation : listLogGenerations()) {
+                    if (generation < firstUncoveredGeneration) {
+                        Files.deleteIfExists(logFile(generation));
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Unable to write event log snapshot", e);
+            }
+        }
+    }
+
+    /**
+     * Stops the background compactor and forces the current log to disk.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        snapshots.cancel(false);
+        if (ownsCompactor) {
+            compactor.shutdown();
+            try {
+                compactor.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        //a shared compactor may still be writing a snapshot, later ones see closed and do nothing
+        synchronized (snapshotLock) {
+            //waited for it
+        }
+        synchronized (this) {
+            try {
+                closeLog();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Unable to close event log", e);
+            }
+        }
+    }
+
+    private void compactQuietly() {
+        synchronized (snapshotLock) {
+            if (closed) {
+                return;
+            }
+            try {
+                compact();
+            } catch (UncheckedIOException e) {
+                // the log is still complete, so nothing is lost; the next run tries again
+            }
+        }
+    }
+
+    private void appendSensor(byte type, Sensor sensor) {
+        recordBuffer.clear();
+        SensorCodec.writeSensor(recordBuffer, sensor);
+        append(type);
+    }
+
+    /**
+     * Appends the payload currently held in recordBuffer to the log as a record of the given type.
+     */
+    private void append(byte type) {
+        recordBuffer.flip();
+        int payloadLength = recordBuffer.remaining();
+        byte[] payload = recordBuffer.array();
+
+        crc.reset();
+        crc.update(type);
+        crc.update(payloadLength >>> 8);
+        crc.update(payloadLength);
+        crc.update(payload, 0, payloadLength);
+
+        ensureLogCapacity(RECORD_HEADER_BYTES + payloadLength + RECORD_TRAILER_BYTES);
+        logBuffer.put(type);
+        logBuffer.putShort((short) payloadLength);
+        logBuffer.put(payload, 0, payloadLength);
+        logBuffer.putInt((int) crc.getValue());
+
+        if (!compactionQueued && logBufferOffset + logBuffer.position() > compactionThresholdBytes) {
+            try {
+                compactor.execute(this::compactQuietly);
+                compactionQueued = true;
+            } catch (RejectedExecutionException e) {
+                // shutting down, the log is replayed on the next start instead
+            }
+        }
+    }
+
+    private void ensureLogCapacity(int bytes) {
+        if (logBuffer.remaining() >= bytes) {
+            return;
+        }
+        //map the next chunk starting exactly where the last record ended, so the log has no gaps
+        long nextOffset = logBufferOffset + logBuffer.position();
+        logBuffer.force();
+        try {
+            logBuffer = logChannel.map(FileChannel.MapMode.READ_WRITE, nextOffset, MAPPING_CHUNK_BYTES);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to grow event log", e);
+        }
+        logBufferOffset = nextOffset;
+    }
+
+    private void openLog(long generation) throws IOException {
+        logGeneration = generation;
+        logChannel = FileChannel.open(logFile(generation),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        logBufferOffset = 0;
+        logBuffer = logChannel.map(FileChannel.MapMode.READ_WRITE, 0, MAPPING_CHUNK_BYTES);
+    }
+
+    private void closeLog() throws IOException {
+        if (logChannel == null || !logChannel.isOpen()) {
+            return;
+        }
+        logBuffer.force();
+        logChannel.close();
+    }
+
+    private void replayLog(long generation) throws IOException {
+        try (FileChannel channel = FileChannel.open(logFile(generation), StandardOpenOption.READ)) {
+            if (channel.size() == 0) {
+                return;
+            }
+            ByteBuffer log = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            while (log.remaining() >= RECORD_HEADER_BYTES) {
+                int start = log.position();
+                byte type = log.get();
+                if (type == END_OF_LOG) {
+                    break;
+                }
+                int payloadLength = Short.toUnsignedInt(log.getShort());
+                if (log.remaining() < payloadLength + RECORD_TRAILER_BYTES) {
+                    break; //torn final record
+                }
+                ByteBuffer record = log.duplicate();
+                record.position(start).limit(start + RECORD_HEADER_BYTES + payloadLength);
+                crc.reset();
+                crc.update(record);
+                ByteBuffer payload = log.slice();
+                payload.limit(payloadLength);
+                log.position(log.position() + payloadLength);
+                if (log.getInt() != (int) crc.getValue()) {
+                    break; //corrupt tail, nothing after it can be trusted
+                }
+                applyRecord(type, payload);
+            }
+        }
+    }
+
+    private void applyRecord(byte type, ByteBuffer payload) {
+        switch (type) {
+            case SENSOR_ADDED, SENSOR_UPDATED -> sensors.add(SensorCodec.readSensor(payload));
+            case SENSOR_REMOVED -> sensors.removeById(SensorCodec.readId(payload));
+            case ALARM_STATUS_CHANGED -> alarmStatus = SensorCodec.readAlarmStatus(payload);
+            case ARMING_STATUS_CHANGED -> armingStatus = SensorCodec.readArmingStatus(payload);
+            default -> throw new IllegalStateException("Unknown event log record type " + type);
+        }
+    }
+
+    /**
+     * Loads the snapshot if there is one.
+     * @return the first log generation that is not already contained in the snapshot
+     */
+    private long loadSnapshot() throws IOException {
+        Path file = directory.resolve(SNAPSHOT_FILE);
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        ByteBuffer snapshot = ByteBuffer.wrap(Files.readAllBytes(file));
+        if (snapshot.remaining() < 4 + 1 + 8 + 1 + 1 + 4 + 4) {
+            throw new IOException("Truncated snapshot " + file);
+        }
+        CRC32 snapshotCrc = new CRC32();
+        snapshotCrc.update(snapshot.array(), 0, snapshot.limit() - 4);
+        if (snapshot.getInt(snapshot.limit() - 4) != (int) snapshotCrc.getValue()) {
+            throw new IOException("Corrupt snapshot " + file);
+        }
+        if (snapshot.getInt() != SNAPSHOT_MAGIC || snapshot.get() != SNAPSHOT_VERSION) {
+            throw new IOException("Unsupported snapshot format " + file);
+        }
+        long firstUncoveredGeneration = snapshot.getLong();
+        alarmStatus = SensorCodec.readAlarmStatus(snapshot);
+        armingStatus = SensorCodec.readArmingStatus(snapshot);
+        int count = snapshot.getInt();
+        for (int i = 0; i < count; i++) {
+            sensors.add(SensorCodec.readSensor(snapshot));
+        }
+        return firstUncoveredGeneration;
+    }
+
+    private void writeSnapshot(long firstUncoveredGeneration, AlarmStatus alarm, ArmingStatus arming,
+                               List<Sensor> sensorCopies) throws IOException {
+        List<byte[]> names = new ArrayList<>(sensorCopies.size());
+        int size = 4 + 1 + 8 + 1 + 1 + 4 + 4;
+        for (Sensor sensor : sensorCopies) {
+            byte[] name = SensorCodec.encodeName(sensor);
+            names.add(name);
+            size += SensorCodec.SENSOR_FIXED_BYTES + name.length;
+        }
+
+        ByteBuffer snapshot = ByteBuffer.allocate(size);
+        snapshot.putInt(SNAPSHOT_MAGIC);
+        snapshot.put(SNAPSHOT_VERSION);
+        snapshot.putLong(firstUncoveredGeneration);
+        SensorCodec.writeAlarmStatus(snapshot, alarm);
+        SensorCodec.writeArmingStatus(snapshot, arming);
+        snapshot.putInt(sensorCopies.size());
+        for (int i = 0; i < sensorCopies.size(); i++) {
+            SensorCodec.writeSensor(snapshot, sensorCopies.get(i), names.get(i));
+        }
+        CRC32 snapshotCrc = new CRC32();
+        snapshotCrc.update(snapshot.array(), 0, snapshot.position());
+        snapshot.putInt((int) snapshotCrc.getValue());
+        snapshot.flip();
+
+        Path tmp = directory.resolve(SNAPSHOT_FILE + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (snapshot.hasRemaining()) {
+                channel.write(snapshot);
+            }
+            channel.force(true);
+        }
+        Files.move(tmp, directory.resolve(SNAPSHOT_FILE), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private List<Long> listLogGenerations() throws IOException {
+        List<Long> generations = new ArrayList<>();
+        try (DirectoryStream<Path> logs = Files.newDirectoryStream(directory, LOG_PREFIX + "*" + LOG_SUFFIX)) {
+            for (Path log : logs) {
+                String name = log.getFileName().toString();
+                generations.add(Long.parseLong(name.substring(LOG_PREFIX.length(), name.length() - LOG_SUFFIX.length()), 16));
+            }
+        }
+        Collections.sort(generations);
+        return generations;
+    }
+
+    private Path logFile(long generation) {
+        return directory.resolve(String.format("%s%016x%s", LOG_PREFIX, generation, LOG_SUFFIX));
+    }
+
+    private static Sensor copyOf(Sensor sensor) {
+        Sensor copy = new Sensor();
+        copy.setSensorId(sensor.getSensorId());
+        copy.setName(sensor.getName());
+        copy.setSensorType(sensor.getSensorType());
+        copy.setActive(sensor.getActive());
+        return copy;
+    }
+}
@@ -1,83 +1,251 @@
 package com.udacity.catpoint.security.data;
 
-import com.google.common.reflect.TypeToken;
 import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import java.lang.reflect.Type;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.List;
 import java.util.Set;
-import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.prefs.BackingStoreException;
 import java.util.prefs.Preferences;
 
 /**
  * Fake repository implementation for demo purposes. Stores state information in local
  * memory and writes it to user preferences between app loads. This implementation is
  * intentionally a little hard to use in unit tests, so watch out!
+ *
+ * By default every change is written straight to the preferences. When constructed with a
+ * write-behind {@link WriteBehindPolicy}, changes are only marked dirty and a background thread
+ * writes them out in batches. Call {@link #close()} (or let the shutdown hook do it) so the
+ * last batch is not lost. A background flush that fails is logged and retried on the next one;
+ * if the changes still cannot be written when closing, close() throws.
+ *
+ * Sensors are stored as JSON unless a {@link SensorFormat} says otherwise. Whichever format is
+ * found is loaded, so switching formats keeps the existing sensors; the other one is removed on
+ * the next write. A preference value holds at most Preferences.MAX_VALUE_LENGTH characters, so
+ * the stored sensors are split over as many numbered values as they need.
+ *
+ * Sensors can also be loaded in the background, so the alarm and arming status are available
+ * right after construction even with many sensors stored. The sensors are then parsed a batch at
+ * a time and handed to {@link #streamSensors} consumers as they come in. Everything else that
+ * touches sensors waits until all of them are loaded, so nothing ever sees or writes a partial set.
  */
-public class PretendDatabaseSecurityRepositoryImpl implements SecurityRepository{
+public class PretendDatabaseSecurityRepositoryImpl implements SecurityRepository, AutoCloseable {
 
-    private Set<Sensor> sensors;
-    private AlarmStatus alarmStatus;
-    private ArmingStatus armingStatus;
+    private final SensorStore sensors = new SensorStore();
+    private volatile AlarmStatus alarmStatus;
+    private volatile ArmingStatus armingStatus;
 
     //preference keys
     private static final String SENSORS = "SENSORS";
+    private static final String SENSORS_BINARY = "SENSORS_BINARY";
     private static final String ALARM_STATUS = "ALARM_STATUS";
     private static final String ARMING_STATUS = "ARMING_STATUS";
+    //number of values a chunked key is split into, absent for a single one
+    private static final String CHUNKS_SUFFIX = "_CHUNKS";
+
+    //bits used to remember which parts of the state still need to be written
+    private static final int SENSORS_DIRTY = 1;
+    private static final int ALARM_STATUS_DIRTY = 1 << 1;
+    private static final int ARMING_STATUS_DIRTY = 1 << 2;
+
+    /** Sensors parsed before they are handed to the stream consumers. */
+    static final int LOAD_BATCH_SIZE = 64;
 
-    private static final Preferences prefs = Preferences.userNodeForPackage(PretendDatabaseSecurityRepositoryImpl.class);
     private static final Gson gson = new Gson(); //used to serialize objects into JSON
+    private static final Logger log = LoggerFactory.getLogger(PretendDatabaseSecurityRepositoryImpl.class);
+
+    private final Preferences prefs;
+    private final WriteBehindPolicy policy;
+    private final SensorFormat format;
+    private final Object flushLock = new Object();
+    private ScheduledExecutorService flusher;
+    private Thread shutdownFlush;
+    private int dirtyFlags;
+    private int dirtyWrites;
+    private boolean earlyFlushQueued;
+    //set while background flushes keep failing, so a failure is logged once rather than on every retry
+    private volatile boolean flushFailing;
+    private final CompletableFuture<Void> sensorsLoaded = new CompletableFuture<>();
+    private final List<Consumer<List<Sensor>>> loadConsumers = new ArrayList<>();
 
     public PretendDatabaseSecurityRepositoryImpl() {
+        this(WriteBehindPolicy.WRITE_THROUGH);
+    }
+
+    public PretendDatabaseSecurityRepositoryImpl(WriteBehindPolicy policy) {
+        this(Preferences.userNodeForPackage(PretendDatabaseSecurityRepositoryImpl.class), policy);
+    }
+
+    /**
+     * @param prefs Preference node holding the state, for example a scratch node for benchmarks
+     */
+    public PretendDatabaseSecurityRepositoryImpl(Preferences prefs, WriteBehindPolicy policy) {
+        this(prefs, policy, SensorFormat.JSON);
+    }
+
+    /**
+     * @param format How sensors are written; BINARY takes roughly a third of the space of JSON
+     */
+    public PretendDatabaseSecurityRepositoryImpl(Preferences prefs, WriteBehindPolicy policy, SensorFormat format) {
+        this(prefs, policy, format, null);
+    }
+
+    /**
+     * @param loadSensorsInBackground If true the constructor only reads the alarm and arming status,
+     *                                and the sensors are loaded on a background thread
+     */
+    public PretendDatabaseSecurityRepositoryImpl(Preferences prefs, WriteBehindPolicy policy, SensorFormat format,
+                                                 boolean loadSensorsInBackground) {
+        this(prefs, policy, format, loadSensorsInBackground ? r -> {
+            Thread t = new Thread(r, "security-repository-loader");
+            t.setDaemon(true);
+            t.start();
+        } : null);
+    }
+
+    /**
+     * @param sensorLoader Runs the sensor load, or null to load the sensors in the constructor
+     */
+    PretendDatabaseSecurityRepositoryImpl(Preferences prefs, WriteBehindPolicy policy, SensorFormat format,
+                                          Executor sensorLoader) {
+        this.prefs = prefs;
+        this.policy = policy;
+        this.format = format;
+
         //load system state from prefs, or else default
         alarmStatus = AlarmStatus.valueOf(prefs.get(ALARM_STATUS, AlarmStatus.NO_ALARM.toString()));
         armingStatus = ArmingStatus.valueOf(prefs.get(ARMING_STATUS, ArmingStatus.DISARMED.toString()));
 
-        //we've serialized our sensor objects for storage, which should be a good warning sign that
-        // this is likely an impractical solution for a real system
-        String sensorString = prefs.get(SENSORS, null);
-        if(sensorString == null) {
-            sensors = new TreeSet<>();
+        if (sensorLoader == null) {
+            loadSensors();
         } else {
-            Type type = new TypeToken<Set<Sensor>>() {
-            }.getType();
-            sensors = gson.fromJson(sensorString, type);
+            sensorLoader.execute(this::loadSensorsQuietly);
+        }
+
+        if (policy.isWriteBehind()) {
+            flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "security-repository-flusher");
+                t.setDaemon(true);
+                return t;
+            });
+            flusher.scheduleWithFixedDelay(this::flushQuietly,
+                    policy.getFlushIntervalMillis(), policy.getFlushIntervalMillis(), TimeUnit.MILLISECONDS);
+            shutdownFlush = new Thread(this::close, "security-repository-shutdown-flush");
+            Runtime.getRuntime().addShutdownHook(shutdownFlush);
         }
     }
 
     @Override
     public void addSensor(Sensor sensor) {
-        sensors.add(sensor);
-        prefs.put(SENSORS, gson.toJson(sensors));
+        awaitSensors();
+        synchronized (this) {
+            sensors.add(sensor);
+            persist(SENSORS_DIRTY);
+        }
     }
 
     @Override
     public void removeSensor(Sensor sensor) {
-        sensors.remove(sensor);
-        prefs.put(SENSORS, gson.toJson(sensors));
+        awaitSensors();
+        synchronized (this) {
+            sensors.remove(sensor);
+            persist(SENSORS_DIRTY);
+        }
     }
 
     @Override
     public void updateSensor(Sensor sensor) {
-        sensors.remove(sensor);
-        sensors.add(sensor);
-        prefs.put(SENSORS, gson.toJson(sensors));
+        awaitSensors();
+        synchronized (this) {
+            sensors.add(sensor);
+            persist(SENSORS_DIRTY);
+        }
     }
 
     @Override
-    public void setAlarmStatus(AlarmStatus alarmStatus) {
+    public synchronized void setAlarmStatus(AlarmStatus alarmStatus) {
         this.alarmStatus = alarmStatus;
-        prefs.put(ALARM_STATUS, this.alarmStatus.toString());
+        persist(ALARM_STATUS_DIRTY);
     }
 
     @Override
-    public void setArmingStatus(ArmingStatus armingStatus) {
+    public synchronized void setArmingStatus(ArmingStatus armingStatus) {
         this.armingStatus = armingStatus;
-        prefs.put(ARMING_STATUS, this.armingStatus.toString());
+        persist(ARMING_STATUS_DIRTY);
     }
 
     @Override
     public Set<Sensor> getSensors() {
-        return sensors;
+        awaitSensors();
+        synchronized (this) {
+            //the sorted view is rebuilt rather than changed, so it is a snapshot the caller can iterate freely
+            return sensors.sorted();
+        }
+    }
+
+    @Override
+    public Sensor getSensor(UUID sensorId) {
+        awaitSensors();
+        synchronized (this) {
+            return sensors.get(sensorId);
+        }
+    }
+
+    @Override
+    public boolean hasActiveSensors() {
+        awaitSensors();
+        synchronized (this) {
+            return sensors.hasActiveSensors();
+        }
+    }
+
+    @Override
+    public Set<Sensor> getActiveSensors() {
+        awaitSensors();
+        synchronized (this) {
+            //copied, the caller may iterate it while other threads update sensors
+            return Set.copyOf(sensors.getActiveSensors());
+        }
+    }
+
+    /**
+     * Hands the sensors loaded so far to the consumer right away, and the rest as they are loaded.
+     */
+    @Override
+    public CompletableFuture<Void> streamSensors(Consumer<List<Sensor>> batches) {
+        synchronized (this) {
+            if (!sensors.isEmpty()) {
+                batches.accept(List.copyOf(sensors));
+            }
+            if (!sensorsLoaded.isDone()) {
+                loadConsumers.add(batches);
+            }
+        }
+        return sensorsLoaded.copy();
+    }
+
+    /**
+     * @return true once all sensors were loaded
+     */
+    public boolean isSensorLoadComplete() {
+        return sensorsLoaded.isDone();
     }
 
     @Override
@@ -89,4 +257,279 @@ public class PretendDatabaseSecurityRepositoryImpl implements SecurityRepository
     public ArmingStatus getArmingStatus() {
         return armingStatus;
     }
+
+    /**
+     * Writes all pending changes to the preferences. Does nothing in write-through mode,
+     * where there is never anything pending.
+     */
+    public void flush() {
+        synchronized (flushLock) {
+            int flags;
+            List<Sensor> sensorSnapshot = null;
+            AlarmStatus alarmSnapshot;
+            ArmingStatus armingSnapshot;
+            synchronized (this) {
+                flags = dirtyFlags;
+                dirtyFlags = 0;
+                dirtyWrites = 0;
+                earlyFlushQueued = false;
+                if ((flags & SENSORS_DIRTY) != 0) {
+                    sensorSnapshot = new ArrayList<>(sensors);
+                }
+                alarmSnapshot = alarmStatus;
+                armingSnapshot = armingStatus;
+            }
+            if (flags == 0) {
+                return;
+            }
+
+            //serialization happens outside the repository lock so writers are never held up by it
+            try {
+                if (sensorSnapshot != null) {
+                    storeSensors(sensorSnapshot);
+                }
+                if ((flags & ALARM_STATUS_DIRTY) != 0) {
+                    prefs.put(ALARM_STATUS, alarmSnapshot.toString());
+                }
+                if ((flags & ARMING_STATUS_DIRTY) != 0) {
+                    prefs.put(ARMING_STATUS, armingSnapshot.toString());
+                }
+                if (policy.isSyncOnFlush()) {
+                    prefs.flush();
+                }
+            } catch (BackingStoreException | RuntimeException e) {
+                //keep the changes around so the next flush tries again
+                synchronized (this) {
+                    dirtyFlags |= flags;
+                }
+                throw new IllegalStateException("Unable to write security state to preferences", e);
+            }
+        }
+    }
+
+    /**
+     * Stops the background flusher and writes any pending changes.
+     * @throws IllegalStateException if the pending changes could not be written
+     */
+    @Override
+    public void close() {
+        if (flusher == null) {
+            return;
+        }
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(policy.getFlushIntervalMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (Thread.currentThread() != shutdownFlush) {
+            //closed normally, the hook is no longer needed and would keep this repository reachable
+            try {
+                Runtime.getRuntime().removeShutdownHook(shutdownFlush);
+            } catch (IllegalStateException e) {
+                //already shutting down, the hook runs anyway
+            }
+        }
+        try {
+            flush();
+        } catch (IllegalStateException e) {
+            log.error("Closing with security state changes that could not be written", e);
+            throw e;
+        }
+    }
+
+    /**
+     * Stores the given part of the state right away, or marks it dirty when running write-behind.
+     * Callers must hold the repository lock.
+     */
+    private void persist(int flags) {
+        if (!policy.isWriteBehind()) {
+            if ((flags & SENSORS_DIRTY) != 0) {
+                storeSensors(sensors);
+            }
+            if ((flags & ALARM_STATUS_DIRTY) != 0) {
+                prefs.put(ALARM_STATUS, alarmStatus.toString());
+            }
+            if ((flags & ARMING_STATUS_DIRTY) != 0) {
+                prefs.put(ARMING_STATUS, armingStatus.toString());
+            }
+            return;
+        }
+
+        dirtyFlags |= flags;
+        dirtyWrites++;
+        if (dirtyWrites >= policy.getDirtyThreshold() && !earlyFlushQueued) {
+            try {
+                flusher.execute(this::flushQuietly);
+                earlyFlushQueued = true;
+            } catch (RejectedExecutionException e) {
+                // already closing, the final flush in close() picks these changes up
+            }
+        }
+    }
+
+    /**
+     * Reads whichever sensor format is stored, a batch at a time.
+     */
+    private void loadSensors() {
+        //we've serialized our sensor objects for storage, which should be a good warning sign that
+        // this is likely an impractical solution for a real system
+        try {
+            String sensorBytes = getChunked(SENSORS_BINARY);
+            String sensorString = getChunked(SENSORS);
+            if (sensorBytes != null && (sensorString == null || format == SensorFormat.BINARY)) {
+                SensorCodec.decodeSensors(Base64.getDecoder().decode(sensorBytes), LOAD_BATCH_SIZE, this::addLoadedSensors);
+            } else if (sensorString != null) {
+                readJsonSensors(sensorString);
+            }
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                loadConsumers.clear();
+            }
+            sensorsLoaded.completeExceptionally(e);
+            throw e;
+        }
+        synchronized (this) {
+            loadConsumers.clear();
+        }
+        sensorsLoaded.complete(null);
+    }
+
+    private void loadSensorsQuietly() {
+        try {
+            loadSensors();
+        } catch (RuntimeException e) {
+            // kept in sensorsLoaded, every sensor operation reports it from now on
+        }
+    }
+
+    /**
+     * Parses the JSON array one sensor at a time, instead of building the whole set in one go.
+     */
+    private void readJsonSensors(String sensorString) {
+        try (JsonReader reader = new JsonReader(new StringReader(sensorString))) {
+            reader.beginArray();
+            List<Sensor> batch = new ArrayList<>(LOAD_BATCH_SIZE);
+            while (reader.hasNext()) {
+                batch.add(gson.fromJson(reader, Sensor.class));
+                if (batch.size() == LOAD_BATCH_SIZE) {
+                    addLoadedSensors(batch);
+                    batch = new ArrayList<>(LOAD_BATCH_SIZE);
+                }
+            }
+            reader.endArray();
+            if (!batch.isEmpty()) {
+                addLoadedSensors(batch);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private synchronized void addLoadedSensors(List<Sensor> batch) {
+        sensors.addAll(batch);
+        for (Consumer<List<Sensor>> consumer : loadConsumers) {
+            consumer.accept(batch);
+        }
+    }
+
+    /**
+     * Waits until all sensors are loaded.
+     * @throws IllegalStateException if they could not be loaded
+     */
+    private void awaitSensors() {
+        try {
+            sensorsLoaded.join();
+        } catch (CompletionException e) {
+            throw new IllegalStateException("Unable to load sensors from preferences", e.getCause());
+        }
+    }
+
+    private void storeSensors(Collection<Sensor> sensorsToStore) {
+        if (format == SensorFormat.BINARY) {
+            //the same Base64 putByteArray writes, so a single chunk reads like one written by it
+            putChunked(SENSORS_BINARY, Base64.getEncoder().encodeToString(SensorCodec.encodeSensors(sensorsToStore)));
+            removeChunked(SENSORS);
+        } else {
+            putChunked(SENSORS, gson.toJson(sensorsToStore));
+            removeChunked(SENSORS_BINARY);
+        }
+    }
+
+    /**
+     * Stores the value under the key, split over the key and numbered keys after it where it is
+     * longer than Preferences.MAX_VALUE_LENGTH. Chunks left over from a longer value are removed.
+     */
+    private void putChunked(String key, String value) {
+        int previousChunks = prefs.getInt(key + CHUNKS_SUFFIX, 1);
+        int chunks = 0;
+        int start = 0;
+        do {
+            int end = Math.min(value.length(), start + Preferences.MAX_VALUE_LENGTH);
+            if (end < value.length() && Character.isHighSurrogate(value.charAt(end - 1))) {
+                //keep surrogate pairs together, half of one is not a valid string to store
+                end--;
+            }
+            prefs.put(chunkKey(key, chunks++), value.substring(start, end));
+            start = end;
+        } while (start < value.length());
+        if (chunks > 1) {
+            prefs.putInt(key + CHUNKS_SUFFIX, chunks);
+        } else {
+            prefs.remove(key + CHUNKS_SUFFIX);
+        }
+        for (int chunk = chunks; chunk < previousChunks; chunk++) {
+            prefs.remove(chunkKey(key, chunk));
+        }
+    }
+
+    /**
+     * @return the value stored by putChunked, or null if there is none
+     * @throws IllegalStateException if a chunk is missing
+     */
+    private String getChunked(String key) {
+        String first = prefs.get(key, null);
+        int chunks = prefs.getInt(key + CHUNKS_SUFFIX, 1);
+        if (first == null || chunks == 1) {
+            return first;
+        }
+        StringBuilder value = new StringBuilder(chunks * Preferences.MAX_VALUE_LENGTH).append(first);
+        for (int chunk = 1; chunk < chunks; chunk++) {
+            String part = prefs.get(chunkKey(key, chunk), null);
+            if (part == null) {
+                throw new IllegalStateException("Chunk " + chunk + " of " + key + " is missing");
+            }
+            value.append(part);
+        }
+        return value.toString();
+    }
+
+    private void removeChunked(String key) {
+        int chunks = prefs.getInt(key + CHUNKS_SUFFIX, 1);
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            prefs.remove(chunkKey(key, chunk));
+        }
+        prefs.remove(key + CHUNKS_SUFFIX);
+    }
+
+    private static String chunkKey(String key, int chunk) {
+        return chunk == 0 ? key : key + "." + chunk;
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+            if (flushFailing) {
+                flushFailing = false;
+                log.info("Security state is written to preferences again");
+            }
+        } catch (IllegalStateException e) {
+            // changes stay dirty and are retried on the next scheduled flush
+            if (!flushFailing) {
+                flushFailing = true;
+                log.warn("Unable to write security state to preferences, retrying every {} ms",
+                        policy.getFlushIntervalMillis(), e);
+            }
+        }
+    }
 }
@@ -1,6 +1,11 @@
 package com.udacity.catpoint.security.data;
 
+import java.util.List;
 import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 /**
  * Interface showing the methods our security repository will need to support
@@ -15,5 +20,36 @@ public interface SecurityRepository {
     AlarmStatus getAlarmStatus();
     ArmingStatus getArmingStatus();
 
+    /**
+     * @return true if at least one sensor is active. Implementations that track this
+     * incrementally should override it, the default looks at every sensor.
+     */
+    default boolean hasActiveSensors() {
+        return getSensors().stream().anyMatch(Sensor::getActive);
+    }
 
+    /**
+     * @return the sensor with the given id, or null if there is none. The default looks at every sensor.
+     */
+    default Sensor getSensor(UUID sensorId) {
+        return getSensors().stream().filter(s -> s.getSensorId().equals(sensorId)).findFirst().orElse(null);
+    }
+
+    /**
+     * @return the sensors that are currently active
+     */
+    default Set<Sensor> getActiveSensors() {
+        return getSensors().stream().filter(Sensor::getActive).collect(Collectors.toSet());
+    }
+
+    /**
+     * Hands all sensors to the consumer, a batch at a time as they become available, for
+     * repositories that load their sensors in the background. The default passes the whole set
+     * at once. The consumer may be called on a loading thread and must not block.
+     * @return future completing once every sensor was handed over
+     */
+    default CompletableFuture<Void> streamSensors(Consumer<List<Sensor>> batches) {
+        batches.accept(List.copyOf(getSensors()));
+        return CompletableFuture.completedFuture(null);
+    }
 }
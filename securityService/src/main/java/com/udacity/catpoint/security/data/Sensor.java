@@ -1,8 +1,5 @@
 package com.udacity.catpoint.security.data;
 
-
-import com.google.common.collect.ComparisonChain;
-
 import java.util.Objects;
 import java.util.UUID;
 
@@ -71,10 +68,12 @@ public class Sensor implements Comparable<Sensor> {
 
     @Override
     public int compareTo(Sensor o) {
-        return ComparisonChain.start()
-                .compare(this.name, o.name)
-                .compare(this.sensorType.toString(), o.sensorType.toString())
-                .compare(this.sensorId, o.sensorId)
-                .result();
+        //plain comparisons instead of a ComparisonChain, this runs for every sort and tree lookup
+        int result = this.name.compareTo(o.name);
+        if (result == 0) {
+            //SensorType does not override toString, so its name gives the same order
+            result = this.sensorType.name().compareTo(o.sensorType.name());
+        }
+        return result != 0 ? result : this.sensorId.compareTo(o.sensorId);
     }
 }
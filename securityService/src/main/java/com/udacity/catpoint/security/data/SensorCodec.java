@@ -0,0 +1,175 @@
+package com.udacity.catpoint.security.data;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Compact binary encoding of sensors and the system state, used instead of reflective JSON.
+ *
+ * A sensor is its id as two big endian longs, the ordinals of its type and of its active flag as
+ * one byte each, and its name as a two byte length followed by that many bytes of UTF-8; 20 bytes
+ * plus the name. Alarm and arming status are a single ordinal byte each. None of this changes
+ * without bumping VERSION: the ordinals must keep their meaning, so new enum constants go last.
+ *
+ * {@link #encodeSensors} wraps a whole list with a version byte and a count, for storage on its
+ * own. The event log writes single sensors into records and snapshots that carry their own
+ * version.
+ */
+public final class SensorCodec {
+
+    public static final byte VERSION = 1;
+    public static final int MAX_NAME_BYTES = 1024;
+    /** Bytes of a sensor apart from its name. */
+    public static final int SENSOR_FIXED_BYTES = 16 + 1 + 1 + 2;
+    public static final int MAX_SENSOR_BYTES = SENSOR_FIXED_BYTES + MAX_NAME_BYTES;
+
+    private static final AlarmStatus[] ALARM_STATUSES = AlarmStatus.values();
+    private static final ArmingStatus[] ARMING_STATUSES = ArmingStatus.values();
+    private static final SensorType[] SENSOR_TYPES = SensorType.values();
+
+    private SensorCodec() {
+    }
+
+    /**
+     * @return the versioned encoding of all the sensors
+     */
+    public static byte[] encodeSensors(Collection<Sensor> sensors) {
+        List<byte[]> names = new ArrayList<>(sensors.size());
+        int size = 1 + 4;
+        for (Sensor sensor : sensors) {
+            byte[] name = encodeName(sensor);
+            names.add(name);
+            size += SENSOR_FIXED_BYTES + name.length;
+        }
+        ByteBuffer out = ByteBuffer.allocate(size);
+        out.put(VERSION);
+        out.putInt(sensors.size());
+        int i = 0;
+        for (Sensor sensor : sensors) {
+            writeSensor(out, sensor, names.get(i++));
+        }
+        return out.array();
+    }
+
+    /**
+     * @throws IllegalArgumentException if the data is of an unknown version, truncated or corrupt
+     */
+    public static List<Sensor> decodeSensors(byte[] data) {
+        List<Sensor> sensors = new ArrayList<>();
+        decodeSensors(data, Integer.MAX_VALUE, sensors::addAll);
+        return sensors;
+    }
+
+    /**
+     * Decodes the sensors a batch at a time, so the first ones can be used before the rest are
+     * decoded. Batches passed on before a problem was found stay valid.
+     * @param batchSize Maximum number of sensors handed to the consumer at once
+     * @throws IllegalArgumentException if the data is of an unknown version, truncated or corrupt
+     */
+    public static void decodeSensors(byte[] data, int batchSize, Consumer<List<Sensor>> batches) {
+        ByteBuffer in = ByteBuffer.wrap(data);
+        try {
+            byte version = in.get();
+            if (version != VERSION) {
+                throw new IllegalArgumentException("Unsupported sensor encoding version " + version);
+            }
+            int count = in.getInt();
+            //every sensor takes at least its fixed bytes, which bounds what a corrupt count can allocate
+            if (count < 0 || count > in.remaining() / SENSOR_FIXED_BYTES) {
+                throw new IllegalArgumentException("Invalid sensor count " + count);
+            }
+            while (count > 0) {
+                int size = Math.min(count, batchSize);
+                List<Sensor> batch = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    batch.add(readSensor(in));
+                }
+                count -= size;
+                batches.accept(batch);
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated sensor encoding", e);
+        }
+    }
+
+    /**
+     * @return the UTF-8 bytes of the sensor's name
+     * @throws IllegalArgumentException if the name is longer than MAX_NAME_BYTES
+     */
+    public static byte[] encodeName(Sensor sensor) {
+        byte[] name = sensor.getName() == null ? new byte[0] : sensor.getName().getBytes(StandardCharsets.UTF_8);
+        if (name.length > MAX_NAME_BYTES) {
+            throw new IllegalArgumentException("Sensor name is longer than " + MAX_NAME_BYTES + " bytes");
+        }
+        return name;
+    }
+
+    public static void writeSensor(ByteBuffer out, Sensor sensor) {
+        writeSensor(out, sensor, encodeName(sensor));
+    }
+
+    /**
+     * Writes the sensor with a name already encoded by {@link #encodeName}, for callers that had
+     * to encode it anyway to know the size.
+     */
+    public static void writeSensor(ByteBuffer out, Sensor sensor, byte[] name) {
+        writeId(out, sensor.getSensorId());
+        out.put((byte) sensor.getSensorType().ordinal());
+        out.put((byte) (Boolean.TRUE.equals(sensor.getActive()) ? 1 : 0));
+        out.putShort((short) name.length);
+        out.put(name);
+    }
+
+    public static Sensor readSensor(ByteBuffer in) {
+        Sensor sensor = new Sensor();
+        sensor.setSensorId(readId(in));
+        sensor.setSensorType(SENSOR_TYPES[checkOrdinal(in.get(), SENSOR_TYPES.length, "sensor type")]);
+        sensor.setActive(in.get() != 0);
+        int length = Short.toUnsignedInt(in.getShort());
+        if (length > MAX_NAME_BYTES) {
+            throw new IllegalArgumentException("Sensor name is longer than " + MAX_NAME_BYTES + " bytes");
+        }
+        byte[] name = new byte[length];
+        in.get(name);
+        sensor.setName(new String(name, StandardCharsets.UTF_8));
+        return sensor;
+    }
+
+    public static void writeId(ByteBuffer out, UUID id) {
+        out.putLong(id.getMostSignificantBits());
+        out.putLong(id.getLeastSignificantBits());
+    }
+
+    public static UUID readId(ByteBuffer in) {
+        return new UUID(in.getLong(), in.getLong());
+    }
+
+    public static void writeAlarmStatus(ByteBuffer out, AlarmStatus status) {
+        out.put((byte) status.ordinal());
+    }
+
+    public static AlarmStatus readAlarmStatus(ByteBuffer in) {
+        return ALARM_STATUSES[checkOrdinal(in.get(), ALARM_STATUSES.length, "alarm status")];
+    }
+
+    public static void writeArmingStatus(ByteBuffer out, ArmingStatus status) {
+        out.put((byte) status.ordinal());
+    }
+
+    public static ArmingStatus readArmingStatus(ByteBuffer in) {
+        return ARMING_STATUSES[checkOrdinal(in.get(), ARMING_STATUSES.length, "arming status")];
+    }
+
+    private static int checkOrdinal(byte ordinal, int count, String what) {
+        if (ordinal < 0 || ordinal >= count) {
+            throw new IllegalArgumentException("Unknown " + what + " " + ordinal);
+        }
+        return ordinal;
+    }
+}
@@ -0,0 +1,11 @@
+package com.udacity.catpoint.security.data;
+
+/**
+ * How PretendDatabaseSecurityRepositoryImpl stores the sensors in the user preferences.
+ */
+public enum SensorFormat {
+    /** Reflective JSON through Gson, readable but large and slow. This is how sensors always used to be stored. */
+    JSON,
+    /** The versioned binary encoding of {@link SensorCodec}, about a third of the size. */
+    BINARY
+}
@@ -0,0 +1,195 @@
+package com.udacity.catpoint.security.data;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.TreeSet;
+import java.util.UUID;
+
+/**
+ * Set of sensors indexed by sensor id. Lookups, adds, removes and updates are hash operations,
+ * and the store keeps running counts of active sensors, overall and per SensorType, so asking
+ * whether anything is active does not require looking at every sensor.
+ *
+ * Iteration is in the natural (name) order of the sensors. The sorted view behind it is only
+ * rebuilt the first time it is needed after a sensor was added, removed or renamed.
+ *
+ * Since sensors are mutable, the store remembers the activation state it last saw for each one.
+ * Changes made directly on a Sensor are picked up the next time it is passed to {@link #add}.
+ */
+public class SensorStore extends AbstractSet<Sensor> {
+
+    private final Map<UUID, Entry> entries = new HashMap<>();
+    private final Set<Sensor> activeSensors = new HashSet<>();
+    private final int[] sensorsByType = new int[SensorType.values().length];
+    private final int[] activeByType = new int[SensorType.values().length];
+    private volatile NavigableSet<Sensor> sortedView = Collections.emptyNavigableSet();
+    private volatile boolean sortedViewStale;
+
+    /**
+     * Adds the sensor, or refreshes the stored state if a sensor with the same id is already present.
+     * @return true if the sensor was not in the store before
+     */
+    @Override
+    public boolean add(Sensor sensor) {
+        boolean active = Boolean.TRUE.equals(sensor.getActive());
+        Entry entry = entries.get(sensor.getSensorId());
+        if (entry == null) {
+            entries.put(sensor.getSensorId(), new Entry(sensor, active));
+            sensorsByType[sensor.getSensorType().ordinal()]++;
+            if (active) {
+                markActive(sensor);
+            }
+            sortedViewStale = true;
+            return true;
+        }
+
+        if (entry.sensor != sensor || entry.type != sensor.getSensorType() || !entry.name.equals(String.valueOf(sensor.getName()))) {
+            //whatever the view sorts by may have changed
+            sortedViewStale = true;
+        }
+        if (entry.active) {
+            markInactive(entry.sensor, entry.type);
+        }
+        sensorsByType[entry.type.ordinal()]--;
+        entry.refresh(sensor, active);
+        sensorsByType[entry.type.ordinal()]++;
+        if (active) {
+            markActive(sensor);
+        }
+        return false;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        return o instanceof Sensor && removeById(((Sensor) o).getSensorId()) != null;
+    }
+
+    /**
+     * Removes the sensor with the given id.
+     * @return the removed sensor, or null if there was none
+     */
+    public Sensor removeById(UUID sensorId) {
+        Entry entry = entries.remove(sensorId);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.active) {
+            markInactive(entry.sensor, entry.type);
+        }
+        sensorsByType[entry.type.ordinal()]--;
+        sortedViewStale = true;
+        return entry.sensor;
+    }
+
+    public Sensor get(UUID sensorId) {
+        Entry entry = entries.get(sensorId);
+        return entry == null ? null : entry.sensor;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof Sensor && entries.containsKey(((Sensor) o).getSensorId());
+    }
+
+    @Override
+    public int size() {
+        return entries.size();
+    }
+
+    @Override
+    public void clear() {
+        entries.clear();
+        activeSensors.clear();
+        Arrays.fill(sensorsByType, 0);
+        Arrays.fill(activeByType, 0);
+        sortedViewStale = true;
+    }
+
+    public boolean hasActiveSensors() {
+        return !activeSensors.isEmpty();
+    }
+
+    public int getActiveCount() {
+        return activeSensors.size();
+    }
+
+    public int getActiveCount(SensorType sensorType) {
+        return activeByType[sensorType.ordinal()];
+    }
+
+    public int getCount(SensorType sensorType) {
+        return sensorsByType[sensorType.ordinal()];
+    }
+
+    /**
+     * @return read-only view of the sensors that are currently active, in no particular order
+     */
+    public Set<Sensor> getActiveSensors() {
+        return Collections.unmodifiableSet(activeSensors);
+    }
+
+    /**
+     * @return read-only, name-sorted view of all sensors
+     */
+    public NavigableSet<Sensor> sorted() {
+        if (sortedViewStale) {
+            sortedViewStale = false;
+            TreeSet<Sensor> view = new TreeSet<>();
+            for (Entry entry : entries.values()) {
+                view.add(entry.sensor);
+            }
+            sortedView = Collections.unmodifiableNavigableSet(view);
+        }
+        return sortedView;
+    }
+
+    @Override
+    public Iterator<Sensor> iterator() {
+        return sorted().iterator();
+    }
+
+    @Override
+    public Spliterator<Sensor> spliterator() {
+        //reports SORTED, which lets stream().sorted() skip the sort entirely
+        return sorted().spliterator();
+    }
+
+    private void markActive(Sensor sensor) {
+        activeSensors.add(sensor);
+        activeByType[sensor.getSensorType().ordinal()]++;
+    }
+
+    private void markInactive(Sensor sensor, SensorType type) {
+        activeSensors.remove(sensor);
+        activeByType[type.ordinal()]--;
+    }
+
+    /**
+     * What the store last saw of a sensor, used to keep the counters right when the sensor is updated.
+     */
+    private static class Entry {
+        private Sensor sensor;
+        private boolean active;
+        private SensorType type;
+        private String name;
+
+        private Entry(Sensor sensor, boolean active) {
+            refresh(sensor, active);
+        }
+
+        private void refresh(Sensor sensor, boolean active) {
+            this.sensor = sensor;
+            this.active = active;
+            this.type = sensor.getSensorType();
+            this.name = String.valueOf(sensor.getName());
+        }
+    }
+}
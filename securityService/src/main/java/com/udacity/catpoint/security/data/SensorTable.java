@@ -0,0 +1,230 @@
+package com.udacity.catpoint.security.data;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.UUID;
+
+/**
+ * Compact table of sensors, laid out as parallel arrays indexed by a small int per sensor: the two
+ * halves of the sensor id, the SensorType ordinal as a byte and one bit per sensor for whether it
+ * is active. A sensor is found from its id through an open addressing index over the id halves, so
+ * neither lookups nor activation changes allocate, and a million sensors take a few tens of
+ * megabytes instead of a UUID, a Boolean and a map entry each.
+ *
+ * The Sensor objects stay the view of a sensor for the UI and for serialization. The table keeps
+ * the one it was given for each sensor and updates its active flag along with the bit.
+ *
+ * Indexes of removed sensors are handed out again to sensors added later. The table is thread-safe.
+ */
+public class SensorTable {
+
+    private static final SensorType[] TYPES = SensorType.values();
+    private static final int INITIAL_CAPACITY = 64;
+    private static final long HASH_MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+    //per sensor index
+    private long[] mostSignificant = new long[INITIAL_CAPACITY];
+    private long[] leastSignificant = new long[INITIAL_CAPACITY];
+    private byte[] types = new byte[INITIAL_CAPACITY];
+    private Sensor[] sensors = new Sensor[INITIAL_CAPACITY];
+    private final BitSet used = new BitSet();
+    private final BitSet active = new BitSet();
+    private int firstFree;
+
+    //id hash slot -> sensor index + 1, 0 if the slot is empty
+    private int[] slots = new int[INITIAL_CAPACITY * 2];
+
+    private int size;
+    private int activeCount;
+    private final int[] activeByType = new int[TYPES.length];
+
+    /**
+     * Adds the sensor, or refreshes type, active flag and view if a sensor with the same id is present.
+     * @return the index of the sensor
+     */
+    public synchronized int add(Sensor sensor) {
+        UUID id = sensor.getSensorId();
+        boolean sensorActive = Boolean.TRUE.equals(sensor.getActive());
+        long msb = id.getMostSignificantBits();
+        long lsb = id.getLeastSignificantBits();
+        int index = find(msb, lsb);
+        if (index < 0) {
+            if (2 * (size + 1) > slots.length) {
+                rehash(slots.length * 2);
+            }
+            index = used.nextClearBit(firstFree);
+            firstFree = index + 1;
+            if (index == sensors.length) {
+                growColumns(sensors.length * 2);
+            }
+            used.set(index);
+            mostSignificant[index] = msb;
+            leastSignificant[index] = lsb;
+            insertSlot(msb, lsb, index);
+            size++;
+        } else {
+            //counted under the type it had before
+            setBit(index, false);
+        }
+        sensors[index] = sensor;
+        types[index] = (byte) sensor.getSensorType().ordinal();
+        setBit(index, sensorActive);
+        return index;
+    }
+
+    /**
+     * @return true if the sensor was in the table
+     */
+    public synchronized boolean remove(UUID sensorId) {
+        int index = find(sensorId.getMostSignificantBits(), sensorId.getLeastSignificantBits());
+        if (index < 0) {
+            return false;
+        }
+        setBit(index, false);
+        deleteSlot(index);
+        used.clear(index);
+        sensors[index] = null;
+        firstFree = Math.min(firstFree, index);
+        size--;
+        return true;
+    }
+
+    /**
+     * @return the index of the sensor with the given id, or -1 if there is none
+     */
+    public synchronized int indexOf(long mostSignificantBits, long leastSignificantBits) {
+        return find(mostSignificantBits, leastSignificantBits);
+    }
+
+    public int indexOf(UUID sensorId) {
+        return indexOf(sensorId.getMostSignificantBits(), sensorId.getLeastSignificantBits());
+    }
+
+    /**
+     * @return the view of the sensor at the index, null if the index is not in use
+     */
+    public synchronized Sensor getSensor(int index) {
+        return index >= 0 && index < sensors.length ? sensors[index] : null;
+    }
+
+    public synchronized SensorType getSensorType(int index) {
+        checkIndex(index);
+        return TYPES[types[index]];
+    }
+
+    public synchronized boolean isActive(int index) {
+        checkIndex(index);
+        return active.get(index);
+    }
+
+    /**
+     * Sets the active bit of the sensor at the index and the active flag of its view.
+     * @return whether the sensor was active before
+     */
+    public synchronized boolean setActive(int index, boolean value) {
+        checkIndex(index);
+        boolean was = setBit(index, value);
+        sensors[index].setActive(value);
+        return was;
+    }
+
+    /**
+     * @return the index of the first active sensor at or after fromIndex, -1 if there is none
+     */
+    public synchronized int nextActive(int fromIndex) {
+        return active.nextSetBit(fromIndex);
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized int getActiveCount() {
+        return activeCount;
+    }
+
+    public synchronized int getActiveCount(SensorType type) {
+        return activeByType[type.ordinal()];
+    }
+
+    private boolean setBit(int index, boolean value) {
+        boolean was = active.get(index);
+        if (was != value) {
+            active.set(index, value);
+            activeCount += value ? 1 : -1;
+            activeByType[types[index]] += value ? 1 : -1;
+        }
+        return was;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || !used.get(index)) {
+            throw new IllegalArgumentException("No sensor at index " + index);
+        }
+    }
+
+    private int find(long msb, long lsb) {
+        int mask = slots.length - 1;
+        for (int i = slot(msb, lsb, mask); slots[i] != 0; i = (i + 1) & mask) {
+            int index = slots[i] - 1;
+            if (mostSignificant[index] == msb && leastSignificant[index] == lsb) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    private void insertSlot(long msb, long lsb, int index) {
+        int mask = slots.length - 1;
+        int i = slot(msb, lsb, mask);
+        while (slots[i] != 0) {
+            i = (i + 1) & mask;
+        }
+        slots[i] = index + 1;
+    }
+
+    /**
+     * Empties the slot of the sensor index and shifts later entries of the same probe run back into
+     * the gap, so lookups never need to skip over deleted slots.
+     */
+    private void deleteSlot(int removed) {
+        int mask = slots.length - 1;
+        int gap = slot(mostSignificant[removed], leastSignificant[removed], mask);
+        while (slots[gap] != removed + 1) {
+            gap = (gap + 1) & mask;
+        }
+        slots[gap] = 0;
+        for (int i = (gap + 1) & mask; slots[i] != 0; i = (i + 1) & mask) {
+            int index = slots[i] - 1;
+            int home = slot(mostSignificant[index], leastSignificant[index], mask);
+            //move the entry if its home slot is not between the gap and where it sits now
+            if (((i - home) & mask) >= ((i - gap) & mask)) {
+                slots[gap] = slots[i];
+                slots[i] = 0;
+                gap = i;
+            }
+        }
+    }
+
+    private void rehash(int capacity) {
+        int[] old = slots;
+        slots = new int[capacity];
+        for (int entry : old) {
+            if (entry != 0) {
+                insertSlot(mostSignificant[entry - 1], leastSignificant[entry - 1], entry - 1);
+            }
+        }
+    }
+
+    private void growColumns(int capacity) {
+        mostSignificant = Arrays.copyOf(mostSignificant, capacity);
+        leastSignificant = Arrays.copyOf(leastSignificant, capacity);
+        types = Arrays.copyOf(types, capacity);
+        sensors = Arrays.copyOf(sensors, capacity);
+    }
+
+    private static int slot(long msb, long lsb, int mask) {
+        long h = (msb ^ lsb) * HASH_MULTIPLIER;
+        return (int) (h >>> 32) & mask;
+    }
+}
@@ -0,0 +1,61 @@
+package com.udacity.catpoint.security.data;
+
+/**
+ * Describes when PretendDatabaseSecurityRepositoryImpl writes its state to user preferences.
+ *
+ * In write-through mode every change is serialized and stored right away, which is simple but
+ * re-encodes the whole sensor set on each call. In write-behind mode changes are only marked as
+ * dirty in memory and a background thread stores them once the flush interval has passed or
+ * enough changes have piled up, whichever happens first.
+ */
+public class WriteBehindPolicy {
+
+    /** Store every change immediately. This is how the repository always used to behave. */
+    public static final WriteBehindPolicy WRITE_THROUGH = new WriteBehindPolicy(false, 0, 1, false);
+
+    private final boolean writeBehind;
+    private final long flushIntervalMillis;
+    private final int dirtyThreshold;
+    private final boolean syncOnFlush;
+
+    private WriteBehindPolicy(boolean writeBehind, long flushIntervalMillis, int dirtyThreshold, boolean syncOnFlush) {
+        this.writeBehind = writeBehind;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.dirtyThreshold = dirtyThreshold;
+        this.syncOnFlush = syncOnFlush;
+    }
+
+    /**
+     * Creates a write-behind policy.
+     * @param flushIntervalMillis Maximum time a change may stay in memory before it is stored
+     * @param dirtyThreshold Number of unsaved changes that triggers an early flush
+     * @param syncOnFlush If true, each flush also forces the preferences to their backing store,
+     *                    trading some write latency for a smaller window of lost changes on a crash
+     * @return the policy
+     */
+    public static WriteBehindPolicy writeBehind(long flushIntervalMillis, int dirtyThreshold, boolean syncOnFlush) {
+        if (flushIntervalMillis <= 0) {
+            throw new IllegalArgumentException("Flush interval must be positive");
+        }
+        if (dirtyThreshold <= 0) {
+            throw new IllegalArgumentException("Dirty threshold must be positive");
+        }
+        return new WriteBehindPolicy(true, flushIntervalMillis, dirtyThreshold, syncOnFlush);
+    }
+
+    public boolean isWriteBehind() {
+        return writeBehind;
+    }
+
+    public long getFlushIntervalMillis() {
+        return flushIntervalMillis;
+    }
+
+    public int getDirtyThreshold() {
+        return dirtyThreshold;
+    }
+
+    public boolean isSyncOnFlush() {
+        return syncOnFlush;
+    }
+}
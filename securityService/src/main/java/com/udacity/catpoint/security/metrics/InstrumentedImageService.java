@@ -0,0 +1,42 @@
+package com.udacity.catpoint.security.metrics;
+
+import com.udacity.catpoint.image.service.FakeImage;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * FakeImage decorator that times every classification as image.classify and counts the outcomes
+ * as image.cats, image.noCats and image.failures.
+ */
+public class InstrumentedImageService implements FakeImage {
+
+    private final FakeImage delegate;
+    private final LatencyHistogram classifyTimes;
+    private final Counter cats;
+    private final Counter noCats;
+    private final Counter failures;
+
+    public InstrumentedImageService(FakeImage delegate, MetricsRegistry registry) {
+        this.delegate = delegate;
+        this.classifyTimes = registry.histogram("image.classify");
+        this.cats = registry.counter("image.cats");
+        this.noCats = registry.counter("image.noCats");
+        this.failures = registry.counter("image.failures");
+    }
+
+    @Override
+    public boolean imageContainsCat(BufferedImage image, float confidenceThreshold) {
+        long start = System.nanoTime();
+        boolean cat;
+        try {
+            cat = delegate.imageContainsCat(image, confidenceThreshold);
+        } catch (RuntimeException e) {
+            failures.increment();
+            throw e;
+        } finally {
+            classifyTimes.record(System.nanoTime() - start);
+        }
+        (cat ? cats : noCats).increment();
+        return cat;
+    }
+}
@@ -0,0 +1,106 @@
+package com.udacity.catpoint.security.metrics;
+
+import com.udacity.catpoint.security.data.AlarmStatus;
+import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.data.SecurityRepository;
+import com.udacity.catpoint.security.data.Sensor;
+
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * SecurityRepository decorator that times every write as repository.&lt;method&gt;. Reads are
+ * passed through untimed, including the ones with a default implementation, so the delegate's
+ * faster versions of those are still used.
+ */
+public class InstrumentedSecurityRepository implements SecurityRepository {
+
+    private final SecurityRepository delegate;
+    private final LatencyHistogram addSensorTimes;
+    private final LatencyHistogram removeSensorTimes;
+    private final LatencyHistogram updateSensorTimes;
+    private final LatencyHistogram setAlarmStatusTimes;
+    private final LatencyHistogram setArmingStatusTimes;
+
+    public InstrumentedSecurityRepository(SecurityRepository delegate, MetricsRegistry registry) {
+        this.delegate = delegate;
+        this.addSensorTimes = registry.histogram("repository.addSensor");
+        this.removeSensorTimes = registry.histogram("repository.removeSensor");
+        this.updateSensorTimes = registry.histogram("repository.updateSensor");
+        this.setAlarmStatusTimes = registry.histogram("repository.setAlarmStatus");
+        this.setArmingStatusTimes = registry.histogram("repository.setArmingStatus");
+    }
+
+    @Override
+    public void addSensor(Sensor sensor) {
+        long start = System.nanoTime();
+        delegate.addSensor(sensor);
+        addSensorTimes.record(System.nanoTime() - start);
+    }
+
+    @Override
+    public void removeSensor(Sensor sensor) {
+        long start = System.nanoTime();
+        delegate.removeSensor(sensor);
+        removeSensorTimes.record(System.nanoTime() - start);
+    }
+
+    @Override
+    public void updateSensor(Sensor sensor) {
+        long start = System.nanoTime();
+        delegate.updateSensor(sensor);
+        updateSensorTimes.record(System.nanoTime() - start);
+    }
+
+    @Override
+    public void setAlarmStatus(AlarmStatus alarmStatus) {
+        long start = System.nanoTime();
+        delegate.setAlarmStatus(alarmStatus);
+        setAlarmStatusTimes.record(System.nanoTime() - start);
+    }
+
+    @Override
+    public void setArmingStatus(ArmingStatus armingStatus) {
+        long start = System.nanoTime();
+        delegate.setArmingStatus(armingStatus);
+        setArmingStatusTimes.record(System.nanoTime() - start);
+    }
+
+    @Override
+    public Set<Sensor> getSensors() {
+        return delegate.getSensors();
+    }
+
+    @Override
+    public AlarmStatus getAlarmStatus() {
+        return delegate.getAlarmStatus();
+    }
+
+    @Override
+    public ArmingStatus getArmingStatus() {
+        return delegate.getArmingStatus();
+    }
+
+    @Override
+    public boolean hasActiveSensors() {
+        return delegate.hasActiveSensors();
+    }
+
+    @Override
+    public Sensor getSensor(UUID sensorId) {
+        return delegate.getSensor(sensorId);
+    }
+
+    @Override
+    public Set<Sensor> getActiveSensors() {
+        return delegate.getActiveSensors();
+    }
+
+    @Override
+    public CompletableFuture<Void> streamSensors(Consumer<List<Sensor>> batches) {
+        return delegate.streamSensors(batches);
+    }
+}
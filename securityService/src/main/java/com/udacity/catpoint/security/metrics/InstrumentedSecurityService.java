@@ -0,0 +1,99 @@
+package com.udacity.catpoint.security.metrics;
+
+import com.udacity.catpoint.image.service.AsyncImageService;
+import com.udacity.catpoint.image.service.BatchImageService;
+import com.udacity.catpoint.image.service.FakeImage;
+import com.udacity.catpoint.security.data.AlarmStatus;
+import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.data.SecurityRepository;
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.service.SecurityService;
+import com.udacity.catpoint.security.service.StatusEventBus;
+
+import java.awt.image.BufferedImage;
+import java.util.List;
+
+/**
+ * SecurityService that reports into a MetricsRegistry. The repository and image service it is
+ * given are wrapped in their instrumented decorators, the public operations are timed as
+ * service.&lt;method&gt;, the time taken to deliver events to each status listener as
+ * listeners.delivery, and the number of active sensors, alarm status and arming status are gauges
+ * (the statuses as ordinal, -1 if unknown).
+ */
+public class InstrumentedSecurityService extends SecurityService {
+
+    private final LatencyHistogram processImageTimes;
+    private final LatencyHistogram processImagesTimes;
+    private final LatencyHistogram changeSensorActivationStatusTimes;
+    private final LatencyHistogram setArmingStatusTimes;
+    private final LatencyHistogram setAlarmStatusTimes;
+
+    public InstrumentedSecurityService(SecurityRepository securityRepository, FakeImage imageService,
+                                       MetricsRegistry registry) {
+        this(new InstrumentedSecurityRepository(securityRepository, registry),
+                new InstrumentedImageService(imageService, registry), registry);
+    }
+
+    private InstrumentedSecurityService(InstrumentedSecurityRepository securityRepository,
+                                        InstrumentedImageService imageService, MetricsRegistry registry) {
+        super(securityRepository, imageService, new AsyncImageService(imageService),
+                new BatchImageService(imageService), Runnable::run,
+                new StatusEventBus(StatusEventBus.DEFAULT_FRAME_INTERVAL_MILLIS, registry.histogram("listeners.delivery")),
+                true);
+        this.processImageTimes = registry.histogram("service.processImage");
+        this.processImagesTimes = registry.histogram("service.processImages");
+        this.changeSensorActivationStatusTimes = registry.histogram("service.changeSensorActivationStatus");
+        this.setArmingStatusTimes = registry.histogram("service.setArmingStatus");
+        this.setAlarmStatusTimes = registry.histogram("service.setAlarmStatus");
+        registry.gauge("sensors.active", this::getActiveSensorCount);
+        registry.gauge("alarm.status", () -> ordinal(getAlarmStatus()));
+        registry.gauge("arming.status", () -> ordinal(getArmingStatus()));
+    }
+
+    @Override
+    public void processImage(BufferedImage currentCameraImage) {
+        long start = System.nanoTime();
+        super.processImage(currentCameraImage);
+        processImageTimes.record(System.nanoTime() - start);
+    }
+
+    @Override
+    public void processImages(List<BufferedImage> cameraImages) {
+        long start = System.nanoTime();
+        super.processImages(cameraImages);
+        processImagesTimes.record(System.nanoTime() - start);
+    }
+
+    @Override
+    public void changeSensorActivationStatus(Sensor sensor, Boolean active) {
+        long start = System.nanoTime();
+        super.changeSensorActivationStatus(sensor, active);
+        changeSensorActivationStatusTimes.record(System.nanoTime() - start);
+    }
+
+    @Override
+    public boolean changeSensorActivationStatus(long mostSignificantBits, long leastSignificantBits, boolean active) {
+        long start = System.nanoTime();
+        boolean known = super.changeSensorActivationStatus(mostSignificantBits, leastSignificantBits, active);
+        changeSensorActivationStatusTimes.record(System.nanoTime() - start);
+        return known;
+    }
+
+    @Override
+    public void setArmingStatus(ArmingStatus armingStatus) {
+        long start = System.nanoTime();
+        super.setArmingStatus(armingStatus);
+        setArmingStatusTimes.record(System.nanoTime() - start);
+    }
+
+    @Override
+    public void setAlarmStatus(AlarmStatus status) {
+        long start = System.nanoTime();
+        super.setAlarmStatus(status);
+        setAlarmStatusTimes.record(System.nanoTime() - start);
+    }
+
+    private static long ordinal(Enum<?> status) {
+        return status == null ? -1 : status.ordinal();
+    }
+}
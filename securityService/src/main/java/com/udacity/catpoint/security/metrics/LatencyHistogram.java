@@ -0,0 +1,138 @@
+package com.udacity.catpoint.security.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongConsumer;
+
+/**
+ * Histogram of durations in nanoseconds, with buckets laid out like an HDR histogram: values
+ * below 64 get a bucket each, and every power of two above that is split into 32 linear buckets.
+ * Any recorded value is therefore reported within about 3% of its true value, from nanoseconds up
+ * to centuries, in a fixed set of fewer than 2000 counters.
+ *
+ * Recording is lock-free and allocation-free: the bucket is found with a couple of shifts and
+ * incremented atomically. Percentiles are computed from a {@link Snapshot}.
+ */
+public class LatencyHistogram implements LongConsumer {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    //exact buckets below 2 * SUB_BUCKETS, then SUB_BUCKETS per remaining power of two
+    private static final int BUCKETS = 2 * SUB_BUCKETS + (62 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records one duration. Negative durations, from a clock going backwards, count as 0.
+     */
+    public void record(long nanos) {
+        long value = Math.max(nanos, 0);
+        counts.incrementAndGet(bucket(value));
+        sum.add(value);
+        long currentMax = max.get();
+        while (value > currentMax && !max.compareAndSet(currentMax, value)) {
+            currentMax = max.get();
+        }
+    }
+
+    /**
+     * Same as {@link #record}, so the histogram can be handed to code that only knows LongConsumer.
+     */
+    @Override
+    public void accept(long nanos) {
+        record(nanos);
+    }
+
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+            count += copy[i];
+        }
+        return new Snapshot(copy, count, sum.sum(), max.get());
+    }
+
+    static int bucket(long value) {
+        if (value < 2 * SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        int top = (int) (value >>> shift);
+        return 2 * SUB_BUCKETS + (shift - 1) * SUB_BUCKETS + (top - SUB_BUCKETS);
+    }
+
+    /**
+     * @return the largest value that falls into the bucket
+     */
+    static long highestValueIn(int bucket) {
+        if (bucket < 2 * SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = (bucket - 2 * SUB_BUCKETS) / SUB_BUCKETS + 1;
+        long top = (bucket - 2 * SUB_BUCKETS) % SUB_BUCKETS + SUB_BUCKETS;
+        //for the very last bucket this overflows to Long.MIN_VALUE, and minus one is Long.MAX_VALUE
+        return ((top + 1) << shift) - 1;
+    }
+
+    /**
+     * Counts of a histogram at one point in time.
+     */
+    public static class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+        private final long max;
+
+        private Snapshot(long[] counts, long count, long sum, long max) {
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * @return sum of all recorded values in nanoseconds
+         */
+        public long getSum() {
+            return sum;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        public double getMean() {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+
+        /**
+         * @param percentile Between 0 and 100, for example 99.9
+         * @return the value that this percentage of the recorded values is at or below, 0 if empty
+         */
+        public long getValueAtPercentile(double percentile) {
+            if (percentile < 0 || percentile > 100) {
+                throw new IllegalArgumentException("Percentile must be between 0 and 100");
+            }
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(highestValueIn(i), max);
+                }
+            }
+            return max;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.udacity.catpoint.security.metrics;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Serves the metrics of a registry as text on GET /metrics, for scrapers such as Prometheus.
+ * The text is only produced when asked for, so an idle endpoint costs nothing.
+ */
+public class MetricsEndpoint implements AutoCloseable {
+
+    public static final String PATH = "/metrics";
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    /**
+     * Binds the socket and starts serving.
+     * @param address Address to listen on; port 0 picks a free port
+     */
+    public MetricsEndpoint(MetricsRegistry registry, InetSocketAddress address) throws IOException {
+        server = HttpServer.create(address, 0);
+        executor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "metrics-endpoint");
+            t.setDaemon(true);
+            return t;
+        });
+        server.setExecutor(executor);
+        server.createContext(PATH, exchange -> respond(registry, exchange));
+        server.start();
+    }
+
+    public int getLocalPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * @return address the endpoint is bound to, which clients should connect to rather than a host name
+     */
+    public InetSocketAddress getLocalAddress() {
+        return server.getAddress();
+    }
+
+    private static void respond(MetricsRegistry registry, HttpExchange exchange) throws IOException {
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] body = registry.scrape().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Stops serving. The server keeps a non-daemon dispatcher thread, so this must be called
+     * for the JVM to exit on its own.
+     */
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,110 @@
+package com.udacity.catpoint.security.metrics;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.ReflectionException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * Read-only JMX view of a MetricsRegistry. Counters and gauges are attributes of their own name;
+ * a histogram "name" shows up as name.count, name.mean, name.p50, name.p90, name.p99, name.p999
+ * and name.max, all in nanoseconds. The attribute list follows the registry as metrics are added.
+ */
+class MetricsMBean implements DynamicMBean {
+
+    private static final String[] HISTOGRAM_ATTRIBUTES = {"count", "mean", "p50", "p90", "p99", "p999", "max"};
+
+    private final MetricsRegistry registry;
+
+    MetricsMBean(MetricsRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public Object getAttribute(String attribute) throws AttributeNotFoundException {
+        Map<String, Object> metrics = registry.getMetrics();
+        Object metric = metrics.get(attribute);
+        if (metric instanceof Counter) {
+            return ((Counter) metric).get();
+        }
+        if (metric instanceof LongSupplier) {
+            return ((LongSupplier) metric).getAsLong();
+        }
+        int dot = attribute.lastIndexOf('.');
+        if (dot > 0 && metrics.get(attribute.substring(0, dot)) instanceof LatencyHistogram) {
+            LatencyHistogram.Snapshot snapshot = ((LatencyHistogram) metrics.get(attribute.substring(0, dot))).snapshot();
+            switch (attribute.substring(dot + 1)) {
+                case "count":
+                    return snapshot.getCount();
+                case "mean":
+                    return snapshot.getMean();
+                case "p50":
+                    return snapshot.getValueAtPercentile(50);
+                case "p90":
+                    return snapshot.getValueAtPercentile(90);
+                case "p99":
+                    return snapshot.getValueAtPercentile(99);
+                case "p999":
+                    return snapshot.getValueAtPercentile(99.9);
+                case "max":
+                    return snapshot.getMax();
+                default:
+                    break;
+            }
+        }
+        throw new AttributeNotFoundException(attribute);
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] attributes) {
+        AttributeList list = new AttributeList();
+        for (String attribute : attributes) {
+            try {
+                list.add(new Attribute(attribute, getAttribute(attribute)));
+            } catch (AttributeNotFoundException e) {
+                //left out, as the JMX contract asks
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException("Metrics are read-only: " + attribute.getName());
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+        throw new ReflectionException(new NoSuchMethodException(actionName));
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        List<MBeanAttributeInfo> attributes = new ArrayList<>();
+        registry.getMetrics().forEach((name, metric) -> {
+            if (metric instanceof LatencyHistogram) {
+                for (String suffix : HISTOGRAM_ATTRIBUTES) {
+                    String type = suffix.equals("mean") ? "double" : "long";
+                    attributes.add(new MBeanAttributeInfo(name + "." + suffix, type,
+                            name + " " + suffix, true, false, false));
+                }
+            } else {
+                attributes.add(new MBeanAttributeInfo(name, "long", name, true, false, false));
+            }
+        });
+        return new MBeanInfo(getClass().getName(), "Catpoint metrics",
+                attributes.toArray(new MBeanAttributeInfo[0]), null, null, null);
+    }
+}
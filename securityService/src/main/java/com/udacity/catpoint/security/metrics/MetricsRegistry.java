@@ -0,0 +1,139 @@
+package com.udacity.catpoint.security.metrics;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Named counters, latency histograms and gauges. Metrics are created on first use and live as
+ * long as the registry; code on a hot path should look its metrics up once and keep them.
+ *
+ * The registry is read by pulling: as text through {@link #writeText} (the Prometheus text
+ * format, which {@link MetricsEndpoint} serves over HTTP) or through JMX after
+ * {@link #registerMBean}. Reading never blocks the threads recording.
+ */
+public class MetricsRegistry {
+
+    public static final String DEFAULT_OBJECT_NAME = "com.udacity.catpoint:type=Metrics";
+    private static final String TEXT_PREFIX = "catpoint_";
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+    private static final String[] QUANTILE_LABELS = {"0.5", "0.9", "0.99", "0.999"};
+
+    //sorted, so the output is stable
+    private final Map<String, Object> metrics = new ConcurrentSkipListMap<>();
+
+    public Counter counter(String name) {
+        return metric(name, Counter.class, Counter::new);
+    }
+
+    public LatencyHistogram histogram(String name) {
+        return metric(name, LatencyHistogram.class, LatencyHistogram::new);
+    }
+
+    /**
+     * Registers a value that is read whenever the registry is. The supplier must be cheap and
+     * thread-safe. Registering a gauge again under the same name replaces it.
+     */
+    public void gauge(String name, LongSupplier value) {
+        metrics.compute(name, (n, existing) -> {
+            if (existing != null && !(existing instanceof Gauge)) {
+                throw new IllegalArgumentException("Metric " + name + " is not a gauge");
+            }
+            return new Gauge(value);
+        });
+    }
+
+    /**
+     * @return the current metrics by name: Counter, LatencyHistogram or LongSupplier for gauges
+     */
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> copy = new ConcurrentSkipListMap<>();
+        metrics.forEach((name, metric) -> copy.put(name, metric instanceof Gauge ? ((Gauge) metric).value : metric));
+        return copy;
+    }
+
+    private <T> T metric(String name, Class<T> type, Supplier<T> factory) {
+        Object metric = metrics.computeIfAbsent(name, n -> factory.get());
+        if (!type.isInstance(metric)) {
+            throw new IllegalArgumentException("Metric " + name + " is not a " + type.getSimpleName());
+        }
+        return type.cast(metric);
+    }
+
+    /**
+     * Writes all metrics in the Prometheus text exposition format. Histograms become summaries
+     * in seconds, with their 50th, 90th, 99th and 99.9th percentiles.
+     */
+    public void writeText(Writer out) throws IOException {
+        for (Map.Entry<String, Object> entry : metrics.entrySet()) {
+            String name = TEXT_PREFIX + entry.getKey().replaceAll("[^a-zA-Z0-9_]", "_");
+            Object metric = entry.getValue();
+            if (metric instanceof Counter) {
+                out.write("# TYPE " + name + "_total counter\n");
+                out.write(name + "_total " + ((Counter) metric).get() + "\n");
+            } else if (metric instanceof Gauge) {
+                out.write("# TYPE " + name + " gauge\n");
+                out.write(name + " " + ((Gauge) metric).value.getAsLong() + "\n");
+            } else {
+                LatencyHistogram.Snapshot snapshot = ((LatencyHistogram) metric).snapshot();
+                name += "_seconds";
+                out.write("# TYPE " + name + " summary\n");
+                for (int i = 0; i < PERCENTILES.length; i++) {
+                    out.write(name + "{quantile=\"" + QUANTILE_LABELS[i] + "\"} "
+                            + seconds(snapshot.getValueAtPercentile(PERCENTILES[i])) + "\n");
+                }
+                out.write(name + "_sum " + seconds(snapshot.getSum()) + "\n");
+                out.write(name + "_count " + snapshot.getCount() + "\n");
+            }
+        }
+    }
+
+    /**
+     * @return all metrics in the format of {@link #writeText}
+     */
+    public String scrape() {
+        StringWriter text = new StringWriter();
+        try {
+            writeText(text);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return text.toString();
+    }
+
+    /**
+     * Makes the metrics readable over JMX, under {@link #DEFAULT_OBJECT_NAME} in the platform MBean server.
+     */
+    public ObjectName registerMBean() {
+        try {
+            return registerMBean(ManagementFactory.getPlatformMBeanServer(), new ObjectName(DEFAULT_OBJECT_NAME));
+        } catch (JMException e) {
+            throw new IllegalStateException("Unable to register metrics MBean", e);
+        }
+    }
+
+    public ObjectName registerMBean(MBeanServer server, ObjectName name) throws JMException {
+        return server.registerMBean(new MetricsMBean(this), name).getObjectName();
+    }
+
+    private static String seconds(long nanos) {
+        return Double.toString(nanos / 1e9);
+    }
+
+    private static final class Gauge {
+        private final LongSupplier value;
+
+        private Gauge(LongSupplier value) {
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,457 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.image.service.FakeImage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.image.BufferedImage;
+import java.lang.reflect.Method;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Runs the capture, classify and processImage loop for any number of cameras, one thread each.
+ *
+ * Camera threads spend nearly all their time blocked on the image service, so they are virtual
+ * threads where the JVM offers them (looked up at runtime, since the code is compiled for an older
+ * release) and ordinary daemon threads otherwise. A camera thread waiting for frames must not hold
+ * a monitor, which would pin a virtual thread to its carrier, so cameras use a ReentrantLock.
+ *
+ * Frames wait in a small bounded queue per camera. When the classifier falls behind, a new frame
+ * pushes out the oldest waiting one, and frames that waited longer than maxFrameAgeMillis are
+ * skipped instead of classified, so each camera always works on the most recent picture it has.
+ * Every camera reports how far it is behind through {@link Camera#getLagMillis()}.
+ *
+ * All cameras feed the same SecurityService, so the cat detection state is that of the frame
+ * processed last, whichever camera it came from. By default every camera is classified by the
+ * service's image service; an image service that keeps state about the feed, such as a
+ * CascadeImageService with a MotionDetector, has to be given to its camera instead, and serves
+ * only that camera.
+ */
+public class CameraRuntime implements AutoCloseable {
+
+    public static final int DEFAULT_QUEUE_CAPACITY = 2;
+    public static final long DEFAULT_MAX_FRAME_AGE_MILLIS = 2_000;
+
+    private static final ThreadStarter THREAD_STARTER = ThreadStarter.find();
+    private static final Logger log = LoggerFactory.getLogger(CameraRuntime.class);
+
+    private final SecurityService securityService;
+    private final int queueCapacity;
+    private final long maxFrameAgeNanos;
+    private final LongSupplier clock;
+    private final Map<String, Camera> cameras = new ConcurrentHashMap<>();
+
+    public CameraRuntime(SecurityService securityService) {
+        this(securityService, DEFAULT_QUEUE_CAPACITY, DEFAULT_MAX_FRAME_AGE_MILLIS);
+    }
+
+    /**
+     * @param queueCapacity Frames that may wait per camera while one is being classified
+     * @param maxFrameAgeMillis Frames that waited longer than this are skipped
+     */
+    public CameraRuntime(SecurityService securityService, int queueCapacity, long maxFrameAgeMillis) {
+        this(securityService, queueCapacity, maxFrameAgeMillis, System::nanoTime);
+    }
+
+    CameraRuntime(SecurityService securityService, int queueCapacity, long maxFrameAgeMillis, LongSupplier clock) {
+        if (queueCapacity <= 0 || maxFrameAgeMillis <= 0) {
+            throw new IllegalArgumentException("Invalid camera queue limits");
+        }
+        this.securityService = securityService;
+        this.queueCapacity = queueCapacity;
+        this.maxFrameAgeNanos = TimeUnit.MILLISECONDS.toNanos(maxFrameAgeMillis);
+        this.clock = clock;
+    }
+
+    /**
+     * @return true if camera threads are virtual threads
+     */
+    public static boolean isUsingVirtualThreads() {
+        return THREAD_STARTER.virtual;
+    }
+
+    /**
+     * Starts a camera that frames are pushed to with {@link Camera#submit}.
+     */
+    public Camera addCamera(String cameraId) {
+        return addCamera(cameraId, null);
+    }
+
+    /**
+     * Starts a camera together with a capture thread that keeps pulling frames from the source.
+     */
+    public Camera addCamera(String cameraId, FrameSource source) {
+        return addCamera(cameraId, source, null);
+    }
+
+    /**
+     * Starts a camera whose frames are classified by its own image service rather than the
+     * SecurityService's, for image services that follow a single feed.
+     * @param source Where the capture thread gets frames from, null if they are pushed with {@link Camera#submit}
+     * @param imageService Classifies this camera's frames, not used by any other camera
+     */
+    public Camera addCamera(String cameraId, FrameSource source, FakeImage imageService) {
+        Camera camera = new Camera(cameraId, imageService);
+        synchronized (cameras) {
+            for (Camera other : cameras.values()) {
+                if (imageService != null && other.imageService == imageService) {
+                    throw new IllegalArgumentException("Image service already classifies camera " + other.cameraId);
+                }
+            }
+            if (cameras.putIfAbsent(cameraId, camera) != null) {
+                throw new IllegalArgumentException("Camera " + cameraId + " already exists");
+            }
+        }
+        camera.processor = THREAD_STARTER.start("camera-" + cameraId, camera::processLoop);
+        if (source != null) {
+            camera.capture = THREAD_STARTER.start("camera-capture-" + cameraId, () -> camera.captureLoop(source));
+        }
+        return camera;
+    }
+
+    public Camera getCamera(String cameraId) {
+        return cameras.get(cameraId);
+    }
+
+    public Collection<Camera> getCameras() {
+        return List.copyOf(cameras.values());
+    }
+
+    /**
+     * Stops the camera. Frames still waiting for it are dropped.
+     */
+    public void removeCamera(String cameraId) {
+        Camera camera = cameras.remove(cameraId);
+        if (camera != null) {
+            camera.stop();
+        }
+    }
+
+    @Override
+    public void close() {
+        for (String cameraId : List.copyOf(cameras.keySet())) {
+            removeCamera(cameraId);
+        }
+    }
+
+    /**
+     * Where a camera's capture thread gets its frames from. Expected to block until the next frame
+     * is available, which is what paces the capture loop.
+     */
+    public interface FrameSource {
+        /**
+         * @return the next frame, or null once the feed has ended
+         */
+        BufferedImage nextFrame() throws InterruptedException;
+    }
+
+    /**
+     * One camera feed and its statistics.
+     */
+    public class Camera {
+        private final String cameraId;
+        //null for the SecurityService's own
+        private final FakeImage imageService;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition frameQueued = lock.newCondition();
+        private final ArrayDeque<Frame> queue = new ArrayDeque<>();
+        private volatile Thread processor;
+        private volatile Thread capture;
+        private boolean stopped;
+
+        //statistics, guarded by lock
+        private long submitted;
+        private long processed;
+        private long overflowed;
+        private long stale;
+        private long failed;
+        private long lastLatencyNanos;
+        //set while frames keep failing, so a failure is logged once rather than for every frame
+        private boolean failing;
+
+        private Camera(String cameraId, FakeImage imageService) {
+            this.cameraId = cameraId;
+            this.imageService = imageService;
+        }
+
+        public String getCameraId() {
+            return cameraId;
+        }
+
+        /**
+         * Queues a frame for classification, pushing out the oldest waiting frame if the queue is full.
+         * Never blocks.
+         * @return false if the camera was stopped
+         */
+        public boolean submit(BufferedImage frame) {
+            lock.lock();
+            try {
+                if (stopped) {
+                    return false;
+                }
+                if (queue.size() == queueCapacity) {
+                    queue.pollFirst();
+                    overflowed++;
+                }
+                queue.addLast(new Frame(frame, clock.getAsLong()));
+                submitted++;
+                frameQueued.signal();
+            } finally {
+                lock.unlock();
+            }
+            return true;
+        }
+
+        /**
+         * @return how long the oldest waiting frame has been waiting, 0 if the camera is keeping up
+         */
+        public long getLagMillis() {
+            lock.lock();
+            try {
+                Frame oldest = queue.peekFirst();
+                return oldest == null ? 0 : TimeUnit.NANOSECONDS.toMillis(clock.getAsLong() - oldest.capturedAt);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * @return time from capture until processImage returned, for the last processed frame
+         */
+        public long getLastLatencyMillis() {
+            lock.lock();
+            try {
+                return TimeUnit.NANOSECONDS.toMillis(lastLatencyNanos);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        public int getQueuedFrames() {
+            lock.lock();
+            try {
+                return queue.size();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        public long getSubmittedFrames() {
+            lock.lock();
+            try {
+                return submitted;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        public long getProcessedFrames() {
+            lock.lock();
+            try {
+                return processed;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * @return frames pushed out of the queue by newer frames
+         */
+        public long getOverflowedFrames() {
+            lock.lock();
+            try {
+                return overflowed;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * @return frames skipped because they were older than the maximum frame age
+         */
+        public long getStaleFrames() {
+            lock.lock();
+            try {
+                return stale;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        public long getFailedFrames() {
+            lock.lock();
+            try {
+                return failed;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void captureLoop(FrameSource source) {
+            try {
+                BufferedImage frame;
+                while ((frame = source.nextFrame()) != null && submit(frame)) {
+                    //submit never blocks, the source sets the pace
+                }
+            } catch (InterruptedException e) {
+                //stopped
+            }
+        }
+
+        private void processLoop() {
+            try {
+                while (true) {
+                    Frame frame = next();
+                    if (frame == null) {
+                        return;
+                    }
+                    RuntimeException failure = null;
+                    try {
+                        if (imageService == null) {
+                            securityService.processImage(frame.image);
+                        } else {
+                            securityService.processImage(frame.image, imageService);
+                        }
+                    } catch (RuntimeException e) {
+                        failure = e;
+                    }
+                    long latency = clock.getAsLong() - frame.capturedAt;
+                    boolean firstFailure;
+                    boolean recovered;
+                    lock.lock();
+                    try {
+                        if (failure == null) {
+                            processed++;
+                            lastLatencyNanos = latency;
+                        } else {
+                            failed++;
+                        }
+                        firstFailure = failure != null && !failing;
+                        recovered = failure == null && failing;
+                        failing = failure != null;
+                    } finally {
+                        lock.unlock();
+                    }
+                    if (firstFailure) {
+                        log.warn("Camera {} is unable to process frames", cameraId, failure);
+                    } else if (recovered) {
+                        log.info("Camera {} is processing frames again", cameraId);
+                    }
+                }
+            } catch (InterruptedException e) {
+                //stopped
+            }
+        }
+
+        /**
+         * Waits for the next frame that is still fresh enough, skipping stale ones.
+         * @return the frame, or null once the camera is stopped
+         */
+        private Frame next() throws InterruptedException {
+            lock.lockInterruptibly();
+            try {
+                while (true) {
+                    while (queue.isEmpty() && !stopped) {
+                        frameQueued.await();
+                    }
+                    if (stopped) {
+                        return null;
+                    }
+                    Frame frame = queue.pollFirst();
+                    if (clock.getAsLong() - frame.capturedAt <= maxFrameAgeNanos) {
+                        return frame;
+                    }
+                    stale++;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void stop() {
+            lock.lock();
+            try {
+                stopped = true;
+                queue.clear();
+                frameQueued.signalAll();
+            } finally {
+                lock.unlock();
+            }
+            Thread captureThread = capture;
+            if (captureThread != null) {
+                captureThread.interrupt();
+            }
+            Thread processorThread = processor;
+            if (processorThread != null) {
+                processorThread.interrupt();
+            }
+        }
+    }
+
+    private static final class Frame {
+        private final BufferedImage image;
+        private final long capturedAt;
+
+        private Frame(BufferedImage image, long capturedAt) {
+            this.image = image;
+            this.capturedAt = capturedAt;
+        }
+    }
+
+    /**
+     * Starts virtual threads through Thread.ofVirtual() if this JVM has them, platform daemon threads otherwise.
+     */
+    private static final class ThreadStarter {
+        private final Method ofVirtual;
+        private final Method name;
+        private final Method start;
+        private final boolean virtual;
+
+        private ThreadStarter(Method ofVirtual, Method name, Method start) {
+            this.ofVirtual = ofVirtual;
+            this.name = name;
+            this.start = start;
+            this.virtual = ofVirtual != null;
+        }
+
+        private static ThreadStarter find() {
+            try {
+                Class<?> builder = Class.forName("java.lang.Thread$Builder");
+                Method ofVirtual = Thread.class.getMethod("ofVirtual");
+                Method name = builder.getMethod("name", String.class);
+                Method start = builder.getMethod("start", Runnable.class);
+                //fails on releases where virtual threads are a preview feature that is not enabled
+                Object probe = start.invoke(ofVirtual.invoke(null), (Runnable) () -> { });
+                ((Thread) probe).join();
+                return new ThreadStarter(ofVirtual, name, start);
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                return new ThreadStarter(null, null, null);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return new ThreadStarter(null, null, null);
+            }
+        }
+
+        private Thread start(String threadName, Runnable task) {
+            if (virtual) {
+                try {
+                    return (Thread) start.invoke(name.invoke(ofVirtual.invoke(null), threadName), task);
+                } catch (ReflectiveOperationException e) {
+                    throw new IllegalStateException("Unable to start virtual thread", e);
+                }
+            }
+            Thread thread = new Thread(task, threadName);
+            thread.setDaemon(true);
+            thread.start();
+            return thread;
+        }
+    }
+}
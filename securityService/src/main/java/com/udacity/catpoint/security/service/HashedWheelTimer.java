@@ -0,0 +1,191 @@
+package com.udacity.catpoint.security.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongSupplier;
+
+/**
+ * Timer for large numbers of short, mostly cancelled timeouts, such as one per sensor. Instead of
+ * a priority queue, timeouts are dropped into the bucket of a wheel that their deadline falls in,
+ * which makes scheduling and cancelling constant time. A single thread advances the wheel one
+ * bucket per tick and runs the timeouts in it that are due; those more than one revolution away
+ * stay put until the wheel comes round again.
+ *
+ * Timeouts fire up to one tick late, never early. Tasks run on the timer thread, one after
+ * another, so they must be short. A task that throws is logged and does not stop the timer.
+ */
+public class HashedWheelTimer implements AutoCloseable {
+
+    public static final long DEFAULT_TICK_MILLIS = 10;
+    public static final int DEFAULT_WHEEL_SIZE = 512;
+
+    private static final Logger log = LoggerFactory.getLogger(HashedWheelTimer.class);
+
+    private final long tickNanos;
+    private final int mask;
+    private final List<Timeout>[] wheel;
+    private final LongSupplier clock;
+    private final long startNanos;
+    //timeouts scheduled since the last tick, moved into the wheel by the timer thread
+    private final ConcurrentLinkedQueue<Timeout> scheduled = new ConcurrentLinkedQueue<>();
+    private final Thread thread;
+    private long tick;
+    private volatile boolean closed;
+
+    public HashedWheelTimer(String threadName) {
+        this(DEFAULT_TICK_MILLIS, DEFAULT_WHEEL_SIZE, threadName);
+    }
+
+    /**
+     * @param tickMillis Resolution of the timer
+     * @param wheelSize Number of buckets, rounded up to a power of two; one revolution should
+     *                  cover the usual delays
+     */
+    public HashedWheelTimer(long tickMillis, int wheelSize, String threadName) {
+        this(TimeUnit.MILLISECONDS.toNanos(tickMillis), wheelSize, System::nanoTime, threadName);
+    }
+
+    /**
+     * @param threadName Name of the timer thread, or null to not start one and drive the wheel
+     *                   with {@link #advance} instead
+     */
+    @SuppressWarnings("unchecked")
+    HashedWheelTimer(long tickNanos, int wheelSize, LongSupplier clock, String threadName) {
+        if (tickNanos <= 0 || wheelSize < 1 || wheelSize > 1 << 30) {
+            throw new IllegalArgumentException("Invalid timer tick or wheel size");
+        }
+        int size = wheelSize == 1 ? 1 : Integer.highestOneBit(wheelSize - 1) << 1;
+        this.tickNanos = tickNanos;
+        this.mask = size - 1;
+        this.wheel = new List[size];
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new ArrayList<>();
+        }
+        this.clock = clock;
+        this.startNanos = clock.getAsLong();
+        if (threadName == null) {
+            thread = null;
+        } else {
+            thread = new Thread(this::run, threadName);
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * Runs the task once the delay has passed, unless the returned timeout is cancelled first.
+     * @throws IllegalStateException if the timer was closed
+     */
+    public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        if (closed) {
+            throw new IllegalStateException("Timer is closed");
+        }
+        long elapsed = clock.getAsLong() - startNanos + unit.toNanos(Math.max(delay, 0));
+        //rounded up, so the task never runs early
+        Timeout timeout = new Timeout(task, (elapsed + tickNanos - 1) / tickNanos);
+        scheduled.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * Stops the timer thread. Timeouts that have not fired yet never will.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    private void run() {
+        while (!closed) {
+            long nextTickNanos = startNanos + (tick + 1) * tickNanos;
+            long wait = nextTickNanos - clock.getAsLong();
+            if (wait > 0) {
+                LockSupport.parkNanos(this, wait);
+            } else {
+                advance();
+            }
+        }
+    }
+
+    /**
+     * Processes every tick that has passed according to the clock. Called by the timer thread, or
+     * by tests driving a timer without one.
+     */
+    void advance() {
+        long now = (clock.getAsLong() - startNanos) / tickNanos;
+        while (tick < now && !closed) {
+            tick++;
+            Timeout timeout;
+            while ((timeout = scheduled.poll()) != null) {
+                if (!timeout.cancelled) {
+                    //anything already due goes into the bucket about to be processed
+                    wheel[(int) (Math.max(timeout.deadlineTick, tick) & mask)].add(timeout);
+                }
+            }
+            expire(wheel[(int) (tick & mask)]);
+        }
+    }
+
+    private void expire(List<Timeout> bucket) {
+        int kept = 0;
+        for (int i = 0; i < bucket.size(); i++) {
+            Timeout timeout = bucket.get(i);
+            if (timeout.cancelled) {
+                continue;
+            }
+            if (timeout.deadlineTick > tick) {
+                //another revolution to go
+                bucket.set(kept++, timeout);
+                continue;
+            }
+            timeout.fired = true;
+            try {
+                timeout.task.run();
+            } catch (RuntimeException e) {
+                //the task's problem, the other timeouts still fire
+                log.error("Timeout task failed", e);
+            }
+        }
+        bucket.subList(kept, bucket.size()).clear();
+    }
+
+    /**
+     * A scheduled task.
+     */
+    public static final class Timeout {
+        private final Runnable task;
+        private final long deadlineTick;
+        private volatile boolean cancelled;
+        private volatile boolean fired;
+
+        private Timeout(Runnable task, long deadlineTick) {
+            this.task = task;
+            this.deadlineTick = deadlineTick;
+        }
+
+        /**
+         * Keeps the task from running, if it has not started yet. The timeout leaves the wheel the
+         * next time its bucket comes round.
+         */
+        public void cancel() {
+            cancelled = true;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        public boolean isFired() {
+            return fired;
+        }
+    }
+}
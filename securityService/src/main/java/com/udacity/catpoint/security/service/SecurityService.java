@@ -1,16 +1,25 @@
 package com.udacity.catpoint.security.service;
 
+import com.udacity.catpoint.image.service.AsyncImageService;
+import com.udacity.catpoint.image.service.BatchImageService;
 import com.udacity.catpoint.image.service.FakeImage;
 import com.udacity.catpoint.security.application.StatusListener;
 import com.udacity.catpoint.security.data.AlarmStatus;
 import com.udacity.catpoint.security.data.ArmingStatus;
 import com.udacity.catpoint.security.data.SecurityRepository;
 import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorTable;
 import com.udacity.catpoint.image.service.FakeImageService;
 
 import java.awt.image.BufferedImage;
-import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 /**
  * Service that receives information about changes to the security system. Responsible for
@@ -18,18 +27,124 @@ import java.util.Set;
  *
  * This is the class that should contain most of the business logic for our system, and it is the
  * class you will be writing unit tests for.
+ *
+ * The service may be called from any number of threads at once. Alarm status, arming status and
+ * whether the camera last saw a cat live in a single state word that every transition updates with
+ * compare-and-set, so two concurrent transitions can never both start from the same old state.
+ * Changes to a sensor are serialized by a lock picked from a small set of stripes by sensor id,
+ * which keeps updates to different sensors from waiting on each other.
+ *
+ * The sensors added through the service are mirrored in a {@link SensorTable}, which lets
+ * activation events that only carry a sensor id be applied without allocating anything.
+ *
+ * The image services and the status event bus a constructor creates itself belong to the service
+ * and are shut down by {@link #close()}; those passed in are left to the caller, so they can be
+ * shared between services.
  */
-public class SecurityService {
+public class SecurityService implements AutoCloseable {
+
+    private static final float CAT_CONFIDENCE_THRESHOLD = 50.0f;
+    private static final int SENSOR_LOCK_STRIPES = 64;
+
+    //state word layout: alarm status and arming status as ordinal + 1 (0 if unknown), then flags
+    private static final int ALARM_MASK = 0xFF;
+    private static final int ARMING_SHIFT = 8;
+    private static final int ARMING_MASK = 0xFF << ARMING_SHIFT;
+    private static final int CAT_DETECTED = 1 << 16;
+    private static final int LOADED = 1 << 17;
+
+    //components created by the constructor, closed with the service
+    private static final int OWNS_ASYNC_IMAGE_SERVICE = 1;
+    private static final int OWNS_BATCH_IMAGE_SERVICE = 1 << 1;
+    private static final int OWNS_STATUS_EVENTS = 1 << 2;
+    private static final int OWNS_ALL = OWNS_ASYNC_IMAGE_SERVICE | OWNS_BATCH_IMAGE_SERVICE | OWNS_STATUS_EVENTS;
 
     private FakeImage imageService;
+    private AsyncImageService asyncImageService;
+    private BatchImageService batchImageService;
+    private Executor resultExecutor;
+    private final AtomicLong imageSequence = new AtomicLong();
+    private final AtomicLong lastAppliedImage = new AtomicLong();
     private SecurityRepository securityRepository;
-    private Set<StatusListener> statusListeners = new HashSet<>();
-    // added variable to meet the 11th requirement
-    private Boolean catDetected = false;
+    private StatusEventBus statusEvents;
+    // the cat flag was added to meet the 11th requirement
+    private final AtomicInteger state = new AtomicInteger();
+    private final Object[] sensorLocks = new Object[SENSOR_LOCK_STRIPES];
+    //orders repository writes and notifications of the state, so the last one written is the latest
+    private final Object stateWriteLock = new Object();
+    private final SensorTable sensorTable;
+    private volatile boolean sensorTableLoaded;
+    private final int ownedComponents;
 
     public SecurityService(SecurityRepository securityRepository, FakeImage imageService) {
+        this(securityRepository, imageService, new AsyncImageService(imageService), new BatchImageService(imageService),
+                Runnable::run, new StatusEventBus(), OWNS_ALL, new SensorTable());
+    }
+
+    /**
+     * For tests that need to step into the sensor table.
+     */
+    SecurityService(SecurityRepository securityRepository, FakeImage imageService, SensorTable sensorTable) {
+        this(securityRepository, imageService, new AsyncImageService(imageService), new BatchImageService(imageService),
+                Runnable::run, new StatusEventBus(), OWNS_ALL, sensorTable);
+    }
+
+    /**
+     * @param asyncImageService Non-blocking front for the image service, used by processImageAsync
+     * @param resultExecutor Where finished image scans are applied to the system state, for example
+     *                       the Swing event thread. Runnable::run applies them on the scanning thread.
+     */
+    public SecurityService(SecurityRepository securityRepository, FakeImage imageService,
+                           AsyncImageService asyncImageService, Executor resultExecutor) {
+        this(securityRepository, imageService, asyncImageService, new BatchImageService(imageService), resultExecutor,
+                new StatusEventBus(), OWNS_BATCH_IMAGE_SERVICE | OWNS_STATUS_EVENTS, new SensorTable());
+    }
+
+    /**
+     * @param batchImageService Classifies camera bursts for processImages
+     */
+    public SecurityService(SecurityRepository securityRepository, FakeImage imageService,
+                           AsyncImageService asyncImageService, BatchImageService batchImageService,
+                           Executor resultExecutor) {
+        this(securityRepository, imageService, asyncImageService, batchImageService, resultExecutor,
+                new StatusEventBus(), OWNS_STATUS_EVENTS, new SensorTable());
+    }
+
+    /**
+     * @param statusEvents Delivers status changes to the registered StatusListeners
+     */
+    public SecurityService(SecurityRepository securityRepository, FakeImage imageService,
+                           AsyncImageService asyncImageService, BatchImageService batchImageService,
+                           Executor resultExecutor, StatusEventBus statusEvents) {
+        this(securityRepository, imageService, asyncImageService, batchImageService, resultExecutor, statusEvents, 0, new SensorTable());
+    }
+
+    /**
+     * For subclasses that create the components themselves.
+     * @param closeComponents If true, close() also closes the image services and the status event bus
+     */
+    protected SecurityService(SecurityRepository securityRepository, FakeImage imageService,
+                              AsyncImageService asyncImageService, BatchImageService batchImageService,
+                              Executor resultExecutor, StatusEventBus statusEvents, boolean closeComponents) {
+        this(securityRepository, imageService, asyncImageService, batchImageService, resultExecutor, statusEvents,
+                closeComponents ? OWNS_ALL : 0, new SensorTable());
+    }
+
+    private SecurityService(SecurityRepository securityRepository, FakeImage imageService,
+                            AsyncImageService asyncImageService, BatchImageService batchImageService,
+                            Executor resultExecutor, StatusEventBus statusEvents, int ownedComponents,
+                            SensorTable sensorTable) {
+        this.ownedComponents = ownedComponents;
+        this.sensorTable = sensorTable;
         this.securityRepository = securityRepository;
         this.imageService = imageService;
+        this.asyncImageService = asyncImageService;
+        this.batchImageService = batchImageService;
+        this.resultExecutor = resultExecutor;
+        this.statusEvents = statusEvents;
+        for (int i = 0; i < sensorLocks.length; i++) {
+            sensorLocks[i] = new Object();
+        }
     }
 
     /**
@@ -38,23 +153,43 @@ public class SecurityService {
      * @param armingStatus
      */
     public void setArmingStatus(ArmingStatus armingStatus) {
-        if(armingStatus == ArmingStatus.DISARMED) {
-            setAlarmStatus(AlarmStatus.NO_ALARM);
-        }
-        // added handling sensor activity below to meet the 10th requirement
-        else if (armingStatus == ArmingStatus.ARMED_HOME || armingStatus == ArmingStatus.ARMED_AWAY) {
-            for (Sensor sensor : securityRepository.getSensors()) {
-                if (sensor.getActive()) {
+        if (armingStatus == ArmingStatus.ARMED_HOME || armingStatus == ArmingStatus.ARMED_AWAY) {
+            // added handling sensor activity below to meet the 10th requirement
+            // only the active sensors need resetting, copied since updating them changes the active set
+            for (Sensor sensor : List.copyOf(securityRepository.getActiveSensors())) {
+                synchronized (lockFor(sensor)) {
                     sensor.setActive(false);
+                    updateSensorTable(sensor, false);
+                    securityRepository.updateSensor(sensor);
                 }
+                statusEvents.sensorChanged(sensor);
             }
-            // added another conditional to meet the 11th requirement
-            if (catDetected) {
-                setAlarmStatus(AlarmStatus.ALARM);
+        }
+
+        int current;
+        int next;
+        boolean alarmChanged;
+        do {
+            current = state();
+            next = withArmingStatus(current, armingStatus);
+            alarmChanged = true;
+            if (armingStatus == ArmingStatus.DISARMED) {
+                next = withAlarmStatus(next, AlarmStatus.NO_ALARM);
+            } else if ((current & CAT_DETECTED) != 0) {
+                // added another conditional to meet the 11th requirement
+                next = withAlarmStatus(next, AlarmStatus.ALARM);
+            } else {
+                alarmChanged = false;
             }
+        } while (!state.compareAndSet(current, next));
+
+        synchronized (stateWriteLock) {
+            if (alarmChanged) {
+                storeAlarmStatus();
+            }
+            securityRepository.setArmingStatus(armingStatus(state.get()));
         }
-        securityRepository.setArmingStatus(armingStatus);
-        statusListeners.forEach(StatusListener::sensorStatusChanged);
+        statusEvents.sensorStatusChanged();
     }
 
     /**
@@ -62,13 +197,7 @@ public class SecurityService {
      * @return true if all sensors are deactivated
      */
     private Boolean allSensorsDeactivated() {
-        Set<Sensor> allSensors = securityRepository.getSensors();
-        for (Sensor sensor : allSensors) {
-            if (sensor.getActive()) {
-                return false;
-            }
-        }
-        return true;
+        return !securityRepository.hasActiveSensors();
     }
 
     /**
@@ -77,38 +206,50 @@ public class SecurityService {
      * @param cat True if a cat is detected, otherwise false.
      */
     private void catDetected(Boolean cat) {
-        // added code below to meet 11th requirement
-        if (cat) {
-            catDetected = true;
-        }
-        else {
-            catDetected = false;
-        }
+        int current;
+        int next;
+        boolean alarmChanged;
+        Boolean sensorsDeactivated = null;
+        do {
+            current = state();
+            // the cat flag is remembered to meet the 11th requirement
+            next = cat ? current | CAT_DETECTED : current & ~CAT_DETECTED;
+            alarmChanged = true;
+            if (cat && armingStatus(current) == ArmingStatus.ARMED_HOME) {
+                next = withAlarmStatus(next, AlarmStatus.ALARM);
+            } else {
+                // only setting NO_ALARM when no sensor is active meets the 8th requirement
+                if (sensorsDeactivated == null) {
+                    sensorsDeactivated = allSensorsDeactivated();
+                }
+                if (sensorsDeactivated) {
+                    next = withAlarmStatus(next, AlarmStatus.NO_ALARM);
+                } else {
+                    alarmChanged = false;
+                }
+            }
+        } while (!state.compareAndSet(current, next));
 
-        if(cat && getArmingStatus() == ArmingStatus.ARMED_HOME) {
-            setAlarmStatus(AlarmStatus.ALARM);
-        }
-        else if (allSensorsDeactivated()) {
-            setAlarmStatus(AlarmStatus.NO_ALARM);
-        }
-        /* the else-statement below does not meet the 8th requirement and replaced by 'else if' above
-        else {
-            setAlarmStatus(AlarmStatus.NO_ALARM);
+        if (alarmChanged) {
+            synchronized (stateWriteLock) {
+                storeAlarmStatus();
+            }
         }
-         */
-        statusListeners.forEach(sl -> sl.catDetected(cat));
+        statusEvents.catDetected(cat);
     }
 
     /**
      * Register the StatusListener for alarm system updates from within the SecurityService.
+     * Updates arrive asynchronously, on the event dispatch thread for Swing components. Sensors
+     * added, removed or changed through the service are reported one by one.
      * @param statusListener
      */
     public void addStatusListener(StatusListener statusListener) {
-        statusListeners.add(statusListener);
+        statusEvents.subscribe(statusListener);
     }
 
     public void removeStatusListener(StatusListener statusListener) {
-        statusListeners.remove(statusListener);
+        statusEvents.unsubscribe(statusListener);
     }
 
     /**
@@ -116,20 +257,60 @@ public class SecurityService {
      * @param status
      */
     public void setAlarmStatus(AlarmStatus status) {
+        int current;
+        do {
+            current = state();
+        } while (!state.compareAndSet(current, withAlarmStatus(current, status)));
+        synchronized (stateWriteLock) {
+            storeAlarmStatus();
+        }
+    }
+
+    /**
+     * Moves the alarm status from one value to another, unless another thread changed it first.
+     * @return true if this call made the transition
+     */
+    private boolean transitionAlarmStatus(int current, AlarmStatus from, AlarmStatus to) {
+        if (alarmStatus(current) != from || !state.compareAndSet(current, withAlarmStatus(current, to))) {
+            return false;
+        }
+        synchronized (stateWriteLock) {
+            storeAlarmStatus();
+        }
+        return true;
+    }
+
+    /**
+     * Writes the current alarm status to the repository and tells the listeners. Must hold
+     * stateWriteLock, so that concurrent transitions are stored in the order they happened.
+     */
+    private void storeAlarmStatus() {
+        AlarmStatus status = alarmStatus(state.get());
         securityRepository.setAlarmStatus(status);
-        statusListeners.forEach(sl -> sl.notify(status));
+        statusEvents.alarmStatusChanged(status);
     }
 
     /**
      * Internal method for updating the alarm status when a sensor has been activated.
      */
     private void handleSensorActivated() {
-        if(securityRepository.getArmingStatus() == ArmingStatus.DISARMED) {
-            return; //no problem if the system is disarmed
-        }
-        switch(securityRepository.getAlarmStatus()) {
-            case NO_ALARM -> setAlarmStatus(AlarmStatus.PENDING_ALARM);
-            case PENDING_ALARM -> setAlarmStatus(AlarmStatus.ALARM);
+        while (true) {
+            int current = state();
+            if (armingStatus(current) == ArmingStatus.DISARMED) {
+                return; //no problem if the system is disarmed
+            }
+            AlarmStatus alarmStatus = alarmStatus(current);
+            if (alarmStatus == AlarmStatus.NO_ALARM) {
+                if (transitionAlarmStatus(current, AlarmStatus.NO_ALARM, AlarmStatus.PENDING_ALARM)) {
+                    return;
+                }
+            } else if (alarmStatus == AlarmStatus.PENDING_ALARM) {
+                if (transitionAlarmStatus(current, AlarmStatus.PENDING_ALARM, AlarmStatus.ALARM)) {
+                    return;
+                }
+            } else {
+                return;
+            }
         }
     }
 
@@ -137,10 +318,13 @@ public class SecurityService {
      * Internal method for updating the alarm status when a sensor has been deactivated
      */
     private void handleSensorDeactivated() {
-        switch(securityRepository.getAlarmStatus()) {
-            case PENDING_ALARM -> setAlarmStatus(AlarmStatus.NO_ALARM);
-            // Line below does not meet the 4th requirement. Commented out.
-            // case ALARM -> setAlarmStatus(AlarmStatus.PENDING_ALARM);
+        while (true) {
+            int current = state();
+            // going back from ALARM to PENDING_ALARM would not meet the 4th requirement
+            if (alarmStatus(current) != AlarmStatus.PENDING_ALARM
+                    || transitionAlarmStatus(current, AlarmStatus.PENDING_ALARM, AlarmStatus.NO_ALARM)) {
+                return;
+            }
         }
     }
 
@@ -150,18 +334,56 @@ public class SecurityService {
      * @param active
      */
     public void changeSensorActivationStatus(Sensor sensor, Boolean active) {
+        synchronized (lockFor(sensor)) {
+            handleActivationChange(sensor.getActive(), active);
+            sensor.setActive(active);
+            updateSensorTable(sensor, active);
+            securityRepository.updateSensor(sensor);
+        }
+        statusEvents.sensorChanged(sensor);
+    }
+
+    /**
+     * Change the activation status for the sensor with the given id, without creating any objects
+     * on the way. Meant for high volume event sources that only know the sensor id.
+     * @return false if no sensor with that id was added to the service
+     */
+    public boolean changeSensorActivationStatus(long mostSignificantBits, long leastSignificantBits, boolean active) {
+        SensorTable table = sensorTable();
+        int index = table.indexOf(mostSignificantBits, leastSignificantBits);
+        if (index < 0) {
+            return false;
+        }
+        Sensor sensor = table.getSensor(index);
+        if (sensor == null) {
+            //removed since it was looked up
+            return false;
+        }
+        synchronized (lockFor(sensor)) {
+            //removing a sensor takes the same lock, so this tells whether it is still there
+            if (table.indexOf(mostSignificantBits, leastSignificantBits) != index) {
+                return false;
+            }
+            handleActivationChange(table.isActive(index), active);
+            table.setActive(index, active);
+            securityRepository.updateSensor(sensor);
+        }
+        statusEvents.sensorChanged(sensor);
+        return true;
+    }
+
+    /**
+     * Internal method that updates the alarm status for a sensor going from one activation status to another.
+     */
+    private void handleActivationChange(boolean wasActive, boolean active) {
         // if sensor is deactivated and I want to activate it
-        if(!sensor.getActive() && active) {
+        // or, for the 5th requirement, it is activated again
+        if (active) {
             handleSensorActivated();
             // if sensor is activated and I want to deactivate it
-        } else if (sensor.getActive() && !active) {
+        } else if (wasActive) {
             handleSensorDeactivated();
-            // condition for the 5th requirement added below:
-        } else if (sensor.getActive() && active) {
-            handleSensorActivated();
         }
-        sensor.setActive(active);
-        securityRepository.updateSensor(sensor);
     }
 
     /**
@@ -170,26 +392,189 @@ public class SecurityService {
      * @param currentCameraImage
      */
     public void processImage(BufferedImage currentCameraImage) {
-        catDetected(imageService.imageContainsCat(currentCameraImage, 50.0f));
+        catDetected(imageService.imageContainsCat(currentCameraImage, CAT_CONFIDENCE_THRESHOLD));
+    }
+
+    /**
+     * Like {@link #processImage(BufferedImage)}, classifying the image with the given image service
+     * instead, such as one following the feed of a single camera.
+     */
+    public void processImage(BufferedImage currentCameraImage, FakeImage imageService) {
+        catDetected(imageService.imageContainsCat(currentCameraImage, CAT_CONFIDENCE_THRESHOLD));
+    }
+
+    /**
+     * Send a burst of camera frames to the SecurityService for processing. The frames are classified
+     * in parallel and the alarm status is updated once, based on the decision for the whole burst.
+     * An empty burst shows nothing, so it changes nothing either.
+     * @param cameraImages
+     */
+    public void processImages(List<BufferedImage> cameraImages) {
+        if (cameraImages.isEmpty()) {
+            return;
+        }
+        catDetected(batchImageService.imageContainsCat(cameraImages, CAT_CONFIDENCE_THRESHOLD));
+    }
+
+    /**
+     * Non-blocking version of processImage. Returns immediately; the alarm status is updated on the
+     * result executor once the image service has an answer. Since several scans can be in flight,
+     * a result that arrives after the result of a newer image is ignored.
+     * @param currentCameraImage
+     * @return future completing with true if the image contains a cat
+     */
+    public CompletableFuture<Boolean> processImageAsync(BufferedImage currentCameraImage) {
+        return processImageAsync(currentCameraImage, resultExecutor);
+    }
+
+    /**
+     * Like {@link #processImageAsync(BufferedImage)}, applying the result on the given executor
+     * instead of the service's result executor.
+     * @param resultExecutor Where the result is applied to the system state
+     */
+    public CompletableFuture<Boolean> processImageAsync(BufferedImage currentCameraImage, Executor resultExecutor) {
+        long sequence = imageSequence.incrementAndGet();
+        return asyncImageService.imageContainsCat(currentCameraImage, CAT_CONFIDENCE_THRESHOLD)
+                .thenApplyAsync(cat -> {
+                    if (lastAppliedImage.getAndAccumulate(sequence, Math::max) < sequence) {
+                        catDetected(cat);
+                    }
+                    return cat;
+                }, resultExecutor);
     }
 
     public AlarmStatus getAlarmStatus() {
-        return securityRepository.getAlarmStatus();
+        return alarmStatus(state());
     }
 
     public Set<Sensor> getSensors() {
         return securityRepository.getSensors();
     }
 
+    /**
+     * Hands the sensors to the consumer a batch at a time, as the repository loads them, so they
+     * can be shown before all of them are loaded. The consumer must not block.
+     * @return future completing once every sensor was handed over
+     */
+    public CompletableFuture<Void> streamSensors(Consumer<List<Sensor>> batches) {
+        return securityRepository.streamSensors(batches);
+    }
+
+    /**
+     * @return the sensor with the given id, or null if there is none
+     */
+    public Sensor getSensor(UUID sensorId) {
+        return securityRepository.getSensor(sensorId);
+    }
+
+    /**
+     * @return number of active sensors, without looking at every sensor
+     */
+    public int getActiveSensorCount() {
+        return sensorTable().getActiveCount();
+    }
+
     public void addSensor(Sensor sensor) {
-        securityRepository.addSensor(sensor);
+        synchronized (lockFor(sensor)) {
+            securityRepository.addSensor(sensor);
+            sensorTable().add(sensor);
+        }
+        statusEvents.sensorAdded(sensor);
     }
 
     public void removeSensor(Sensor sensor) {
-        securityRepository.removeSensor(sensor);
+        synchronized (lockFor(sensor)) {
+            securityRepository.removeSensor(sensor);
+            sensorTable().remove(sensor.getSensorId());
+        }
+        statusEvents.sensorRemoved(sensor);
     }
 
     public ArmingStatus getArmingStatus() {
-        return securityRepository.getArmingStatus();
+        return armingStatus(state());
+    }
+
+    /**
+     * Shuts down the image services and the status event bus this service created itself. Scans
+     * still waiting are cancelled and status events not delivered yet are dropped.
+     */
+    @Override
+    public void close() {
+        if ((ownedComponents & OWNS_ASYNC_IMAGE_SERVICE) != 0) {
+            asyncImageService.close();
+        }
+        if ((ownedComponents & OWNS_BATCH_IMAGE_SERVICE) != 0) {
+            batchImageService.close();
+        }
+        if ((ownedComponents & OWNS_STATUS_EVENTS) != 0) {
+            statusEvents.close();
+        }
+    }
+
+    SecurityRepository getSecurityRepository() {
+        return securityRepository;
+    }
+
+    /**
+     * @return the current state word, read from the repository the first time it is needed
+     */
+    private int state() {
+        int current = state.get();
+        if ((current & LOADED) == 0) {
+            int loaded = withArmingStatus(withAlarmStatus(LOADED, securityRepository.getAlarmStatus()),
+                    securityRepository.getArmingStatus());
+            state.compareAndSet(current, loaded | (current & CAT_DETECTED));
+            current = state.get();
+        }
+        return current;
+    }
+
+    /**
+     * @return the table of sensors, filled from the repository the first time it is needed
+     */
+    private SensorTable sensorTable() {
+        if (!sensorTableLoaded) {
+            synchronized (sensorTable) {
+                if (!sensorTableLoaded) {
+                    for (Sensor sensor : securityRepository.getSensors()) {
+                        sensorTable.add(sensor);
+                    }
+                    sensorTableLoaded = true;
+                }
+            }
+        }
+        return sensorTable;
+    }
+
+    private void updateSensorTable(Sensor sensor, boolean active) {
+        SensorTable table = sensorTable();
+        UUID sensorId = sensor.getSensorId();
+        int index = table.indexOf(sensorId.getMostSignificantBits(), sensorId.getLeastSignificantBits());
+        if (index >= 0) {
+            table.setActive(index, active);
+        }
+    }
+
+    private Object lockFor(Sensor sensor) {
+        int h = sensor.getSensorId().hashCode();
+        return sensorLocks[(h ^ (h >>> 16)) & (SENSOR_LOCK_STRIPES - 1)];
+    }
+
+    private static AlarmStatus alarmStatus(int state) {
+        int code = state & ALARM_MASK;
+        return code == 0 ? null : AlarmStatus.values()[code - 1];
+    }
+
+    private static ArmingStatus armingStatus(int state) {
+        int code = (state & ARMING_MASK) >>> ARMING_SHIFT;
+        return code == 0 ? null : ArmingStatus.values()[code - 1];
+    }
+
+    private static int withAlarmStatus(int state, AlarmStatus status) {
+        return (state & ~ALARM_MASK) | (status == null ? 0 : status.ordinal() + 1);
+    }
+
+    private static int withArmingStatus(int state, ArmingStatus status) {
+        return (state & ~ARMING_MASK) | (status == null ? 0 : (status.ordinal() + 1) << ARMING_SHIFT);
     }
 }
@@ -0,0 +1,213 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorType;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Stage in front of SecurityService.changeSensorActivationStatus that keeps flapping sensors from
+ * turning every edge into an alarm decision, a repository write and a round of notifications.
+ *
+ * The first edge of a quiet sensor is passed on at once, so an intrusion is never held back. It
+ * opens a window, whose length depends on the sensor's type, and the edges arriving within it are
+ * only collected. When the window ends the sensor's net change is passed on as a single
+ * transition, and a new window is opened if there was one; otherwise the sensor is quiet again.
+ * A sensor that was activated again within a window, whether or not it was active at the time,
+ * is also reported as activated once before the net change, unless the net change is an
+ * activation itself, since the service escalates a pending alarm on every activation.
+ * Types without a window are passed through untouched.
+ *
+ * All windows share one {@link HashedWheelTimer} instead of a scheduled task per sensor, and the
+ * delayed transitions are applied on its thread.
+ */
+public class SensorDebouncer implements AutoCloseable {
+
+    private final SecurityService securityService;
+    private final Map<SensorType, Long> windowNanos = new EnumMap<>(SensorType.class);
+    private final HashedWheelTimer timer;
+    private final boolean ownsTimer;
+    private final Map<UUID, Window> windows = new ConcurrentHashMap<>();
+
+    private final LongAdder received = new LongAdder();
+    private final LongAdder forwarded = new LongAdder();
+
+    /**
+     * @param windowMillis Debounce window per sensor type; types that are missing or have a
+     *                     window of 0 are not debounced
+     */
+    public SensorDebouncer(SecurityService securityService, Map<SensorType, Long> windowMillis) {
+        this(securityService, windowMillis, new HashedWheelTimer("sensor-debounce-timer"), true);
+    }
+
+    /**
+     * @param timer Timer shared with other users, left running on close
+     */
+    public SensorDebouncer(SecurityService securityService, Map<SensorType, Long> windowMillis, HashedWheelTimer timer) {
+        this(securityService, windowMillis, timer, false);
+    }
+
+    private SensorDebouncer(SecurityService securityService, Map<SensorType, Long> windowMillis,
+                            HashedWheelTimer timer, boolean ownsTimer) {
+        for (Map.Entry<SensorType, Long> entry : windowMillis.entrySet()) {
+            if (entry.getValue() < 0) {
+                throw new IllegalArgumentException("Negative debounce window for " + entry.getKey());
+            }
+            if (entry.getValue() > 0) {
+                windowNanos.put(entry.getKey(), TimeUnit.MILLISECONDS.toNanos(entry.getValue()));
+            }
+        }
+        this.securityService = securityService;
+        this.timer = timer;
+        this.ownsTimer = ownsTimer;
+    }
+
+    /**
+     * Takes an edge reported by the sensor, to be passed on to the service now or at the end of
+     * the sensor's window.
+     */
+    public void changeSensorActivationStatus(Sensor sensor, boolean active) {
+        received.increment();
+        Long window = windowNanos.get(sensor.getSensorType());
+        if (window == null) {
+            forward(sensor, active);
+            return;
+        }
+        while (true) {
+            Window current = windows.computeIfAbsent(sensor.getSensorId(), id -> new Window(sensor));
+            synchronized (current) {
+                if (current.closed) {
+                    //the window ended while we were looking it up, the next one starts with this edge
+                    continue;
+                }
+                if (current.timeout == null) {
+                    //leading edge of a quiet sensor
+                    forward(sensor, active);
+                    current.desired = active;
+                    current.open(window);
+                } else {
+                    current.activatedAgain |= active;
+                    current.desired = active;
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return edges taken from the sensors
+     */
+    public long getReceivedCount() {
+        return received.sum();
+    }
+
+    /**
+     * @return transitions passed on to the service
+     */
+    public long getForwardedCount() {
+        return forwarded.sum();
+    }
+
+    /**
+     * @return sensors that currently have an open window
+     */
+    public int getOpenWindowCount() {
+        return windows.size();
+    }
+
+    /**
+     * Passes on the net change of every open window right away and stops the timer, if it is ours.
+     */
+    @Override
+    public void close() {
+        for (Window window : windows.values()) {
+            synchronized (window) {
+                if (!window.closed && window.timeout != null) {
+                    window.timeout.cancel();
+                    try {
+                        window.settle();
+                    } finally {
+                        window.close();
+                    }
+                }
+            }
+        }
+        if (ownsTimer) {
+            timer.close();
+        }
+    }
+
+    private void forward(Sensor sensor, boolean active) {
+        forwarded.increment();
+        securityService.changeSensorActivationStatus(sensor, active);
+    }
+
+    private final class Window {
+        private final Sensor sensor;
+        private HashedWheelTimer.Timeout timeout;
+        private boolean desired;
+        private boolean activatedAgain;
+        private boolean closed;
+
+        private Window(Sensor sensor) {
+            this.sensor = sensor;
+        }
+
+        private void open(long nanos) {
+            activatedAgain = false;
+            timeout = timer.schedule(this::end, nanos, TimeUnit.NANOSECONDS);
+        }
+
+        /**
+         * Runs on the timer thread when the window is over.
+         */
+        private void end() {
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                boolean changed = false;
+                try {
+                    changed = settle();
+                } finally {
+                    //a failed transition must not leave the sensor stuck behind a window that never ends
+                    if (changed) {
+                        //still noisy, keep collecting
+                        open(windowNanos.get(sensor.getSensorType()));
+                    } else {
+                        close();
+                    }
+                }
+            }
+        }
+
+        /**
+         * Passes on what happened in the window. Compares with the sensor itself rather than with
+         * the last forwarded edge, since arming may have reset it in the meantime.
+         * @return true if anything was passed on
+         */
+        private boolean settle() {
+            boolean changed = false;
+            boolean netActivation = desired && !Boolean.TRUE.equals(sensor.getActive());
+            if (activatedAgain && !netActivation) {
+                forward(sensor, true);
+                changed = true;
+            }
+            if (desired != Boolean.TRUE.equals(sensor.getActive())) {
+                forward(sensor, desired);
+                changed = true;
+            }
+            return changed;
+        }
+
+        private void close() {
+            closed = true;
+            windows.remove(sensor.getSensorId(), this);
+        }
+    }
+}
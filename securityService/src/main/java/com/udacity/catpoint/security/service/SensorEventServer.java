@@ -0,0 +1,291 @@
+package com.udacity.catpoint.security.service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Accepts sensor activation events over TCP and feeds them to a SecurityService, without any UI.
+ *
+ * Every event is a fixed 17 byte record: one operation byte ({@link #DEACTIVATE} or {@link #ACTIVATE})
+ * followed by the sensor id as two big-endian longs, most significant first. Clients may send any
+ * number of records back to back and split them across writes however they like. A connection
+ * sending an unknown operation is closed. Events for sensors the service does not know are counted
+ * and dropped.
+ *
+ * A selector thread reads all connections and decodes records straight into preallocated arrays of
+ * a batch. Full batches, and whatever was read once the ready connections are drained, are handed
+ * to an applier thread that passes the events to the service in arrival order. There is a fixed
+ * number of batches; when the applier falls behind, the selector waits for a free one and stops
+ * reading, which pushes back on the clients through TCP flow control.
+ */
+public class SensorEventServer implements AutoCloseable {
+
+    public static final int RECORD_BYTES = 17;
+    public static final byte DEACTIVATE = 0;
+    public static final byte ACTIVATE = 1;
+
+    private static final int BATCH_CAPACITY = 4096;
+    private static final int BATCH_COUNT = 4;
+    private static final int READ_BUFFER_BYTES = 64 * 1024;
+
+    private final SecurityService securityService;
+    private final Selector selector;
+    private final ServerSocketChannel serverChannel;
+    private final BlockingQueue<Batch> freeBatches = new ArrayBlockingQueue<>(BATCH_COUNT);
+    //one extra slot for the end marker
+    private final BlockingQueue<Batch> filledBatches = new ArrayBlockingQueue<>(BATCH_COUNT + 1);
+    private final Thread selectorThread;
+    private final Thread applierThread;
+    private final AtomicLong appliedEvents = new AtomicLong();
+    private final AtomicLong unknownSensorEvents = new AtomicLong();
+    private final AtomicLong failedEvents = new AtomicLong();
+    private final AtomicLong appliedBatches = new AtomicLong();
+    private volatile boolean closed;
+    private Batch current;
+
+    /**
+     * Binds the server socket and starts accepting connections.
+     * @param address Address to listen on; port 0 picks a free port
+     */
+    public SensorEventServer(SecurityService securityService, InetSocketAddress address) throws IOException {
+        this.securityService = securityService;
+        this.selector = Selector.open();
+        this.serverChannel = ServerSocketChannel.open();
+        try {
+            serverChannel.bind(address);
+            serverChannel.configureBlocking(false);
+            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            serverChannel.close();
+            selector.close();
+            throw e;
+        }
+        for (int i = 0; i < BATCH_COUNT; i++) {
+            freeBatches.add(new Batch());
+        }
+
+        selectorThread = new Thread(this::selectLoop, "sensor-event-selector");
+        selectorThread.setDaemon(true);
+        applierThread = new Thread(this::applyLoop, "sensor-event-applier");
+        applierThread.setDaemon(true);
+        applierThread.start();
+        selectorThread.start();
+    }
+
+    public int getLocalPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    /**
+     * @return number of events passed to the SecurityService so far
+     */
+    public long getAppliedEventCount() {
+        return appliedEvents.get();
+    }
+
+    public long getUnknownSensorEventCount() {
+        return unknownSensorEvents.get();
+    }
+
+    /**
+     * @return number of events the SecurityService threw an exception for
+     */
+    public long getFailedEventCount() {
+        return failedEvents.get();
+    }
+
+    public long getAppliedBatchCount() {
+        return appliedBatches.get();
+    }
+
+    /**
+     * Blocks until the server has been closed and every event it read has been applied.
+     */
+    public void awaitTermination() throws InterruptedException {
+        selectorThread.join();
+        applierThread.join();
+    }
+
+    /**
+     * Stops accepting and reading, and waits until the events already read have been applied, so
+     * the service and its repository can be shut down right after.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        selector.wakeup();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        try {
+            for (Thread thread : new Thread[]{selectorThread, applierThread}) {
+                if (Thread.currentThread() != thread) {
+                    thread.join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void selectLoop() {
+        try {
+            while (!closed) {
+                selector.select();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else if (key.isReadable()) {
+                        read(key);
+                    }
+                }
+                //don't let a quiet moment leave events sitting in a half full batch
+                handOff();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Sensor event server failed", e);
+        } catch (InterruptedException | ClosedSelectorException e) {
+            //closing down
+        } finally {
+            closed = true;
+            closeChannels();
+            if (current != null && current.size > 0) {
+                filledBatches.offer(current);
+            }
+            filledBatches.offer(Batch.END);
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.register(selector, SelectionKey.OP_READ, ByteBuffer.allocateDirect(READ_BUFFER_BYTES));
+    }
+
+    private void read(SelectionKey key) throws InterruptedException {
+        SocketChannel channel = (SocketChannel) key.channel();
+        ByteBuffer buffer = (ByteBuffer) key.attachment();
+        int read;
+        try {
+            read = channel.read(buffer);
+        } catch (IOException e) {
+            read = -1; //reset by the client, same as a regular close
+        }
+
+        buffer.flip();
+        boolean valid = true;
+        while (buffer.remaining() >= RECORD_BYTES) {
+            byte operation = buffer.get();
+            if (operation != DEACTIVATE && operation != ACTIVATE) {
+                valid = false;
+                break;
+            }
+            if (current == null) {
+                current = freeBatches.take();
+            }
+            current.add(operation, buffer.getLong(), buffer.getLong());
+            if (current.size == BATCH_CAPACITY) {
+                handOff();
+            }
+        }
+        buffer.compact();
+
+        if (read < 0 || !valid) {
+            key.cancel();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                //nothing left to do with it
+            }
+        }
+    }
+
+    private void handOff() throws InterruptedException {
+        if (current != null && current.size > 0) {
+            filledBatches.put(current);
+            current = null;
+        }
+    }
+
+    private void closeChannels() {
+        try {
+            for (SelectionKey key : selector.keys()) {
+                key.channel().close();
+            }
+            selector.close();
+        } catch (IOException | ClosedSelectorException e) {
+            //closing anyway
+        }
+        try {
+            serverChannel.close();
+        } catch (IOException e) {
+            //closing anyway
+        }
+    }
+
+    private void applyLoop() {
+        try {
+            while (true) {
+                Batch batch = filledBatches.take();
+                if (batch == Batch.END) {
+                    return;
+                }
+                for (int i = 0; i < batch.size; i++) {
+                    try {
+                        if (!securityService.changeSensorActivationStatus(batch.mostSignificant[i],
+                                batch.leastSignificant[i], batch.operations[i] == ACTIVATE)) {
+                            unknownSensorEvents.incrementAndGet();
+                        }
+                    } catch (RuntimeException e) {
+                        //one bad event must not stop the ones behind it
+                        failedEvents.incrementAndGet();
+                    }
+                }
+                appliedEvents.addAndGet(batch.size);
+                appliedBatches.incrementAndGet();
+                batch.size = 0;
+                freeBatches.put(batch);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Events decoded into parallel primitive arrays, reused for the lifetime of the server.
+     */
+    private static class Batch {
+        private static final Batch END = new Batch();
+
+        private final byte[] operations = new byte[BATCH_CAPACITY];
+        private final long[] mostSignificant = new long[BATCH_CAPACITY];
+        private final long[] leastSignificant = new long[BATCH_CAPACITY];
+        private int size;
+
+        private void add(byte operation, long msb, long lsb) {
+            operations[size] = operation;
+            mostSignificant[size] = msb;
+            leastSignificant[size] = lsb;
+            size++;
+        }
+    }
+}
@@ -0,0 +1,537 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.image.service.AsyncImageService;
+import com.udacity.catpoint.image.service.BatchImageService;
+import com.udacity.catpoint.image.service.FakeImage;
+import com.udacity.catpoint.security.data.AlarmStatus;
+import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.data.SecurityRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Runs many independent sites (homes) in one process, each with its own SecurityService, alarm
+ * and arming state, sensors and repository.
+ *
+ * Every site has a queue of pending events and a home worker thread picked by its id. A site with
+ * pending events sits in the run queue of its home worker, which runs up to BATCH_SIZE of its
+ * events before moving on to the next site. A site is never in more than one run queue, so its
+ * events run one at a time and in the order they were submitted, and the service's own locks are
+ * never contended. A worker without work of its own steals waiting sites from the back of the
+ * other workers' run queues, so a hot site keeps its home worker busy without holding up the
+ * sites queued behind it.
+ *
+ * Camera frames are classified with processImageAsync, so a worker never waits for the image
+ * service; the verdict is queued for the site like any other event, so it is applied on a worker
+ * as well, never on an image service thread.
+ *
+ * Sites created from a repository factory share one AsyncImageService, one BatchImageService and
+ * one status event scheduler, so the number of threads does not grow with the number of sites.
+ *
+ * Status queries across all sites read each service's state directly, without going through the
+ * workers, and never block event processing.
+ *
+ * A site's service is closed when the site is removed or the sharded service is closed, on a worker
+ * once nothing runs against it anymore. Its repository is closed along with it when the sharded
+ * service created it from a repository factory; repositories behind a SecurityService factory
+ * belong to whoever made them.
+ */
+public class ShardedSecurityService implements AutoCloseable {
+
+    /** Events run for one site before the worker moves on to the next one. */
+    public static final int BATCH_SIZE = 64;
+    /** Frames of all sites waiting for the shared image service before the oldest is dropped. */
+    public static final int DEFAULT_MAX_QUEUED_IMAGES = 1024;
+    /** Time close waits for the workers to finish the batches they are running. */
+    public static final long CLOSE_TIMEOUT_MILLIS = 10_000;
+
+    private static final Logger log = LoggerFactory.getLogger(ShardedSecurityService.class);
+    //queued for a removed site, the one task it still runs
+    private static final Consumer<SecurityService> CLOSE_SITE = service -> {
+    };
+
+    private final Function<String, SecurityService> siteFactory;
+    private final boolean ownsRepositories;
+    //shared by the sites, closed with the service if it created them
+    private final AsyncImageService sharedAsyncImages;
+    private final BatchImageService sharedBatchImages;
+    private final ScheduledExecutorService sharedStatusScheduler;
+    private final Worker[] workers;
+    private final Map<String, Site> sites = new ConcurrentHashMap<>();
+    //removed, but not closed yet
+    private final Set<Site> removedSites = ConcurrentHashMap.newKeySet();
+    private volatile boolean closed;
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder processed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder stolen = new LongAdder();
+
+    /**
+     * Uses one worker per available processor.
+     */
+    public ShardedSecurityService(Function<String, SecurityService> siteFactory) {
+        this(Runtime.getRuntime().availableProcessors(), siteFactory);
+    }
+
+    /**
+     * @param workerCount Number of worker threads
+     * @param siteFactory Creates the SecurityService of a site from its id
+     */
+    public ShardedSecurityService(int workerCount, Function<String, SecurityService> siteFactory) {
+        this(workerCount, siteFactory, false, null, null, null);
+    }
+
+    /**
+     * Creates the services of the sites itself, all on the same image services and status event
+     * scheduler, which are shut down on close.
+     * @param repositoryFactory Creates the repository of a site from its id
+     */
+    public ShardedSecurityService(int workerCount, Function<String, SecurityRepository> repositoryFactory,
+                                  FakeImage imageService) {
+        this(workerCount, repositoryFactory, imageService,
+                new AsyncImageService(imageService, AsyncImageService.DEFAULT_MAX_IN_FLIGHT, DEFAULT_MAX_QUEUED_IMAGES,
+                        AsyncImageService.DEFAULT_TIMEOUT_MILLIS),
+                new BatchImageService(imageService), StatusEventBus.newScheduler(), true);
+    }
+
+    /**
+     * Creates the services of the sites itself, all on the given image services and status event
+     * scheduler, which are left running on close.
+     * @param repositoryFactory Creates the repository of a site from its id
+     */
+    public ShardedSecurityService(int workerCount, Function<String, SecurityRepository> repositoryFactory,
+                                  FakeImage imageService, AsyncImageService asyncImageService,
+                                  BatchImageService batchImageService, ScheduledExecutorService statusScheduler) {
+        this(workerCount, repositoryFactory, imageService, asyncImageService, batchImageService, statusScheduler, false);
+    }
+
+    private ShardedSecurityService(int workerCount, Function<String, SecurityRepository> repositoryFactory,
+                                   FakeImage imageService, AsyncImageService asyncImageService,
+                                   BatchImageService batchImageService, ScheduledExecutorService statusScheduler,
+                                   boolean ownsComponents) {
+        //verdicts of processImage are applied on the workers, Runnable::run only serves direct callers
+        this(workerCount, siteId -> new SecurityService(repositoryFactory.apply(siteId), imageService,
+                        asyncImageService, batchImageService, Runnable::run,
+                        new StatusEventBus(StatusEventBus.DEFAULT_FRAME_INTERVAL_MILLIS, statusScheduler)),
+                true, ownsComponents ? asyncImageService : null, ownsComponents ? batchImageService : null,
+                ownsComponents ? statusScheduler : null);
+    }
+
+    private ShardedSecurityService(int workerCount, Function<String, SecurityService> siteFactory,
+                                   boolean ownsRepositories, AsyncImageService sharedAsyncImages, BatchImageService sharedBatchImages,
+                                   ScheduledExecutorService sharedStatusScheduler) {
+        if (workerCount < 1) {
+            throw new IllegalArgumentException("At least one worker is required");
+        }
+        this.siteFactory = siteFactory;
+        this.ownsRepositories = ownsRepositories;
+        this.sharedAsyncImages = sharedAsyncImages;
+        this.sharedBatchImages = sharedBatchImages;
+        this.sharedStatusScheduler = sharedStatusScheduler;
+        this.workers = new Worker[workerCount];
+        for (int i = 0; i < workerCount; i++) {
+            workers[i] = new Worker(i);
+        }
+        for (Worker worker : workers) {
+            Thread thread = new Thread(worker, "site-worker-" + worker.index);
+            thread.setDaemon(true);
+            worker.thread = thread;
+            thread.start();
+        }
+    }
+
+    /**
+     * Creates a site, unless it exists already.
+     * @return the site's SecurityService
+     */
+    public SecurityService addSite(String siteId) {
+        Site site = sites.computeIfAbsent(siteId, id -> new Site(id, siteFactory.apply(id), homeWorker(id)));
+        return site.service;
+    }
+
+    /**
+     * Removes a site. Events still waiting for it are dropped, and its service is closed once the
+     * event running now, if any, is done.
+     */
+    public void removeSite(String siteId) {
+        Site site = sites.remove(siteId);
+        if (site != null) {
+            removedSites.add(site);
+            site.removed = true;
+            site.tasks.add(CLOSE_SITE);
+            site.schedule();
+        }
+    }
+
+    public SecurityService getSite(String siteId) {
+        Site site = sites.get(siteId);
+        return site == null ? null : site.service;
+    }
+
+    public int getSiteCount() {
+        return sites.size();
+    }
+
+    public int getWorkerCount() {
+        return workers.length;
+    }
+
+    /**
+     * Queues a task to run against the site's SecurityService on one of the workers. Tasks for the
+     * same site run one after another in the order they were submitted. Never blocks.
+     * @return false if there is no such site or the service was closed
+     */
+    public boolean execute(String siteId, Consumer<SecurityService> task) {
+        Site site = sites.get(siteId);
+        if (site == null || closed) {
+            return false;
+        }
+        submitted.increment();
+        site.tasks.add(task);
+        site.schedule();
+        return true;
+    }
+
+    /**
+     * Like {@link #execute}, with the result of the task.
+     * @return the result, completed exceptionally if the task failed, there is no such site or the
+     * service was closed
+     */
+    public <T> CompletableFuture<T> submit(String siteId, Function<SecurityService, T> task) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        boolean queued = execute(siteId, service -> {
+            try {
+                result.complete(task.apply(service));
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+                throw e;
+            }
+        });
+        if (!queued) {
+            result.completeExceptionally(closed
+                    ? new IllegalStateException("Sharded security service is closed")
+                    : new IllegalArgumentException("Unknown site " + siteId));
+        }
+        return result;
+    }
+
+    /**
+     * @return false if there is no such site or the service was closed
+     */
+    public boolean changeSensorActivationStatus(String siteId, long mostSignificantBits, long leastSignificantBits, boolean active) {
+        return execute(siteId, service -> service.changeSensorActivationStatus(mostSignificantBits, leastSignificantBits, active));
+    }
+
+    /**
+     * @return false if there is no such site or the service was closed
+     */
+    public boolean setArmingStatus(String siteId, ArmingStatus armingStatus) {
+        return execute(siteId, service -> service.setArmingStatus(armingStatus));
+    }
+
+    /**
+     * Starts classifying a camera frame of the site; the verdict is queued for the site once it is
+     * known, and dropped if the site was removed or the service closed in the meantime.
+     * @return false if there is no such site or the service was closed
+     */
+    public boolean processImage(String siteId, BufferedImage image) {
+        Executor applyOnWorker = verdict -> {
+            if (!execute(siteId, service -> verdict.run())) {
+                throw new RejectedExecutionException("Site " + siteId + " is gone");
+            }
+        };
+        return execute(siteId, service -> service.processImageAsync(image, applyOnWorker));
+    }
+
+    /**
+     * @return number of sites in each alarm status
+     */
+    public Map<AlarmStatus, Integer> getAlarmStatusCounts() {
+        Map<AlarmStatus, Integer> counts = new EnumMap<>(AlarmStatus.class);
+        for (AlarmStatus status : AlarmStatus.values()) {
+            counts.put(status, 0);
+        }
+        for (Site site : sites.values()) {
+            counts.merge(site.service.getAlarmStatus(), 1, Integer::sum);
+        }
+        return counts;
+    }
+
+    /**
+     * @return number of sites in each arming status
+     */
+    public Map<ArmingStatus, Integer> getArmingStatusCounts() {
+        Map<ArmingStatus, Integer> counts = new EnumMap<>(ArmingStatus.class);
+        for (ArmingStatus status : ArmingStatus.values()) {
+            counts.put(status, 0);
+        }
+        for (Site site : sites.values()) {
+            counts.merge(site.service.getArmingStatus(), 1, Integer::sum);
+        }
+        return counts;
+    }
+
+    /**
+     * @return ids of the sites currently in the given alarm status
+     */
+    public List<String> getSiteIds(AlarmStatus status) {
+        List<String> siteIds = new ArrayList<>();
+        for (Map.Entry<String, Site> entry : sites.entrySet()) {
+            if (entry.getValue().service.getAlarmStatus() == status) {
+                siteIds.add(entry.getKey());
+            }
+        }
+        return siteIds;
+    }
+
+    /**
+     * @return active sensors over all sites
+     */
+    public long getActiveSensorCount() {
+        long count = 0;
+        for (Site site : sites.values()) {
+            count += site.service.getActiveSensorCount();
+        }
+        return count;
+    }
+
+    public long getSubmittedCount() {
+        return submitted.sum();
+    }
+
+    public long getProcessedCount() {
+        return processed.sum();
+    }
+
+    /**
+     * @return tasks that threw an exception
+     */
+    public long getFailedCount() {
+        return failed.sum();
+    }
+
+    /**
+     * @return times a worker took over a waiting site from another worker's run queue
+     */
+    public long getStolenCount() {
+        return stolen.sum();
+    }
+
+    /**
+     * Stops the workers, waiting up to CLOSE_TIMEOUT_MILLIS for the batches they are running, then
+     * closes the sites and the image services and scheduler it created. Events still waiting are
+     * dropped. Sites are only closed if every worker stopped in time, so none is closed under a
+     * running event.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (Worker worker : workers) {
+            LockSupport.unpark(worker.thread);
+        }
+        boolean stopped = true;
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(CLOSE_TIMEOUT_MILLIS);
+        try {
+            for (Worker worker : workers) {
+                if (Thread.currentThread() != worker.thread) {
+                    worker.thread.join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+                    stopped &= !worker.thread.isAlive();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            stopped = false;
+        }
+        if (stopped) {
+            for (Site site : sites.values()) {
+                site.close();
+            }
+            for (Site site : removedSites) {
+                site.close();
+            }
+        } else {
+            log.warn("Workers still busy after {} ms, leaving the sites open", CLOSE_TIMEOUT_MILLIS);
+        }
+        if (sharedAsyncImages != null) {
+            sharedAsyncImages.close();
+        }
+        if (sharedBatchImages != null) {
+            sharedBatchImages.close();
+        }
+        if (sharedStatusScheduler != null) {
+            sharedStatusScheduler.shutdownNow();
+        }
+    }
+
+    private Worker homeWorker(String siteId) {
+        return workers[homeWorkerIndex(siteId)];
+    }
+
+    int homeWorkerIndex(String siteId) {
+        int h = siteId.hashCode();
+        return Math.floorMod(h ^ (h >>> 16), workers.length);
+    }
+
+    private final class Site {
+        private final String id;
+        private final SecurityService service;
+        private final Worker home;
+        private final ConcurrentLinkedQueue<Consumer<SecurityService>> tasks = new ConcurrentLinkedQueue<>();
+        //true while the site is in a run queue or being run, which keeps it in only one place
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private volatile boolean removed;
+        private final AtomicBoolean siteClosed = new AtomicBoolean();
+
+        private Site(String id, SecurityService service, Worker home) {
+            this.id = id;
+            this.service = service;
+            this.home = home;
+        }
+
+        private void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                home.runQueue.addLast(this);
+                //a busy home worker leaves the site to be stolen by an idle one
+                if (!home.wake()) {
+                    for (Worker worker : workers) {
+                        if (worker.wake()) {
+                            break;
+                        }
+                    }
+                }
+            }
+        }
+
+        /**
+         * Closes the service, and the repository if it was created for the site. Only the first
+         * call does anything.
+         */
+        private void close() {
+            if (!siteClosed.compareAndSet(false, true)) {
+                return;
+            }
+            removedSites.remove(this);
+            service.close();
+            SecurityRepository repository = service.getSecurityRepository();
+            if (ownsRepositories && repository instanceof AutoCloseable) {
+                try {
+                    ((AutoCloseable) repository).close();
+                } catch (Exception e) {
+                    log.warn("Unable to close the repository of site {}", id, e);
+                }
+            }
+        }
+
+        /**
+         * Runs up to BATCH_SIZE tasks.
+         * @return true if tasks are left and the site has to be queued again
+         */
+        private boolean runBatch() {
+            for (int i = 0; i < BATCH_SIZE; i++) {
+                Consumer<SecurityService> task = tasks.poll();
+                if (task == null) {
+                    break;
+                }
+                if (removed) {
+                    if (task == CLOSE_SITE) {
+                        close();
+                    }
+                    continue;
+                }
+                try {
+                    task.accept(service);
+                } catch (RuntimeException e) {
+                    failed.increment();
+                }
+                processed.increment();
+            }
+            if (!tasks.isEmpty()) {
+                return true;
+            }
+            scheduled.set(false);
+            //a task added after the queue looked empty may have found the site still scheduled
+            return !tasks.isEmpty() && scheduled.compareAndSet(false, true);
+        }
+    }
+
+    private final class Worker implements Runnable {
+        private final int index;
+        private final ConcurrentLinkedDeque<Site> runQueue = new ConcurrentLinkedDeque<>();
+        private volatile Thread thread;
+        private volatile boolean parked;
+
+        private Worker(int index) {
+            this.index = index;
+        }
+
+        /**
+         * @return true if the worker was parked and has been woken up
+         */
+        private boolean wake() {
+            if (parked) {
+                parked = false;
+                LockSupport.unpark(thread);
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public void run() {
+            while (!closed) {
+                Site site = nextSite();
+                if (site == null) {
+                    parked = true;
+                    //look again, a site queued before parked was set would not have woken us
+                    site = nextSite();
+                    if (site == null) {
+                        LockSupport.park(this);
+                        parked = false;
+                        continue;
+                    }
+                    parked = false;
+                }
+                if (site.runBatch()) {
+                    runQueue.addLast(site);
+                }
+            }
+        }
+
+        private Site nextSite() {
+            Site site = runQueue.pollFirst();
+            if (site != null) {
+                return site;
+            }
+            for (int i = 1; i < workers.length; i++) {
+                Worker victim = workers[(index + i) % workers.length];
+                site = victim.runQueue.pollLast();
+                if (site != null) {
+                    stolen.increment();
+                    return site;
+                }
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,325 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.security.application.StatusListener;
+import com.udacity.catpoint.security.data.AlarmStatus;
+import com.udacity.catpoint.security.data.Sensor;
+
+import javax.swing.SwingUtilities;
+import java.awt.Component;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+
+/**
+ * Delivers status changes from the SecurityService to its StatusListeners without making the
+ * service wait for them.
+ *
+ * Events are coalesced per listener over one frame interval: the first event after a delivery
+ * schedules the next one, and everything published until then is folded into it. A listener
+ * therefore sees at most one sensorStatusChanged per frame, and only the latest alarm status and
+ * cat detection result of that frame, in that order. Sensor added, removed and changed events are
+ * folded per sensor, so a sensor toggled many times within a frame is reported once, and one that
+ * was added and removed again not at all. They are delivered after the cat detection result, in
+ * the order the sensors were first touched in the frame. Swing components are called on the event
+ * dispatch thread, all other listeners on the bus thread, unless an executor is given explicitly.
+ *
+ * Listeners may be added and removed from any thread, including from inside a callback.
+ */
+public class StatusEventBus implements AutoCloseable {
+
+    public static final long DEFAULT_FRAME_INTERVAL_MILLIS = 16;
+
+    private final long frameIntervalMillis;
+    private final LongConsumer deliveryTimes;
+    private final ScheduledExecutorService scheduler;
+    private final boolean ownsScheduler;
+    private volatile boolean closed;
+    private final CopyOnWriteArrayList<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+
+    public StatusEventBus() {
+        this(DEFAULT_FRAME_INTERVAL_MILLIS);
+    }
+
+    /**
+     * @param frameIntervalMillis How long events are collected before they are delivered
+     */
+    public StatusEventBus(long frameIntervalMillis) {
+        this(frameIntervalMillis, (LongConsumer) null);
+    }
+
+    /**
+     * @param frameIntervalMillis How long events are collected before they are delivered
+     * @param deliveryTimes Receives how long each delivery to a listener took, in nanoseconds
+     */
+    public StatusEventBus(long frameIntervalMillis, LongConsumer deliveryTimes) {
+        this(frameIntervalMillis, deliveryTimes, newScheduler(), true);
+    }
+
+    /**
+     * @param frameIntervalMillis How long events are collected before they are delivered
+     * @param scheduler Schedules the deliveries, for example shared by the buses of many services;
+     *                  left running on close
+     */
+    public StatusEventBus(long frameIntervalMillis, ScheduledExecutorService scheduler) {
+        this(frameIntervalMillis, null, scheduler, false);
+    }
+
+    private StatusEventBus(long frameIntervalMillis, LongConsumer deliveryTimes, ScheduledExecutorService scheduler,
+                           boolean ownsScheduler) {
+        if (frameIntervalMillis < 0) {
+            throw new IllegalArgumentException("Frame interval must not be negative");
+        }
+        this.frameIntervalMillis = frameIntervalMillis;
+        this.deliveryTimes = deliveryTimes;
+        this.scheduler = scheduler;
+        this.ownsScheduler = ownsScheduler;
+    }
+
+    /**
+     * @return a single thread scheduler for status event buses, whose thread is only started once
+     * there is something to deliver
+     */
+    public static ScheduledThreadPoolExecutor newScheduler() {
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread t = new Thread(r, "status-event-bus");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.setKeepAliveTime(1, TimeUnit.SECONDS);
+        scheduler.allowCoreThreadTimeOut(true);
+        return scheduler;
+    }
+
+    /**
+     * Registers the listener, delivering on the event dispatch thread if it is a Swing component
+     * and on the bus thread otherwise. Registering the same listener twice has no effect.
+     */
+    public void subscribe(StatusListener listener) {
+        subscribe(listener, listener instanceof Component ? SwingUtilities::invokeLater : Runnable::run);
+    }
+
+    /**
+     * Registers the listener, delivering its events through the given executor.
+     */
+    public void subscribe(StatusListener listener, Executor executor) {
+        if (listener == null) {
+            return;
+        }
+        subscriptions.addIfAbsent(new Subscription(listener, executor));
+    }
+
+    public void unsubscribe(StatusListener listener) {
+        for (Subscription subscription : subscriptions) {
+            if (subscription.listener == listener) {
+                subscription.active = false;
+                subscriptions.remove(subscription);
+            }
+        }
+    }
+
+    public void alarmStatusChanged(AlarmStatus status) {
+        for (Subscription subscription : subscriptions) {
+            subscription.publish(status, null, false);
+        }
+    }
+
+    public void catDetected(boolean cat) {
+        for (Subscription subscription : subscriptions) {
+            subscription.publish(null, cat, false);
+        }
+    }
+
+    public void sensorStatusChanged() {
+        for (Subscription subscription : subscriptions) {
+            subscription.publish(null, null, true);
+        }
+    }
+
+    public void sensorAdded(Sensor sensor) {
+        publishSensorEvent(sensor, SensorEvent.ADDED);
+    }
+
+    public void sensorRemoved(Sensor sensor) {
+        publishSensorEvent(sensor, SensorEvent.REMOVED);
+    }
+
+    public void sensorChanged(Sensor sensor) {
+        publishSensorEvent(sensor, SensorEvent.CHANGED);
+    }
+
+    private void publishSensorEvent(Sensor sensor, SensorEvent event) {
+        //no iterator for the common case of an event source running without any UI
+        if (subscriptions.isEmpty()) {
+            return;
+        }
+        for (Subscription subscription : subscriptions) {
+            subscription.publishSensorEvent(sensor, event);
+        }
+    }
+
+    /**
+     * Stops delivering. Events still waiting for their frame are dropped.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        if (ownsScheduler) {
+            scheduler.shutdownNow();
+        }
+        for (Subscription subscription : subscriptions) {
+            subscription.active = false;
+        }
+        subscriptions.clear();
+    }
+
+    /**
+     * What happened to a sensor within one frame, as seen by a listener that knew the sensor
+     * before the frame started (or not, for ADDED).
+     */
+    private enum SensorEvent {
+        ADDED, REMOVED, CHANGED, NONE;
+
+        private SensorEvent then(SensorEvent next) {
+            if (this == ADDED) {
+                return next == REMOVED ? NONE : ADDED;
+            }
+            if (this == NONE) {
+                return next == ADDED ? ADDED : NONE;
+            }
+            if (this == REMOVED) {
+                //the listener still has the sensor, only its details may have changed
+                return next == ADDED ? CHANGED : REMOVED;
+            }
+            return next == REMOVED ? REMOVED : CHANGED;
+        }
+    }
+
+    private final class Subscription {
+        private final StatusListener listener;
+        private final Executor executor;
+        private volatile boolean active = true;
+
+        //pending events, guarded by this
+        private AlarmStatus alarmStatus;
+        private Boolean cat;
+        private boolean sensorsChanged;
+        private Map<Sensor, SensorEvent> sensorEvents = new IdentityHashMap<>();
+        private List<Sensor> sensorOrder = new ArrayList<>();
+        private boolean scheduled;
+
+        private Subscription(StatusListener listener, Executor executor) {
+            this.listener = listener;
+            this.executor = executor;
+        }
+
+        private void publish(AlarmStatus status, Boolean catDetected, boolean sensorChange) {
+            synchronized (this) {
+                if (status != null) {
+                    alarmStatus = status;
+                }
+                if (catDetected != null) {
+                    cat = catDetected;
+                }
+                sensorsChanged |= sensorChange;
+                if (scheduled || closed || scheduler.isShutdown()) {
+                    return;
+                }
+                scheduled = true;
+            }
+            schedule();
+        }
+
+        private void publishSensorEvent(Sensor sensor, SensorEvent event) {
+            synchronized (this) {
+                SensorEvent pending = sensorEvents.get(sensor);
+                if (pending == null) {
+                    sensorEvents.put(sensor, event);
+                    sensorOrder.add(sensor);
+                } else {
+                    sensorEvents.put(sensor, pending.then(event));
+                }
+                if (scheduled || closed || scheduler.isShutdown()) {
+                    return;
+                }
+                scheduled = true;
+            }
+            schedule();
+        }
+
+        private void schedule() {
+            try {
+                scheduler.schedule(() -> executor.execute(this::deliver), frameIntervalMillis, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                //closed in the meantime, nothing will be delivered anymore
+            }
+        }
+
+        private void deliver() {
+            AlarmStatus status;
+            Boolean catDetected;
+            boolean sensorChange;
+            Map<Sensor, SensorEvent> events;
+            List<Sensor> order;
+            synchronized (this) {
+                status = alarmStatus;
+                catDetected = cat;
+                sensorChange = sensorsChanged;
+                events = sensorEvents;
+                order = sensorOrder;
+                alarmStatus = null;
+                cat = null;
+                sensorsChanged = false;
+                if (!order.isEmpty()) {
+                    sensorEvents = new IdentityHashMap<>();
+                    sensorOrder = new ArrayList<>();
+                }
+                scheduled = false;
+            }
+            if (!active) {
+                return; //unsubscribed while the events were waiting
+            }
+            long start = deliveryTimes == null ? 0 : System.nanoTime();
+            if (status != null) {
+                listener.notify(status);
+            }
+            if (catDetected != null) {
+                listener.catDetected(catDetected);
+            }
+            for (Sensor sensor : order) {
+                switch (events.get(sensor)) {
+                    case ADDED -> listener.sensorAdded(sensor);
+                    case REMOVED -> listener.sensorRemoved(sensor);
+                    case CHANGED -> listener.sensorChanged(sensor);
+                    default -> {
+                        //added and removed again within the frame
+                    }
+                }
+            }
+            if (sensorChange) {
+                listener.sensorStatusChanged();
+            }
+            if (deliveryTimes != null) {
+                deliveryTimes.accept(System.nanoTime() - start);
+            }
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Subscription && ((Subscription) o).listener == listener;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(listener);
+        }
+    }
+}
@@ -5,6 +5,9 @@ module com.udacity.catpoint.securityService {
     requires com.google.common;
     requires com.google.gson;
     requires java.prefs;
+    requires java.management;
+    requires jdk.httpserver;
+    requires org.slf4j;
     opens com.udacity.catpoint.security.data to com.google.gson;
     opens com.udacity.catpoint.security.service to com.google.gson;
 }
\ No newline at end of file
@@ -0,0 +1,116 @@
+package com.udacity.catpoint.security.data;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EventLogSecurityRepositoryImplTest {
+
+    @TempDir
+    Path directory;
+
+    private EventLogSecurityRepositoryImpl open() {
+        return new EventLogSecurityRepositoryImpl(directory, 60_000, 1 << 20);
+    }
+
+    @Test
+    public void reopen_replaysEveryRecordedChange() {
+        Sensor door = new Sensor("door", SensorType.DOOR);
+        Sensor window = new Sensor("window", SensorType.WINDOW);
+
+        EventLogSecurityRepositoryImpl repository = open();
+        repository.addSensor(door);
+        repository.addSensor(window);
+        door.setActive(true);
+        repository.updateSensor(door);
+        repository.removeSensor(window);
+        repository.setArmingStatus(ArmingStatus.ARMED_AWAY);
+        repository.setAlarmStatus(AlarmStatus.PENDING_ALARM);
+        repository.close();
+
+        EventLogSecurityRepositoryImpl reopened = open();
+        assertEquals(1, reopened.getSensors().size());
+        Sensor loaded = reopened.getSensors().iterator().next();
+        assertEquals(door.getSensorId(), loaded.getSensorId());
+        assertEquals("door", loaded.getName());
+        assertEquals(SensorType.DOOR, loaded.getSensorType());
+        assertTrue(loaded.getActive());
+        assertEquals(ArmingStatus.ARMED_AWAY, reopened.getArmingStatus());
+        assertEquals(AlarmStatus.PENDING_ALARM, reopened.getAlarmStatus());
+        reopened.close();
+    }
+
+    @Test
+    public void sensorNameTooLongToLog_isRejectedWithoutBeingKept() {
+        Sensor door = new Sensor("door", SensorType.DOOR);
+        Sensor tooLong = new Sensor("x".repeat(SensorCodec.MAX_NAME_BYTES + 1), SensorType.WINDOW);
+
+        EventLogSecurityRepositoryImpl repository = open();
+        repository.addSensor(door);
+        assertThrows(IllegalArgumentException.class, () -> repository.addSensor(tooLong));
+        assertThrows(IllegalArgumentException.class, () -> repository.updateSensor(tooLong));
+        assertEquals(1, repository.getSensors().size());
+        assertNull(repository.getSensor(tooLong.getSensorId()));
+        repository.close();
+
+        EventLogSecurityRepositoryImpl reopened = open();
+        assertEquals(1, reopened.getSensors().size());
+        reopened.close();
+    }
+
+    @Test
+    public void getSensors_isASnapshot_thatLaterChangesLeaveAlone() {
+        EventLogSecurityRepositoryImpl repository = open();
+        repository.addSensor(new Sensor("door", SensorType.DOOR));
+        Set<Sensor> sensors = repository.getSensors();
+
+        repository.addSensor(new Sensor("window", SensorType.WINDOW));
+        repository.removeSensor(sensors.iterator().next());
+        assertEquals(1, sensors.size());
+        assertEquals(1, repository.getSensors().size());
+        repository.close();
+    }
+
+    @Test
+    public void compact_writesSnapshotAndDeletesCoveredLogs() throws IOException {
+        EventLogSecurityRepositoryImpl repository = open();
+        for (int i = 0; i < 100; i++) {
+            repository.addSensor(new Sensor("sensor" + i, SensorType.MOTION));
+        }
+        repository.compact();
+        repository.setAlarmStatus(AlarmStatus.ALARM);
+        repository.close();
+
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(2, files.count()); // the snapshot plus the log written after it
+        }
+
+        EventLogSecurityRepositoryImpl reopened = open();
+        assertEquals(100, reopened.getSensors().size());
+        assertEquals(AlarmStatus.ALARM, reopened.getAlarmStatus());
+        reopened.close();
+    }
+
+    @Test
+    public void logLargerThanOneMapping_isReplayedCompletely() {
+        EventLogSecurityRepositoryImpl repository = open();
+        Sensor sensor = new Sensor("flapping", SensorType.DOOR);
+        repository.addSensor(sensor);
+        for (int i = 0; i < 100_000; i++) {
+            sensor.setActive(i % 2 == 0);
+            repository.updateSensor(sensor);
+        }
+        repository.close();
+
+        EventLogSecurityRepositoryImpl reopened = open();
+        assertFalse(reopened.getSensors().iterator().next().getActive());
+        reopened.close();
+    }
+}
@@ -0,0 +1,211 @@
+package com.udacity.catpoint.security.data;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.prefs.BackingStoreException;
+import java.util.prefs.Preferences;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PretendDatabaseSecurityRepositoryImplTest {
+
+    private final Preferences node = Preferences.userRoot().node("catpoint-test-" + UUID.randomUUID());
+    private final List<Runnable> loads = new ArrayList<>();
+
+    @AfterEach
+    void removeNode() throws BackingStoreException {
+        node.removeNode();
+    }
+
+    private PretendDatabaseSecurityRepositoryImpl store(int sensorCount) {
+        PretendDatabaseSecurityRepositoryImpl repository = new PretendDatabaseSecurityRepositoryImpl(node,
+                WriteBehindPolicy.WRITE_THROUGH, SensorFormat.BINARY);
+        for (int i = 0; i < sensorCount; i++) {
+            repository.addSensor(new Sensor("sensor " + i, SensorType.DOOR));
+        }
+        repository.setArmingStatus(ArmingStatus.ARMED_HOME);
+        return repository;
+    }
+
+    private PretendDatabaseSecurityRepositoryImpl openInBackground() {
+        return new PretendDatabaseSecurityRepositoryImpl(node, WriteBehindPolicy.WRITE_THROUGH, SensorFormat.BINARY,
+                loads::add);
+    }
+
+    @Test
+    public void getSensors_isASnapshot_thatLaterChangesLeaveAlone() {
+        PretendDatabaseSecurityRepositoryImpl repository = store(3);
+        Set<Sensor> sensors = repository.getSensors();
+
+        repository.addSensor(new Sensor("sensor 3", SensorType.WINDOW));
+        repository.removeSensor(sensors.iterator().next());
+        assertEquals(3, sensors.size());
+        assertEquals(3, repository.getSensors().size());
+    }
+
+    @Test
+    public void backgroundLoad_hasStatusAtOnce_andStreamsSensorsInBatches() throws Exception {
+        int count = 2 * PretendDatabaseSecurityRepositoryImpl.LOAD_BATCH_SIZE + 10;
+        store(count);
+
+        PretendDatabaseSecurityRepositoryImpl repository = openInBackground();
+        assertEquals(ArmingStatus.ARMED_HOME, repository.getArmingStatus());
+        assertEquals(AlarmStatus.NO_ALARM, repository.getAlarmStatus());
+        assertFalse(repository.isSensorLoadComplete());
+
+        List<Integer> batchSizes = new ArrayList<>();
+        CompletableFuture<Void> streamed = repository.streamSensors(batch -> batchSizes.add(batch.size()));
+        assertFalse(streamed.isDone());
+        loads.forEach(Runnable::run);
+
+        streamed.get(5, TimeUnit.SECONDS);
+        assertEquals(List.of(PretendDatabaseSecurityRepositoryImpl.LOAD_BATCH_SIZE,
+                PretendDatabaseSecurityRepositoryImpl.LOAD_BATCH_SIZE, 10), batchSizes);
+        assertEquals(count, repository.getSensors().size());
+
+        //a late consumer gets everything at once
+        List<Integer> late = new ArrayList<>();
+        assertTrue(repository.streamSensors(batch -> late.add(batch.size())).isDone());
+        assertEquals(List.of(count), late);
+    }
+
+    @Test
+    public void sensorChanges_waitForTheLoad_soNothingIsLost() throws Exception {
+        store(3);
+        PretendDatabaseSecurityRepositoryImpl repository = openInBackground();
+
+        Sensor window = new Sensor("window", SensorType.WINDOW);
+        Thread adder = new Thread(() -> repository.addSensor(window));
+        adder.start();
+        adder.join(100);
+        assertTrue(adder.isAlive());
+
+        loads.forEach(Runnable::run);
+        adder.join(5_000);
+        assertFalse(adder.isAlive());
+        assertEquals(4, repository.getSensors().size());
+        assertEquals(4, new PretendDatabaseSecurityRepositoryImpl(node, WriteBehindPolicy.WRITE_THROUGH,
+                SensorFormat.BINARY).getSensors().size());
+    }
+
+    private PretendDatabaseSecurityRepositoryImpl openWriteBehind(int dirtyThreshold) {
+        return new PretendDatabaseSecurityRepositoryImpl(node, WriteBehindPolicy.writeBehind(60_000, dirtyThreshold, false),
+                SensorFormat.BINARY);
+    }
+
+    private PretendDatabaseSecurityRepositoryImpl reopen() {
+        return new PretendDatabaseSecurityRepositoryImpl(node, WriteBehindPolicy.WRITE_THROUGH, SensorFormat.BINARY);
+    }
+
+    @Test
+    public void writeBehind_readsOwnWritesAtOnce_andStoresThemOnlyOnFlush() {
+        try (PretendDatabaseSecurityRepositoryImpl repository = openWriteBehind(100)) {
+            repository.addSensor(new Sensor("door", SensorType.DOOR));
+            repository.setArmingStatus(ArmingStatus.ARMED_AWAY);
+
+            assertEquals(1, repository.getSensors().size());
+            assertEquals(ArmingStatus.ARMED_AWAY, repository.getArmingStatus());
+            assertNull(node.get("ARMING_STATUS", null));
+
+            repository.flush();
+            PretendDatabaseSecurityRepositoryImpl reopened = reopen();
+            assertEquals(1, reopened.getSensors().size());
+            assertEquals(ArmingStatus.ARMED_AWAY, reopened.getArmingStatus());
+        }
+    }
+
+    @Test
+    public void writeBehind_flushesEarlyOnceDirtyThresholdIsReached() throws InterruptedException {
+        try (PretendDatabaseSecurityRepositoryImpl repository = openWriteBehind(3)) {
+            repository.addSensor(new Sensor("door", SensorType.DOOR));
+            repository.addSensor(new Sensor("window", SensorType.WINDOW));
+            Thread.sleep(100);
+            assertNull(node.getByteArray("SENSORS_BINARY", null));
+
+            //the third change sends the whole batch off, well before the flush interval
+            repository.setAlarmStatus(AlarmStatus.PENDING_ALARM);
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (node.get("ALARM_STATUS", null) == null && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            PretendDatabaseSecurityRepositoryImpl reopened = reopen();
+            assertEquals(2, reopened.getSensors().size());
+            assertEquals(AlarmStatus.PENDING_ALARM, reopened.getAlarmStatus());
+        }
+    }
+
+    @Test
+    public void writeBehind_close_flushesPendingChanges() {
+        PretendDatabaseSecurityRepositoryImpl repository = openWriteBehind(100);
+        repository.addSensor(new Sensor("door", SensorType.DOOR));
+        repository.setArmingStatus(ArmingStatus.ARMED_HOME);
+        repository.close();
+
+        PretendDatabaseSecurityRepositoryImpl reopened = reopen();
+        assertEquals(1, reopened.getSensors().size());
+        assertEquals(ArmingStatus.ARMED_HOME, reopened.getArmingStatus());
+    }
+
+    @Test
+    public void writeBehind_close_reportsChangesThatCannotBeWritten() throws BackingStoreException {
+        Preferences removed = node.node("removed");
+        PretendDatabaseSecurityRepositoryImpl repository = new PretendDatabaseSecurityRepositoryImpl(removed,
+                WriteBehindPolicy.writeBehind(60_000, 100, false), SensorFormat.BINARY);
+        repository.addSensor(new Sensor("door", SensorType.DOOR));
+        removed.removeNode();
+
+        assertThrows(IllegalStateException.class, repository::close);
+    }
+
+    @Test
+    public void sensorsBeyondOnePreferenceValue_areSplitOverSeveral() {
+        //together far more than a preference value can hold
+        String longName = "x".repeat(SensorCodec.MAX_NAME_BYTES);
+        int count = 4 * Preferences.MAX_VALUE_LENGTH / SensorCodec.MAX_NAME_BYTES;
+        PretendDatabaseSecurityRepositoryImpl repository = reopen();
+        for (int i = 0; i < count; i++) {
+            repository.addSensor(new Sensor(longName, SensorType.MOTION));
+        }
+        assertNotNull(node.get("SENSORS_BINARY.1", null));
+        assertEquals(count, reopen().getSensors().size());
+
+        //shrinking back to one value leaves no chunks behind
+        for (Sensor sensor : repository.getSensors()) {
+            repository.removeSensor(sensor);
+        }
+        repository.addSensor(new Sensor("door", SensorType.DOOR));
+        assertNull(node.get("SENSORS_BINARY.1", null));
+        assertNull(node.get("SENSORS_BINARY_CHUNKS", null));
+        assertEquals(1, reopen().getSensors().size());
+    }
+
+    @Test
+    public void sensorsWrittenAsOneByteArray_stillLoad() {
+        Sensor door = new Sensor("door", SensorType.DOOR);
+        node.putByteArray("SENSORS_BINARY", SensorCodec.encodeSensors(List.of(door)));
+
+        assertEquals(door.getSensorId(), reopen().getSensors().iterator().next().getSensorId());
+    }
+
+    @Test
+    public void failedLoad_isReportedBySensorOperations() {
+        node.putByteArray("SENSORS_BINARY", new byte[]{SensorCodec.VERSION + 1});
+        PretendDatabaseSecurityRepositoryImpl repository = openInBackground();
+        CompletableFuture<Void> streamed = repository.streamSensors(batch -> { });
+        loads.forEach(Runnable::run);
+
+        assertEquals(AlarmStatus.NO_ALARM, repository.getAlarmStatus());
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> streamed.get(5, TimeUnit.SECONDS));
+        assertTrue(failure.getCause() instanceof IllegalArgumentException);
+        assertThrows(IllegalStateException.class, repository::getSensors);
+        assertThrows(IllegalStateException.class, () -> repository.addSensor(new Sensor("door", SensorType.DOOR)));
+    }
+}
@@ -0,0 +1,93 @@
+package com.udacity.catpoint.security.data;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.prefs.BackingStoreException;
+import java.util.prefs.Preferences;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SensorCodecTest {
+
+    private final Preferences node = Preferences.userRoot().node("catpoint-test-" + UUID.randomUUID());
+
+    @AfterEach
+    void removeNode() throws BackingStoreException {
+        node.removeNode();
+    }
+
+    @Test
+    public void sensors_surviveARoundTrip() {
+        Sensor door = new Sensor("front door", SensorType.DOOR);
+        door.setActive(true);
+        Sensor window = new Sensor("fen\u00eatre \u2602", SensorType.WINDOW);
+        Sensor unnamed = new Sensor(null, SensorType.MOTION);
+
+        List<Sensor> decoded = SensorCodec.decodeSensors(SensorCodec.encodeSensors(List.of(door, window, unnamed)));
+
+        assertEquals(List.of(door, window, unnamed), decoded);
+        assertEquals("front door", decoded.get(0).getName());
+        assertTrue(decoded.get(0).getActive());
+        assertEquals("fen\u00eatre \u2602", decoded.get(1).getName());
+        assertFalse(decoded.get(1).getActive());
+        assertEquals(SensorType.MOTION, decoded.get(2).getSensorType());
+        assertEquals("", decoded.get(2).getName());
+    }
+
+    @Test
+    public void corruptData_isRejected() {
+        byte[] encoded = SensorCodec.encodeSensors(List.of(new Sensor("door", SensorType.DOOR)));
+
+        byte[] future = encoded.clone();
+        future[0] = SensorCodec.VERSION + 1;
+        assertThrows(IllegalArgumentException.class, () -> SensorCodec.decodeSensors(future));
+
+        byte[] truncated = Arrays.copyOf(encoded, encoded.length - 1);
+        assertThrows(IllegalArgumentException.class, () -> SensorCodec.decodeSensors(truncated));
+
+        byte[] hugeCount = encoded.clone();
+        ByteBuffer.wrap(hugeCount).putInt(1, Integer.MAX_VALUE);
+        assertThrows(IllegalArgumentException.class, () -> SensorCodec.decodeSensors(hugeCount));
+
+        //the sensor type follows the version, the count and the 16 byte id
+        byte[] unknownType = encoded.clone();
+        unknownType[1 + 4 + 16] = (byte) SensorType.values().length;
+        assertThrows(IllegalArgumentException.class, () -> SensorCodec.decodeSensors(unknownType));
+
+        assertThrows(IllegalArgumentException.class,
+                () -> SensorCodec.readAlarmStatus(ByteBuffer.wrap(new byte[]{(byte) AlarmStatus.values().length})));
+    }
+
+    @Test
+    public void statuses_surviveARoundTrip() {
+        ByteBuffer buffer = ByteBuffer.allocate(2);
+        SensorCodec.writeAlarmStatus(buffer, AlarmStatus.PENDING_ALARM);
+        SensorCodec.writeArmingStatus(buffer, ArmingStatus.ARMED_AWAY);
+        buffer.flip();
+        assertEquals(AlarmStatus.PENDING_ALARM, SensorCodec.readAlarmStatus(buffer));
+        assertEquals(ArmingStatus.ARMED_AWAY, SensorCodec.readArmingStatus(buffer));
+    }
+
+    @Test
+    public void repository_reloadsBinarySensors_whicheverFormatItIsConfiguredWith() {
+        Sensor door = new Sensor("door", SensorType.DOOR);
+        Sensor window = new Sensor("window", SensorType.WINDOW);
+        PretendDatabaseSecurityRepositoryImpl binary = new PretendDatabaseSecurityRepositoryImpl(node,
+                WriteBehindPolicy.WRITE_THROUGH, SensorFormat.BINARY);
+        binary.addSensor(door);
+        binary.addSensor(window);
+        assertNull(node.get("SENSORS", null));
+
+        PretendDatabaseSecurityRepositoryImpl reloaded = new PretendDatabaseSecurityRepositoryImpl(node,
+                WriteBehindPolicy.WRITE_THROUGH, SensorFormat.BINARY);
+        assertEquals(Set.of(door, window), reloaded.getSensors());
+        //switching back to JSON keeps the sensors, they are converted on the next write
+        assertEquals(Set.of(door, window), new PretendDatabaseSecurityRepositoryImpl(node, WriteBehindPolicy.WRITE_THROUGH).getSensors());
+    }
+}
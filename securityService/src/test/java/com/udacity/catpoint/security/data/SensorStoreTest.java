@@ -0,0 +1,68 @@
+package com.udacity.catpoint.security.data;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SensorStoreTest {
+
+    private final SensorStore store = new SensorStore();
+
+    @Test
+    public void add_updateAndRemove_keepActiveCountsInStep() {
+        Sensor door = new Sensor("door", SensorType.DOOR);
+        Sensor motion = new Sensor("motion", SensorType.MOTION);
+        store.add(door);
+        store.add(motion);
+        assertFalse(store.hasActiveSensors());
+
+        door.setActive(true);
+        store.add(door);
+        motion.setActive(true);
+        store.add(motion);
+        assertEquals(2, store.getActiveCount());
+        assertEquals(1, store.getActiveCount(SensorType.DOOR));
+        assertEquals(1, store.getActiveCount(SensorType.MOTION));
+
+        door.setActive(false);
+        store.add(door);
+        store.remove(motion);
+        assertFalse(store.hasActiveSensors());
+        assertEquals(0, store.getActiveCount(SensorType.MOTION));
+        assertEquals(0, store.getCount(SensorType.MOTION));
+        assertEquals(1, store.size());
+    }
+
+    @Test
+    public void iteration_isSortedByNameAndFollowsRenames() {
+        Sensor b = new Sensor("b", SensorType.WINDOW);
+        Sensor a = new Sensor("a", SensorType.WINDOW);
+        Sensor c = new Sensor("c", SensorType.WINDOW);
+        store.add(b);
+        store.add(c);
+        store.add(a);
+        assertEquals(List.of("a", "b", "c"), names());
+
+        a.setName("d");
+        store.add(a);
+        assertEquals(List.of("b", "c", "d"), names());
+    }
+
+    @Test
+    public void contains_matchesBySensorId() {
+        Sensor sensor = new Sensor("door", SensorType.DOOR);
+        store.add(sensor);
+
+        Sensor sameId = new Sensor("renamed copy", SensorType.DOOR);
+        sameId.setSensorId(sensor.getSensorId());
+        assertTrue(store.contains(sameId));
+        assertSame(sensor, store.get(sensor.getSensorId()));
+    }
+
+    private List<String> names() {
+        return store.stream().map(Sensor::getName).collect(Collectors.toList());
+    }
+}
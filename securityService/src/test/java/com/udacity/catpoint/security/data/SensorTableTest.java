@@ -0,0 +1,94 @@
+package com.udacity.catpoint.security.data;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SensorTableTest {
+
+    private static UUID id(Sensor sensor) {
+        return sensor.getSensorId();
+    }
+
+    @Test
+    public void addAndRemove_agreeWithAMap() {
+        SensorTable table = new SensorTable();
+        Map<UUID, Sensor> expected = new HashMap<>();
+        List<Sensor> added = new ArrayList<>();
+        Random random = new Random(42);
+
+        for (int i = 0; i < 20_000; i++) {
+            if (added.isEmpty() || random.nextInt(3) > 0) {
+                Sensor sensor = new Sensor("sensor " + i, SensorType.values()[i % 3]);
+                int index = table.add(sensor);
+                assertSame(sensor, table.getSensor(index));
+                expected.put(id(sensor), sensor);
+                added.add(sensor);
+            } else {
+                Sensor sensor = added.remove(random.nextInt(added.size()));
+                assertTrue(table.remove(id(sensor)));
+                assertFalse(table.remove(id(sensor)));
+                expected.remove(id(sensor));
+            }
+        }
+
+        assertEquals(expected.size(), table.size());
+        for (Sensor sensor : expected.values()) {
+            int index = table.indexOf(id(sensor));
+            assertSame(sensor, table.getSensor(index));
+            assertEquals(sensor.getSensorType(), table.getSensorType(index));
+        }
+        assertEquals(-1, table.indexOf(UUID.randomUUID()));
+    }
+
+    @Test
+    public void removedIndex_isReused() {
+        SensorTable table = new SensorTable();
+        Sensor door = new Sensor("door", SensorType.DOOR);
+        Sensor window = new Sensor("window", SensorType.WINDOW);
+        int doorIndex = table.add(door);
+        table.add(window);
+
+        table.remove(id(door));
+        Sensor motion = new Sensor("motion", SensorType.MOTION);
+
+        assertEquals(doorIndex, table.add(motion));
+        assertSame(motion, table.getSensor(doorIndex));
+        assertThrows(IllegalArgumentException.class, () -> table.isActive(doorIndex + 2));
+    }
+
+    @Test
+    public void activeCounts_followActivationAndRemoval() {
+        SensorTable table = new SensorTable();
+        Sensor door = new Sensor("door", SensorType.DOOR);
+        Sensor window = new Sensor("window", SensorType.WINDOW);
+        window.setActive(true);
+        int doorIndex = table.add(door);
+        int windowIndex = table.add(window);
+
+        assertFalse(table.setActive(doorIndex, true));
+        assertTrue(door.getActive());
+        assertTrue(table.setActive(doorIndex, true));
+        assertEquals(2, table.getActiveCount());
+        assertEquals(1, table.getActiveCount(SensorType.DOOR));
+        assertEquals(Math.min(doorIndex, windowIndex), table.nextActive(0));
+
+        //changes made on the sensor itself are picked up when it is added again
+        window.setSensorType(SensorType.MOTION);
+        window.setActive(false);
+        table.add(window);
+        assertEquals(1, table.getActiveCount());
+        assertEquals(0, table.getActiveCount(SensorType.WINDOW));
+
+        table.remove(id(door));
+        assertEquals(0, table.getActiveCount());
+        assertEquals(-1, table.nextActive(0));
+    }
+}
@@ -0,0 +1,68 @@
+package com.udacity.catpoint.security.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void buckets_coverEveryValueInOrder() {
+        long previousHighest = -1;
+        for (int bucket = 0; bucket <= LatencyHistogram.bucket(Long.MAX_VALUE); bucket++) {
+            long highest = LatencyHistogram.highestValueIn(bucket);
+            assertEquals(bucket, LatencyHistogram.bucket(previousHighest + 1), "first value of bucket " + bucket);
+            assertEquals(bucket, LatencyHistogram.bucket(highest), "last value of bucket " + bucket);
+            previousHighest = highest;
+        }
+        assertEquals(Long.MAX_VALUE, previousHighest);
+    }
+
+    @Test
+    public void percentiles_areWithinThreePercent() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 100_000; value++) {
+            histogram.record(value * 1_000);
+        }
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(100_000, snapshot.getCount());
+        assertEquals(100_000_000, snapshot.getMax());
+        assertEquals(50_000_500, snapshot.getMean(), 1);
+        assertEquals(50_000_000, snapshot.getValueAtPercentile(50), 50_000_000 * 0.03);
+        assertEquals(99_000_000, snapshot.getValueAtPercentile(99), 99_000_000 * 0.03);
+        assertEquals(99_900_000, snapshot.getValueAtPercentile(99.9), 99_900_000 * 0.03);
+        assertEquals(100_000_000, snapshot.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void concurrentRecording_losesNothing() throws InterruptedException {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            Random random = new Random(t);
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 100_000; i++) {
+                    histogram.record(random.nextInt(1_000_000));
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(800_000, histogram.snapshot().getCount());
+    }
+
+    @Test
+    public void emptyHistogram_reportsZero() {
+        LatencyHistogram.Snapshot snapshot = new LatencyHistogram().snapshot();
+
+        assertEquals(0, snapshot.getValueAtPercentile(99));
+        assertEquals(0, snapshot.getMean());
+        assertThrows(IllegalArgumentException.class, () -> snapshot.getValueAtPercentile(101));
+    }
+}
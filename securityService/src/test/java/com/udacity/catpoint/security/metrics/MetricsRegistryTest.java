@@ -0,0 +1,111 @@
+package com.udacity.catpoint.security.metrics;
+
+import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.data.EventLogSecurityRepositoryImpl;
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorType;
+import com.udacity.catpoint.security.service.SecurityService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MetricsRegistryTest {
+
+    @TempDir
+    Path directory;
+
+    private final MetricsRegistry registry = new MetricsRegistry();
+    private EventLogSecurityRepositoryImpl repository;
+    private SecurityService securityService;
+
+    @AfterEach
+    void close() {
+        if (securityService != null) {
+            securityService.close();
+        }
+        if (repository != null) {
+            repository.close();
+        }
+    }
+
+    @Test
+    public void text_listsEveryMetricInPrometheusFormat() {
+        registry.counter("events.applied").add(3);
+        registry.gauge("sensors.active", () -> 2);
+        registry.histogram("image.classify").record(TimeUnit.MILLISECONDS.toNanos(5));
+
+        String text = registry.scrape();
+
+        assertTrue(text.contains("# TYPE catpoint_events_applied_total counter\ncatpoint_events_applied_total 3\n"), text);
+        assertTrue(text.contains("catpoint_sensors_active 2\n"), text);
+        assertTrue(text.contains("catpoint_image_classify_seconds_count 1\n"), text);
+        assertTrue(text.contains("catpoint_image_classify_seconds{quantile=\"0.99\"} 0.005"), text);
+    }
+
+    @Test
+    public void sameName_isTheSameMetric_andTypesDoNotMix() {
+        assertSame(registry.counter("a"), registry.counter("a"));
+        assertThrows(IllegalArgumentException.class, () -> registry.histogram("a"));
+        assertThrows(IllegalArgumentException.class, () -> registry.gauge("a", () -> 1));
+    }
+
+    @Test
+    public void mbean_exposesCountersGaugesAndHistograms() throws Exception {
+        MBeanServer server = MBeanServerFactory.newMBeanServer();
+        ObjectName name = registry.registerMBean(server, new ObjectName(MetricsRegistry.DEFAULT_OBJECT_NAME));
+        registry.counter("image.cats").increment();
+        registry.gauge("alarm.status", () -> 1);
+        registry.histogram("service.processImage").record(1_000);
+
+        assertEquals(1L, server.getAttribute(name, "image.cats"));
+        assertEquals(1L, server.getAttribute(name, "alarm.status"));
+        assertEquals(1L, server.getAttribute(name, "service.processImage.count"));
+        assertEquals(1_000L, server.getAttribute(name, "service.processImage.max"));
+        assertEquals(9, server.getMBeanInfo(name).getAttributes().length);
+    }
+
+    @Test
+    public void instrumentedService_reportsThroughTheEndpoint() throws IOException {
+        repository = new EventLogSecurityRepositoryImpl(directory);
+        securityService = new InstrumentedSecurityService(repository, (image, threshold) -> true, registry);
+        try (MetricsEndpoint endpoint = new MetricsEndpoint(registry, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0))) {
+            Sensor door = new Sensor("door", SensorType.DOOR);
+            securityService.addSensor(door);
+            securityService.setArmingStatus(ArmingStatus.ARMED_HOME);
+            securityService.changeSensorActivationStatus(door, true);
+            securityService.processImage(new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB));
+
+            //the bound address, "localhost" may resolve to another loopback address first
+            InetSocketAddress address = endpoint.getLocalAddress();
+            HttpURLConnection connection = (HttpURLConnection) new URL("http", address.getAddress().getHostAddress(),
+                    address.getPort(), MetricsEndpoint.PATH).openConnection();
+            String text;
+            try (InputStream in = connection.getInputStream()) {
+                text = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            }
+
+            assertEquals(200, connection.getResponseCode());
+            assertTrue(text.contains("catpoint_image_cats_total 1\n"), text);
+            assertTrue(text.contains("catpoint_sensors_active 1\n"), text);
+            assertTrue(text.contains("catpoint_service_processImage_seconds_count 1\n"), text);
+            assertTrue(text.contains("catpoint_repository_addSensor_seconds_count 1\n"), text);
+            assertTrue(text.contains("catpoint_arming_status " + ArmingStatus.ARMED_HOME.ordinal() + "\n"), text);
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.image.service.FakeImage;
+import com.udacity.catpoint.image.service.FakeImageService;
+import com.udacity.catpoint.security.data.EventLogSecurityRepositoryImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.awt.image.BufferedImage;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CameraRuntimeTest {
+
+    @TempDir
+    Path directory;
+
+    private EventLogSecurityRepositoryImpl repository;
+    private SecurityService securityService;
+    private CameraRuntime runtime;
+    private final AtomicLong now = new AtomicLong();
+
+    private SecurityService service(FakeImage imageService) {
+        repository = new EventLogSecurityRepositoryImpl(directory);
+        securityService = new SecurityService(repository, imageService);
+        return securityService;
+    }
+
+    @AfterEach
+    void close() {
+        runtime.close();
+        securityService.close();
+        repository.close();
+    }
+
+    private static BufferedImage frame() {
+        return new BufferedImage(8, 8, BufferedImage.TYPE_INT_RGB);
+    }
+
+    private static void awaitCount(LongSupplier count, long expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (count.getAsLong() < expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(expected, count.getAsLong());
+    }
+
+    @Test
+    public void framesFromSource_areClassifiedOnTheCameraThread() throws InterruptedException {
+        runtime = new CameraRuntime(service(new FakeImageService()));
+        CountDownLatch frames = new CountDownLatch(5);
+
+        CameraRuntime.Camera camera = runtime.addCamera("front door", () -> {
+            if (frames.getCount() == 0) {
+                return null;
+            }
+            frames.countDown();
+            Thread.sleep(20);
+            return frame();
+        });
+
+        assertTrue(frames.await(5, TimeUnit.SECONDS));
+        awaitCount(camera::getProcessedFrames, 5);
+        assertEquals(5, camera.getSubmittedFrames());
+        assertEquals(0, camera.getOverflowedFrames());
+        assertSame(camera, runtime.getCamera("front door"));
+    }
+
+    @Test
+    public void slowClassifier_dropsOldestFramesAndReportsLag() throws InterruptedException {
+        Semaphore classifying = new Semaphore(0);
+        Semaphore release = new Semaphore(0);
+        runtime = new CameraRuntime(service((image, threshold) -> {
+            classifying.release();
+            release.acquireUninterruptibly();
+            return false;
+        }), 2, 60_000, now::get);
+        CameraRuntime.Camera camera = runtime.addCamera("garden");
+
+        camera.submit(frame());
+        assertTrue(classifying.tryAcquire(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 4; i++) {
+            camera.submit(frame());
+            now.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+        }
+
+        assertEquals(2, camera.getQueuedFrames());
+        assertEquals(2, camera.getOverflowedFrames());
+        //the oldest frame still waiting is the third one, submitted 200 ms ago
+        assertEquals(200, camera.getLagMillis());
+
+        release.release(3);
+        awaitCount(camera::getProcessedFrames, 3);
+        assertEquals(0, camera.getLagMillis());
+    }
+
+    @Test
+    public void framesOlderThanMaxAge_areSkipped() throws InterruptedException {
+        Semaphore classifying = new Semaphore(0);
+        Semaphore release = new Semaphore(0);
+        runtime = new CameraRuntime(service((image, threshold) -> {
+            classifying.release();
+            release.acquireUninterruptibly();
+            return false;
+        }), 2, 1_000, now::get);
+        CameraRuntime.Camera camera = runtime.addCamera("garage");
+
+        camera.submit(frame());
+        assertTrue(classifying.tryAcquire(5, TimeUnit.SECONDS));
+        camera.submit(frame());
+        now.addAndGet(TimeUnit.SECONDS.toNanos(2));
+        camera.submit(frame());
+
+        release.release(2);
+        awaitCount(camera::getProcessedFrames, 2);
+        assertEquals(1, camera.getStaleFrames());
+        //the frame processed last was captured after the clock moved on
+        assertEquals(0, camera.getLastLatencyMillis());
+    }
+
+    @Test
+    public void moreIdleCamerasThanCarrierThreads_allKeepUp() throws InterruptedException {
+        //well past the number of carriers a pinned virtual thread scheduler would compensate with
+        int count = 300;
+        AtomicLong classified = new AtomicLong();
+        runtime = new CameraRuntime(service((image, threshold) -> {
+            classified.incrementAndGet();
+            return false;
+        }));
+        List<CameraRuntime.Camera> cameras = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            cameras.add(runtime.addCamera("camera " + i));
+        }
+        //let every camera block waiting for its first frame
+        Thread.sleep(100);
+
+        for (CameraRuntime.Camera camera : cameras) {
+            assertTrue(camera.submit(frame()));
+        }
+        awaitCount(classified::get, count);
+    }
+
+    @Test
+    public void removedCamera_rejectsFrames() {
+        runtime = new CameraRuntime(service((image, threshold) -> false));
+        CameraRuntime.Camera camera = runtime.addCamera("attic");
+
+        runtime.removeCamera("attic");
+
+        assertFalse(camera.submit(frame()));
+        assertNull(runtime.getCamera("attic"));
+        assertThrows(IllegalArgumentException.class, () -> {
+            runtime.addCamera("cellar");
+            runtime.addCamera("cellar");
+        });
+    }
+
+    @Test
+    public void cameraWithItsOwnImageService_isClassifiedByItAlone() throws Exception {
+        AtomicLong shared = new AtomicLong();
+        AtomicLong ownFrames = new AtomicLong();
+        FakeImage own = (image, threshold) -> {
+            ownFrames.incrementAndGet();
+            return false;
+        };
+        runtime = new CameraRuntime(service((image, threshold) -> {
+            shared.incrementAndGet();
+            return false;
+        }));
+        CameraRuntime.Camera porch = runtime.addCamera("porch", null, own);
+
+        assertThrows(IllegalArgumentException.class, () -> runtime.addCamera("hall", null, own));
+        assertNull(runtime.getCamera("hall"));
+
+        porch.submit(frame());
+        awaitCount(porch::getProcessedFrames, 1);
+        assertEquals(1, ownFrames.get());
+        assertEquals(0, shared.get());
+    }
+}
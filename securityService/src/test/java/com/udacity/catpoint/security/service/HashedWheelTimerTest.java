@@ -0,0 +1,108 @@
+package com.udacity.catpoint.security.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HashedWheelTimerTest {
+
+    private final AtomicLong clock = new AtomicLong(1_000);
+    //1 ns ticks on an 8 bucket wheel, driven by hand
+    private final HashedWheelTimer timer = new HashedWheelTimer(1, 8, clock::get, null);
+
+    private void advanceTo(long elapsed) {
+        clock.set(1_000 + elapsed);
+        timer.advance();
+    }
+
+    @Test
+    public void timeouts_fireWhenDueInDeadlineOrder_neverEarly() {
+        List<String> fired = new CopyOnWriteArrayList<>();
+        timer.schedule(() -> fired.add("b"), 5, TimeUnit.NANOSECONDS);
+        timer.schedule(() -> fired.add("a"), 3, TimeUnit.NANOSECONDS);
+
+        advanceTo(2);
+        assertTrue(fired.isEmpty());
+        advanceTo(3);
+        assertEquals(List.of("a"), fired);
+        advanceTo(10);
+        assertEquals(List.of("a", "b"), fired);
+    }
+
+    @Test
+    public void timeoutBeyondOneRevolution_waitsForItsRound() {
+        List<String> fired = new CopyOnWriteArrayList<>();
+        HashedWheelTimer.Timeout timeout = timer.schedule(() -> fired.add("late"), 20, TimeUnit.NANOSECONDS);
+
+        //passes the timeout's bucket twice
+        advanceTo(19);
+        assertTrue(fired.isEmpty());
+        assertFalse(timeout.isFired());
+        advanceTo(20);
+        assertEquals(List.of("late"), fired);
+        assertTrue(timeout.isFired());
+    }
+
+    @Test
+    public void cancelledTimeout_neverFires() {
+        List<String> fired = new CopyOnWriteArrayList<>();
+        HashedWheelTimer.Timeout timeout = timer.schedule(() -> fired.add("cancelled"), 2, TimeUnit.NANOSECONDS);
+        advanceTo(1);
+        timeout.cancel();
+        advanceTo(5);
+
+        assertTrue(fired.isEmpty());
+        assertTrue(timeout.isCancelled());
+        assertFalse(timeout.isFired());
+    }
+
+    @Test
+    public void throwingTask_doesNotStopOtherTimeouts() {
+        List<String> fired = new CopyOnWriteArrayList<>();
+        timer.schedule(() -> {
+            throw new IllegalStateException("broken");
+        }, 1, TimeUnit.NANOSECONDS);
+        timer.schedule(() -> fired.add("after"), 1, TimeUnit.NANOSECONDS);
+
+        advanceTo(1);
+        assertEquals(List.of("after"), fired);
+    }
+
+    @Test
+    public void taskScheduledFromTask_firesOnLaterTick() {
+        List<Long> fired = new CopyOnWriteArrayList<>();
+        timer.schedule(() -> timer.schedule(() -> fired.add(clock.get() - 1_000), 2, TimeUnit.NANOSECONDS),
+                1, TimeUnit.NANOSECONDS);
+
+        advanceTo(1);
+        advanceTo(2);
+        assertTrue(fired.isEmpty());
+        advanceTo(3);
+        assertEquals(List.of(3L), fired);
+    }
+
+    @Test
+    public void closedTimer_rejectsNewTimeouts() {
+        timer.close();
+        assertThrows(IllegalStateException.class, () -> timer.schedule(() -> {
+        }, 1, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void timerThread_firesOnItsOwn() throws InterruptedException {
+        try (HashedWheelTimer running = new HashedWheelTimer(1, 16, "test-timer")) {
+            CountDownLatch fired = new CountDownLatch(1);
+            long start = System.nanoTime();
+            running.schedule(fired::countDown, 20, TimeUnit.MILLISECONDS);
+
+            assertTrue(fired.await(5, TimeUnit.SECONDS));
+            assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(20));
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.security.data.AlarmStatus;
+import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.data.EventLogSecurityRepositoryImpl;
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorTable;
+import com.udacity.catpoint.security.data.SensorType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Drives one SecurityService from many threads at once against a real repository.
+ */
+public class SecurityServiceConcurrencyTest {
+
+    private static final int THREADS = 16;
+
+    @TempDir
+    Path directory;
+
+    private EventLogSecurityRepositoryImpl repository;
+    private SecurityService securityService;
+    private ExecutorService executor;
+
+    @BeforeEach
+    void init() {
+        repository = new EventLogSecurityRepositoryImpl(directory);
+        securityService = new SecurityService(repository, (image, threshold) -> false);
+        executor = Executors.newFixedThreadPool(THREADS);
+    }
+
+    @AfterEach
+    void close() {
+        executor.shutdownNow();
+        securityService.close();
+        repository.close();
+    }
+
+    private List<Sensor> addSensors(int count) {
+        List<Sensor> sensors = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Sensor sensor = new Sensor("sensor " + i, SensorType.values()[i % SensorType.values().length]);
+            securityService.addSensor(sensor);
+            sensors.add(sensor);
+        }
+        return sensors;
+    }
+
+    @Test
+    public void simultaneousActivations_whileArmed_neverLoseATransition() throws Exception {
+        List<Sensor> sensors = addSensors(4);
+        CyclicBarrier start = new CyclicBarrier(sensors.size());
+
+        for (int round = 0; round < 500; round++) {
+            securityService.setAlarmStatus(AlarmStatus.NO_ALARM);
+            securityService.setArmingStatus(ArmingStatus.ARMED_AWAY); //resets every sensor
+
+            List<Future<?>> activations = new ArrayList<>();
+            for (Sensor sensor : sensors) {
+                activations.add(executor.submit(() -> {
+                    start.await();
+                    securityService.changeSensorActivationStatus(sensor, true);
+                    return null;
+                }));
+            }
+            for (Future<?> activation : activations) {
+                activation.get();
+            }
+
+            //NO_ALARM -> PENDING_ALARM -> ALARM needs two activations, there were four
+            assertEquals(AlarmStatus.ALARM, securityService.getAlarmStatus(), "round " + round);
+            assertEquals(AlarmStatus.ALARM, repository.getAlarmStatus(), "round " + round);
+        }
+    }
+
+    @Test
+    public void toggleById_ofASensorRemovedWhileLookingItUp_isRefused() {
+        Sensor sensor = new Sensor("door", SensorType.DOOR);
+        AtomicBoolean removeOnLookup = new AtomicBoolean();
+        //the removal lands between finding the sensor's index and reading the sensor at it
+        SensorTable table = new SensorTable() {
+            @Override
+            public synchronized Sensor getSensor(int index) {
+                if (removeOnLookup.getAndSet(false)) {
+                    securityService.removeSensor(sensor);
+                }
+                return super.getSensor(index);
+            }
+        };
+        securityService.close();
+        securityService = new SecurityService(repository, (image, threshold) -> false, table);
+        securityService.addSensor(sensor);
+
+        removeOnLookup.set(true);
+        assertFalse(securityService.changeSensorActivationStatus(sensor.getSensorId().getMostSignificantBits(),
+                sensor.getSensorId().getLeastSignificantBits(), true));
+        assertTrue(repository.getSensors().isEmpty());
+    }
+
+    @Test
+    public void concurrentToggles_leaveServiceAndRepositoryInAgreement() throws Exception {
+        List<Sensor> sensors = addSensors(THREADS * 4);
+        securityService.setArmingStatus(ArmingStatus.ARMED_HOME);
+        CyclicBarrier start = new CyclicBarrier(THREADS);
+
+        List<Future<?>> workers = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int first = t;
+            workers.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < 2_000; i++) {
+                    //neighbouring threads share sensors, so the same sensor is toggled concurrently
+                    Sensor sensor = sensors.get((first * 4 + i) % sensors.size());
+                    securityService.changeSensorActivationStatus(sensor, i % 2 == 0);
+                    if (i % 500 == 0) {
+                        securityService.setAlarmStatus(AlarmStatus.NO_ALARM);
+                    }
+                }
+                return null;
+            }));
+        }
+        for (Future<?> worker : workers) {
+            worker.get();
+        }
+
+        assertEquals(securityService.getAlarmStatus(), repository.getAlarmStatus());
+        assertEquals(ArmingStatus.ARMED_HOME, repository.getArmingStatus());
+        long active = sensors.stream().filter(Sensor::getActive).count();
+        assertEquals(active, repository.getActiveSensors().size());
+        assertEquals(active > 0, repository.hasActiveSensors());
+    }
+}
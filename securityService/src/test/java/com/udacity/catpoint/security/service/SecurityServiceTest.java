@@ -1,5 +1,7 @@
 package com.udacity.catpoint.security.service;
 
+import com.udacity.catpoint.image.service.AsyncImageService;
+import com.udacity.catpoint.image.service.BatchImageService;
 import com.udacity.catpoint.image.service.FakeImage;
 import com.udacity.catpoint.security.application.StatusListener;
 import com.udacity.catpoint.security.data.*;
@@ -16,6 +18,8 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import java.awt.image.BufferedImage;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -141,8 +145,7 @@ public class SecurityServiceTest {
     @Test
     public void processImage_ActiveSensorsAndNoCatImage_returnAlarm() {
         // 8. Requirement: If the image service identifies an image that does not contain a cat, change the status to no alarm as long as (= meaning 'only then') the sensors are not active.
-        Set<Sensor> sensorSet = Set.of(sensor);
-        when(newTestData.getSensors()).thenReturn(sensorSet);
+        when(newTestData.hasActiveSensors()).thenReturn(true);
 
         securityService.addSensor(sensor);
         sensor.setActive(true);
@@ -158,8 +161,7 @@ public class SecurityServiceTest {
 
     @Test
     public void processImage_noActiveSensorsAndNoCatImage_returnNoAlarm() {
-        Set<Sensor> sensorSet = Set.of(sensor);
-        when(newTestData.getSensors()).thenReturn(sensorSet);
+        when(newTestData.hasActiveSensors()).thenReturn(false);
 
         securityService.addSensor(sensor); // sensor is deactivated per default
 
@@ -182,7 +184,7 @@ public class SecurityServiceTest {
     public void setArmingStatus_armedSystem_deactivateAllSensors(ArmingStatus armingStatus) {
         // 10. Requirement: If the system is armed, reset all sensors to inactive.
         Set<Sensor> sensorSet = Set.of(sensor);
-        when(newTestData.getSensors()).thenReturn(sensorSet);
+        when(newTestData.getActiveSensors()).thenReturn(sensorSet);
 
         securityService.addSensor(sensor);
         sensor.setActive(true);
@@ -191,6 +193,7 @@ public class SecurityServiceTest {
         // The function does not change any sensor activity
         // Source code has a bug!
         assertFalse(sensor.getActive());
+        verify(newTestData).updateSensor(sensor);
     }
 
     @Test
@@ -206,6 +209,41 @@ public class SecurityServiceTest {
         verify(newTestData).setAlarmStatus(AlarmStatus.ALARM);
     }
 
+    @Test
+    public void processImageAsync_armedHomeAndCatImage_returnAlarmOnceScanned() {
+        when(newTestData.getArmingStatus()).thenReturn(ArmingStatus.ARMED_HOME);
+
+        BufferedImage catImage = new BufferedImage(50, 50, 1);
+        when(fakeImage.imageContainsCat(eq(catImage), anyFloat())).thenReturn(true);
+
+        assertTrue(securityService.processImageAsync(catImage).join());
+
+        verify(newTestData).setAlarmStatus(AlarmStatus.ALARM);
+    }
+
+    @Test
+    public void processImages_armedHomeAndCatInOneFrame_returnAlarm() {
+        when(newTestData.getArmingStatus()).thenReturn(ArmingStatus.ARMED_HOME);
+
+        BufferedImage emptyFrame = new BufferedImage(50, 50, 1);
+        BufferedImage catFrame = new BufferedImage(50, 50, 1);
+        // the burst may be decided before the empty frames are classified
+        lenient().when(fakeImage.imageContainsCat(eq(emptyFrame), anyFloat())).thenReturn(false);
+        when(fakeImage.imageContainsCat(eq(catFrame), anyFloat())).thenReturn(true);
+
+        securityService.processImages(List.of(emptyFrame, catFrame, emptyFrame));
+
+        verify(newTestData).setAlarmStatus(AlarmStatus.ALARM);
+    }
+
+    @Test
+    public void processImages_emptyBurst_leavesAlarmStatusAlone() {
+        securityService.processImages(List.of());
+
+        verify(newTestData, never()).setAlarmStatus(any(AlarmStatus.class));
+        verifyNoInteractions(fakeImage);
+    }
+
     @ParameterizedTest
     @MethodSource("differentArmingStatus")
     public void setArmingStatus_disarmedCatImageThenArmed_returnAlarm(ArmingStatus armingStatus) {
@@ -223,6 +261,24 @@ public class SecurityServiceTest {
         verify(newTestData).setAlarmStatus(AlarmStatus.ALARM);
     }
     
+    @Test
+    public void close_stopsOwnImageServices_butLeavesThoseItWasGiven() {
+        BufferedImage image = new BufferedImage(50, 50, 1);
+        securityService.close();
+        assertThrows(ExecutionException.class, () -> securityService.processImageAsync(image).get(5, TimeUnit.SECONDS));
+
+        AsyncImageService shared = new AsyncImageService(fakeImage);
+        try {
+            SecurityService sharing = new SecurityService(newTestData, fakeImage, shared, new BatchImageService(fakeImage),
+                    Runnable::run, new StatusEventBus());
+            sharing.close();
+            when(fakeImage.imageContainsCat(eq(image), anyFloat())).thenReturn(false);
+            assertDoesNotThrow(() -> sharing.processImageAsync(image).get(5, TimeUnit.SECONDS));
+        } finally {
+            shared.close();
+        }
+    }
+
     @Test
     public void statusListener() {
         // achieve full coverage
@@ -0,0 +1,279 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.security.data.AlarmStatus;
+import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.data.EventLogSecurityRepositoryImpl;
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class SensorDebouncerTest {
+
+    private static final long WINDOW_MILLIS = 100;
+
+    private final AtomicLong clock = new AtomicLong();
+    //1 ms ticks, driven by hand
+    private final HashedWheelTimer timer = new HashedWheelTimer(TimeUnit.MILLISECONDS.toNanos(1), 64, clock::get, null);
+    //transitions that reached the service, as "name active"
+    private final List<String> forwarded = new CopyOnWriteArrayList<>();
+    private SensorDebouncer debouncer;
+    private Sensor door;
+
+    @TempDir
+    Path directory;
+    //real services and their repositories, closed after the test
+    private final List<AutoCloseable> opened = new ArrayList<>();
+
+    @BeforeEach
+    void init() {
+        SecurityService securityService = mock(SecurityService.class);
+        lenient().doAnswer(invocation -> {
+            Sensor sensor = invocation.getArgument(0);
+            Boolean active = invocation.getArgument(1);
+            sensor.setActive(active);
+            forwarded.add(sensor.getName() + " " + active);
+            return null;
+        }).when(securityService).changeSensorActivationStatus(any(Sensor.class), any());
+        debouncer = new SensorDebouncer(securityService, Map.of(SensorType.DOOR, WINDOW_MILLIS, SensorType.MOTION, 0L), timer);
+        door = new Sensor("door", SensorType.DOOR);
+    }
+
+    @AfterEach
+    void close() throws Exception {
+        for (AutoCloseable closeable : opened) {
+            closeable.close();
+        }
+    }
+
+    /**
+     * @return an armed service on a repository of its own, watching the given sensors
+     */
+    private SecurityService armedService(String name, Sensor... sensors) {
+        EventLogSecurityRepositoryImpl repository = new EventLogSecurityRepositoryImpl(directory.resolve(name));
+        SecurityService securityService = new SecurityService(repository, (image, threshold) -> false);
+        opened.add(securityService);
+        opened.add(repository);
+        for (Sensor sensor : sensors) {
+            securityService.addSensor(sensor);
+        }
+        securityService.setArmingStatus(ArmingStatus.ARMED_HOME);
+        return securityService;
+    }
+
+    private void advanceMillis(long millis) {
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+        timer.advance();
+    }
+
+    @Test
+    public void leadingEdge_isForwardedAtOnce() {
+        debouncer.changeSensorActivationStatus(door, true);
+
+        assertEquals(List.of("door true"), forwarded);
+        assertEquals(1, debouncer.getOpenWindowCount());
+    }
+
+    @Test
+    public void flappingWithinWindow_collapsesToNetTransition() {
+        debouncer.changeSensorActivationStatus(door, true);
+        for (int i = 0; i < 10; i++) {
+            advanceMillis(5);
+            debouncer.changeSensorActivationStatus(door, false);
+            debouncer.changeSensorActivationStatus(door, i == 9 ? false : true);
+        }
+        assertEquals(List.of("door true"), forwarded);
+
+        advanceMillis(WINDOW_MILLIS);
+        //the activations within the window count once, before the net change
+        assertEquals(List.of("door true", "door true", "door false"), forwarded);
+        assertEquals(21, debouncer.getReceivedCount());
+        assertEquals(3, debouncer.getForwardedCount());
+    }
+
+    @Test
+    public void flapBackToActive_isForwardedAsAnotherActivation() {
+        debouncer.changeSensorActivationStatus(door, true);
+        debouncer.changeSensorActivationStatus(door, false);
+        debouncer.changeSensorActivationStatus(door, true);
+        advanceMillis(WINDOW_MILLIS);
+
+        assertEquals(List.of("door true", "door true"), forwarded);
+    }
+
+    @Test
+    public void repeatedDeactivation_forwardsNothingAndClosesWindow() {
+        door.setActive(true);
+        debouncer.changeSensorActivationStatus(door, false);
+        debouncer.changeSensorActivationStatus(door, false);
+        advanceMillis(WINDOW_MILLIS);
+
+        assertEquals(List.of("door false"), forwarded);
+        assertEquals(0, debouncer.getOpenWindowCount());
+
+        //quiet again, so the next edge goes straight through
+        debouncer.changeSensorActivationStatus(door, true);
+        assertEquals(List.of("door false", "door true"), forwarded);
+    }
+
+    @Test
+    public void failedTransition_doesNotLeaveTheSensorStuckInAWindow() {
+        SecurityService failing = mock(SecurityService.class);
+        doNothing().doThrow(new IllegalStateException("repository down")).doNothing()
+                .when(failing).changeSensorActivationStatus(any(Sensor.class), any());
+        SensorDebouncer debouncer = new SensorDebouncer(failing, Map.of(SensorType.DOOR, WINDOW_MILLIS), timer);
+        //the mock leaves the sensor alone, so the net change at the end of the window is a deactivation
+        door.setActive(true);
+
+        debouncer.changeSensorActivationStatus(door, true);
+        debouncer.changeSensorActivationStatus(door, false);
+        advanceMillis(WINDOW_MILLIS);
+        assertEquals(0, debouncer.getOpenWindowCount());
+
+        debouncer.changeSensorActivationStatus(door, false);
+        verify(failing, times(3)).changeSensorActivationStatus(any(Sensor.class), any());
+    }
+
+    @Test
+    public void netTransition_reopensWindowForFurtherEdges() {
+        debouncer.changeSensorActivationStatus(door, true);
+        debouncer.changeSensorActivationStatus(door, false);
+        advanceMillis(WINDOW_MILLIS);
+        assertEquals(List.of("door true", "door false"), forwarded);
+
+        //still within the window opened by the net transition
+        debouncer.changeSensorActivationStatus(door, true);
+        assertEquals(2, forwarded.size());
+        advanceMillis(WINDOW_MILLIS);
+        assertEquals(List.of("door true", "door false", "door true"), forwarded);
+    }
+
+    @Test
+    public void activationWhileActive_isForwardedOnceForEscalation() {
+        door.setActive(true);
+        debouncer.changeSensorActivationStatus(door, true);
+        debouncer.changeSensorActivationStatus(door, true);
+        debouncer.changeSensorActivationStatus(door, true);
+        advanceMillis(WINDOW_MILLIS);
+
+        assertEquals(List.of("door true", "door true"), forwarded);
+    }
+
+    @Test
+    public void sensorResetElsewhere_getsDesiredStateAgain() {
+        debouncer.changeSensorActivationStatus(door, true);
+        debouncer.changeSensorActivationStatus(door, false);
+        debouncer.changeSensorActivationStatus(door, true);
+        //arming resets every sensor behind the debouncer's back
+        door.setActive(false);
+        advanceMillis(WINDOW_MILLIS);
+
+        assertEquals(List.of("door true", "door true"), forwarded);
+    }
+
+    @Test
+    public void activationWithinWindow_escalatesAnAlarmAnotherSensorMadePending() {
+        Sensor motion = new Sensor("motion", SensorType.MOTION);
+        SecurityService securityService = armedService("debounced", door, motion);
+        SensorDebouncer debouncer = new SensorDebouncer(securityService, Map.of(SensorType.DOOR, WINDOW_MILLIS), timer);
+        debouncer.changeSensorActivationStatus(door, true);
+        advanceMillis(WINDOW_MILLIS);
+        assertEquals(AlarmStatus.PENDING_ALARM, securityService.getAlarmStatus());
+
+        //the door closes, opens and closes again while the motion sensor goes off
+        debouncer.changeSensorActivationStatus(door, false);
+        debouncer.changeSensorActivationStatus(door, true);
+        debouncer.changeSensorActivationStatus(motion, true);
+        debouncer.changeSensorActivationStatus(door, false);
+        assertEquals(AlarmStatus.PENDING_ALARM, securityService.getAlarmStatus());
+        advanceMillis(WINDOW_MILLIS);
+        assertEquals(AlarmStatus.ALARM, securityService.getAlarmStatus());
+        assertFalse(door.getActive());
+
+        //the same edges without a debouncer
+        Sensor rawDoor = new Sensor("door", SensorType.DOOR);
+        Sensor rawMotion = new Sensor("motion", SensorType.MOTION);
+        SecurityService raw = armedService("raw", rawDoor, rawMotion);
+        raw.changeSensorActivationStatus(rawDoor, true);
+        raw.changeSensorActivationStatus(rawDoor, false);
+        raw.changeSensorActivationStatus(rawDoor, true);
+        raw.changeSensorActivationStatus(rawMotion, true);
+        raw.changeSensorActivationStatus(rawDoor, false);
+        assertEquals(raw.getAlarmStatus(), securityService.getAlarmStatus());
+    }
+
+    @Test
+    public void flapsOfADisarmedSystem_raiseNoAlarm() {
+        SecurityService securityService = armedService("disarmed", door);
+        securityService.setArmingStatus(ArmingStatus.DISARMED);
+        SensorDebouncer debouncer = new SensorDebouncer(securityService, Map.of(SensorType.DOOR, WINDOW_MILLIS), timer);
+
+        for (int i = 0; i < 5; i++) {
+            debouncer.changeSensorActivationStatus(door, true);
+            debouncer.changeSensorActivationStatus(door, false);
+        }
+        advanceMillis(WINDOW_MILLIS);
+        advanceMillis(WINDOW_MILLIS);
+
+        assertEquals(AlarmStatus.NO_ALARM, securityService.getAlarmStatus());
+        assertFalse(door.getActive());
+        assertEquals(0, debouncer.getOpenWindowCount());
+    }
+
+    @Test
+    public void typesWithoutWindow_passThrough() {
+        Sensor motion = new Sensor("motion", SensorType.MOTION);
+        Sensor window = new Sensor("window", SensorType.WINDOW);
+        debouncer.changeSensorActivationStatus(motion, true);
+        debouncer.changeSensorActivationStatus(motion, false);
+        debouncer.changeSensorActivationStatus(window, true);
+        debouncer.changeSensorActivationStatus(window, false);
+
+        assertEquals(List.of("motion true", "motion false", "window true", "window false"), forwarded);
+        assertEquals(0, debouncer.getOpenWindowCount());
+    }
+
+    @Test
+    public void sensorsAreDebouncedIndependently() {
+        Sensor backDoor = new Sensor("back door", SensorType.DOOR);
+        debouncer.changeSensorActivationStatus(door, true);
+        debouncer.changeSensorActivationStatus(backDoor, true);
+        debouncer.changeSensorActivationStatus(door, false);
+
+        assertEquals(List.of("door true", "back door true"), forwarded);
+        advanceMillis(WINDOW_MILLIS);
+        assertEquals(List.of("door true", "back door true", "door false"), forwarded);
+    }
+
+    @Test
+    public void close_flushesOpenWindows() {
+        debouncer.changeSensorActivationStatus(door, true);
+        debouncer.changeSensorActivationStatus(door, false);
+        debouncer.close();
+
+        assertEquals(List.of("door true", "door false"), forwarded);
+        assertEquals(0, debouncer.getOpenWindowCount());
+        advanceMillis(WINDOW_MILLIS);
+        assertEquals(2, forwarded.size());
+    }
+
+    @Test
+    public void negativeWindow_isRejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new SensorDebouncer(mock(SecurityService.class), Map.of(SensorType.DOOR, -1L), timer));
+    }
+}
@@ -0,0 +1,184 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.security.data.AlarmStatus;
+import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.data.EventLogSecurityRepositoryImpl;
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SensorEventServerTest {
+
+    @TempDir
+    Path directory;
+
+    private EventLogSecurityRepositoryImpl repository;
+    private SecurityService securityService;
+    private SensorEventServer server;
+
+    @BeforeEach
+    void init() throws IOException {
+        repository = new EventLogSecurityRepositoryImpl(directory);
+        securityService = new SecurityService(repository, (image, threshold) -> false);
+        server = new SensorEventServer(securityService, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+    }
+
+    @AfterEach
+    void close() {
+        server.close();
+        securityService.close();
+        repository.close();
+    }
+
+    private SocketChannel connect() throws IOException {
+        return SocketChannel.open(new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getLocalPort()));
+    }
+
+    private static void putEvent(ByteBuffer buffer, byte operation, UUID sensorId) {
+        buffer.put(operation).putLong(sensorId.getMostSignificantBits()).putLong(sensorId.getLeastSignificantBits());
+    }
+
+    private static void awaitCount(LongSupplier count, long expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (count.getAsLong() < expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(expected, count.getAsLong());
+    }
+
+    @Test
+    public void close_waitsForEventsAlreadyRead() throws Exception {
+        Sensor door = new Sensor("door", SensorType.DOOR);
+        CountDownLatch applying = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        SecurityService slowService = new SecurityService(repository, (image, threshold) -> false) {
+            @Override
+            public boolean changeSensorActivationStatus(long mostSignificantBits, long leastSignificantBits, boolean active) {
+                applying.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.changeSensorActivationStatus(mostSignificantBits, leastSignificantBits, active);
+            }
+        };
+        slowService.addSensor(door);
+        SensorEventServer slowServer = new SensorEventServer(slowService,
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+
+        ByteBuffer events = ByteBuffer.allocate(10 * SensorEventServer.RECORD_BYTES);
+        for (int i = 0; i < 10; i++) {
+            putEvent(events, i % 2 == 0 ? SensorEventServer.ACTIVATE : SensorEventServer.DEACTIVATE, door.getSensorId());
+        }
+        events.flip();
+        try (SocketChannel channel = SocketChannel.open(
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), slowServer.getLocalPort()))) {
+            channel.write(events);
+        }
+        assertTrue(applying.await(5, TimeUnit.SECONDS));
+
+        Thread releaser = new Thread(() -> {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            release.countDown();
+        });
+        releaser.start();
+        slowServer.close();
+
+        //everything read was applied before close returned, so the repository may be closed now
+        assertEquals(10, slowServer.getAppliedEventCount());
+        assertFalse(door.getActive());
+        releaser.join();
+        slowService.close();
+    }
+
+    @Test
+    public void eventsSplitAcrossWrites_areAppliedInOrder() throws Exception {
+        Sensor door = new Sensor("door", SensorType.DOOR);
+        Sensor window = new Sensor("window", SensorType.WINDOW);
+        securityService.addSensor(door);
+        securityService.addSensor(window);
+        securityService.setArmingStatus(ArmingStatus.ARMED_AWAY);
+
+        ByteBuffer events = ByteBuffer.allocate(5 * SensorEventServer.RECORD_BYTES);
+        putEvent(events, SensorEventServer.ACTIVATE, door.getSensorId());
+        putEvent(events, SensorEventServer.ACTIVATE, UUID.randomUUID());
+        putEvent(events, SensorEventServer.ACTIVATE, window.getSensorId());
+        putEvent(events, SensorEventServer.DEACTIVATE, window.getSensorId());
+        putEvent(events, SensorEventServer.ACTIVATE, window.getSensorId());
+        events.flip();
+        try (SocketChannel channel = connect()) {
+            //cut in the middle of the second record
+            ByteBuffer first = events.duplicate().limit(SensorEventServer.RECORD_BYTES + 5);
+            channel.write(first);
+            Thread.sleep(50);
+            events.position(first.limit());
+            channel.write(events);
+        }
+
+        awaitCount(server::getAppliedEventCount, 5);
+        assertEquals(1, server.getUnknownSensorEventCount());
+        assertTrue(door.getActive());
+        assertTrue(window.getActive());
+        assertEquals(AlarmStatus.ALARM, securityService.getAlarmStatus());
+        assertEquals(2, repository.getActiveSensors().size());
+    }
+
+    @Test
+    public void unknownOperation_closesOnlyThatConnection() throws Exception {
+        Sensor door = new Sensor("door", SensorType.DOOR);
+        securityService.addSensor(door);
+
+        try (SocketChannel bad = connect(); SocketChannel good = connect()) {
+            ByteBuffer garbage = ByteBuffer.allocate(SensorEventServer.RECORD_BYTES);
+            garbage.put((byte) 7).putLong(1).putLong(2).flip();
+            bad.write(garbage);
+            assertEquals(-1, bad.read(ByteBuffer.allocate(1)));
+
+            ByteBuffer event = ByteBuffer.allocate(SensorEventServer.RECORD_BYTES);
+            putEvent(event, SensorEventServer.ACTIVATE, door.getSensorId());
+            good.write(event.flip());
+            awaitCount(server::getAppliedEventCount, 1);
+        }
+        assertTrue(door.getActive());
+    }
+
+    @Test
+    public void removedSensor_isNotBroughtBackByLaterEvents() throws Exception {
+        Sensor door = new Sensor("door", SensorType.DOOR);
+        securityService.addSensor(door);
+
+        try (SocketChannel channel = connect()) {
+            ByteBuffer event = ByteBuffer.allocate(SensorEventServer.RECORD_BYTES);
+            putEvent(event, SensorEventServer.ACTIVATE, door.getSensorId());
+            channel.write(event.flip());
+            awaitCount(server::getAppliedEventCount, 1);
+
+            securityService.removeSensor(door);
+            channel.write(event.rewind());
+            awaitCount(server::getAppliedEventCount, 2);
+        }
+        assertEquals(1, server.getUnknownSensorEventCount());
+        assertTrue(repository.getSensors().isEmpty());
+    }
+}
@@ -0,0 +1,322 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.image.service.AsyncImageService;
+import com.udacity.catpoint.image.service.BatchImageService;
+import com.udacity.catpoint.image.service.FakeImage;
+import com.udacity.catpoint.security.application.StatusListener;
+import com.udacity.catpoint.security.data.AlarmStatus;
+import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.data.EventLogSecurityRepositoryImpl;
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.awt.image.BufferedImage;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ShardedSecurityServiceTest {
+
+    @TempDir
+    Path directory;
+
+    private final ScheduledExecutorService compactor = Executors.newSingleThreadScheduledExecutor();
+    private final List<EventLogSecurityRepositoryImpl> repositories = new ArrayList<>();
+    private final Set<String> closedRepositories = ConcurrentHashMap.newKeySet();
+    private ShardedSecurityService sharded;
+
+    private ShardedSecurityService sharded(int workers) {
+        return sharded(workers, (image, threshold) -> false);
+    }
+
+    private ShardedSecurityService sharded(int workers, FakeImage imageService) {
+        sharded = new ShardedSecurityService(workers, this::repository, imageService);
+        return sharded;
+    }
+
+    private EventLogSecurityRepositoryImpl repository(String siteId) {
+        EventLogSecurityRepositoryImpl repository = new EventLogSecurityRepositoryImpl(directory.resolve(siteId),
+                EventLogSecurityRepositoryImpl.DEFAULT_SNAPSHOT_INTERVAL_MILLIS,
+                EventLogSecurityRepositoryImpl.DEFAULT_COMPACTION_THRESHOLD_BYTES, compactor) {
+            @Override
+            public void close() {
+                closedRepositories.add(siteId);
+                super.close();
+            }
+        };
+        synchronized (repositories) {
+            repositories.add(repository);
+        }
+        return repository;
+    }
+
+    @AfterEach
+    void close() {
+        sharded.close();
+        for (EventLogSecurityRepositoryImpl repository : repositories) {
+            repository.close();
+        }
+        compactor.shutdownNow();
+    }
+
+    @Test
+    public void sitesKeepTheirOwnState_andStatusIsAggregated() throws Exception {
+        sharded(4);
+        List<Sensor> doors = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            String siteId = "site-" + i;
+            sharded.addSite(siteId);
+            Sensor door = new Sensor("door", SensorType.DOOR);
+            doors.add(door);
+            sharded.execute(siteId, service -> service.addSensor(door));
+        }
+
+        //every third site is armed and has its door opened
+        for (int i = 0; i < 20; i += 3) {
+            Sensor door = doors.get(i);
+            sharded.setArmingStatus("site-" + i, ArmingStatus.ARMED_AWAY);
+            sharded.changeSensorActivationStatus("site-" + i, door.getSensorId().getMostSignificantBits(),
+                    door.getSensorId().getLeastSignificantBits(), true);
+        }
+        awaitIdle();
+
+        Map<AlarmStatus, Integer> alarms = sharded.getAlarmStatusCounts();
+        assertEquals(7, alarms.get(AlarmStatus.PENDING_ALARM));
+        assertEquals(13, alarms.get(AlarmStatus.NO_ALARM));
+        assertEquals(0, alarms.get(AlarmStatus.ALARM));
+        assertEquals(7, sharded.getArmingStatusCounts().get(ArmingStatus.ARMED_AWAY));
+        assertEquals(7, sharded.getActiveSensorCount());
+        assertTrue(sharded.getSiteIds(AlarmStatus.PENDING_ALARM).contains("site-9"));
+        assertEquals(AlarmStatus.NO_ALARM, sharded.getSite("site-1").getAlarmStatus());
+    }
+
+    @Test
+    public void tasksOfOneSite_runOneAtATimeInOrder() throws Exception {
+        sharded(4);
+        sharded.addSite("busy");
+        List<Integer> order = new ArrayList<>();
+        AtomicBoolean running = new AtomicBoolean();
+        AtomicBoolean overlapped = new AtomicBoolean();
+
+        for (int i = 0; i < 10_000; i++) {
+            int task = i;
+            sharded.execute("busy", service -> {
+                if (!running.compareAndSet(false, true)) {
+                    overlapped.set(true);
+                }
+                order.add(task);
+                running.set(false);
+            });
+        }
+        awaitIdle();
+
+        assertFalse(overlapped.get());
+        assertEquals(10_000, order.size());
+        for (int i = 0; i < order.size(); i++) {
+            assertEquals(i, order.get(i));
+        }
+    }
+
+    @Test
+    public void sitesQueuedBehindABlockedSite_areStolenByIdleWorkers() throws Exception {
+        sharded(2);
+        String hot = "hot";
+        String neighbour = null;
+        for (int i = 0; neighbour == null; i++) {
+            if (sharded.homeWorkerIndex("site-" + i) == sharded.homeWorkerIndex(hot)) {
+                neighbour = "site-" + i;
+            }
+        }
+        sharded.addSite(hot);
+        sharded.addSite(neighbour);
+
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch blocked = new CountDownLatch(1);
+        sharded.execute(hot, service -> {
+            blocked.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(blocked.await(5, TimeUnit.SECONDS));
+
+        CompletableFuture<ArmingStatus> answer = sharded.submit(neighbour, SecurityService::getArmingStatus);
+        assertEquals(ArmingStatus.DISARMED, answer.get(5, TimeUnit.SECONDS));
+        assertTrue(sharded.getStolenCount() >= 1);
+        release.countDown();
+    }
+
+    @Test
+    public void unknownSitesAndFailingTasks_doNotStopTheWorkers() throws Exception {
+        sharded(2);
+        sharded.addSite("home");
+
+        assertFalse(sharded.execute("elsewhere", service -> { }));
+        ExecutionException unknown = assertThrows(ExecutionException.class,
+                () -> sharded.submit("elsewhere", SecurityService::getAlarmStatus).get(5, TimeUnit.SECONDS));
+        assertTrue(unknown.getCause() instanceof IllegalArgumentException);
+
+        CompletableFuture<Object> failing = sharded.submit("home", service -> {
+            throw new IllegalStateException("broken");
+        });
+        assertThrows(ExecutionException.class, () -> failing.get(5, TimeUnit.SECONDS));
+        assertEquals(AlarmStatus.NO_ALARM, sharded.submit("home", SecurityService::getAlarmStatus).get(5, TimeUnit.SECONDS));
+        assertEquals(1, sharded.getFailedCount());
+    }
+
+    @Test
+    public void imageVerdict_waitsItsTurnInTheSitesQueue() throws Exception {
+        CountDownLatch answer = new CountDownLatch(1);
+        sharded(2, (image, threshold) -> {
+            try {
+                answer.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return true;
+        });
+        sharded.addSite("home");
+        sharded.setArmingStatus("home", ArmingStatus.ARMED_HOME);
+        assertTrue(sharded.processImage("home", new BufferedImage(4, 4, BufferedImage.TYPE_INT_RGB)));
+        awaitIdle();
+
+        CountDownLatch release = new CountDownLatch(1);
+        sharded.execute("home", service -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        answer.countDown();
+
+        //the verdict is queued behind the busy site instead of being applied on the image service thread
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (sharded.getSubmittedCount() < 4 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(4, sharded.getSubmittedCount());
+        assertEquals(AlarmStatus.NO_ALARM, sharded.getSite("home").getAlarmStatus());
+
+        release.countDown();
+        awaitIdle();
+        assertEquals(AlarmStatus.ALARM, sharded.getSite("home").getAlarmStatus());
+    }
+
+    @Test
+    public void sites_shareTheGivenComponents_andLeaveThemRunning() throws Exception {
+        FakeImage imageService = (image, threshold) -> false;
+        ScheduledThreadPoolExecutor statusScheduler = new ScheduledThreadPoolExecutor(1, r -> new Thread(r, "shared-status"));
+        try (AsyncImageService asyncImages = new AsyncImageService(imageService);
+             BatchImageService batchImages = new BatchImageService(imageService)) {
+            sharded = new ShardedSecurityService(2, this::repository, imageService, asyncImages, batchImages, statusScheduler);
+            Set<String> deliveringThreads = ConcurrentHashMap.newKeySet();
+            CountDownLatch delivered = new CountDownLatch(10);
+            for (int i = 0; i < 10; i++) {
+                sharded.addSite("site-" + i).addStatusListener(new StatusListener() {
+                    @Override
+                    public void notify(AlarmStatus status) {
+                    }
+
+                    @Override
+                    public void catDetected(boolean catDetected) {
+                    }
+
+                    @Override
+                    public void sensorStatusChanged() {
+                        deliveringThreads.add(Thread.currentThread().getName());
+                        delivered.countDown();
+                    }
+                });
+                sharded.setArmingStatus("site-" + i, ArmingStatus.ARMED_AWAY);
+            }
+
+            assertTrue(delivered.await(5, TimeUnit.SECONDS));
+            assertEquals(Set.of("shared-status"), deliveringThreads);
+            sharded.close();
+            assertFalse(statusScheduler.isShutdown());
+        } finally {
+            statusScheduler.shutdownNow();
+        }
+    }
+
+    @Test
+    public void removedSite_isClosedOnceItsRunningEventIsDone() throws Exception {
+        sharded(2);
+        sharded.addSite("home");
+        sharded.addSite("neighbour");
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch blocked = new CountDownLatch(1);
+        AtomicBoolean closedWhileRunning = new AtomicBoolean();
+        sharded.execute("home", service -> {
+            blocked.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            closedWhileRunning.set(closedRepositories.contains("home"));
+        });
+        assertTrue(blocked.await(5, TimeUnit.SECONDS));
+
+        sharded.removeSite("home");
+        assertFalse(sharded.execute("home", service -> { }));
+        release.countDown();
+
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!closedRepositories.contains("home") && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(Set.of("home"), closedRepositories);
+        assertFalse(closedWhileRunning.get());
+    }
+
+    @Test
+    public void close_waitsForRunningEvents_thenClosesTheSites() throws Exception {
+        sharded(2);
+        sharded.addSite("home");
+        sharded.addSite("away");
+        CountDownLatch started = new CountDownLatch(1);
+        AtomicBoolean finished = new AtomicBoolean();
+        sharded.execute("home", service -> {
+            started.countDown();
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            finished.set(true);
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        sharded.close();
+        assertTrue(finished.get());
+        assertEquals(Set.of("home", "away"), closedRepositories);
+    }
+
+    private void awaitIdle() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (sharded.getProcessedCount() < sharded.getSubmittedCount() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(sharded.getSubmittedCount(), sharded.getProcessedCount());
+    }
+}
@@ -0,0 +1,137 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.security.application.StatusListener;
+import com.udacity.catpoint.security.data.AlarmStatus;
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StatusEventBusTest {
+
+    private final StatusEventBus bus = new StatusEventBus(50);
+
+    @AfterEach
+    void close() {
+        bus.close();
+    }
+
+    /**
+     * Records every callback and counts down once something was delivered.
+     */
+    private static class RecordingListener implements StatusListener {
+        private final List<String> events = new CopyOnWriteArrayList<>();
+        private final List<Thread> threads = new CopyOnWriteArrayList<>();
+        private final CountDownLatch delivered = new CountDownLatch(1);
+
+        @Override
+        public void notify(AlarmStatus status) {
+            record("notify " + status);
+        }
+
+        @Override
+        public void catDetected(boolean catDetected) {
+            record("cat " + catDetected);
+        }
+
+        @Override
+        public void sensorStatusChanged() {
+            record("sensors");
+        }
+
+        @Override
+        public void sensorAdded(Sensor sensor) {
+            record("added " + sensor.getName());
+        }
+
+        @Override
+        public void sensorRemoved(Sensor sensor) {
+            record("removed " + sensor.getName());
+        }
+
+        @Override
+        public void sensorChanged(Sensor sensor) {
+            record("changed " + sensor.getName());
+        }
+
+        private void record(String event) {
+            events.add(event);
+            threads.add(Thread.currentThread());
+            delivered.countDown();
+        }
+    }
+
+    @Test
+    public void burstWithinOneFrame_isDeliveredOnceWithLatestValues() throws InterruptedException {
+        RecordingListener listener = new RecordingListener();
+        bus.subscribe(listener);
+
+        for (int i = 0; i < 100; i++) {
+            bus.sensorStatusChanged();
+        }
+        bus.alarmStatusChanged(AlarmStatus.PENDING_ALARM);
+        bus.catDetected(false);
+        bus.alarmStatusChanged(AlarmStatus.ALARM);
+        bus.catDetected(true);
+
+        assertTrue(listener.delivered.await(5, TimeUnit.SECONDS));
+        Thread.sleep(200);
+        assertEquals(List.of("notify ALARM", "cat true", "sensors"), listener.events);
+        assertNotSame(Thread.currentThread(), listener.threads.get(0));
+    }
+
+    @Test
+    public void eventsAfterDelivery_startANewFrame() throws InterruptedException {
+        RecordingListener listener = new RecordingListener();
+        bus.subscribe(listener);
+
+        bus.sensorStatusChanged();
+        assertTrue(listener.delivered.await(5, TimeUnit.SECONDS));
+        bus.sensorStatusChanged();
+        Thread.sleep(300);
+
+        assertEquals(List.of("sensors", "sensors"), listener.events);
+    }
+
+    @Test
+    public void unsubscribedListener_receivesNothingPending() throws InterruptedException {
+        RecordingListener listener = new RecordingListener();
+        bus.subscribe(listener);
+        bus.subscribe(listener);
+
+        bus.alarmStatusChanged(AlarmStatus.ALARM);
+        bus.unsubscribe(listener);
+
+        assertFalse(listener.delivered.await(300, TimeUnit.MILLISECONDS));
+        assertTrue(listener.events.isEmpty());
+    }
+
+    @Test
+    public void sensorEventsWithinOneFrame_areFoldedPerSensor() throws InterruptedException {
+        RecordingListener listener = new RecordingListener();
+        bus.subscribe(listener);
+        Sensor door = new Sensor("door", SensorType.DOOR);
+        Sensor window = new Sensor("window", SensorType.WINDOW);
+        Sensor motion = new Sensor("motion", SensorType.MOTION);
+
+        for (int i = 0; i < 10; i++) {
+            bus.sensorChanged(door);
+        }
+        bus.sensorAdded(window);
+        bus.sensorChanged(window);
+        bus.sensorAdded(motion);
+        bus.sensorRemoved(motion);
+        bus.sensorStatusChanged();
+
+        assertTrue(listener.delivered.await(5, TimeUnit.SECONDS));
+        Thread.sleep(200);
+        assertEquals(List.of("changed door", "added window", "sensors"), listener.events);
+    }
+}